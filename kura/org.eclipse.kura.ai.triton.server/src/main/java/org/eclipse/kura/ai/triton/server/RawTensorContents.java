@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.ai.triton.server;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntFunction;
+
+import org.eclipse.kura.ai.inference.Tensor;
+import org.eclipse.kura.ai.inference.TensorDescriptor;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+/**
+ * Converts tensors to and from the raw_input_contents and raw_output_contents fields of the inference requests and
+ * responses, where the elements are serialized in row-major order and little endian byte order.
+ * <p>
+ * Each input tensor is written into a single buffer that is wrapped by the request without being copied, and the
+ * data of the output tensors is copied once into primitive arrays, whose elements are only boxed when accessed.
+ */
+final class RawTensorContents {
+
+    private RawTensorContents() {
+    }
+
+    static ByteString encode(Tensor input) {
+        DataType type = DataType.valueOf(input.getDescriptor().getType());
+        switch (type) {
+        case BOOL:
+            return encodeBooleans(getData(input, Boolean.class));
+        case UINT8:
+        case INT8:
+            return encodeBytes(input);
+        case UINT16:
+        case INT16:
+            return encodeShorts(input);
+        case UINT32:
+        case INT32:
+            List<Integer> integers = getData(input, Integer.class);
+            ByteBuffer integerBuffer = allocate(integers.size() * Integer.BYTES);
+            integers.forEach(integerBuffer::putInt);
+            return wrap(integerBuffer);
+        case UINT64:
+        case INT64:
+            List<Long> longs = getData(input, Long.class);
+            ByteBuffer longBuffer = allocate(longs.size() * Long.BYTES);
+            longs.forEach(longBuffer::putLong);
+            return wrap(longBuffer);
+        case FP32:
+            List<Float> floats = getData(input, Float.class);
+            ByteBuffer floatBuffer = allocate(floats.size() * Float.BYTES);
+            floats.forEach(floatBuffer::putFloat);
+            return wrap(floatBuffer);
+        case FP64:
+            List<Double> doubles = getData(input, Double.class);
+            ByteBuffer doubleBuffer = allocate(doubles.size() * Double.BYTES);
+            doubles.forEach(doubleBuffer::putDouble);
+            return wrap(doubleBuffer);
+        case BYTES:
+            return encodeByteString(input);
+        default:
+            throw new IllegalArgumentException("Date type " + type + " not supported");
+        }
+    }
+
+    static Tensor decode(DataType type, TensorDescriptor descriptor, ByteString contents) {
+        ByteBuffer buffer = contents.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        switch (type) {
+        case BOOL:
+            byte[] booleans = new byte[buffer.remaining()];
+            buffer.get(booleans);
+            return new Tensor(Boolean.class, descriptor, new ArrayView<>(booleans.length, i -> booleans[i] == 0x01));
+        case UINT8:
+        case INT8:
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            return new Tensor(Byte.class, descriptor, new ArrayView<>(bytes.length, i -> bytes[i]));
+        case UINT16:
+        case INT16:
+            short[] shorts = new short[buffer.remaining() / Short.BYTES];
+            buffer.asShortBuffer().get(shorts);
+            return new Tensor(Short.class, descriptor, new ArrayView<>(shorts.length, i -> shorts[i]));
+        case UINT32:
+        case INT32:
+            int[] integers = new int[buffer.remaining() / Integer.BYTES];
+            buffer.asIntBuffer().get(integers);
+            return new Tensor(Integer.class, descriptor, new ArrayView<>(integers.length, i -> integers[i]));
+        case UINT64:
+        case INT64:
+            long[] longs = new long[buffer.remaining() / Long.BYTES];
+            buffer.asLongBuffer().get(longs);
+            return new Tensor(Long.class, descriptor, new ArrayView<>(longs.length, i -> longs[i]));
+        case FP32:
+            float[] floats = new float[buffer.remaining() / Float.BYTES];
+            buffer.asFloatBuffer().get(floats);
+            return new Tensor(Float.class, descriptor, new ArrayView<>(floats.length, i -> floats[i]));
+        case FP64:
+            double[] doubles = new double[buffer.remaining() / Double.BYTES];
+            buffer.asDoubleBuffer().get(doubles);
+            return new Tensor(Double.class, descriptor, new ArrayView<>(doubles.length, i -> doubles[i]));
+        case BYTES:
+            return decodeByteStrings(descriptor, buffer);
+        default:
+            throw new IllegalArgumentException("Date type " + type + " not supported");
+        }
+    }
+
+    private static <T> List<T> getData(Tensor input, Class<T> clazz) {
+        return input.getData(clazz).orElseThrow(() -> new IllegalArgumentException(
+                "Expected a list of " + clazz.getSimpleName() + " but got a list of " + input.getType()));
+    }
+
+    private static ByteString encodeBooleans(List<Boolean> booleans) {
+        byte[] raw = new byte[booleans.size()];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = booleans.get(i) ? (byte) 1 : (byte) 0;
+        }
+        return UnsafeByteOperations.unsafeWrap(raw);
+    }
+
+    private static ByteString encodeBytes(Tensor input) {
+        if (input.getType().isAssignableFrom(Byte.class)) {
+            List<Byte> bytes = getData(input, Byte.class);
+            byte[] raw = new byte[bytes.size()];
+            for (int i = 0; i < raw.length; i++) {
+                raw[i] = bytes.get(i);
+            }
+            return UnsafeByteOperations.unsafeWrap(raw);
+        } else if (input.getType().isAssignableFrom(Integer.class)) {
+            List<Integer> integers = getData(input, Integer.class);
+            byte[] raw = new byte[integers.size()];
+            for (int i = 0; i < raw.length; i++) {
+                raw[i] = integers.get(i).byteValue();
+            }
+            return UnsafeByteOperations.unsafeWrap(raw);
+        } else {
+            throw new IllegalArgumentException(
+                    "Expected a list of bytes or integers but got a list of " + input.getType());
+        }
+    }
+
+    private static ByteString encodeShorts(Tensor input) {
+        if (input.getType().isAssignableFrom(Short.class)) {
+            List<Short> shorts = getData(input, Short.class);
+            ByteBuffer buffer = allocate(shorts.size() * Short.BYTES);
+            shorts.forEach(buffer::putShort);
+            return wrap(buffer);
+        } else if (input.getType().isAssignableFrom(Integer.class)) {
+            List<Integer> integers = getData(input, Integer.class);
+            ByteBuffer buffer = allocate(integers.size() * Short.BYTES);
+            integers.forEach(value -> buffer.putShort(value.shortValue()));
+            return wrap(buffer);
+        } else {
+            throw new IllegalArgumentException(
+                    "Expected a list of shorts or integers but got a list of " + input.getType());
+        }
+    }
+
+    /*
+     * Each element of a BYTES tensor is serialized as a 4 bytes length followed by its content. The elements are
+     * either given as a list of byte arrays or, as a list of bytes, split into the number of elements of the tensor
+     * shape, which must then have the same length.
+     */
+    private static ByteString encodeByteString(Tensor input) {
+        final List<byte[]> elements;
+        if (input.getType().isAssignableFrom(byte[].class)) {
+            elements = getData(input, byte[].class);
+        } else if (input.getType().isAssignableFrom(Byte.class)) {
+            elements = splitElements(getData(input, Byte.class), getElementCount(input.getDescriptor()));
+        } else {
+            throw new IllegalArgumentException(
+                    "Expected a list of bytes or byte arrays but got a list of " + input.getType());
+        }
+
+        int size = 0;
+        for (byte[] element : elements) {
+            size += Integer.BYTES + element.length;
+        }
+
+        ByteBuffer buffer = allocate(size);
+        for (byte[] element : elements) {
+            buffer.putInt(element.length);
+            buffer.put(element);
+        }
+        return wrap(buffer);
+    }
+
+    private static List<byte[]> splitElements(List<Byte> bytes, int elementCount) {
+        if (bytes.size() % elementCount != 0) {
+            throw new IllegalArgumentException("Cannot split " + bytes.size() + " bytes into " + elementCount
+                    + " elements of the same length, use a list of byte arrays instead");
+        }
+
+        final int elementSize = bytes.size() / elementCount;
+        final List<byte[]> elements = new ArrayList<>(elementCount);
+        for (int i = 0; i < elementCount; i++) {
+            byte[] element = new byte[elementSize];
+            for (int j = 0; j < elementSize; j++) {
+                element[j] = bytes.get(i * elementSize + j);
+            }
+            elements.add(element);
+        }
+        return elements;
+    }
+
+    private static int getElementCount(TensorDescriptor descriptor) {
+        long count = 1;
+        for (Long dimension : descriptor.getShape()) {
+            if (dimension > 0) {
+                count *= dimension;
+            }
+        }
+        return (int) count;
+    }
+
+    /*
+     * A tensor with a single element is returned as a list of bytes, as before the elements were split, while a
+     * tensor with several elements is returned as a list of byte arrays.
+     */
+    private static Tensor decodeByteStrings(TensorDescriptor descriptor, ByteBuffer buffer) {
+        final List<byte[]> elements = new ArrayList<>();
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < Integer.BYTES) {
+                throw new IllegalArgumentException("Too few bytes in buffer; cannot read array length");
+            }
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid element length " + length);
+            }
+            byte[] element = new byte[length];
+            buffer.get(element);
+            elements.add(element);
+        }
+
+        if (elements.isEmpty()) {
+            throw new IllegalArgumentException("Too few bytes in buffer; cannot read array length");
+        }
+
+        if (elements.size() == 1) {
+            byte[] byteString = elements.get(0);
+            return new Tensor(Byte.class, descriptor, new ArrayView<>(byteString.length, i -> byteString[i]));
+        }
+        return new Tensor(byte[].class, descriptor, elements);
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteString wrap(ByteBuffer buffer) {
+        return UnsafeByteOperations.unsafeWrap(buffer.array());
+    }
+
+    /*
+     * A read only list backed by a primitive array.
+     */
+    private static final class ArrayView<T> extends AbstractList<T> implements RandomAccess {
+
+        private final int size;
+        private final IntFunction<T> getter;
+
+        ArrayView(int size, IntFunction<T> getter) {
+            this.size = size;
+            this.getter = getter;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+            }
+            return this.getter.apply(index);
+        }
+
+        @Override
+        public int size() {
+            return this.size;
+        }
+    }
+}
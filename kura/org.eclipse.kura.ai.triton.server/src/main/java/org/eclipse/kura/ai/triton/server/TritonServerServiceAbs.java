@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -16,23 +16,15 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.DoubleBuffer;
-import java.nio.FloatBuffer;
-import java.nio.IntBuffer;
-import java.nio.LongBuffer;
-import java.nio.ShortBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
 
 import org.eclipse.kura.KuraException;
 import org.eclipse.kura.KuraIOException;
@@ -54,8 +46,8 @@ import com.google.protobuf.ProtocolStringList;
 
 import inference.GRPCInferenceServiceGrpc;
 import inference.GRPCInferenceServiceGrpc.GRPCInferenceServiceBlockingStub;
+import inference.GRPCInferenceServiceGrpc.GRPCInferenceServiceStub;
 import inference.GrpcService.InferParameter;
-import inference.GrpcService.InferTensorContents;
 import inference.GrpcService.ModelInferRequest;
 import inference.GrpcService.ModelInferResponse;
 import inference.GrpcService.ModelInferResponse.InferOutputTensor;
@@ -73,6 +65,7 @@ import inference.GrpcService.ServerLiveResponse;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
 
 public abstract class TritonServerServiceAbs implements InferenceEngineService, ConfigurableComponent {
 
@@ -87,6 +80,7 @@ public abstract class TritonServerServiceAbs implements InferenceEngineService,
 
     private ManagedChannel grpcChannel;
     private GRPCInferenceServiceBlockingStub grpcStub;
+    private GRPCInferenceServiceStub grpcAsyncStub;
     private String decryptionFolderPath = "";
     private boolean decryptionFolderNeedsCleanup = false;
 
@@ -204,6 +198,7 @@ public abstract class TritonServerServiceAbs implements InferenceEngineService,
 
     protected void setGrpcStub(GRPCInferenceServiceBlockingStub grpcStub) {
         this.grpcStub = grpcStub;
+        this.grpcAsyncStub = GRPCInferenceServiceGrpc.newStub(grpcStub.getChannel());
     }
 
     protected boolean isNullOrEmpty(String property) {
@@ -368,17 +363,8 @@ public abstract class TritonServerServiceAbs implements InferenceEngineService,
     public List<Tensor> infer(ModelInfo modelInfo, List<Tensor> inputData) throws KuraException {
         List<Tensor> inferenceResults = new ArrayList<>();
 
-        ModelInferRequest.Builder inferRequest = ModelInferRequest.newBuilder();
-        inferRequest.setModelName(modelInfo.getName());
         try {
-            if (!modelInfo.getParameters().isEmpty()) {
-                inferRequest.putAllParameters(getInferParameters(modelInfo.getParameters()));
-            }
-            inputData.forEach(input -> inferRequest.addInputs(createInputDataBuilder(input)));
-            modelInfo.getOutputs().forEach(
-                    outputDescriptor -> inferRequest.addOutputs(createRequestedOutputBuilder(outputDescriptor)));
-
-            ModelInferResponse inferResponse = this.grpcStub.modelInfer(inferRequest.build());
+            ModelInferResponse inferResponse = this.grpcStub.modelInfer(createInferRequest(modelInfo, inputData));
 
             inferenceResults = createOutputInferenceData(inferResponse);
         } catch (StatusRuntimeException | IllegalArgumentException e) {
@@ -388,6 +374,70 @@ public abstract class TritonServerServiceAbs implements InferenceEngineService,
 
     }
 
+    /**
+     * Sends the inference request without blocking the calling thread. The returned future is completed
+     * exceptionally with a {@link KuraIOException} if the inference fails.
+     */
+    @Override
+    public CompletableFuture<List<Tensor>> inferAsync(ModelInfo modelInfo, List<Tensor> inputData) {
+        CompletableFuture<List<Tensor>> result = new CompletableFuture<>();
+
+        final ModelInferRequest inferRequest;
+        try {
+            inferRequest = createInferRequest(modelInfo, inputData);
+        } catch (IllegalArgumentException e) {
+            result.completeExceptionally(newInferException(modelInfo, e));
+            return result;
+        }
+
+        this.grpcAsyncStub.modelInfer(inferRequest, new StreamObserver<ModelInferResponse>() {
+
+            @Override
+            public void onNext(ModelInferResponse inferResponse) {
+                try {
+                    result.complete(createOutputInferenceData(inferResponse));
+                } catch (IllegalArgumentException e) {
+                    result.completeExceptionally(newInferException(modelInfo, e));
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(newInferException(modelInfo, t));
+            }
+
+            @Override
+            public void onCompleted() {
+                result.completeExceptionally(
+                        new KuraIOException("No inference result received for " + modelInfo.getName() + " model"));
+            }
+        });
+        return result;
+    }
+
+    private static KuraIOException newInferException(ModelInfo modelInfo, Throwable cause) {
+        return new KuraIOException(cause, "Cannot infer outputs for " + modelInfo.getName() + " model");
+    }
+
+    /*
+     * The input data is sent in the raw_input_contents field, Triton requires either all the inputs or none of them
+     * to use it.
+     */
+    private ModelInferRequest createInferRequest(ModelInfo modelInfo, List<Tensor> inputData) {
+        ModelInferRequest.Builder inferRequest = ModelInferRequest.newBuilder();
+        inferRequest.setModelName(modelInfo.getName());
+        if (!modelInfo.getParameters().isEmpty()) {
+            inferRequest.putAllParameters(getInferParameters(modelInfo.getParameters()));
+        }
+        inputData.forEach(input -> {
+            inferRequest.addRawInputContents(RawTensorContents.encode(input));
+            inferRequest.addInputs(createInputDataBuilder(input));
+        });
+        modelInfo.getOutputs()
+                .forEach(outputDescriptor -> inferRequest.addOutputs(createRequestedOutputBuilder(outputDescriptor)));
+        return inferRequest.build();
+    }
+
     private Map<String, InferParameter> getInferParameters(Map<String, Object> parameters) {
         Map<String, InferParameter> inferParameters = new HashMap<>();
         parameters.forEach((key, value) -> {
@@ -439,148 +489,16 @@ public abstract class TritonServerServiceAbs implements InferenceEngineService,
     }
 
     private ModelInferRequest.InferInputTensor.Builder createInputDataBuilder(Tensor input) {
-        InferTensorContents.Builder inputDataBuilder = InferTensorContents.newBuilder();
-        DataType modelInputType = DataType.valueOf(input.getDescriptor().getType());
-        switch (modelInputType) {
-        case BOOL:
-            addDataTypeInputData(input, Boolean.class, inputDataBuilder::addAllBoolContents);
-            break;
-        case UINT8:
-            addUint8InputData(input, inputDataBuilder);
-            break;
-        case INT8:
-            addInt8InputData(input, inputDataBuilder);
-            break;
-        case UINT16:
-            addUint16InputData(input, inputDataBuilder);
-            break;
-        case INT16:
-            addInt16InputData(input, inputDataBuilder);
-            break;
-        case UINT32:
-            addDataTypeInputData(input, Integer.class, inputDataBuilder::addAllUintContents);
-            break;
-        case INT32:
-            addDataTypeInputData(input, Integer.class, inputDataBuilder::addAllIntContents);
-            break;
-        case UINT64:
-            addDataTypeInputData(input, Long.class, inputDataBuilder::addAllUint64Contents);
-            break;
-        case INT64:
-            addDataTypeInputData(input, Long.class, inputDataBuilder::addAllInt64Contents);
-            break;
-        case FP32:
-            addDataTypeInputData(input, Float.class, inputDataBuilder::addAllFp32Contents);
-            break;
-        case FP64:
-            addDataTypeInputData(input, Double.class, inputDataBuilder::addAllFp64Contents);
-            break;
-        case BYTES:
-            addBytesInputData(input, inputDataBuilder);
-            break;
-        default:
-            throw new IllegalArgumentException("Date type " + modelInputType + " not supported");
-        }
-
         ModelInferRequest.InferInputTensor.Builder inputBuilder = ModelInferRequest.InferInputTensor.newBuilder();
         inputBuilder.setName(input.getDescriptor().getName());
         inputBuilder.setDatatype(input.getDescriptor().getType());
         input.getDescriptor().getShape().forEach(inputBuilder::addShape);
-        inputBuilder.setContents(inputDataBuilder);
         if (!input.getDescriptor().getParameters().isEmpty()) {
             inputBuilder.putAllParameters(getInferParameters(input.getDescriptor().getParameters()));
         }
         return inputBuilder;
     }
 
-    private <T> void addDataTypeInputData(Tensor input, Class<T> clazz, Consumer<List<T>> dataConsumer) {
-        dataConsumer.accept(input.getData(clazz).orElseThrow(() -> new IllegalArgumentException(
-                "Expected a list of " + clazz.getSimpleName() + " but got a list of " + input.getType())));
-    }
-
-    private void addBytesInputData(Tensor input, InferTensorContents.Builder inputDataBuilder) {
-        if (input.getType().isAssignableFrom(Byte.class)) {
-            Optional<List<Byte>> inputData = input.getData(Byte.class);
-            inputData.ifPresent(bytes -> {
-                byte[] byteArray = new byte[bytes.size()];
-                for (int i = 0; i < bytes.size(); i++) {
-                    byteArray[i] = bytes.get(i);
-                }
-                inputDataBuilder.addBytesContents(ByteString.copyFrom(byteArray));
-            });
-        } else {
-            throw new IllegalArgumentException("Expected a list of bytes but got a list of " + input.getType());
-        }
-    }
-
-    private void addInt16InputData(Tensor input, InferTensorContents.Builder inputDataBuilder) {
-        if (input.getType().isAssignableFrom(Short.class)) {
-            Optional<List<Short>> inputData = input.getData(Short.class);
-            inputData.ifPresent(shortList -> {
-                List<Integer> integerList = new ArrayList<>();
-                shortList.forEach(shortValue -> integerList.add(shortValue.intValue()));
-                inputDataBuilder.addAllIntContents(integerList);
-            });
-        } else if (input.getType().isAssignableFrom(Integer.class)) {
-            Optional<List<Integer>> inputData = input.getData(Integer.class);
-            inputData.ifPresent(inputDataBuilder::addAllIntContents);
-        } else {
-            throw new IllegalArgumentException(
-                    "Expected a list of shorts or integers but got a list of " + input.getType());
-        }
-    }
-
-    private void addUint16InputData(Tensor input, InferTensorContents.Builder inputDataBuilder) {
-        if (input.getType().isAssignableFrom(Short.class)) {
-            Optional<List<Short>> inputData = input.getData(Short.class);
-            inputData.ifPresent(shortList -> {
-                List<Integer> integerList = new ArrayList<>();
-                shortList.forEach(shortValue -> integerList.add(shortValue.intValue()));
-                inputDataBuilder.addAllUintContents(integerList);
-            });
-        } else if (input.getType().isAssignableFrom(Integer.class)) {
-            Optional<List<Integer>> inputData = input.getData(Integer.class);
-            inputData.ifPresent(inputDataBuilder::addAllUintContents);
-        } else {
-            throw new IllegalArgumentException(
-                    "Expected a list of shorts or integers but got a list of " + input.getType());
-        }
-    }
-
-    private void addInt8InputData(Tensor input, InferTensorContents.Builder inputDataBuilder) {
-        if (input.getType().isAssignableFrom(Byte.class)) {
-            Optional<List<Byte>> inputData = input.getData(Byte.class);
-            inputData.ifPresent(byteList -> {
-                List<Integer> integerList = new ArrayList<>();
-                byteList.forEach(byteValue -> integerList.add(byteValue.intValue()));
-                inputDataBuilder.addAllIntContents(integerList);
-            });
-        } else if (input.getType().isAssignableFrom(Integer.class)) {
-            Optional<List<Integer>> inputData = input.getData(Integer.class);
-            inputData.ifPresent(inputDataBuilder::addAllIntContents);
-        } else {
-            throw new IllegalArgumentException(
-                    "Expected a list of bytes or integers but got a list of " + input.getType());
-        }
-    }
-
-    private void addUint8InputData(Tensor input, InferTensorContents.Builder inputDataBuilder) {
-        if (input.getType().isAssignableFrom(Byte.class)) {
-            Optional<List<Byte>> inputData = input.getData(Byte.class);
-            inputData.ifPresent(byteList -> {
-                List<Integer> integerList = new ArrayList<>();
-                byteList.forEach(byteValue -> integerList.add(byteValue.intValue()));
-                inputDataBuilder.addAllUintContents(integerList);
-            });
-        } else if (input.getType().isAssignableFrom(Integer.class)) {
-            Optional<List<Integer>> inputData = input.getData(Integer.class);
-            inputData.ifPresent(inputDataBuilder::addAllUintContents);
-        } else {
-            throw new IllegalArgumentException(
-                    "Expected a list of bytes or integers but got a list of " + input.getType());
-        }
-    }
-
     private List<Tensor> createOutputInferenceData(ModelInferResponse inferResponse) {
         List<Tensor> results = new ArrayList<>();
         for (int index = 0; index < inferResponse.getOutputsCount(); index++) {
@@ -595,212 +513,13 @@ public abstract class TritonServerServiceAbs implements InferenceEngineService,
                 }
                 TensorDescriptor outputDescriptor = outputDescriptorBuilder.build();
 
-                switch (outputType) {
-                case BOOL:
-                    List<Boolean> booleanList = bufferToBooleanList(
-                            byteStringResponse.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN));
-                    results.add(new Tensor(Boolean.class, outputDescriptor, booleanList));
-                    break;
-                case UINT8:
-                case INT8:
-                    List<Byte> byteList = bufferToByteList(
-                            byteStringResponse.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN));
-                    results.add(new Tensor(Byte.class, outputDescriptor, byteList));
-                    break;
-                case UINT16:
-                case INT16:
-                    List<Short> shortList = bufferToShortList(
-                            byteStringResponse.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asShortBuffer());
-                    results.add(new Tensor(Short.class, outputDescriptor, shortList));
-                    break;
-                case UINT32:
-                case INT32:
-                    List<Integer> integerList = bufferToIntList(
-                            byteStringResponse.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
-                    results.add(new Tensor(Integer.class, outputDescriptor, integerList));
-                    break;
-                case UINT64:
-                case INT64:
-                    List<Long> longList = bufferToLongList(
-                            byteStringResponse.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer());
-                    results.add(new Tensor(Long.class, outputDescriptor, longList));
-                    break;
-                case FP32:
-                    List<Float> floatList = bufferToFloatList(
-                            byteStringResponse.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
-                    results.add(new Tensor(Float.class, outputDescriptor, floatList));
-                    break;
-                case FP64:
-                    List<Double> doubleList = bufferToDoubleList(
-                            byteStringResponse.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer());
-                    results.add(new Tensor(Double.class, outputDescriptor, doubleList));
-                    break;
-                case BYTES:
-                    List<Byte> bytesList = bufferToBytes(
-                            byteStringResponse.asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN));
-                    results.add(new Tensor(Byte.class, outputDescriptor, bytesList));
-                    break;
-                default:
-                    throw new IllegalArgumentException("Date type " + outputType + " not supported");
-                }
+                results.add(RawTensorContents.decode(outputType, outputDescriptor, byteStringResponse));
             }
         }
 
         return results;
     }
 
-    private List<Byte> bufferToBytes(ByteBuffer buffer) {
-        List<Byte> byteList = new ArrayList<>();
-        if (buffer.capacity() < 4) {
-            throw new IllegalArgumentException("Too few bytes in buffer; cannot read array length");
-        }
-        buffer.getInt();
-        while (buffer.hasRemaining()) {
-            byteList.add(buffer.get());
-        }
-        return byteList;
-    }
-
-    private List<Float> bufferToFloatList(FloatBuffer buffer) {
-        List<Float> floatList = new ArrayList<>();
-        float[] floatArray;
-        if (buffer.hasArray()) {
-            if (buffer.arrayOffset() == 0) {
-                floatArray = buffer.array();
-            } else {
-                floatArray = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.array().length);
-            }
-        } else {
-            buffer.rewind();
-            floatArray = new float[buffer.remaining()];
-            buffer.get(floatArray);
-        }
-        for (float floatValue : floatArray) {
-            floatList.add(floatValue);
-        }
-        return floatList;
-    }
-
-    private List<Double> bufferToDoubleList(DoubleBuffer buffer) {
-        List<Double> doubleList = new ArrayList<>();
-        double[] doubleArray;
-        if (buffer.hasArray()) {
-            if (buffer.arrayOffset() == 0) {
-                doubleArray = buffer.array();
-            } else {
-                doubleArray = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.array().length);
-            }
-        } else {
-            buffer.rewind();
-            doubleArray = new double[buffer.remaining()];
-            buffer.get(doubleArray);
-        }
-        for (double doubleValue : doubleArray) {
-            doubleList.add(doubleValue);
-        }
-        return doubleList;
-    }
-
-    private List<Long> bufferToLongList(LongBuffer buffer) {
-        List<Long> longList = new ArrayList<>();
-        long[] longArray;
-        if (buffer.hasArray()) {
-            if (buffer.arrayOffset() == 0) {
-                longArray = buffer.array();
-            } else {
-                longArray = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.array().length);
-            }
-        } else {
-            buffer.rewind();
-            longArray = new long[buffer.remaining()];
-            buffer.get(longArray);
-        }
-        for (long longValue : longArray) {
-            longList.add(longValue);
-        }
-        return longList;
-    }
-
-    private List<Integer> bufferToIntList(IntBuffer buffer) {
-        List<Integer> intList = new ArrayList<>();
-        int[] intArray;
-        if (buffer.hasArray()) {
-            if (buffer.arrayOffset() == 0) {
-                intArray = buffer.array();
-            } else {
-                intArray = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.array().length);
-            }
-        } else {
-            buffer.rewind();
-            intArray = new int[buffer.remaining()];
-            buffer.get(intArray);
-        }
-        for (int intValue : intArray) {
-            intList.add(intValue);
-        }
-        return intList;
-    }
-
-    private List<Short> bufferToShortList(ShortBuffer buffer) {
-        List<Short> shortList = new ArrayList<>();
-        short[] shortArray;
-        if (buffer.hasArray()) {
-            if (buffer.arrayOffset() == 0) {
-                shortArray = buffer.array();
-            } else {
-                shortArray = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.array().length);
-            }
-        } else {
-            buffer.rewind();
-            shortArray = new short[buffer.remaining()];
-            buffer.get(shortArray);
-        }
-        for (short shortValue : shortArray) {
-            shortList.add(shortValue);
-        }
-        return shortList;
-    }
-
-    private List<Byte> bufferToByteList(ByteBuffer buffer) {
-        List<Byte> byteList = new ArrayList<>();
-        byte[] byteArray;
-        if (buffer.hasArray()) {
-            if (buffer.arrayOffset() == 0) {
-                byteArray = buffer.array();
-            } else {
-                byteArray = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.array().length);
-            }
-        } else {
-            buffer.rewind();
-            byteArray = new byte[buffer.remaining()];
-            buffer.get(byteArray);
-        }
-        for (byte byteValue : byteArray) {
-            byteList.add(byteValue);
-        }
-        return byteList;
-    }
-
-    private List<Boolean> bufferToBooleanList(ByteBuffer buffer) {
-        List<Boolean> booleanList = new ArrayList<>();
-        byte[] byteArray;
-        if (buffer.hasArray()) {
-            if (buffer.arrayOffset() == 0) {
-                byteArray = buffer.array();
-            } else {
-                byteArray = Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.array().length);
-            }
-        } else {
-            buffer.rewind();
-            byteArray = new byte[buffer.remaining()];
-            buffer.get(byteArray);
-        }
-        for (byte byteValue : byteArray) {
-            booleanList.add(byteValue == 0x01);
-        }
-        return booleanList;
-    }
-
     private static void sleepFor(long timeout) {
         try {
             Thread.sleep(timeout);
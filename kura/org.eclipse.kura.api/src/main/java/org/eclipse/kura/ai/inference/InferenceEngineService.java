@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -14,6 +14,7 @@ package org.eclipse.kura.ai.inference;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.kura.KuraException;
 import org.osgi.annotation.versioning.ProviderType;
@@ -47,6 +48,32 @@ public interface InferenceEngineService {
      */
     public List<Tensor> infer(ModelInfo modelInfo, List<Tensor> inputData) throws KuraException;
 
+    /**
+     * Run an inference for the given model and inputs without waiting for the result.
+     * The input and output type and size must match the
+     * ones in the provided {@link ModelInfo}.
+     *
+     * The default implementation runs {@link #infer(ModelInfo, List)} on the calling thread, engines that support
+     * asynchronous requests should override it.
+     *
+     * @param modelInfo
+     *            the {@link ModelInfo} of the model to be used
+     * @param inputData
+     *            a list of input {@link Tensor}
+     * @return a {@link CompletableFuture} completed with the list of output {@link Tensor}, or completed
+     *         exceptionally with a {@link KuraException} if the inference fails
+     * @since 2.5
+     */
+    public default CompletableFuture<List<Tensor>> inferAsync(ModelInfo modelInfo, List<Tensor> inputData) {
+        final CompletableFuture<List<Tensor>> result = new CompletableFuture<>();
+        try {
+            result.complete(infer(modelInfo, inputData));
+        } catch (KuraException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
     /**
      * Load the given model in the inference engine.
      * If the path of the file containing the model is not provided,
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -14,25 +14,36 @@
 package org.eclipse.kura.core.cloud;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.kura.KuraInvalidMetricTypeException;
 import org.eclipse.kura.core.message.protobuf.KuraPayloadProto;
 import org.eclipse.kura.core.message.protobuf.KuraPayloadProto.KuraPayload.KuraMetric;
+import org.eclipse.kura.core.message.protobuf.KuraPayloadProto.KuraPayload.KuraMetric.ValueType;
 import org.eclipse.kura.message.KuraPayload;
 import org.eclipse.kura.message.KuraPosition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UninitializedMessageException;
+import com.google.protobuf.WireFormat;
 
 /**
  * Encodes an KuraPayload class using the Google ProtoBuf binary format.
+ * <p>
+ * The payload is written directly in a byte array of the exact encoded size, without building the intermediate
+ * protobuf messages. The size of the payload is computed in a first pass, the second pass writes the fields in the
+ * same order used by the generated {@link KuraPayloadProto} classes, so that the encoded bytes are the same.
  */
 public class CloudPayloadProtoBufEncoderImpl implements CloudPayloadEncoder {
 
     private static final Logger logger = LoggerFactory.getLogger(CloudPayloadProtoBufEncoderImpl.class);
 
+    private static final int NULL_METRIC = -1;
+
     private final KuraPayload kuraPayload;
 
     public CloudPayloadProtoBufEncoderImpl(KuraPayload kuraPayload) {
@@ -46,117 +57,233 @@ public class CloudPayloadProtoBufEncoderImpl implements CloudPayloadEncoder {
      */
     @Override
     public byte[] getBytes() throws IOException {
-        // Build the message
-        KuraPayloadProto.KuraPayload.Builder protoMsg = KuraPayloadProto.KuraPayload.newBuilder();
+        final Map<String, Object> metrics = this.kuraPayload.metrics();
+        final KuraPosition position = this.kuraPayload.getPosition();
+        final byte[] body = this.kuraPayload.getBody();
+
+        // compute the size of the message, the size of each metric is kept for the second pass
+        int size = 0;
 
-        // set the timestamp
         if (this.kuraPayload.getTimestamp() != null) {
-            protoMsg.setTimestamp(this.kuraPayload.getTimestamp().getTime());
+            size += CodedOutputStream.computeInt64Size(KuraPayloadProto.KuraPayload.TIMESTAMP_FIELD_NUMBER,
+                    this.kuraPayload.getTimestamp().getTime());
+        }
+
+        int positionSize = 0;
+        if (position != null) {
+            positionSize = computePositionSize(position);
+            size += computeMessageSize(KuraPayloadProto.KuraPayload.POSITION_FIELD_NUMBER, positionSize);
+        }
+
+        final int[] metricSizes = new int[metrics.size()];
+        int metricIndex = 0;
+        for (final Map.Entry<String, Object> entry : metrics.entrySet()) {
+            final int metricSize = computeMetricSize(entry.getKey(), entry.getValue());
+            metricSizes[metricIndex++] = metricSize;
+
+            if (metricSize != NULL_METRIC) {
+                size += computeMessageSize(KuraPayloadProto.KuraPayload.METRIC_FIELD_NUMBER, metricSize);
+            }
         }
 
-        // set the position
-        if (this.kuraPayload.getPosition() != null) {
-            protoMsg.setPosition(buildPositionProtoBuf());
+        if (body != null) {
+            size += CodedOutputStream.computeByteArraySize(KuraPayloadProto.KuraPayload.BODY_FIELD_NUMBER, body);
         }
 
-        // set the metrics
-        for (final Map.Entry<String, Object> entry : this.kuraPayload.metrics().entrySet()) {
-            final String name = entry.getKey();
-            final Object value = entry.getValue();
+        // write the message
+        final byte[] result = new byte[size];
+        final CodedOutputStream out = CodedOutputStream.newInstance(result);
 
-            // build a metric
-            try {
-                KuraMetric.Builder metricB = KuraMetric.newBuilder();
-                metricB.setName(name);
+        if (this.kuraPayload.getTimestamp() != null) {
+            out.writeInt64(KuraPayloadProto.KuraPayload.TIMESTAMP_FIELD_NUMBER,
+                    this.kuraPayload.getTimestamp().getTime());
+        }
 
-                boolean result = setProtoKuraMetricValue(metricB, value);
-                if (result) {
-                    // add it to the message
-                    protoMsg.addMetric(metricB);
-                }
-            } catch (KuraInvalidMetricTypeException e) {
-                logger.error("During serialization, ignoring metric named: {}. Unrecognized value type: {}.", name,
-                        value != null ? value.getClass().getName() : "<null>");
-                throw new RuntimeException(e);
+        if (position != null) {
+            writeMessageHeader(out, KuraPayloadProto.KuraPayload.POSITION_FIELD_NUMBER, positionSize);
+            writePosition(out, position);
+        }
+
+        metricIndex = 0;
+        for (final Map.Entry<String, Object> entry : metrics.entrySet()) {
+            final int metricSize = metricSizes[metricIndex++];
+
+            if (metricSize != NULL_METRIC) {
+                writeMessageHeader(out, KuraPayloadProto.KuraPayload.METRIC_FIELD_NUMBER, metricSize);
+                writeMetric(out, entry.getKey(), entry.getValue());
             }
         }
 
-        // set the body
-        if (this.kuraPayload.getBody() != null) {
-            protoMsg.setBody(ByteString.copyFrom(this.kuraPayload.getBody()));
+        if (body != null) {
+            out.writeByteArray(KuraPayloadProto.KuraPayload.BODY_FIELD_NUMBER, body);
         }
 
-        return protoMsg.build().toByteArray();
+        out.checkNoSpaceLeft();
+
+        return result;
     }
 
     //
-    // Helper methods to convert the KuraMetrics
+    // Helper methods to encode the KuraPosition
     //
-    private KuraPayloadProto.KuraPayload.KuraPosition buildPositionProtoBuf() {
-        KuraPayloadProto.KuraPayload.KuraPosition.Builder protoPos = KuraPayloadProto.KuraPayload.KuraPosition
-                .newBuilder();
+    private static int computePositionSize(final KuraPosition position) {
+        final List<String> missingFields = new ArrayList<>(2);
+        if (position.getLatitude() == null) {
+            missingFields.add("position.latitude");
+        }
+        if (position.getLongitude() == null) {
+            missingFields.add("position.longitude");
+        }
+        if (!missingFields.isEmpty()) {
+            throw new UninitializedMessageException(missingFields);
+        }
+
+        int size = CodedOutputStream.computeDoubleSize(KuraPayloadProto.KuraPayload.KuraPosition.LATITUDE_FIELD_NUMBER,
+                position.getLatitude());
+        size += CodedOutputStream.computeDoubleSize(KuraPayloadProto.KuraPayload.KuraPosition.LONGITUDE_FIELD_NUMBER,
+                position.getLongitude());
 
-        KuraPosition position = this.kuraPayload.getPosition();
-        if (position.getLatitude() != null) {
-            protoPos.setLatitude(position.getLatitude());
+        if (position.getAltitude() != null) {
+            size += CodedOutputStream.computeDoubleSize(
+                    KuraPayloadProto.KuraPayload.KuraPosition.ALTITUDE_FIELD_NUMBER, position.getAltitude());
+        }
+        if (position.getPrecision() != null) {
+            size += CodedOutputStream.computeDoubleSize(
+                    KuraPayloadProto.KuraPayload.KuraPosition.PRECISION_FIELD_NUMBER, position.getPrecision());
+        }
+        if (position.getHeading() != null) {
+            size += CodedOutputStream.computeDoubleSize(KuraPayloadProto.KuraPayload.KuraPosition.HEADING_FIELD_NUMBER,
+                    position.getHeading());
+        }
+        if (position.getSpeed() != null) {
+            size += CodedOutputStream.computeDoubleSize(KuraPayloadProto.KuraPayload.KuraPosition.SPEED_FIELD_NUMBER,
+                    position.getSpeed());
+        }
+        if (position.getTimestamp() != null) {
+            size += CodedOutputStream.computeInt64Size(
+                    KuraPayloadProto.KuraPayload.KuraPosition.TIMESTAMP_FIELD_NUMBER,
+                    position.getTimestamp().getTime());
+        }
+        if (position.getSatellites() != null) {
+            size += CodedOutputStream.computeInt32Size(
+                    KuraPayloadProto.KuraPayload.KuraPosition.SATELLITES_FIELD_NUMBER, position.getSatellites());
         }
-        if (position.getLongitude() != null) {
-            protoPos.setLongitude(position.getLongitude());
+        if (position.getStatus() != null) {
+            size += CodedOutputStream.computeInt32Size(KuraPayloadProto.KuraPayload.KuraPosition.STATUS_FIELD_NUMBER,
+                    position.getStatus());
         }
+        return size;
+    }
+
+    private static void writePosition(final CodedOutputStream out, final KuraPosition position) throws IOException {
+        out.writeDouble(KuraPayloadProto.KuraPayload.KuraPosition.LATITUDE_FIELD_NUMBER, position.getLatitude());
+        out.writeDouble(KuraPayloadProto.KuraPayload.KuraPosition.LONGITUDE_FIELD_NUMBER, position.getLongitude());
+
         if (position.getAltitude() != null) {
-            protoPos.setAltitude(position.getAltitude());
+            out.writeDouble(KuraPayloadProto.KuraPayload.KuraPosition.ALTITUDE_FIELD_NUMBER, position.getAltitude());
         }
         if (position.getPrecision() != null) {
-            protoPos.setPrecision(position.getPrecision());
+            out.writeDouble(KuraPayloadProto.KuraPayload.KuraPosition.PRECISION_FIELD_NUMBER,
+                    position.getPrecision());
         }
         if (position.getHeading() != null) {
-            protoPos.setHeading(position.getHeading());
+            out.writeDouble(KuraPayloadProto.KuraPayload.KuraPosition.HEADING_FIELD_NUMBER, position.getHeading());
         }
         if (position.getSpeed() != null) {
-            protoPos.setSpeed(position.getSpeed());
+            out.writeDouble(KuraPayloadProto.KuraPayload.KuraPosition.SPEED_FIELD_NUMBER, position.getSpeed());
         }
         if (position.getTimestamp() != null) {
-            protoPos.setTimestamp(position.getTimestamp().getTime());
+            out.writeInt64(KuraPayloadProto.KuraPayload.KuraPosition.TIMESTAMP_FIELD_NUMBER,
+                    position.getTimestamp().getTime());
         }
         if (position.getSatellites() != null) {
-            protoPos.setSatellites(position.getSatellites());
+            out.writeInt32(KuraPayloadProto.KuraPayload.KuraPosition.SATELLITES_FIELD_NUMBER,
+                    position.getSatellites());
         }
         if (position.getStatus() != null) {
-            protoPos.setStatus(position.getStatus());
+            out.writeInt32(KuraPayloadProto.KuraPayload.KuraPosition.STATUS_FIELD_NUMBER, position.getStatus());
         }
-        return protoPos.build();
     }
 
-    private static boolean setProtoKuraMetricValue(KuraPayloadProto.KuraPayload.KuraMetric.Builder metric, Object o)
-            throws KuraInvalidMetricTypeException {
+    //
+    // Helper methods to encode the KuraMetrics
+    //
+    private static int computeMetricSize(final String name, final Object o) {
+        if (o == null) {
+            logger.warn("Received a metric with a null value!");
+            return NULL_METRIC;
+        }
+
+        final int size = CodedOutputStream.computeStringSize(KuraMetric.NAME_FIELD_NUMBER, name);
 
         if (o instanceof String) {
-            metric.setType(KuraPayloadProto.KuraPayload.KuraMetric.ValueType.STRING);
-            metric.setStringValue((String) o);
+            return size + computeTypeSize(ValueType.STRING)
+                    + CodedOutputStream.computeStringSize(KuraMetric.STRING_VALUE_FIELD_NUMBER, (String) o);
         } else if (o instanceof Double) {
-            metric.setType(KuraPayloadProto.KuraPayload.KuraMetric.ValueType.DOUBLE);
-            metric.setDoubleValue((Double) o);
+            return size + computeTypeSize(ValueType.DOUBLE)
+                    + CodedOutputStream.computeDoubleSize(KuraMetric.DOUBLE_VALUE_FIELD_NUMBER, (Double) o);
         } else if (o instanceof Integer) {
-            metric.setType(KuraPayloadProto.KuraPayload.KuraMetric.ValueType.INT32);
-            metric.setIntValue((Integer) o);
+            return size + computeTypeSize(ValueType.INT32)
+                    + CodedOutputStream.computeInt32Size(KuraMetric.INT_VALUE_FIELD_NUMBER, (Integer) o);
         } else if (o instanceof Float) {
-            metric.setType(KuraPayloadProto.KuraPayload.KuraMetric.ValueType.FLOAT);
-            metric.setFloatValue((Float) o);
+            return size + computeTypeSize(ValueType.FLOAT)
+                    + CodedOutputStream.computeFloatSize(KuraMetric.FLOAT_VALUE_FIELD_NUMBER, (Float) o);
         } else if (o instanceof Long) {
-            metric.setType(KuraPayloadProto.KuraPayload.KuraMetric.ValueType.INT64);
-            metric.setLongValue((Long) o);
+            return size + computeTypeSize(ValueType.INT64)
+                    + CodedOutputStream.computeInt64Size(KuraMetric.LONG_VALUE_FIELD_NUMBER, (Long) o);
         } else if (o instanceof Boolean) {
-            metric.setType(KuraPayloadProto.KuraPayload.KuraMetric.ValueType.BOOL);
-            metric.setBoolValue((Boolean) o);
+            return size + computeTypeSize(ValueType.BOOL)
+                    + CodedOutputStream.computeBoolSize(KuraMetric.BOOL_VALUE_FIELD_NUMBER, (Boolean) o);
         } else if (o instanceof byte[]) {
-            metric.setType(KuraPayloadProto.KuraPayload.KuraMetric.ValueType.BYTES);
-            metric.setBytesValue(ByteString.copyFrom((byte[]) o));
-        } else if (o == null) {
-            logger.warn("Received a metric with a null value!");
-            return false;
+            return size + computeTypeSize(ValueType.BYTES)
+                    + CodedOutputStream.computeByteArraySize(KuraMetric.BYTES_VALUE_FIELD_NUMBER, (byte[]) o);
+        } else {
+            logger.error("During serialization, ignoring metric named: {}. Unrecognized value type: {}.", name,
+                    o.getClass().getName());
+            throw new RuntimeException(new KuraInvalidMetricTypeException(o.getClass().getName()));
+        }
+    }
+
+    private static void writeMetric(final CodedOutputStream out, final String name, final Object o)
+            throws IOException {
+        out.writeString(KuraMetric.NAME_FIELD_NUMBER, name);
+
+        if (o instanceof String) {
+            out.writeEnum(KuraMetric.TYPE_FIELD_NUMBER, ValueType.STRING_VALUE);
+            out.writeString(KuraMetric.STRING_VALUE_FIELD_NUMBER, (String) o);
+        } else if (o instanceof Double) {
+            out.writeEnum(KuraMetric.TYPE_FIELD_NUMBER, ValueType.DOUBLE_VALUE);
+            out.writeDouble(KuraMetric.DOUBLE_VALUE_FIELD_NUMBER, (Double) o);
+        } else if (o instanceof Integer) {
+            out.writeEnum(KuraMetric.TYPE_FIELD_NUMBER, ValueType.INT32_VALUE);
+            out.writeInt32(KuraMetric.INT_VALUE_FIELD_NUMBER, (Integer) o);
+        } else if (o instanceof Float) {
+            out.writeEnum(KuraMetric.TYPE_FIELD_NUMBER, ValueType.FLOAT_VALUE);
+            out.writeFloat(KuraMetric.FLOAT_VALUE_FIELD_NUMBER, (Float) o);
+        } else if (o instanceof Long) {
+            out.writeEnum(KuraMetric.TYPE_FIELD_NUMBER, ValueType.INT64_VALUE);
+            out.writeInt64(KuraMetric.LONG_VALUE_FIELD_NUMBER, (Long) o);
+        } else if (o instanceof Boolean) {
+            out.writeEnum(KuraMetric.TYPE_FIELD_NUMBER, ValueType.BOOL_VALUE);
+            out.writeBool(KuraMetric.BOOL_VALUE_FIELD_NUMBER, (Boolean) o);
         } else {
-            throw new KuraInvalidMetricTypeException(o.getClass().getName());
+            out.writeEnum(KuraMetric.TYPE_FIELD_NUMBER, ValueType.BYTES_VALUE);
+            out.writeByteArray(KuraMetric.BYTES_VALUE_FIELD_NUMBER, (byte[]) o);
         }
-        return true;
+    }
+
+    private static int computeTypeSize(final ValueType type) {
+        return CodedOutputStream.computeEnumSize(KuraMetric.TYPE_FIELD_NUMBER, type.getNumber());
+    }
+
+    private static int computeMessageSize(final int fieldNumber, final int messageSize) {
+        return CodedOutputStream.computeTagSize(fieldNumber) + CodedOutputStream.computeUInt32SizeNoTag(messageSize)
+                + messageSize;
+    }
+
+    private static void writeMessageHeader(final CodedOutputStream out, final int fieldNumber, final int messageSize)
+            throws IOException {
+        out.writeTag(fieldNumber, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+        out.writeUInt32NoTag(messageSize);
     }
 }
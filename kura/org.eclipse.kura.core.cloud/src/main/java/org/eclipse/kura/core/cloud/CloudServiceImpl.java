@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2021 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -41,8 +41,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CopyOnWriteArraySet;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -72,6 +70,7 @@ import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.configuration.ConfigurationService;
 import org.eclipse.kura.core.cloud.publisher.NotificationPublisherImpl;
 import org.eclipse.kura.core.cloud.subscriber.CloudSubscriptionRecord;
+import org.eclipse.kura.core.cloud.subscriber.TopicFilterTrie;
 import org.eclipse.kura.core.data.DataServiceImpl;
 import org.eclipse.kura.data.DataService;
 import org.eclipse.kura.data.listener.DataServiceListener;
@@ -114,9 +113,7 @@ public class CloudServiceImpl
 
     private static final String CONNECTION_EVENT_PID_PROPERTY_KEY = "cloud.service.pid";
 
-    private static final int NUM_CONCURRENT_CALLBACKS = 2;
-
-    private static ExecutorService callbackExecutor = Executors.newFixedThreadPool(NUM_CONCURRENT_CALLBACKS);
+    private static final int MAX_PENDING_MESSAGES_PER_LISTENER = 1000;
 
     private ComponentContext ctx;
 
@@ -138,6 +135,9 @@ public class CloudServiceImpl
     private final Set<CloudPublisherDeliveryListener> registeredCloudPublisherDeliveryListeners;
     private final Set<CloudDeliveryListener> registeredCloudDeliveryListeners;
     private final Map<CloudSubscriptionRecord, List<CloudSubscriberListener>> registeredSubscribers;
+    private volatile TopicFilterTrie<List<CloudSubscriberListener>> subscriptionTrie = new TopicFilterTrie<>();
+
+    private OrderedDispatcher dispatcher;
 
     // package visibility for LyfeCyclePayloadBuilder
     String imei;
@@ -165,7 +165,7 @@ public class CloudServiceImpl
     public CloudServiceImpl() {
         this.cloudClients = new CopyOnWriteArrayList<>();
         this.messageId = new AtomicInteger();
-        this.registeredRequestHandlers = new HashMap<>();
+        this.registeredRequestHandlers = new ConcurrentHashMap<>();
         this.registeredSubscribers = new ConcurrentHashMap<>();
         this.registeredCloudConnectionListeners = new CopyOnWriteArraySet<>();
         this.registeredCloudPublisherDeliveryListeners = new CopyOnWriteArraySet<>();
@@ -289,6 +289,8 @@ public class CloudServiceImpl
         // save the bundle context and the properties
         this.ctx = componentContext;
         this.options = new CloudServiceOptions(properties, this.systemService);
+        this.dispatcher = new OrderedDispatcher(this.options.getMessageDispatchThreads(),
+                MAX_PENDING_MESSAGES_PER_LISTENER);
         //
         // install event listener for GPS locked event
         Dictionary<String, Object> props = new Hashtable<>();
@@ -327,6 +329,7 @@ public class CloudServiceImpl
 
         // Update properties and re-publish Birth certificate
         this.options = new CloudServiceOptions(properties, this.systemService);
+        this.dispatcher.setPoolSize(this.options.getMessageDispatchThreads());
         if (isConnected()) {
             try {
                 setupCloudConnection(false);
@@ -364,6 +367,8 @@ public class CloudServiceImpl
 
         this.cloudServiceRegistration.unregister();
         this.notificationPublisherRegistration.unregister();
+
+        this.dispatcher.shutdown();
     }
 
     @Override
@@ -463,6 +468,15 @@ public class CloudServiceImpl
         return this.dataService != null && this.dataService.isConnected();
     }
 
+    /**
+     * @return the number of received messages discarded because too many messages were waiting to be delivered to
+     *         the same listener
+     */
+    public long getDiscardedMessageCount() {
+        final OrderedDispatcher currentDispatcher = this.dispatcher;
+        return currentDispatcher == null ? 0 : currentDispatcher.getDiscardedTaskCount();
+    }
+
     // ----------------------------------------------------------------
     //
     // Package APIs
@@ -625,8 +639,19 @@ public class CloudServiceImpl
                 return;
             }
 
-            callbackExecutor.submit(new MessageHandlerCallable(cloudlet, applicationId, kuraTopic.getApplicationTopic(),
-                    kuraPayload, this));
+            final MessageHandlerCallable handler = new MessageHandlerCallable(cloudlet, applicationId,
+                    kuraTopic.getApplicationTopic(), kuraPayload, this);
+            this.dispatcher.dispatch(cloudlet, () -> {
+                if (this.registeredRequestHandlers.get(applicationId) != cloudlet) {
+                    // unregistered while the message was waiting
+                    return;
+                }
+                try {
+                    handler.call();
+                } catch (final Exception e) {
+                    logger.warn("unhandled exception in RequestHandler", e);
+                }
+            });
         }
         this.cloudClients.stream()
                 .filter(cloudClient -> cloudClient.getApplicationId().equals(kuraTopic.getApplicationId()))
@@ -639,9 +664,9 @@ public class CloudServiceImpl
 
         KuraMessage receivedMessage = new KuraMessage(kuraPayload, properties);
 
-        this.registeredSubscribers.entrySet().stream()
-                .filter(cloudSubscriberEntry -> cloudSubscriberEntry.getKey().matches(kuraTopic.getFullTopic()))
-                .forEach(e -> dispatchMessage(receivedMessage, e.getValue()));
+        for (final List<CloudSubscriberListener> listeners : this.subscriptionTrie.match(kuraTopic.getFullTopic())) {
+            dispatchMessage(receivedMessage, listeners);
+        }
     }
 
     private void dispatchDataMessage(int qos, boolean retained, KuraTopicImpl kuraTopic, KuraPayload kuraPayload) {
@@ -656,18 +681,24 @@ public class CloudServiceImpl
 
         KuraMessage receivedMessage = new KuraMessage(kuraPayload, properties);
 
-        this.registeredSubscribers.entrySet().stream()
-                .filter(cloudSubscriberEntry -> cloudSubscriberEntry.getKey().matches(kuraTopic.getFullTopic()))
-                .forEach(e -> dispatchMessage(receivedMessage, e.getValue()));
+        for (final List<CloudSubscriberListener> listeners : this.subscriptionTrie.match(kuraTopic.getFullTopic())) {
+            dispatchMessage(receivedMessage, listeners);
+        }
     }
 
-    private static void dispatchMessage(final KuraMessage message, final List<CloudSubscriberListener> listeners) {
+    private void dispatchMessage(final KuraMessage message, final List<CloudSubscriberListener> listeners) {
         for (final CloudSubscriberListener listener : listeners) {
-            try {
-                listener.onMessageArrived(message);
-            } catch (final Exception e) {
-                logger.warn("unhandled exception in CloudSubscriberListener", e);
-            }
+            this.dispatcher.dispatch(listener, () -> {
+                // the list is updated in place when the listener is unregistered
+                if (!listeners.contains(listener)) {
+                    return;
+                }
+                try {
+                    listener.onMessageArrived(message);
+                } catch (final Exception e) {
+                    logger.warn("unhandled exception in CloudSubscriberListener", e);
+                }
+            });
         }
     }
 
@@ -963,7 +994,10 @@ public class CloudServiceImpl
 
     @Override
     public void unregister(String appId) {
-        this.registeredRequestHandlers.remove(appId);
+        final RequestHandler requestHandler = this.registeredRequestHandlers.remove(appId);
+        if (requestHandler != null && this.dispatcher != null) {
+            this.dispatcher.cancel(requestHandler);
+        }
 
         if (isFrameworkStopping()) {
             logger.info("framework is stopping.. not republishing app certificate");
@@ -1080,6 +1114,7 @@ public class CloudServiceImpl
                 list.add(subscriber);
                 return list;
             });
+            rebuildSubscriptionTrie();
         }
 
         if (subscribers.size() == 1) {
@@ -1105,6 +1140,11 @@ public class CloudServiceImpl
                     return false;
                 }
             });
+            rebuildSubscriptionTrie();
+        }
+
+        if (this.dispatcher != null) {
+            this.dispatcher.cancel(subscriber);
         }
 
         for (final CloudSubscriptionRecord subscription : toUnsubscribe) {
@@ -1112,6 +1152,15 @@ public class CloudServiceImpl
         }
     }
 
+    private void rebuildSubscriptionTrie() {
+        final TopicFilterTrie<List<CloudSubscriberListener>> trie = new TopicFilterTrie<>();
+        for (final Entry<CloudSubscriptionRecord, List<CloudSubscriberListener>> e : this.registeredSubscribers
+                .entrySet()) {
+            trie.add(e.getKey().getTopicFilter(), e.getValue());
+        }
+        this.subscriptionTrie = trie;
+    }
+
     private synchronized void subscribe(CloudSubscriptionRecord subscriptionRecord) {
         String fullTopic = subscriptionRecord.getTopic();
 
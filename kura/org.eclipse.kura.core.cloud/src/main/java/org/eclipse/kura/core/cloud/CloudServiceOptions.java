@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2021 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -45,6 +45,9 @@ public class CloudServiceOptions {
     private static final String ENABLE_DFLT_SUBSCRIPTIONS = "enable.default.subscriptions";
     private static final String BIRTH_CERT_POLICY = "birth.cert.policy";
     private static final String PAYLOAD_ENCODING = "payload.encoding";
+    private static final String MESSAGE_DISPATCH_THREADS = "message.dispatch.threads";
+
+    private static final int MESSAGE_DISPATCH_THREADS_DEFAULT = 2;
 
     private static final int LIFECYCLE_QOS = 0;
     private static final int LIFECYCLE_PRIORITY = 0;
@@ -230,6 +233,21 @@ public class CloudServiceOptions {
         return result;
     }
 
+    /**
+     * This method parses the Cloud Service configuration and returns the number of threads used to deliver the
+     * received messages to the request handlers and to the subscribers.
+     * By default, this method returns 2.
+     *
+     * @return an int value.
+     */
+    public int getMessageDispatchThreads() {
+        int threads = MESSAGE_DISPATCH_THREADS_DEFAULT;
+        if (this.properties != null && this.properties.get(MESSAGE_DISPATCH_THREADS) instanceof Integer) {
+            threads = Math.max(1, (Integer) this.properties.get(MESSAGE_DISPATCH_THREADS));
+        }
+        return threads;
+    }
+
     public static String getTopicSeparator() {
         return TOPIC_SEPARATOR;
     }
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs tasks on a thread pool, preserving the submission order of the tasks that share the same key.
+ * <p>
+ * The tasks of a key are queued and executed one at a time by a single pool thread, while tasks with different keys
+ * run concurrently. After a few tasks the thread is released, so that a key receiving a steady stream of tasks cannot
+ * monopolize a thread.
+ * <p>
+ * At most {@code maxQueuedTasksPerKey} tasks wait for each key: further tasks for a key whose queue is full are
+ * discarded and counted, so that a slow or blocked task cannot make the pending tasks grow without limit.
+ */
+final class OrderedDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderedDispatcher.class);
+
+    private static final int MAX_TASKS_PER_RUN = 16;
+
+    private final ThreadPoolExecutor executor;
+    private final Map<Object, KeyQueue> queues = new HashMap<>();
+    private final int maxQueuedTasksPerKey;
+    private final AtomicLong discardedTaskCount = new AtomicLong();
+
+    OrderedDispatcher(final int poolSize, final int maxQueuedTasksPerKey) {
+        if (maxQueuedTasksPerKey <= 0) {
+            throw new IllegalArgumentException("The maximum number of queued tasks must be greater than zero");
+        }
+        this.maxQueuedTasksPerKey = maxQueuedTasksPerKey;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "CloudServiceDispatcher_" + threadCount.incrementAndGet()));
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    void setPoolSize(final int poolSize) {
+        if (poolSize > this.executor.getMaximumPoolSize()) {
+            this.executor.setMaximumPoolSize(poolSize);
+            this.executor.setCorePoolSize(poolSize);
+        } else {
+            this.executor.setCorePoolSize(poolSize);
+            this.executor.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    /**
+     * Queues a task after the other tasks of the same key.
+     *
+     * @return {@code false} if the task has been discarded because too many tasks are waiting for the key
+     */
+    boolean dispatch(final Object key, final Runnable task) {
+        final KeyQueue queue;
+
+        synchronized (this) {
+            final KeyQueue existing = this.queues.get(key);
+            if (existing != null) {
+                return existing.offer(task);
+            }
+
+            queue = new KeyQueue(key);
+            queue.tasks.add(task);
+            this.queues.put(key, queue);
+        }
+
+        submit(queue);
+        return true;
+    }
+
+    /**
+     * Discards the tasks of the given key that have not been started yet.
+     */
+    synchronized void cancel(final Object key) {
+        final KeyQueue queue = this.queues.get(key);
+        if (queue != null) {
+            queue.tasks.clear();
+        }
+    }
+
+    long getDiscardedTaskCount() {
+        return this.discardedTaskCount.get();
+    }
+
+    void shutdown() {
+        this.executor.shutdown();
+    }
+
+    private void submit(final KeyQueue queue) {
+        try {
+            this.executor.execute(() -> drain(queue));
+        } catch (final RejectedExecutionException e) {
+            logger.warn("dispatcher has been shut down, discarding messages");
+            synchronized (this) {
+                this.queues.remove(queue.key);
+            }
+        }
+    }
+
+    private void drain(final KeyQueue queue) {
+        for (int i = 0; i < MAX_TASKS_PER_RUN; i++) {
+            final Runnable task;
+
+            synchronized (this) {
+                task = queue.poll();
+                if (task == null) {
+                    this.queues.remove(queue.key);
+                    return;
+                }
+            }
+
+            try {
+                task.run();
+            } catch (final Exception e) {
+                logger.warn("unhandled exception while dispatching message", e);
+            }
+        }
+
+        submit(queue);
+    }
+
+    private class KeyQueue {
+
+        private final Object key;
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private boolean overflowing;
+
+        KeyQueue(final Object key) {
+            this.key = key;
+        }
+
+        // must be called holding the dispatcher lock
+        boolean offer(final Runnable task) {
+            if (this.tasks.size() >= OrderedDispatcher.this.maxQueuedTasksPerKey) {
+                OrderedDispatcher.this.discardedTaskCount.incrementAndGet();
+                if (!this.overflowing) {
+                    this.overflowing = true;
+                    logger.warn("too many pending messages for {}, discarding new messages", this.key);
+                }
+                return false;
+            }
+            this.tasks.add(task);
+            return true;
+        }
+
+        // must be called holding the dispatcher lock
+        Runnable poll() {
+            final Runnable task = this.tasks.poll();
+            if (this.tasks.isEmpty()) {
+                this.overflowing = false;
+            }
+            return task;
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2018, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -35,12 +35,19 @@ public class CloudSubscriptionRecord {
         return this.qos;
     }
 
-    public boolean matches(final String topic) {
+    /**
+     * @return the topic of the subscription with the account and client id tokens replaced by single level wildcards
+     */
+    public String getTopicFilter() {
         if (topicFilter == null) {
             topicFilter = this.topic.replaceAll(CloudServiceOptions.getTopicAccountToken(), "+")
                     .replaceAll(CloudServiceOptions.getTopicClientIdToken(), "+");
         }
-        return MqttTopicUtil.isMatched(this.topicFilter, topic);
+        return topicFilter;
+    }
+
+    public boolean matches(final String topic) {
+        return MqttTopicUtil.isMatched(getTopicFilter(), topic);
     }
 
     @Override
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud.subscriber;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A trie of MQTT topic filters, indexed by topic level, that returns the values associated with the filters matching
+ * a topic name without comparing the topic against each filter.
+ * <p>
+ * The single level ({@code +}) and multi level ({@code #}) wildcards follow the MQTT specification, as applied by
+ * the broker when delivering the messages: {@code +} also matches an empty level and a filter ending with {@code /#}
+ * also matches its parent level, even when preceded by other wildcards. Filters starting with a wildcard do not match
+ * topic names starting with {@code $}. Instances are not thread safe, they are meant
+ * to be built when the subscriptions change and then only read.
+ *
+ * @param <T>
+ *            the type of the values associated with the filters
+ */
+public class TopicFilterTrie<T> {
+
+    private static final String SEPARATOR = "/";
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+    private static final String SYSTEM_TOPIC_PREFIX = "$";
+
+    private final Node<T> root = new Node<>();
+
+    public void add(final String topicFilter, final T value) {
+        Node<T> node = this.root;
+
+        for (final String level : topicFilter.split(SEPARATOR, -1)) {
+            if (MULTI_LEVEL_WILDCARD.equals(level)) {
+                node.multiLevelValues.add(value);
+                return;
+            } else if (SINGLE_LEVEL_WILDCARD.equals(level)) {
+                if (node.singleLevelChild == null) {
+                    node.singleLevelChild = new Node<>();
+                }
+                node = node.singleLevelChild;
+            } else {
+                node = node.children.computeIfAbsent(level, l -> new Node<>());
+            }
+        }
+
+        node.values.add(value);
+    }
+
+    /**
+     * @param topic
+     *            a topic name, without wildcards
+     * @return the values of the filters matching the topic, a value is returned once for each filter it has been
+     *         added with
+     */
+    public List<T> match(final String topic) {
+        final List<T> result = new ArrayList<>();
+        final String[] levels = topic.split(SEPARATOR, -1);
+
+        if (topic.startsWith(SYSTEM_TOPIC_PREFIX)) {
+            // MQTT 3.1.1 section 4.7.2, wildcards at the first level do not match topics starting with $
+            final Node<T> child = this.root.children.get(levels[0]);
+            if (child != null) {
+                match(child, levels, 1, result);
+            }
+        } else {
+            match(this.root, levels, 0, result);
+        }
+
+        return result.isEmpty() ? Collections.emptyList() : result;
+    }
+
+    private static <T> void match(final Node<T> node, final String[] levels, final int index, final List<T> result) {
+        result.addAll(node.multiLevelValues);
+
+        if (index == levels.length) {
+            result.addAll(node.values);
+            return;
+        }
+
+        final Node<T> child = node.children.get(levels[index]);
+        if (child != null) {
+            match(child, levels, index + 1, result);
+        }
+
+        if (node.singleLevelChild != null) {
+            match(node.singleLevelChild, levels, index + 1, result);
+        }
+    }
+
+    private static class Node<T> {
+
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private final List<T> values = new ArrayList<>(1);
+        private final List<T> multiLevelValues = new ArrayList<>(1);
+        private Node<T> singleLevelChild;
+    }
+}
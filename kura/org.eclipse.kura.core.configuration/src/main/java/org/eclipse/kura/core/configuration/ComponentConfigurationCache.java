@@ -0,0 +1,211 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.configuration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.eclipse.kura.configuration.ComponentConfiguration;
+import org.eclipse.kura.configuration.Password;
+import org.eclipse.kura.core.configuration.metatype.Tocd;
+
+/**
+ * Caches the configurations of the configurable components, as read from ConfigurationAdmin, together with their
+ * properties with decrypted passwords, so that they are not converted and decrypted at every read.
+ * <p>
+ * The entries are keyed by service.pid, the key of the ConfigurationAdmin events. Each key has a version, taken from
+ * a global sequence and bumped when the key is invalidated: a configuration is stored only if the version of its key
+ * did not change while it was being read, so that a configuration read before an update cannot replace the
+ * invalidated one.
+ * <p>
+ * The cached properties are never exposed: each read returns a copy of the properties map, including the array and
+ * {@link Password} values, that the caller is free to modify.
+ */
+class ComponentConfigurationCache {
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Long> versions = new HashMap<>();
+    private long sequence;
+    private long invalidateAllVersion;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @return the current version of the provided service pid, to be passed to
+     *         {@link #put(String, long, ComponentConfiguration)} or {@link #putDecrypted(String, String, long, Map)}
+     *         once the configuration has been read
+     */
+    synchronized long getVersion(final String servicePid) {
+        return Math.max(this.versions.getOrDefault(servicePid, 0L), this.invalidateAllVersion);
+    }
+
+    /**
+     * @return a copy of the cached configuration of the component with the provided kura.service.pid, or {@code null}
+     */
+    ComponentConfiguration get(final String servicePid, final String pid) {
+        final Entry entry = getEntry(servicePid, pid, true);
+        return entry != null ? entry.copy(entry.properties) : null;
+    }
+
+    /**
+     * @return a copy of the cached configuration of the component with the provided kura.service.pid, with decrypted
+     *         passwords, or {@code null}. A miss is not counted, as the caller is expected to load the configuration
+     *         with {@link #get(String, String)}
+     */
+    ComponentConfiguration getDecrypted(final String servicePid, final String pid,
+            final UnaryOperator<Map<String, Object>> decryptor) {
+        final Entry entry = getEntry(servicePid, pid, false);
+        if (entry == null) {
+            return null;
+        }
+
+        Map<String, Object> decrypted = entry.decryptedProperties;
+        if (decrypted == null) {
+            decrypted = Collections.unmodifiableMap(decryptor.apply(copyProperties(entry.properties)));
+            entry.decryptedProperties = decrypted;
+        }
+        return entry.copy(decrypted);
+    }
+
+    /**
+     * Stores the decrypted properties of the cached configuration of the component with the provided kura.service.pid,
+     * so that a configuration just loaded and decrypted by the caller is not decrypted again. The properties are
+     * discarded if the service pid has been invalidated since the provided version was retrieved, before loading the
+     * configuration, as the cached configuration may then be newer than the decrypted one.
+     */
+    synchronized void putDecrypted(final String servicePid, final String pid, final long version,
+            final Map<String, Object> decryptedProperties) {
+        if (decryptedProperties == null || getVersion(servicePid) != version) {
+            return;
+        }
+
+        final Entry entry = this.entries.get(servicePid);
+        if (entry != null && entry.pid.equals(pid)) {
+            entry.decryptedProperties = Collections.unmodifiableMap(copyProperties(decryptedProperties));
+        }
+    }
+
+    /**
+     * Stores the provided configuration, if the service pid has not been invalidated since the provided version was
+     * retrieved.
+     */
+    synchronized void put(final String servicePid, final long version, final ComponentConfiguration config) {
+        if (config == null || config.getConfigurationProperties() == null || getVersion(servicePid) != version) {
+            return;
+        }
+
+        this.entries.put(servicePid, new Entry(config.getPid(), (Tocd) config.getDefinition(),
+                Collections.unmodifiableMap(copyProperties(config.getConfigurationProperties()))));
+    }
+
+    synchronized void invalidate(final String servicePid) {
+        if (servicePid == null) {
+            return;
+        }
+        this.entries.remove(servicePid);
+        this.versions.put(servicePid, ++this.sequence);
+    }
+
+    synchronized void invalidateAll() {
+        this.entries.clear();
+        this.versions.clear();
+        this.invalidateAllVersion = ++this.sequence;
+    }
+
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the ratio of the reads served by the cache, between 0 and 1
+     */
+    public double getHitRate() {
+        final long hitCount = this.hits.get();
+        final long total = hitCount + this.misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits: %d, misses: %d, hit rate: %.1f%%", getHitCount(), getMissCount(),
+                getHitRate() * 100);
+    }
+
+    private synchronized Entry getEntry(final String servicePid, final String pid, final boolean countMiss) {
+        final Entry entry = this.entries.get(servicePid);
+        if (entry == null || !entry.pid.equals(pid)) {
+            if (countMiss) {
+                this.misses.incrementAndGet();
+            }
+            return null;
+        }
+        this.hits.incrementAndGet();
+        return entry;
+    }
+
+    private static final class Entry {
+
+        private final String pid;
+        private final Tocd definition;
+        private final Map<String, Object> properties;
+        private volatile Map<String, Object> decryptedProperties;
+
+        Entry(final String pid, final Tocd definition, final Map<String, Object> properties) {
+            this.pid = pid;
+            this.definition = definition;
+            this.properties = properties;
+        }
+
+        ComponentConfiguration copy(final Map<String, Object> props) {
+            return new ComponentConfigurationImpl(this.pid, this.definition, copyProperties(props));
+        }
+    }
+
+    private static Map<String, Object> copyProperties(final Map<String, Object> properties) {
+        final Map<String, Object> result = new HashMap<>(properties.size());
+        for (final Map.Entry<String, Object> property : properties.entrySet()) {
+            result.put(property.getKey(), copyValue(property.getValue()));
+        }
+        return result;
+    }
+
+    private static Object copyValue(final Object value) {
+        if (value instanceof Password) {
+            return copyPassword((Password) value);
+        } else if (value instanceof Password[]) {
+            final Password[] passwords = ((Password[]) value).clone();
+            for (int i = 0; i < passwords.length; i++) {
+                passwords[i] = copyPassword(passwords[i]);
+            }
+            return passwords;
+        } else if (value instanceof Object[]) {
+            return ((Object[]) value).clone();
+        }
+        return value;
+    }
+
+    private static Password copyPassword(final Password password) {
+        if (password == null || password.getPassword() == null) {
+            return password;
+        }
+        return new Password(password.getPassword().clone());
+    }
+}
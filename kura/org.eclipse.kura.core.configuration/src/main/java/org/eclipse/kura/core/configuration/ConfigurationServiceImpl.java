@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -70,8 +70,10 @@ import org.osgi.framework.Constants;
 import org.osgi.framework.Filter;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.cm.Configuration;
 import org.osgi.service.cm.ConfigurationAdmin;
+import org.osgi.service.cm.ConfigurationListener;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.ComponentException;
 import org.osgi.service.component.runtime.ServiceComponentRuntime;
@@ -129,6 +131,11 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
     // maps the kura.service.pid to the associated service.pid
     private final Map<String, String> servicePidByPid;
 
+    // configurations of the configurable components, invalidated by the ConfigurationAdmin events
+    private final ComponentConfigurationCache configurationCache = new ComponentConfigurationCache();
+
+    private ServiceRegistration<ConfigurationListener> configurationListenerRegistration;
+
     // ----------------------------------------------------------------
     //
     // Dependencies
@@ -161,6 +168,7 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
 
     public void setCryptoService(CryptoService cryptoService) {
         this.cryptoService = cryptoService;
+        this.configurationCache.invalidateAll();
     }
 
     public void unsetCryptoService(CryptoService cryptoService) {
@@ -231,6 +239,9 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
             throw new ComponentException("Error loading latest snapshot", e);
         }
 
+        this.configurationListenerRegistration = this.bundleContext.registerService(ConfigurationListener.class,
+                event -> this.configurationCache.invalidate(event.getPid()), null);
+
         this.bundleTracker = new ComponentMetaTypeBundleTracker(this.ctx.getBundleContext(), this);
         this.bundleTracker.open();
     }
@@ -296,6 +307,29 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
             this.bundleTracker.close();
             this.bundleTracker = null;
         }
+
+        if (this.configurationListenerRegistration != null) {
+            this.configurationListenerRegistration.unregister();
+            this.configurationListenerRegistration = null;
+        }
+        this.configurationCache.invalidateAll();
+
+        logger.info("Configuration cache statistics - {}", this.configurationCache);
+    }
+
+    public long getConfigurationCacheHitCount() {
+        return this.configurationCache.getHitCount();
+    }
+
+    public long getConfigurationCacheMissCount() {
+        return this.configurationCache.getMissCount();
+    }
+
+    /**
+     * @return the ratio of the component configuration reads served by the cache, between 0 and 1
+     */
+    public double getConfigurationCacheHitRate() {
+        return this.configurationCache.getHitRate();
     }
 
     // ----------------------------------------------------------------
@@ -356,9 +390,27 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
     // Don't perform internal calls to this method
     @Override
     public ComponentConfiguration getComponentConfiguration(String pid) throws KuraException {
+        final String servicePid = this.servicePidByPid.get(pid);
+        final boolean cacheable = servicePid != null && !this.activatedSelfConfigComponents.contains(pid);
+        if (cacheable) {
+            final ComponentConfiguration cachedConfig = this.configurationCache.getDecrypted(servicePid, pid,
+                    properties -> {
+                        decryptConfigurationProperties(properties);
+                        return properties;
+                    });
+            if (cachedConfig != null) {
+                return cachedConfig;
+            }
+        }
+
+        final long version = cacheable ? this.configurationCache.getVersion(servicePid) : 0;
         ComponentConfiguration tempConfig = getComponentConfigurationInternal(pid);
         if (tempConfig != null && tempConfig.getConfigurationProperties() != null) {
             decryptConfigurationProperties(tempConfig.getConfigurationProperties());
+            if (cacheable) {
+                this.configurationCache.putDecrypted(servicePid, pid, version,
+                        tempConfig.getConfigurationProperties());
+            }
         }
         return tempConfig;
     }
@@ -448,6 +500,7 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
             Dictionary<String, Object> dict = CollectionsUtil.mapToDictionary(mergedProperties);
             Configuration config = this.configurationAdmin.getConfiguration(servicePid, "?");
             config.update(dict);
+            this.configurationCache.invalidate(servicePid);
 
             registerComponentConfiguration(pid, servicePid, factoryPid);
 
@@ -491,6 +544,7 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
             logger.info("Deleting factory configuration for component with pid {}...", pid);
 
             config.get().delete();
+            this.configurationCache.invalidate(config.get().getPid());
 
             unregisterComponentConfiguration(pid);
 
@@ -662,6 +716,8 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
         logger.info("Registering metatype pid: {} ...", metatypePid);
 
         this.ocds.put(metatypePid, ocd);
+        // the conversion of the properties depends on the OCD
+        this.configurationCache.invalidateAll();
 
         if (isFactory) {
             registerFactoryComponentOCD(metatypePid, ocd, provider);
@@ -675,6 +731,7 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
     }
 
     synchronized void onBundleRemoved(final Bundle bundle) {
+        this.configurationCache.invalidateAll();
         this.factoryPids.removeIf(factory -> {
             final Bundle provider = factory.getProviderBundle();
             return provider.getSymbolicName().equals(bundle.getSymbolicName())
@@ -733,7 +790,7 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
             return;
         }
         logger.info("Removing component configuration for pid {}", pid);
-        this.servicePidByPid.remove(pid);
+        this.configurationCache.invalidate(this.servicePidByPid.remove(pid));
         this.factoryPidByPid.remove(pid);
         this.activatedSelfConfigComponents.remove(pid);
         this.allActivatedPids.remove(pid);
@@ -974,6 +1031,7 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
             mergeWithDefaults(ocd, props);
 
             config.update(CollectionsUtil.mapToDictionary(props));
+            this.configurationCache.invalidate(servicePid);
             logger.info("Seeding updated configuration for pid: {}", pid);
         }
     }
@@ -1062,6 +1120,10 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
             Long[] snapshots = snapshotIDs.toArray(new Long[] {});
 
             for (Long snapshot : snapshots) {
+                // Plain snapshots are recognized without trying to decrypt them
+                if (isPlainSnapshot(snapshot)) {
+                    continue;
+                }
 
                 try {
                     // Verify if the current snapshot is encrypted
@@ -1091,6 +1153,34 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
         return builder.toString();
     }
 
+    private boolean isPlainSnapshot(final long snapshotID) {
+        try {
+            final File fSnapshot = getSnapshotFile(snapshotID);
+            return fSnapshot != null && fSnapshot.exists() && isPlainSnapshot(fSnapshot);
+        } catch (Exception e) {
+            // Unknown, the snapshot will be decrypted
+            return false;
+        }
+    }
+
+    private static boolean isPlainSnapshot(final File file) throws IOException {
+        // Encrypted snapshots are Base64 encoded, while plain ones start with the XML declaration or the root element
+        try (final FileReader r = new FileReader(file)) {
+            int c;
+
+            while ((c = r.read()) != -1) {
+                if (c == '<') {
+                    return true;
+                }
+                if (!Character.isWhitespace(c) && c != '\uFEFF') {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
     private void encryptPlainSnapshots() throws KuraException, IOException {
         Set<Long> snapshotIDs = getSnapshots();
         if (snapshotIDs == null || snapshotIDs.isEmpty()) {
@@ -1104,6 +1194,11 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
                 throw new KuraException(KuraErrorCode.CONFIGURATION_ERROR, snapshot);
             }
 
+            if (!isPlainSnapshot(fSnapshot)) {
+                logger.debug("Snapshot {} is already encrypted", snapshot);
+                continue;
+            }
+
             final XmlComponentConfigurations xmlConfigs = unmarshal(readFully(fSnapshot),
                     XmlComponentConfigurations.class);
 
@@ -1181,7 +1276,7 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
             logger.info("Writing snapshot - Saving {}...", fSnapshot.getAbsolutePath());
             fos = new FileOutputStream(fSnapshot);
             osw = new OutputStreamWriter(fos, "UTF-8");
-            osw.append(new String(encryptedXML));
+            osw.write(encryptedXML);
             osw.flush();
             fos.flush();
             fos.getFD().sync();
@@ -1214,15 +1309,22 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
         ComponentConfiguration cc = null;
         try {
 
-            Tocd ocd = getOCDForPid(pid);
-
             String servicePid = this.servicePidByPid.get(pid);
 
             if (servicePid != null) {
+                cc = this.configurationCache.get(servicePid, pid);
+                if (cc != null) {
+                    return cc;
+                }
+
+                final long version = this.configurationCache.getVersion(servicePid);
+
+                Tocd ocd = getOCDForPid(pid);
                 Configuration cfg = this.configurationAdmin.getConfiguration(servicePid, "?");
                 Map<String, Object> props = CollectionsUtil.dictionaryToMap(cfg.getProperties(), ocd);
 
                 cc = new ComponentConfigurationImpl(pid, ocd, props);
+                this.configurationCache.put(servicePid, version, cc);
             }
         } catch (Exception e) {
             logger.error("Error getting Configuration for component: " + pid + ". Ignoring it.", e);
@@ -1433,6 +1535,7 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
                             }
 
                             cfg.update(CollectionsUtil.mapToDictionary(newProperties));
+                            this.configurationCache.invalidate(config.getPid());
 
                         } catch (IOException e) {
                             logger.warn("Error seeding initial properties to ConfigAdmin for pid: {}", config.getPid(),
@@ -1621,8 +1724,10 @@ public class ConfigurationServiceImpl implements ConfigurationService, OCDServic
 
         // Update the new properties
         // use ConfigurationAdmin to do the update
-        Configuration config = this.configurationAdmin.getConfiguration(this.servicePidByPid.get(pid), "?");
+        final String servicePid = this.servicePidByPid.get(pid);
+        Configuration config = this.configurationAdmin.getConfiguration(servicePid, "?");
         config.update(CollectionsUtil.mapToDictionary(mergedProperties));
+        this.configurationCache.invalidate(servicePid);
 
         if (snapshotOnConfirmation) {
             snapshot();
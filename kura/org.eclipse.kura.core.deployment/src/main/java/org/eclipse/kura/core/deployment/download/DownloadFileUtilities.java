@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -43,6 +43,16 @@ public class DownloadFileUtilities extends FileUtilities {
     public static boolean deleteDownloadedFile(DeploymentPackageInstallOptions options) throws IOException {
         File file = getDpDownloadFile(options);
 
+        File partialFile = DownloadTargetFile.getPartialFile(file);
+        if (partialFile.exists() && partialFile.isFile()) {
+            partialFile.delete();
+        }
+
+        File segmentsMarkerFile = DownloadTargetFile.getSegmentsMarkerFile(file);
+        if (segmentsMarkerFile.exists() && segmentsMarkerFile.isFile()) {
+            segmentsMarkerFile.delete();
+        }
+
         if (file != null && file.exists() && file.isFile()) {
             return file.delete();
         }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -26,6 +26,7 @@ public class DownloadOptions {
     private SslManagerService sslManagerService;
     private String downloadURL;
     private int alreadyDownloaded;
+    private DownloadTargetFile targetFile;
 
     public OutputStream getOut() {
         return this.out;
@@ -74,4 +75,12 @@ public class DownloadOptions {
     public void setAlreadyDownloaded(int alreadyDownloaded) {
         this.alreadyDownloaded = alreadyDownloaded;
     }
+
+    public DownloadTargetFile getTargetFile() {
+        return this.targetFile;
+    }
+
+    public void setTargetFile(DownloadTargetFile targetFile) {
+        this.targetFile = targetFile;
+    }
 }
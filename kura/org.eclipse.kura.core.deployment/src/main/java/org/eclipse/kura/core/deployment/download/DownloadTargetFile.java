@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.deployment.download;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.eclipse.kura.core.deployment.util.HashUtil;
+
+/**
+ * The file a package is downloaded to. The bytes are written to a partial file, that is renamed to the final file
+ * once the download completes, so that an interrupted download can be resumed from the bytes already on disk.
+ * <p>
+ * If a digest algorithm is provided, the digest is updated while the bytes are written sequentially, so that the
+ * file does not need to be read again to be verified. Only the bytes that are not written in order, like the ones
+ * already on disk when resuming or the ones of parallel segments, are read back from the file.
+ * <p>
+ * While parallel segments are written the partial file can contain holes, so a marker file is kept next to it until
+ * the partial file is known to contain only contiguous bytes. A partial file found with the marker, for example
+ * after the process has been killed during a segmented download, is never resumed.
+ */
+public class DownloadTargetFile implements Closeable {
+
+    private static final String PARTIAL_FILE_SUFFIX = ".part";
+    private static final String SEGMENTS_MARKER_SUFFIX = ".segments";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final File partialFile;
+    private final File segmentsMarkerFile;
+    private final FileChannel channel;
+    private final MessageDigest digest;
+    private final OutputStream outputStream = new SequentialOutputStream();
+
+    private long position;
+    private long hashedLength;
+
+    /**
+     * Opens the partial file of the provided file.
+     *
+     * @param file
+     *            the final file
+     * @param digestAlgorithm
+     *            the algorithm of the digest to compute, or {@code null}
+     * @param resume
+     *            if {@code true} the bytes of a previous partial download are kept and new bytes are appended,
+     *            otherwise the partial file is truncated. A partial file left by an interrupted segmented write is
+     *            always truncated
+     * @throws IOException
+     *             if the partial file cannot be opened or read
+     * @throws NoSuchAlgorithmException
+     *             if the digest algorithm is not available
+     */
+    public DownloadTargetFile(File file, String digestAlgorithm, boolean resume)
+            throws IOException, NoSuchAlgorithmException {
+        this.file = file;
+        this.partialFile = getPartialFile(file);
+        this.segmentsMarkerFile = getSegmentsMarkerFile(file);
+        this.digest = digestAlgorithm != null ? MessageDigest.getInstance(digestAlgorithm) : null;
+        this.channel = FileChannel.open(this.partialFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+            if (resume && !this.segmentsMarkerFile.exists()) {
+                this.position = this.channel.size();
+                updateDigestFromFile();
+            } else {
+                this.channel.truncate(0);
+                Files.deleteIfExists(this.segmentsMarkerFile.toPath());
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+    }
+
+    public static File getPartialFile(File file) {
+        return new File(file.getPath() + PARTIAL_FILE_SUFFIX);
+    }
+
+    public static File getSegmentsMarkerFile(File file) {
+        return new File(getPartialFile(file).getPath() + SEGMENTS_MARKER_SUFFIX);
+    }
+
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * @return the position where the next bytes appended by the output stream will be written, when the download
+     *         starts this is the number of bytes that can be skipped
+     */
+    public synchronized long getPosition() {
+        return this.position;
+    }
+
+    /**
+     * @return a stream that appends the bytes to the partial file, updating the digest
+     */
+    public OutputStream getOutputStream() {
+        return this.outputStream;
+    }
+
+    /**
+     * Writes the bytes at the provided position of the partial file. The digest is updated only if the bytes follow
+     * the ones already hashed.
+     */
+    public void write(long filePosition, byte[] b, int off, int len) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+        long writePosition = filePosition;
+        while (buffer.hasRemaining()) {
+            writePosition += this.channel.write(buffer, writePosition);
+        }
+
+        synchronized (this) {
+            if (this.digest != null && filePosition == this.hashedLength) {
+                this.digest.update(b, off, len);
+                this.hashedLength += len;
+            }
+        }
+    }
+
+    /**
+     * Marks the partial file as being written out of order, it must be called before the bytes of parallel segments
+     * are written with {@link #write(long, byte[], int, int)}.
+     */
+    public void beginSegmentedWrite() throws IOException {
+        if (!this.segmentsMarkerFile.exists()) {
+            Files.createFile(this.segmentsMarkerFile.toPath());
+        }
+    }
+
+    /**
+     * Marks the partial file as containing only contiguous bytes, so that it can be resumed. It must be called once
+     * all the segments have been written, or once the partial file has been truncated after the last contiguous byte
+     * and no segment is being written anymore.
+     */
+    public void endSegmentedWrite() throws IOException {
+        Files.deleteIfExists(this.segmentsMarkerFile.toPath());
+    }
+
+    /**
+     * Discards the content of the partial file, the next bytes appended by the output stream will be written at the
+     * beginning of the file.
+     */
+    public synchronized void restart() throws IOException {
+        this.channel.truncate(0);
+        Files.deleteIfExists(this.segmentsMarkerFile.toPath());
+        this.position = 0;
+        this.hashedLength = 0;
+        if (this.digest != null) {
+            this.digest.reset();
+        }
+    }
+
+    /**
+     * Truncates the partial file, so that the download can be resumed after the last contiguous byte received.
+     */
+    public synchronized void truncate(long length) throws IOException {
+        this.channel.truncate(length);
+        this.position = Math.min(this.position, length);
+        if (this.hashedLength > length) {
+            this.hashedLength = 0;
+            this.digest.reset();
+        }
+    }
+
+    /**
+     * @return the hexadecimal representation of the digest of the whole partial file, or {@code null} if no digest
+     *         algorithm has been provided
+     */
+    public synchronized String getHash() throws IOException {
+        if (this.digest == null) {
+            return null;
+        }
+
+        updateDigestFromFile();
+        return HashUtil.toHexString(this.digest.digest());
+    }
+
+    /**
+     * Closes the partial file and renames it to the final file, replacing it if it exists.
+     */
+    public void complete() throws IOException {
+        close();
+        Files.deleteIfExists(this.segmentsMarkerFile.toPath());
+        try {
+            Files.move(this.partialFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(this.partialFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Closes and deletes the partial file.
+     */
+    public void delete() throws IOException {
+        close();
+        Files.deleteIfExists(this.partialFile.toPath());
+        Files.deleteIfExists(this.segmentsMarkerFile.toPath());
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    private void updateDigestFromFile() throws IOException {
+        if (this.digest == null) {
+            return;
+        }
+
+        final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        final long size = this.channel.size();
+
+        while (this.hashedLength < size) {
+            buffer.clear();
+            final int read = this.channel.read(buffer, this.hashedLength);
+            if (read < 0) {
+                break;
+            }
+            this.digest.update(buffer.array(), 0, read);
+            this.hashedLength += read;
+        }
+    }
+
+    private class SequentialOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            final long writePosition;
+            synchronized (DownloadTargetFile.this) {
+                writePosition = DownloadTargetFile.this.position;
+                DownloadTargetFile.this.position += len;
+            }
+            DownloadTargetFile.this.write(writePosition, b, off, len);
+        }
+    }
+}
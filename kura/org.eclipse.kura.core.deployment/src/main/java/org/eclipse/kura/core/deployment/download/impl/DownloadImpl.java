@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -13,9 +13,8 @@
 package org.eclipse.kura.core.deployment.download.impl;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.Date;
 import java.util.concurrent.CancellationException;
 
@@ -28,11 +27,11 @@ import org.eclipse.kura.core.deployment.download.DownloadCountingOutputStream;
 import org.eclipse.kura.core.deployment.download.DownloadFactory;
 import org.eclipse.kura.core.deployment.download.DownloadFileUtilities;
 import org.eclipse.kura.core.deployment.download.DownloadOptions;
+import org.eclipse.kura.core.deployment.download.DownloadTargetFile;
 import org.eclipse.kura.core.deployment.install.DeploymentPackageInstallOptions;
 import org.eclipse.kura.core.deployment.progress.ProgressEvent;
 import org.eclipse.kura.core.deployment.progress.ProgressListener;
 import org.eclipse.kura.core.deployment.util.FileUtilities;
-import org.eclipse.kura.core.deployment.util.HashUtil;
 import org.eclipse.kura.deployment.hook.DeploymentHook;
 import org.eclipse.kura.message.KuraResponsePayload;
 import org.eclipse.kura.ssl.SslManagerService;
@@ -175,12 +174,29 @@ public class DownloadImpl implements ProgressListener {
     // ----------------------------------------------------------------
 
     private void incrementalDownloadFromURL(File dpFile, String url, int downloadIndex) throws Exception {
-        OutputStream os = null;
+        String hashAlgorithm = null;
+        String hashValue = null;
+        if (this.options.getHash() != null) {
+            String[] hashAlgorithmValue = this.options.getHash().split(":");
+
+            if (hashAlgorithmValue.length == 2) {
+                hashAlgorithm = hashAlgorithmValue[0].trim();
+                hashValue = hashAlgorithmValue[1].trim();
+            }
+        }
+        boolean isHashValid = hashAlgorithm != null && !"".equals(hashAlgorithm) && hashValue != null
+                && !"".equals(hashValue);
+
+        // the file of a previous download is replaced, the partial file is kept if the download should be resumed
+        Files.deleteIfExists(dpFile.toPath());
+        DownloadTargetFile targetFile = new DownloadTargetFile(dpFile, isHashValid ? hashAlgorithm : null,
+                this.options.isResume());
+        boolean isPartialFileValid = this.options.isResume();
 
         try {
-            os = new FileOutputStream(dpFile);
             DownloadOptions downloadOptions = new DownloadOptions();
-            downloadOptions.setOut(os);
+            downloadOptions.setOut(targetFile.getOutputStream());
+            downloadOptions.setTargetFile(targetFile);
             downloadOptions.setRequestOptions(this.options);
             downloadOptions.setCallback(this);
             downloadOptions.setSslManagerService(this.sslManagerService);
@@ -190,43 +206,37 @@ public class DownloadImpl implements ProgressListener {
             this.downloadHelper = getDownloadInstance(this.options.getDownloadProtocol(), downloadOptions);
             this.downloadHelper.startWork();
             this.downloadHelper.close();
-        } finally {
-            if (os != null) {
-                try {
-                    os.close();
-                } catch (IOException e1) {
-                    s_logger.error("Exception while trying to close stream.", e1);
-                }
-            }
-        }
 
-        if (this.options.getHash() != null) {
-            String[] hashAlgorithmValue = this.options.getHash().split(":");
-
-            String hashAlgorithm = null;
-            String hashValue = null;
-            if (hashAlgorithmValue.length == 2) {
-                hashAlgorithm = hashAlgorithmValue[0].trim();
-                hashValue = hashAlgorithmValue[1].trim();
-            }
-            s_logger.info("--> Going to verify hash signature!");
-            try {
+            if (this.options.getHash() != null) {
+                s_logger.info("--> Going to verify hash signature!");
+                isPartialFileValid = false;
                 // these things should be checked beforehand, so that hash() has a chance to succeed
-                if (hashAlgorithm == null || "".equals(hashAlgorithm) || hashValue == null || "".equals(hashValue)) {
+                if (!isHashValid) {
                     throw new KuraException(KuraErrorCode.INTERNAL_ERROR, null,
                             "Failed to verify checksum with empty algorithm: " + hashAlgorithm);
                 }
 
-                String checksum = HashUtil.hash(hashAlgorithm, dpFile);
+                // the digest has been updated while downloading
+                String checksum = targetFile.getHash();
 
                 if (checksum == null || !checksum.equals(hashValue)) {
                     throw new KuraException(KuraErrorCode.INTERNAL_ERROR, null,
                             "Failed to verify checksum with algorithm: " + hashAlgorithm);
                 }
-            } catch (Exception e) {
-                dpFile.delete();
-                throw e;
             }
+
+            targetFile.complete();
+        } catch (Exception e) {
+            try {
+                if (isPartialFileValid) {
+                    targetFile.close();
+                } else {
+                    targetFile.delete();
+                }
+            } catch (IOException e1) {
+                s_logger.error("Exception while trying to close partial file.", e1);
+            }
+            throw e;
         }
     }
 
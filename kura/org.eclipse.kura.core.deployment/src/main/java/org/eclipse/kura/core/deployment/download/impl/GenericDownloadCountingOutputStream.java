@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -14,6 +14,7 @@ package org.eclipse.kura.core.deployment.download.impl;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.output.CountingOutputStream;
 import org.eclipse.kura.core.deployment.DownloadStatus;
@@ -32,6 +33,7 @@ public class GenericDownloadCountingOutputStream extends CountingOutputStream {
     private int propBlockDelay = 1000;
 
     long totalBytes;
+    long transferOffset;
 
     final DeploymentPackageDownloadOptions options;
     final SslManagerService sslManagerService;
@@ -43,6 +45,7 @@ public class GenericDownloadCountingOutputStream extends CountingOutputStream {
 
     private long currentStep = 1;
     private DownloadStatus downloadStatus = DownloadStatus.FAILED;
+    private final AtomicLong segmentByteCount = new AtomicLong();
 
     public GenericDownloadCountingOutputStream(DownloadOptions downloadOptions) {
         super(downloadOptions.getOut());
@@ -59,7 +62,7 @@ public class GenericDownloadCountingOutputStream extends CountingOutputStream {
 
     public Long getDownloadTransferProgressPercentage() {
         Long percentage = (long) Math
-                .floor(((Long) getByteCount()).doubleValue() / ((Long) this.totalBytes).doubleValue() * 100);
+                .floor(((Long) getTransferredBytes()).doubleValue() / ((Long) this.totalBytes).doubleValue() * 100);
         if (percentage < 0) {
             return (long) 50;
         }
@@ -74,19 +77,42 @@ public class GenericDownloadCountingOutputStream extends CountingOutputStream {
         this.totalBytes = totalBytes;
     }
 
+    /**
+     * @return the bytes of the file received so far, including the ones received by a previous download that is being
+     *         resumed and the ones of the parallel segments
+     */
+    public long getTransferredBytes() {
+        return this.transferOffset + getByteCount() + this.segmentByteCount.get();
+    }
+
     @Override
     protected void afterWrite(int n) throws IOException {
         super.afterWrite(n);
+        updateProgress();
+        blockDelay();
+    }
+
+    protected void afterSegmentWrite(int n) {
+        this.segmentByteCount.addAndGet(n);
+        updateProgress();
+        blockDelay();
+    }
+
+    private synchronized void updateProgress() {
         if (this.propResolution == 0 && getTotalBytes() > 0) {
             this.propResolution = Math.round(this.totalBytes / 100F * 5F);
         } else if (this.propResolution == 0) {
             this.propResolution = 1024 * 256;
         }
-        if (getByteCount() >= this.currentStep * this.propResolution) {
-            this.currentStep++;
-            postProgressEvent(this.options.getClientId(), getByteCount(), this.totalBytes, DownloadStatus.IN_PROGRESS,
-                    null);
+        final long transferredBytes = getTransferredBytes();
+        if (transferredBytes >= this.currentStep * this.propResolution) {
+            this.currentStep = transferredBytes / this.propResolution + 1;
+            postProgressEvent(this.options.getClientId(), transferredBytes, this.totalBytes,
+                    DownloadStatus.IN_PROGRESS, null);
         }
+    }
+
+    private void blockDelay() {
         try {
             Thread.sleep(this.propBlockDelay);
         } catch (InterruptedException e) {
@@ -107,6 +133,10 @@ public class GenericDownloadCountingOutputStream extends CountingOutputStream {
 
     }
 
+    protected void setTransferOffset(long transferOffset) {
+        this.transferOffset = transferOffset;
+    }
+
     protected void setResolution(int resolution) {
         this.propResolution = resolution;
     }
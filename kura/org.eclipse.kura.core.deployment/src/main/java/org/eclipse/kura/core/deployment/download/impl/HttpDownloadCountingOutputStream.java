@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -13,12 +13,16 @@
 package org.eclipse.kura.core.deployment.download.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.Authenticator;
 import java.net.HttpURLConnection;
 import java.net.PasswordAuthentication;
 import java.net.URL;
 import java.net.URLConnection;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -36,6 +40,7 @@ import org.eclipse.kura.KuraRuntimeException;
 import org.eclipse.kura.core.deployment.DownloadStatus;
 import org.eclipse.kura.core.deployment.download.DownloadCountingOutputStream;
 import org.eclipse.kura.core.deployment.download.DownloadOptions;
+import org.eclipse.kura.core.deployment.download.DownloadTargetFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,11 +49,18 @@ public class HttpDownloadCountingOutputStream extends GenericDownloadCountingOut
 
     private static final Logger s_logger = LoggerFactory.getLogger(HttpDownloadCountingOutputStream.class);
 
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final long MIN_SEGMENT_SIZE = 64 * 1024L;
+
+    private final DownloadTargetFile targetFile;
+
     private ExecutorService executor;
+    private ExecutorService segmentExecutor;
     private Future<Void> future;
 
     public HttpDownloadCountingOutputStream(DownloadOptions downloadOptions) {
         super(downloadOptions);
+        this.targetFile = downloadOptions.getTargetFile();
         setBufferSize(this.options.getBlockSize());
         setResolution(this.options.getNotifyBlockSize());
         setBlockDelay(this.options.getBlockDelay());
@@ -60,8 +72,12 @@ public class HttpDownloadCountingOutputStream extends GenericDownloadCountingOut
         if (this.executor != null && this.future != null) {
             this.future.cancel(true);
             this.executor.shutdownNow();
+            if (this.segmentExecutor != null) {
+                this.segmentExecutor.shutdownNow();
+            }
 
-            postProgressEvent(this.options.getClientId(), getByteCount(), this.totalBytes, DownloadStatus.CANCELLED,
+            postProgressEvent(this.options.getClientId(), getTransferredBytes(), this.totalBytes,
+                    DownloadStatus.CANCELLED,
                     "Download cancelled");
         }
     }
@@ -95,39 +111,11 @@ public class HttpDownloadCountingOutputStream extends GenericDownloadCountingOut
                     }
 
                     HttpURLConnection.setFollowRedirects(false);
-                    URLConnection urlConnection = getUrlConnection(HttpDownloadCountingOutputStream.this.downloadURL);
-
-                    testConnectionProtocol(urlConnection);
-
-                    HttpDownloadCountingOutputStream.this.is = urlConnection.getInputStream();
-
-                    String s = urlConnection.getHeaderField("Content-Length");
-                    s_logger.info("Content-lenght: " + s);
-
-                    setTotalBytes(s != null ? Integer.parseInt(s) : -1);
-                    postProgressEvent(HttpDownloadCountingOutputStream.this.options.getClientId(), 0,
-                            HttpDownloadCountingOutputStream.this.totalBytes, DownloadStatus.IN_PROGRESS, null);
-
-                    int bufferSize = getBufferSize();
-
-                    if (bufferSize == 0 && getTotalBytes() > 0) {
-                        int newSize = Math.round(HttpDownloadCountingOutputStream.this.totalBytes / 100F + 1F);
-                        bufferSize = newSize;
-                        setBufferSize(newSize);
-                    } else if (bufferSize == 0) {
-                        int newSize = 1024 * 4;
-                        bufferSize = newSize;
-                        setBufferSize(newSize);
-                    }
-
-                    long numBytes = IOUtils.copyLarge(HttpDownloadCountingOutputStream.this.is,
-                            HttpDownloadCountingOutputStream.this, new byte[bufferSize]);
-                    postProgressEvent(HttpDownloadCountingOutputStream.this.options.getClientId(), numBytes,
-                            HttpDownloadCountingOutputStream.this.totalBytes, DownloadStatus.COMPLETED, null);
-
+                    download();
                 } catch (IOException e) {
-                    postProgressEvent(HttpDownloadCountingOutputStream.this.options.getClientId(), getByteCount(),
-                            HttpDownloadCountingOutputStream.this.totalBytes, DownloadStatus.FAILED, e.getMessage());
+                    postProgressEvent(HttpDownloadCountingOutputStream.this.options.getClientId(),
+                            getTransferredBytes(), HttpDownloadCountingOutputStream.this.totalBytes,
+                            DownloadStatus.FAILED, e.getMessage());
                     throw new KuraConnectException(e);
                 } finally {
                     if (HttpDownloadCountingOutputStream.this.is != null) {
@@ -140,6 +128,9 @@ public class HttpDownloadCountingOutputStream extends GenericDownloadCountingOut
                         close();
                     } catch (IOException e) {
                     }
+                    if (HttpDownloadCountingOutputStream.this.segmentExecutor != null) {
+                        HttpDownloadCountingOutputStream.this.segmentExecutor.shutdownNow();
+                    }
                     if (shouldAuthenticate) {
                         Authenticator.setDefault(null);
                     }
@@ -160,20 +151,221 @@ public class HttpDownloadCountingOutputStream extends GenericDownloadCountingOut
         }
     }
 
-    private URLConnection getUrlConnection(String downloadUrlString) throws IOException {
+    private void download() throws IOException, KuraConnectException {
+        long resumeOffset = this.targetFile != null ? this.targetFile.getPosition() : 0;
+
+        URLConnection urlConnection = getUrlConnection(this.downloadURL, resumeOffset, -1);
+        testConnectionProtocol(urlConnection);
+
+        if (resumeOffset > 0) {
+            int responseCode = ((HttpURLConnection) urlConnection).getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
+                s_logger.info("Resuming download from byte {}", resumeOffset);
+            } else {
+                s_logger.info("Cannot resume download, response code: {}. Downloading the whole file", responseCode);
+                if (responseCode == HTTP_RANGE_NOT_SATISFIABLE) {
+                    ((HttpURLConnection) urlConnection).disconnect();
+                    urlConnection = getUrlConnection(this.downloadURL, 0, -1);
+                    testConnectionProtocol(urlConnection);
+                }
+                this.targetFile.restart();
+                resumeOffset = 0;
+            }
+        }
+
+        this.is = urlConnection.getInputStream();
+
+        long contentLength = urlConnection.getContentLengthLong();
+        s_logger.info("Content-lenght: {}", contentLength);
+
+        setTransferOffset(resumeOffset);
+        setTotalBytes(contentLength >= 0 ? resumeOffset + contentLength : -1);
+        postProgressEvent(this.options.getClientId(), resumeOffset, this.totalBytes, DownloadStatus.IN_PROGRESS, null);
+
+        int bufferSize = getBufferSize();
+
+        if (bufferSize == 0 && getTotalBytes() > 0) {
+            int newSize = Math.round(this.totalBytes / 100F + 1F);
+            bufferSize = newSize;
+            setBufferSize(newSize);
+        } else if (bufferSize == 0) {
+            int newSize = 1024 * 4;
+            bufferSize = newSize;
+            setBufferSize(newSize);
+        }
+
+        int segmentCount = getSegmentCount(urlConnection, resumeOffset, contentLength);
+        if (segmentCount > 1) {
+            downloadSegments(contentLength, segmentCount, bufferSize);
+        } else {
+            IOUtils.copyLarge(this.is, this, new byte[bufferSize]);
+        }
+
+        if (this.totalBytes >= 0 && getTransferredBytes() != this.totalBytes) {
+            throw new IOException(
+                    "Connection closed after " + getTransferredBytes() + " of " + this.totalBytes + " bytes");
+        }
+
+        postProgressEvent(this.options.getClientId(), getTransferredBytes(), this.totalBytes,
+                DownloadStatus.COMPLETED, null);
+    }
+
+    private int getSegmentCount(URLConnection urlConnection, long resumeOffset, long contentLength) {
+        int segmentCount = this.options.getSegments();
+        if (segmentCount <= 1 || this.targetFile == null || resumeOffset > 0 || contentLength < 0
+                || !"bytes".equalsIgnoreCase(urlConnection.getHeaderField("Accept-Ranges"))) {
+            return 1;
+        }
+        return (int) Math.max(1, Math.min(segmentCount, contentLength / MIN_SEGMENT_SIZE));
+    }
+
+    /*
+     * The first segment is read from the connection already open and written sequentially, so that it is hashed while
+     * downloading, the other segments are requested with Range requests and written at their position. If a segment
+     * fails the partial file is truncated after the last byte received in order, so that the download can be resumed.
+     * Until then the partial file is marked as segmented, so that it is not resumed if the process is killed.
+     */
+    private void downloadSegments(long contentLength, int segmentCount, int bufferSize) throws IOException {
+        s_logger.info("Downloading {} bytes with {} parallel segments", contentLength, segmentCount);
+
+        final long segmentSize = (contentLength + segmentCount - 1) / segmentCount;
+        final List<Segment> segments = new ArrayList<>(segmentCount);
+        for (long start = 0; start < contentLength; start += segmentSize) {
+            segments.add(new Segment(start, Math.min(contentLength, start + segmentSize)));
+        }
+
+        this.targetFile.beginSegmentedWrite();
+
+        this.segmentExecutor = Executors.newFixedThreadPool(segments.size() - 1);
+        final List<Future<Void>> futures = new ArrayList<>(segments.size() - 1);
+        for (final Segment segment : segments.subList(1, segments.size())) {
+            futures.add(this.segmentExecutor.submit(() -> {
+                downloadSegment(segment, bufferSize);
+                return null;
+            }));
+        }
+
+        try {
+            copySegment(this.is, segments.get(0), bufferSize, (b, off, len) -> write(b, off, len));
+            closeInputStream();
+
+            for (final Future<Void> segmentFuture : futures) {
+                segmentFuture.get();
+            }
+
+            this.targetFile.endSegmentedWrite();
+        } catch (ExecutionException e) {
+            truncateToReceivedBytes(segments, futures);
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            truncateToReceivedBytes(segments, futures);
+            throw new InterruptedIOException("Download interrupted");
+        } catch (IOException e) {
+            truncateToReceivedBytes(segments, futures);
+            throw e;
+        }
+    }
+
+    private void downloadSegment(Segment segment, int bufferSize) throws IOException, KuraConnectException {
+        URLConnection urlConnection = getUrlConnection(this.downloadURL, segment.start, segment.end - 1);
+        testConnectionProtocol(urlConnection);
+
+        if (((HttpURLConnection) urlConnection).getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+            throw new IOException("Range request not supported for segment starting at byte " + segment.start);
+        }
+
+        try (InputStream segmentStream = urlConnection.getInputStream()) {
+            final long[] position = { segment.start };
+            copySegment(segmentStream, segment, bufferSize, (b, off, len) -> {
+                this.targetFile.write(position[0], b, off, len);
+                position[0] += len;
+                afterSegmentWrite(len);
+            });
+        } finally {
+            ((HttpURLConnection) urlConnection).disconnect();
+        }
+    }
+
+    private static void copySegment(InputStream in, Segment segment, int bufferSize, SegmentWriter writer)
+            throws IOException {
+        final byte[] buffer = new byte[bufferSize];
+        final long length = segment.end - segment.start;
+
+        while (segment.received < length) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Download interrupted");
+            }
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, length - segment.received));
+            if (read < 0) {
+                throw new IOException("Connection closed before the end of the segment starting at byte "
+                        + segment.start);
+            }
+            writer.write(buffer, 0, read);
+            segment.received += read;
+        }
+    }
+
+    private void truncateToReceivedBytes(List<Segment> segments, List<Future<Void>> futures) {
+        this.segmentExecutor.shutdownNow();
+        boolean segmentsStopped = true;
+        for (final Future<Void> segmentFuture : futures) {
+            try {
+                segmentFuture.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                segmentsStopped = false;
+                break;
+            } catch (ExecutionException e) {
+                // already reported
+            }
+        }
+
+        long receivedBytes = 0;
+        for (final Segment segment : segments) {
+            receivedBytes = segment.start + segment.received;
+            if (receivedBytes < segment.end) {
+                break;
+            }
+        }
+
+        try {
+            this.targetFile.truncate(receivedBytes);
+            if (segmentsStopped) {
+                this.targetFile.endSegmentedWrite();
+            }
+        } catch (IOException e) {
+            s_logger.warn("Failed to truncate partial download", e);
+        }
+    }
+
+    private void closeInputStream() {
+        try {
+            this.is.close();
+        } catch (IOException e) {
+            // the rest of the response is not needed
+        }
+    }
+
+    private URLConnection getUrlConnection(String downloadUrlString, long rangeStart, long rangeEnd)
+            throws IOException {
         URL localUrl = new URL(downloadUrlString);
         URLConnection urlConnection = localUrl.openConnection();
         int connectTimeout = getConnectTimeout();
         int readTimeout = getPropReadTimeout();
         urlConnection.setConnectTimeout(connectTimeout);
         urlConnection.setReadTimeout(readTimeout);
+        if (rangeStart > 0 || rangeEnd >= 0) {
+            urlConnection.setRequestProperty("Range",
+                    "bytes=" + rangeStart + "-" + (rangeEnd >= 0 ? Long.toString(rangeEnd) : ""));
+        }
 
         int responseCode = ((HttpURLConnection) urlConnection).getResponseCode();
         if (responseCode == HttpURLConnection.HTTP_MOVED_TEMP || responseCode == HttpURLConnection.HTTP_MOVED_PERM
                 || responseCode == HttpURLConnection.HTTP_SEE_OTHER) {
             String newLocation = urlConnection.getHeaderField("Location");
             if (StringUtils.isNotEmpty(newLocation)) {
-                return getUrlConnection(newLocation);
+                return getUrlConnection(newLocation, rangeStart, rangeEnd);
             } else {
                 throw new KuraRuntimeException(KuraErrorCode.INVALID_PARAMETER);
             }
@@ -196,4 +388,21 @@ public class HttpDownloadCountingOutputStream extends GenericDownloadCountingOut
             throw new KuraConnectException(e, "Unsupported protocol!");
         }
     }
+
+    private interface SegmentWriter {
+
+        void write(byte[] b, int off, int len) throws IOException;
+    }
+
+    private static class Segment {
+
+        private final long start;
+        private final long end;
+        private volatile long received;
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -37,12 +37,7 @@ public class HashUtil {
             while ((bytesCount = fis.read(byteArray)) != -1) {
                 cript.update(byteArray, 0, bytesCount);
             }
-            byte[] encodedBytes = cript.digest();
-            StringBuilder sb = new StringBuilder();
-            for (byte encodedByte : encodedBytes) {
-                sb.append(Integer.toString((encodedByte & 0xff) + 0x100, 16).substring(1));
-            }
-            return sb.toString();
+            return toHexString(cript.digest());
         } catch (FileNotFoundException e) {
             throw new KuraException(KuraErrorCode.STORE_ERROR, null, e.getMessage());
         } catch (IOException e) {
@@ -56,4 +51,12 @@ public class HashUtil {
         }
     }
 
+    public static String toHexString(byte[] encodedBytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte encodedByte : encodedBytes) {
+            sb.append(Integer.toString((encodedByte & 0xff) + 0x100, 16).substring(1));
+        }
+        return sb.toString();
+    }
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -112,15 +112,28 @@ public abstract class BaseKeystoreService implements KeystoreService, Configurab
 
     protected abstract KeystoreInstance loadKeystore() throws KuraException;
 
+    /**
+     * Returns a keystore instance that can be modified and then stored with {@link #saveKeystore(KeystoreInstance)}.
+     * Implementations that share the instance returned by {@link #loadKeystore()} between the callers must return a
+     * copy.
+     */
+    protected KeystoreInstance loadKeystoreForUpdate() throws KuraException {
+        return loadKeystore();
+    }
+
     protected abstract void saveKeystore(KeystoreInstance keystore)
             throws IOException, KeyStoreException, NoSuchAlgorithmException, CertificateException;
 
     protected abstract String getCrlStorePath();
 
+    /**
+     * Returns a keystore that the caller is free to modify, obtained with {@link #loadKeystoreForUpdate()}, so that
+     * the instance shared by the implementations that cache it is never exposed.
+     */
     @Override
     public KeyStore getKeyStore() throws KuraException {
 
-        return loadKeystore().getKeystore();
+        return loadKeystoreForUpdate().getKeystore();
     }
 
     public void activate(ComponentContext context, Map<String, Object> properties) {
@@ -172,7 +185,7 @@ public abstract class BaseKeystoreService implements KeystoreService, Configurab
         if (isNull(alias) || alias.trim().isEmpty() || isNull(entry)) {
             throw new IllegalArgumentException("Input cannot be null or empty!");
         }
-        KeystoreInstance ks = loadKeystore();
+        KeystoreInstance ks = loadKeystoreForUpdate();
 
         final ProtectionParameter protectionParameter;
 
@@ -197,7 +210,7 @@ public abstract class BaseKeystoreService implements KeystoreService, Configurab
     public Map<String, Entry> getEntries() throws KuraException {
         Map<String, Entry> result = new HashMap<>();
 
-        KeyStore ks = getKeyStore();
+        KeyStore ks = loadKeystore().getKeystore();
         try {
             List<String> aliases = Collections.list(ks.aliases());
 
@@ -222,7 +235,7 @@ public abstract class BaseKeystoreService implements KeystoreService, Configurab
             return;
         }
 
-        KeystoreInstance ks = loadKeystore();
+        KeystoreInstance ks = loadKeystoreForUpdate();
         try {
             ks.getKeystore().deleteEntry(alias);
             saveKeystore(ks);
@@ -361,7 +374,7 @@ public abstract class BaseKeystoreService implements KeystoreService, Configurab
 
     @Override
     public List<String> getAliases() throws KuraException {
-        KeyStore ks = getKeyStore();
+        KeyStore ks = loadKeystore().getKeystore();
         try {
             return Collections.list(ks.aliases());
         } catch (GeneralSecurityException e) {
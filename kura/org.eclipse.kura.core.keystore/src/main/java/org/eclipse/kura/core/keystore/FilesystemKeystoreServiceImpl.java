@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2021, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2021, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -14,13 +14,17 @@ package org.eclipse.kura.core.keystore;
 
 import static org.eclipse.kura.core.keystore.FilesystemKeystoreServiceOptions.KEY_KEYSTORE_PASSWORD;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.security.KeyStore;
 import java.security.KeyStore.Entry;
 import java.security.KeyStore.PasswordProtection;
@@ -62,6 +66,8 @@ public class FilesystemKeystoreServiceImpl extends BaseKeystoreService {
     private ScheduledExecutorService selfUpdaterExecutor;
     private ScheduledFuture<?> selfUpdaterFuture;
 
+    private volatile CachedKeystore cachedKeystore;
+
     // ----------------------------------------------------------------
     //
     // Dependencies
@@ -148,14 +154,36 @@ public class FilesystemKeystoreServiceImpl extends BaseKeystoreService {
     @Override
     protected void saveKeystore(KeystoreInstance ks)
             throws IOException, KeyStoreException, NoSuchAlgorithmException, CertificateException {
-        try (FileOutputStream tsOutStream = new FileOutputStream(this.keystoreServiceOptions.getKeystorePath());) {
-            ks.getKeystore().store(tsOutStream, ks.getPassword());
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ks.getKeystore().store(out, ks.getPassword());
+        final byte[] content = out.toByteArray();
+
+        synchronized (this) {
+            final String path = this.keystoreServiceOptions.getKeystorePath();
+
+            try (FileOutputStream tsOutStream = new FileOutputStream(path);) {
+                tsOutStream.write(content);
+            }
+
+            this.cachedKeystore = new CachedKeystore(
+                    new KeystoreInstanceImpl(ks.getKeystore(), ks.getPassword(), path, content),
+                    Files.readAttributes(Paths.get(path), BasicFileAttributes.class));
         }
     }
 
+    /**
+     * Returns the cached keystore, shared between the callers, that is loaded again only if the keystore file has
+     * been modified. The returned instance must not be modified, {@link #loadKeystoreForUpdate()} returns a copy that
+     * can be.
+     */
     @Override
     protected KeystoreInstance loadKeystore() throws KuraException {
-        return loadKeystore(this.keystoreServiceOptions);
+        return getCachedKeystore().instance;
+    }
+
+    @Override
+    protected KeystoreInstance loadKeystoreForUpdate() throws KuraException {
+        return getCachedKeystore().instance.copy();
     }
 
     @Override
@@ -248,6 +276,8 @@ public class FilesystemKeystoreServiceImpl extends BaseKeystoreService {
             throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
         try (FileOutputStream tsOutStream = new FileOutputStream(((KeystoreInstanceImpl) ks).path)) {
             ks.getKeystore().store(tsOutStream, keyStorePassword);
+        } finally {
+            this.cachedKeystore = null;
         }
     }
 
@@ -305,6 +335,46 @@ public class FilesystemKeystoreServiceImpl extends BaseKeystoreService {
         }
     }
 
+    private CachedKeystore getCachedKeystore() throws KuraException {
+        final String path = this.keystoreServiceOptions.getKeystorePath();
+        final CachedKeystore cached = this.cachedKeystore;
+
+        if (cached != null && cached.isValid(path)) {
+            return cached;
+        }
+
+        return reloadKeystore(this.keystoreServiceOptions);
+    }
+
+    private synchronized CachedKeystore reloadKeystore(final FilesystemKeystoreServiceOptions options)
+            throws KuraException {
+        final String path = options.getKeystorePath();
+        final CachedKeystore previous = this.cachedKeystore;
+
+        if (previous != null && previous.isValid(path)) {
+            return previous;
+        }
+
+        // the attributes are read first, a modification that happens while loading will be detected by the next call
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(Paths.get(path), BasicFileAttributes.class);
+        } catch (final Exception e) {
+            throw new KuraException(KuraErrorCode.BAD_REQUEST, e, "Failed to get the KeyStore");
+        }
+
+        final CachedKeystore result = new CachedKeystore((KeystoreInstanceImpl) loadKeystore(options), attributes);
+        this.cachedKeystore = result;
+
+        if (previous != null && previous.instance.path.equals(path)
+                && !Arrays.equals(previous.instance.content, result.instance.content)) {
+            logger.info("Keystore {} has been modified", path);
+            postChangedEvent();
+        }
+
+        return result;
+    }
+
     private synchronized KeystoreInstance loadKeystore(final FilesystemKeystoreServiceOptions options)
             throws KuraException {
         final List<char[]> passwords = new ArrayList<>(2);
@@ -341,26 +411,21 @@ public class FilesystemKeystoreServiceImpl extends BaseKeystoreService {
             this.passwords = passwords;
         }
 
-        private KeyStore loadKeystore(final String path, final char[] password)
-                throws NoSuchAlgorithmException, CertificateException, IOException, KeyStoreException {
-            KeyStore ks = null;
-            try (InputStream tsReadStream = new FileInputStream(path)) {
-                ks = KeyStore.getInstance(KeyStore.getDefaultType());
-                char[] keystorePassword = password;
+        KeystoreInstance loadKeystore() throws KuraException {
 
-                ks.load(tsReadStream, keystorePassword);
+            final byte[] content;
+            try {
+                content = Files.readAllBytes(Paths.get(this.path));
+            } catch (final Exception e) {
+                throw new KuraException(KuraErrorCode.BAD_REQUEST, e, "Failed to get the KeyStore");
             }
 
-            return ks;
-        }
-
-        KeystoreInstance loadKeystore() throws KuraException {
-
             for (final char[] password : this.passwords) {
                 try {
-                    final KeyStore keyStore = loadKeystore(path, password);
+                    final KeyStore keyStore = KeystoreInstanceImpl.loadKeystore(KeyStore.getDefaultType(), content,
+                            password);
 
-                    return new KeystoreInstanceImpl(keyStore, password, this.path);
+                    return new KeystoreInstanceImpl(keyStore, password, this.path, content);
                 } catch (final Exception e) {
                     logger.debug("failed to load keystore", e);
                 }
@@ -376,11 +441,31 @@ public class FilesystemKeystoreServiceImpl extends BaseKeystoreService {
         private final KeyStore keystore;
         private final char[] password;
         private final String path;
+        private final byte[] content;
 
-        public KeystoreInstanceImpl(final KeyStore keystore, final char[] password, final String path) {
+        public KeystoreInstanceImpl(final KeyStore keystore, final char[] password, final String path,
+                final byte[] content) {
             this.keystore = keystore;
             this.password = password;
             this.path = path;
+            this.content = content;
+        }
+
+        private static KeyStore loadKeystore(final String type, final byte[] content, final char[] password)
+                throws NoSuchAlgorithmException, CertificateException, IOException, KeyStoreException {
+            final KeyStore ks = KeyStore.getInstance(type);
+            ks.load(new ByteArrayInputStream(content), password);
+
+            return ks;
+        }
+
+        KeystoreInstanceImpl copy() throws KuraException {
+            try {
+                return new KeystoreInstanceImpl(loadKeystore(this.keystore.getType(), this.content, this.password),
+                        this.password, this.path, this.content);
+            } catch (final Exception e) {
+                throw new KuraException(KuraErrorCode.BAD_REQUEST, e, "Failed to get the KeyStore");
+            }
         }
 
         @Override
@@ -394,4 +479,32 @@ public class FilesystemKeystoreServiceImpl extends BaseKeystoreService {
         }
 
     }
+
+    private static class CachedKeystore {
+
+        private final KeystoreInstanceImpl instance;
+        private final FileTime lastModifiedTime;
+        private final long size;
+
+        CachedKeystore(final KeystoreInstanceImpl instance, final BasicFileAttributes attributes) {
+            this.instance = instance;
+            this.lastModifiedTime = attributes.lastModifiedTime();
+            this.size = attributes.size();
+        }
+
+        boolean isValid(final String path) {
+            if (!this.instance.path.equals(path)) {
+                return false;
+            }
+
+            try {
+                final BasicFileAttributes attributes = Files.readAttributes(Paths.get(path),
+                        BasicFileAttributes.class);
+
+                return this.lastModifiedTime.equals(attributes.lastModifiedTime()) && this.size == attributes.size();
+            } catch (final IOException e) {
+                return false;
+            }
+        }
+    }
 }
\ No newline at end of file
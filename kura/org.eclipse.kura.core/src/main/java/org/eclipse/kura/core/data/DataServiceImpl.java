@@ -12,16 +12,22 @@
  *******************************************************************************/
 package org.eclipse.kura.core.data;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -39,7 +45,11 @@ import org.eclipse.kura.KuraStoreException;
 import org.eclipse.kura.KuraTooManyInflightMessagesException;
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.configuration.ConfigurationService;
+import org.eclipse.kura.core.data.DataServiceOptions.StoreType;
+import org.eclipse.kura.core.data.InFlightTracker.InFlightMessage;
+import org.eclipse.kura.core.data.InFlightTracker.TrackResult;
 import org.eclipse.kura.core.data.store.DbDataStore;
+import org.eclipse.kura.core.data.store.SegmentedFileDataStore;
 import org.eclipse.kura.core.internal.data.TokenBucket;
 import org.eclipse.kura.data.DataService;
 import org.eclipse.kura.data.DataTransportService;
@@ -88,7 +98,20 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
     private DataStore store;
 
-    private Map<DataTransportToken, Integer> inFlightMsgIds;
+    private InFlightTracker inFlightTracker = new InFlightTracker();
+
+    // Messages confirmed by the transport but not yet marked as confirmed in the store
+    private final Queue<InFlightMessage> confirmedMessages = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean confirmedFlushScheduled = new AtomicBoolean();
+
+    // A dedicated executor for updating the store with the confirmed messages
+    private ExecutorService confirmationExecutor;
+
+    // Messages published but not yet marked as published in the store, guarded by this
+    private final List<DataMessage> pendingPublished = new ArrayList<>();
+
+    // The highest priority (lowest value) of the messages stored since the current publish window has been fetched
+    private final AtomicInteger preemptingPriority = new AtomicInteger(Integer.MAX_VALUE);
 
     private ScheduledExecutorService congestionExecutor;
     private ScheduledFuture<?> congestionFuture;
@@ -131,14 +154,13 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         this.connectionMonitorExecutor = Executors.newSingleThreadScheduledExecutor();
         this.publisherExecutor = Executors.newSingleThreadExecutor();
+        this.confirmationExecutor = Executors.newSingleThreadExecutor();
         this.congestionExecutor = Executors.newSingleThreadScheduledExecutor();
 
         createThrottle();
         submitPublishingWork();
 
-        this.store = new DbDataStore(pid);
-
-        restartDbServiceTracker(this.dataServiceOptions.getDbServiceInstancePid());
+        createStore();
 
         this.dataServiceListeners = new DataServiceListenerS(componentContext);
 
@@ -150,6 +172,45 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         createAutoConnectStrategy();
     }
 
+    private void createStore() {
+        if (this.dataServiceOptions.getStoreType() == StoreType.FILE) {
+            this.store = new SegmentedFileDataStore(getStoreFileDirectory(),
+                    this.dataServiceOptions.getStoreFileSegmentSize());
+            startDbStore();
+            signalPublisher();
+        } else {
+            this.store = new DbDataStore(this.dataServiceOptions.getKuraServicePid());
+            updateStoreGroupCommit();
+            restartDbServiceTracker(this.dataServiceOptions.getDbServiceInstancePid());
+        }
+    }
+
+    private Path getStoreFileDirectory() {
+        final Optional<String> directory = this.dataServiceOptions.getStoreFileDirectory();
+        if (directory.isPresent()) {
+            return Paths.get(directory.get());
+        }
+        return this.componentContext.getBundleContext()
+                .getDataFile("data-store/" + this.dataServiceOptions.getKuraServicePid()).toPath();
+    }
+
+    private boolean isFileStoreChanged(DataServiceOptions oldOptions) {
+        return oldOptions.getStoreType() != this.dataServiceOptions.getStoreType()
+                || this.dataServiceOptions.getStoreType() == StoreType.FILE
+                        && (!oldOptions.getStoreFileDirectory().equals(this.dataServiceOptions.getStoreFileDirectory())
+                                || oldOptions.getStoreFileSegmentSize() != this.dataServiceOptions
+                                        .getStoreFileSegmentSize());
+    }
+
+    // The H2 based store can only be used once the H2DbService instance is attached, the file store once it has been
+    // successfully started
+    private boolean isStoreAvailable() {
+        if (this.store instanceof SegmentedFileDataStore) {
+            return ((SegmentedFileDataStore) this.store).isStarted();
+        }
+        return this.dbService != null;
+    }
+
     private void restartDbServiceTracker(String kuraServicePid) {
         stopDbServiceTracker();
         try {
@@ -191,6 +252,14 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         }
     }
 
+    private void updateStoreGroupCommit() {
+        if (this.store instanceof DbDataStore) {
+            ((DbDataStore) this.store).setGroupCommit(this.dataServiceOptions.isStoreGroupCommitEnabled(),
+                    this.dataServiceOptions.getStoreGroupCommitMaxBatchSize(),
+                    this.dataServiceOptions.getStoreGroupCommitMaxLinger());
+        }
+    }
+
     private void stopDbServiceTracker() {
         if (this.dbServiceTracker != null) {
             this.dbServiceTracker.close();
@@ -206,15 +275,14 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
             // The initial list of in-flight messages
             List<DataMessage> inFlightMsgs = this.store.allInFlightMessagesNoPayload();
 
-            // The map associating a DataTransportToken with a message ID
-            this.inFlightMsgIds = new ConcurrentHashMap<>();
+            this.inFlightTracker.clear();
 
             if (inFlightMsgs != null) {
                 for (DataMessage message : inFlightMsgs) {
 
                     DataTransportToken token = new DataTransportToken(message.getPublishedMessageId(),
                             message.getSessionId());
-                    this.inFlightMsgIds.put(token, message.getId());
+                    this.inFlightTracker.restore(token, message.getId(), message.getTopic());
 
                     logger.debug("Restored in-fligh messages from store. Topic: {}, ID: {}, MQTT message ID: {}",
                             new Object[] { message.getTopic(), message.getId(), message.getPublishedMessageId() });
@@ -230,15 +298,28 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         shutdownAutoConnectStrategy();
 
-        final String oldDbServicePid = this.dataServiceOptions.getDbServiceInstancePid();
+        final DataServiceOptions oldOptions = this.dataServiceOptions;
+        final String oldDbServicePid = oldOptions.getDbServiceInstancePid();
 
         this.dataServiceOptions = new DataServiceOptions(properties);
 
         createThrottle();
+        updateStoreGroupCommit();
 
         final String currentDbServicePid = this.dataServiceOptions.getDbServiceInstancePid();
 
-        if (oldDbServicePid.equals(currentDbServicePid)) {
+        if (isFileStoreChanged(oldOptions)) {
+            // the messages in the previous store are not migrated
+            logger.info("Data store type or location changed, switching store...");
+            disconnect();
+            stopDbServiceTracker();
+            this.dbService = null;
+            this.store.stop();
+            createStore();
+        } else if (this.dataServiceOptions.getStoreType() == StoreType.FILE) {
+            this.store.update(this.dataServiceOptions.getStoreHousekeeperInterval(),
+                    this.dataServiceOptions.getStorePurgeAge(), this.dataServiceOptions.getStoreCapacity());
+        } else if (oldDbServicePid.equals(currentDbServicePid)) {
             if (this.dbService != null) {
                 this.store.update(this.dataServiceOptions.getStoreHousekeeperInterval(),
                         this.dataServiceOptions.getStorePurgeAge(), this.dataServiceOptions.getStoreCapacity());
@@ -276,6 +357,17 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         this.dataTransportService.removeDataTransportListener(this);
 
+        // Complete the pending store updates for the confirmed messages
+        this.confirmationExecutor.shutdown();
+        try {
+            this.confirmationExecutor.awaitTermination(TRANSPORT_TASK_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Interrupted", e);
+        }
+        flushConfirmed();
+        logger.info("In-flight messages: {}", this.inFlightTracker.getMetrics());
+
         this.store.stop();
 
         stopDbServiceTracker();
@@ -369,21 +461,32 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
             if (this.dataServiceOptions.isPublishInFlightMessages()) {
                 logger.info("New session established. Unpublishing all in-flight messages. Disregarding the QoS level, "
                         + "this may cause duplicate messages.");
-                try {
-                    this.store.unpublishAllInFlighMessages();
-                    this.inFlightMsgIds.clear();
-                } catch (KuraStoreException e) {
-                    logger.error("Failed to unpublish in-flight messages", e);
+                synchronized (this) {
+                    flushPublished();
+                    flushConfirmed();
+                    try {
+                        this.store.unpublishAllInFlighMessages();
+                        this.inFlightTracker.clear();
+                    } catch (KuraStoreException e) {
+                        logger.error("Failed to unpublish in-flight messages", e);
+                    }
                 }
             } else {
                 logger.info("New session established. Dropping all in-flight messages.");
-                try {
-                    this.store.dropAllInFlightMessages();
-                    this.inFlightMsgIds.clear();
-                } catch (KuraStoreException e) {
-                    logger.error("Failed to drop in-flight messages", e);
+                synchronized (this) {
+                    flushPublished();
+                    flushConfirmed();
+                    try {
+                        this.store.dropAllInFlightMessages();
+                        this.inFlightTracker.clear();
+                    } catch (KuraStoreException e) {
+                        logger.error("Failed to drop in-flight messages", e);
+                    }
                 }
             }
+
+            // the publish window might contain messages whose state has changed
+            this.preemptingPriority.set(Integer.MIN_VALUE);
         }
 
         // Notify the listeners
@@ -404,6 +507,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
     public void onDisconnected() {
         logger.info("Notified disconnected");
         this.cloudConnectionStatusService.updateStatus(this, CloudConnectionStatusEnum.OFF);
+        logger.info("In-flight messages: {}", this.inFlightTracker.getMetrics());
 
         // Notify the listeners
         this.dataServiceListeners.onDisconnected();
@@ -449,39 +553,23 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
     }
 
     @Override
-    // It's very important that the publishInternal and messageConfirmed methods are
-    // synchronized
-    public synchronized void onMessageConfirmed(DataTransportToken token) {
+    // Called by the transport callback thread, must not contend with the publisher thread
+    public void onMessageConfirmed(DataTransportToken token) {
 
         logger.debug("Confirmed message with MQTT message ID: {} on session ID: {}", token.getMessageId(),
                 token.getSessionId());
 
-        Integer messageId = this.inFlightMsgIds.remove(token);
-        if (messageId == null) {
-            logger.info(
-                    "Confirmed message published with MQTT message ID: {} not tracked in the map of in-flight messages",
+        Optional<InFlightMessage> confirmedMessage = this.inFlightTracker.confirm(token);
+        if (!confirmedMessage.isPresent()) {
+            logger.debug(
+                    "Confirmed message published with MQTT message ID: {} not tracked yet in the map of in-flight messages",
                     token.getMessageId());
         } else {
-
-            DataMessage confirmedMessage = null;
-            try {
-                logger.info("Confirmed message ID: {} to store", messageId);
-                this.store.confirmed(messageId);
-                confirmedMessage = this.store.get(messageId);
-            } catch (KuraStoreException e) {
-                logger.error("Cannot confirm message to store", e);
-            }
-
-            // Notify the listeners
-            if (confirmedMessage != null) {
-                String topic = confirmedMessage.getTopic();
-                this.dataServiceListeners.onMessageConfirmed(messageId, topic);
-            } else {
-                logger.error("Confirmed Message with ID {} could not be loaded from the DataStore.", messageId);
-            }
+            this.confirmedMessages.add(confirmedMessage.get());
+            scheduleConfirmedFlush();
         }
 
-        if (this.inFlightMsgIds.size() < this.dataServiceOptions.getMaxInFlightMessages()) {
+        if (this.inFlightTracker.size() < this.dataServiceOptions.getMaxInFlightMessages()) {
             handleInFlightDecongestion();
         }
 
@@ -491,7 +579,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
     @Override
     public void connect() throws KuraConnectException {
         shutdownAutoConnectStrategy();
-        if (this.dbService == null) {
+        if (!isStoreAvailable()) {
             throw new KuraConnectException("H2DbService instance not attached, not connecting");
         }
 
@@ -543,6 +631,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         DataMessage dataMsg = this.store.store(topic, payload, qos, retain, priority);
         logger.info("Stored message on topic: {}, priority: {}", topic, priority);
 
+        this.preemptingPriority.accumulateAndGet(priority, Math::min);
         signalPublisher();
 
         return dataMsg.getId();
@@ -644,7 +733,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
                             + DataServiceImpl.this.dataServiceOptions.getKuraServicePid());
                     boolean connected = false;
                     try {
-                        if (DataServiceImpl.this.dbService == null) {
+                        if (!isStoreAvailable()) {
                             logger.warn("H2DbService instance not attached, not connecting");
                             return;
                         }
@@ -741,8 +830,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
         this.publisherExecutor.execute(new PublishManager());
     }
 
-    // It's very important that the publishInternal and messageConfirmed methods are
-    // synchronized
+    // Synchronized with flushPublished, the in-flight tracker does not need the lock
     private synchronized void publishInternal(DataMessage message) throws KuraException {
 
         String topic = message.getTopic();
@@ -753,23 +841,100 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
         logger.debug("Publishing message with ID: {} on topic: {}, priority: {}", msgId, topic, message.getPriority());
 
+        this.inFlightTracker.beginPublish();
         DataTransportToken token = DataServiceImpl.this.dataTransportService.publish(topic, payload, qos, retain);
 
         if (token == null) {
-            DataServiceImpl.this.store.published(msgId);
+            this.pendingPublished.add(new DataMessage.Builder(msgId).build());
             logger.debug("Published message with ID: {}", msgId);
         } else {
 
-            // Check if the token is already tracked in the map (in which case we are in
-            // trouble)
-            Integer trackedMsgId = DataServiceImpl.this.inFlightMsgIds.get(token);
-            if (trackedMsgId != null) {
+            final TrackResult trackResult = this.inFlightTracker.track(token, msgId, topic);
+
+            this.pendingPublished.add(new DataMessage.Builder(msgId).withPublishedMessageId(token.getMessageId())
+                    .withSessionId(token.getSessionId()).build());
+            logger.debug("Published message with ID: {} and MQTT message ID: {}", msgId, token.getMessageId());
+
+            if (trackResult == TrackResult.DUPLICATE) {
+                // The token is already tracked, in which case we are in trouble
                 logger.error("Token already tracked: {} - {}", token.getSessionId(), token.getMessageId());
+            } else if (trackResult == TrackResult.CONFIRMED) {
+                // The confirmation has been received before publish returned
+                this.confirmedMessages.add(new InFlightMessage(msgId, topic));
+                scheduleConfirmedFlush();
             }
+        }
+    }
 
-            DataServiceImpl.this.inFlightMsgIds.put(token, msgId);
-            DataServiceImpl.this.store.published(msgId, token.getMessageId(), token.getSessionId());
-            logger.debug("Published message with ID: {} and MQTT message ID: {}", msgId, token.getMessageId());
+    // Marks the messages published since the last call as published in the store, with a single transaction
+    private synchronized void flushPublished() {
+        if (this.pendingPublished.isEmpty()) {
+            return;
+        }
+
+        try {
+            this.store.published(new ArrayList<>(this.pendingPublished));
+            logger.debug("Marked {} messages as published", this.pendingPublished.size());
+        } catch (KuraStoreException e) {
+            logger.error("Cannot mark messages as published in store", e);
+        } finally {
+            this.pendingPublished.clear();
+        }
+    }
+
+    private void scheduleConfirmedFlush() {
+        if (!this.confirmedFlushScheduled.compareAndSet(false, true)) {
+            // the scheduled flush will pick up this confirmation too
+            return;
+        }
+
+        try {
+            this.confirmationExecutor.execute(() -> {
+                this.confirmedFlushScheduled.set(false);
+                flushConfirmed();
+            });
+        } catch (RejectedExecutionException e) {
+            this.confirmedFlushScheduled.set(false);
+            flushConfirmed();
+        }
+    }
+
+    // Marks the messages confirmed since the last call as confirmed in the store, with a single update,
+    // then notifies the listeners
+    private void flushConfirmed() {
+        final List<InFlightMessage> confirmed = new ArrayList<>();
+
+        synchronized (this) {
+            InFlightMessage message;
+            while ((message = this.confirmedMessages.poll()) != null) {
+                confirmed.add(message);
+            }
+
+            if (confirmed.isEmpty()) {
+                return;
+            }
+
+            // A confirmed message whose published mark is still pending would be republished after a restart,
+            // the published marks must reach the store first
+            flushPublished();
+
+            final List<Integer> ids = new ArrayList<>(confirmed.size());
+            for (final InFlightMessage m : confirmed) {
+                ids.add(m.getMessageId());
+            }
+
+            try {
+                this.store.confirmed(ids);
+                logger.debug("Confirmed {} messages to store", ids.size());
+            } catch (KuraStoreException e) {
+                logger.error("Cannot confirm messages to store", e);
+                return;
+            }
+        }
+
+        // Notify the listeners
+        for (final InFlightMessage m : confirmed) {
+            this.dataServiceListeners.onMessageConfirmed(m.getMessageId(), m.getTopic());
         }
     }
 
@@ -812,6 +977,9 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
     private final class PublishManager implements Runnable {
 
+        // The prefetched unpublished messages, only accessed by the publisher thread
+        private final Deque<DataMessage> window = new ArrayDeque<>();
+
         @Override
         public void run() {
             Thread.currentThread().setName("DataServiceImpl:Submit");
@@ -821,7 +989,7 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
                 if (DataServiceImpl.this.dataTransportService.isConnected()) {
                     try {
-                        DataMessage message = DataServiceImpl.this.store.getNextMessage();
+                        DataMessage message = nextMessage();
 
                         if (message != null) {
                             checkInFlightMessages(message);
@@ -834,29 +1002,59 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
                                 publishMessageUnbound(message);
                                 messagePublished = true;
                             }
+
+                            if (messagePublished) {
+                                this.window.poll();
+                            }
                         }
                     } catch (KuraNotConnectedException e) {
                         logger.info("DataPublisherService is not connected");
+                        this.window.clear();
                     } catch (KuraTooManyInflightMessagesException e) {
                         logger.info("Too many in-flight messages");
                         handleInFlightCongestion();
                     } catch (Exception e) {
                         logger.error("Probably an unrecoverable exception", e);
+                        this.window.clear();
                     }
                 } else {
                     logger.info("DataPublisherService not connected");
+                    this.window.clear();
                 }
 
                 if (!messagePublished) {
+                    flushPublished();
                     suspendPublisher(sleepingTime, TimeUnit.NANOSECONDS);
                 }
             }
+            flushPublished();
             logger.debug("Exited publisher loop.");
         }
 
+        private DataMessage nextMessage() throws KuraStoreException {
+            final DataMessage head = this.window.peek();
+
+            if (head != null) {
+                if (DataServiceImpl.this.preemptingPriority.get() >= head.getPriority()) {
+                    return head;
+                }
+                logger.debug("Publish window preempted by a message with higher priority");
+                this.window.clear();
+            }
+
+            // the messages of the previous window must be marked as published before fetching the next one
+            flushPublished();
+
+            DataServiceImpl.this.preemptingPriority.set(Integer.MAX_VALUE);
+            this.window.addAll(DataServiceImpl.this.store
+                    .getNextMessages(DataServiceImpl.this.dataServiceOptions.getStorePrefetchWindowSize()));
+
+            return this.window.peek();
+        }
+
         private void checkInFlightMessages(DataMessage message) throws KuraTooManyInflightMessagesException {
-            if (message.getQos() > 0 && DataServiceImpl.this.inFlightMsgIds
-                    .size() >= DataServiceImpl.this.dataServiceOptions.getMaxInFlightMessages()) {
+            if (message.getQos() > 0 && DataServiceImpl.this.inFlightTracker
+                    .isLimitReached(DataServiceImpl.this.dataServiceOptions.getMaxInFlightMessages())) {
                 logger.warn("The configured maximum number of in-flight messages has been reached");
                 throw new KuraTooManyInflightMessagesException("Too many in-flight messages");
             }
@@ -950,7 +1148,27 @@ public class DataServiceImpl implements DataService, DataTransportListener, Conf
 
     @Override
     public boolean hasInFlightMessages() {
-        return !this.inFlightMsgIds.isEmpty();
+        return !this.inFlightTracker.isEmpty();
+    }
+
+    public long getConfirmedMessageCount() {
+        return this.inFlightTracker.getMetrics().getConfirmed();
+    }
+
+    public double getAverageConfirmationLatencyMillis() {
+        return this.inFlightTracker.getMetrics().getAverageConfirmationLatencyMillis();
+    }
+
+    public double getMaxConfirmationLatencyMillis() {
+        return this.inFlightTracker.getMetrics().getMaxConfirmationLatencyMillis();
+    }
+
+    public long getInFlightLimitReachedCount() {
+        return this.inFlightTracker.getMetrics().getLimitReached();
+    }
+
+    public long getDiscardedConfirmationCount() {
+        return this.inFlightTracker.getMetrics().getDiscardedConfirmations();
     }
 
     @Override
@@ -32,10 +32,17 @@ public class DataServiceOptions {
     private static final String AUTOCONNECT_PROP_NAME = "connect.auto-on-startup";
     private static final String CONNECT_DELAY_PROP_NAME = "connect.retry-interval";
     private static final String DISCONNECT_DELAY_PROP_NAME = "disconnect.quiesce-timeout";
+    private static final String STORE_TYPE_PROP_NAME = "store.type";
+    private static final String STORE_FILE_DIRECTORY_PROP_NAME = "store.file.directory";
+    private static final String STORE_FILE_SEGMENT_SIZE_PROP_NAME = "store.file.segment-size";
     private static final String STORE_DB_SERVICE_INSTANCE_PROP_NAME = "store.db.service.pid";
     private static final String STORE_HOUSEKEEPER_INTERVAL_PROP_NAME = "store.housekeeper-interval";
     private static final String STORE_PURGE_AGE_PROP_NAME = "store.purge-age";
     private static final String STORE_CAPACITY_PROP_NAME = "store.capacity";
+    private static final String STORE_GROUP_COMMIT_ENABLE_PROP_NAME = "store.group-commit.enable";
+    private static final String STORE_GROUP_COMMIT_MAX_BATCH_SIZE_PROP_NAME = "store.group-commit.max-batch-size";
+    private static final String STORE_GROUP_COMMIT_MAX_LINGER_PROP_NAME = "store.group-commit.max-linger";
+    private static final String STORE_PREFETCH_WINDOW_SIZE_PROP_NAME = "store.prefetch-window-size";
     private static final String REPUBLISH_IN_FLIGHT_MSGS_PROP_NAME = "in-flight-messages.republish-on-new-session";
     private static final String MAX_IN_FLIGHT_MSGS_PROP_NAME = "in-flight-messages.max-number";
     private static final String IN_FLIGHT_MSGS_CONGESTION_TIMEOUT_PROP_NAME = "in-flight-messages.congestion-timeout";
@@ -54,10 +61,17 @@ public class DataServiceOptions {
     private static final boolean AUTOCONNECT_PROP_DEFAULT = false;
     private static final int CONNECT_DELAY_DEFAULT = 60;
     private static final int DISCONNECT_DELAY_DEFAULT = 10;
+    private static final String STORE_TYPE_DEFAULT = StoreType.H2DB.name();
+    private static final String STORE_FILE_DIRECTORY_DEFAULT = "";
+    private static final int STORE_FILE_SEGMENT_SIZE_DEFAULT = 1024;
     private static final String DB_SERVICE_INSTANCE_DEFAULT = H2DbService.DEFAULT_INSTANCE_PID;
     private static final int STORE_HOUSEKEEPER_INTERVAL_DEFAULT = 900;
     private static final int STORE_PURGE_AGE_DEFAULT = 60;
     private static final int STORE_CAPACITY_DEFAULT = 10000;
+    private static final boolean STORE_GROUP_COMMIT_ENABLE_DEFAULT = false;
+    private static final int STORE_GROUP_COMMIT_MAX_BATCH_SIZE_DEFAULT = 100;
+    private static final int STORE_GROUP_COMMIT_MAX_LINGER_DEFAULT = 5;
+    private static final int STORE_PREFETCH_WINDOW_SIZE_DEFAULT = 20;
     private static final boolean REPUBLISH_IN_FLIGHT_MSGS_DEFAULT = true;
     private static final int MAX_IN_FLIGHT_MSGS_DEFAULT = 9;
     private static final int IN_FLIGHT_MSGS_CONGESTION_TIMEOUT_DEFAULT = 0;
@@ -76,6 +90,11 @@ public class DataServiceOptions {
 
     private final Map<String, Object> properties;
 
+    enum StoreType {
+        H2DB,
+        FILE
+    }
+
     DataServiceOptions(Map<String, Object> properties) {
         requireNonNull(properties, "Required not null");
         this.properties = Collections.unmodifiableMap(properties);
@@ -94,6 +113,26 @@ public class DataServiceOptions {
         return (int) this.properties.getOrDefault(STORE_CAPACITY_PROP_NAME, STORE_CAPACITY_DEFAULT);
     }
 
+    boolean isStoreGroupCommitEnabled() {
+        return (boolean) this.properties.getOrDefault(STORE_GROUP_COMMIT_ENABLE_PROP_NAME,
+                STORE_GROUP_COMMIT_ENABLE_DEFAULT);
+    }
+
+    int getStoreGroupCommitMaxBatchSize() {
+        return (int) this.properties.getOrDefault(STORE_GROUP_COMMIT_MAX_BATCH_SIZE_PROP_NAME,
+                STORE_GROUP_COMMIT_MAX_BATCH_SIZE_DEFAULT);
+    }
+
+    int getStoreGroupCommitMaxLinger() {
+        return (int) this.properties.getOrDefault(STORE_GROUP_COMMIT_MAX_LINGER_PROP_NAME,
+                STORE_GROUP_COMMIT_MAX_LINGER_DEFAULT);
+    }
+
+    int getStorePrefetchWindowSize() {
+        return Math.max(1, (int) this.properties.getOrDefault(STORE_PREFETCH_WINDOW_SIZE_PROP_NAME,
+                STORE_PREFETCH_WINDOW_SIZE_DEFAULT));
+    }
+
     boolean isPublishInFlightMessages() {
         return (boolean) this.properties.getOrDefault(REPUBLISH_IN_FLIGHT_MSGS_PROP_NAME,
                 REPUBLISH_IN_FLIGHT_MSGS_DEFAULT);
@@ -154,6 +193,33 @@ public class DataServiceOptions {
         return timeUnit.toNanos(1);
     }
 
+    StoreType getStoreType() {
+        final String storeType = (String) this.properties.getOrDefault(STORE_TYPE_PROP_NAME, STORE_TYPE_DEFAULT);
+        try {
+            return StoreType.valueOf(storeType);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown store type {}, using {}", storeType, STORE_TYPE_DEFAULT);
+            return StoreType.valueOf(STORE_TYPE_DEFAULT);
+        }
+    }
+
+    Optional<String> getStoreFileDirectory() {
+        final String directory = (String) this.properties.getOrDefault(STORE_FILE_DIRECTORY_PROP_NAME,
+                STORE_FILE_DIRECTORY_DEFAULT);
+        if (directory == null || directory.trim().isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(directory.trim());
+    }
+
+    /**
+     * @return the size of the data store segment files, in bytes
+     */
+    int getStoreFileSegmentSize() {
+        return Math.max(1, (int) this.properties.getOrDefault(STORE_FILE_SEGMENT_SIZE_PROP_NAME,
+                STORE_FILE_SEGMENT_SIZE_DEFAULT)) * 1024;
+    }
+
     String getDbServiceInstancePid() {
         return (String) this.properties.getOrDefault(STORE_DB_SERVICE_INSTANCE_PROP_NAME, DB_SERVICE_INSTANCE_DEFAULT);
     }
@@ -72,6 +72,17 @@ public interface DataStore {
      */
     public void published(int msgId) throws KuraStoreException;
 
+    /**
+     * Acknowledges the publication of several DataMessages in a single transaction.
+     * For each message in the list, the message ID identifies the stored message. If the session ID is not null
+     * the message is associated to the protocol (e.g. MQTT) message ID as in
+     * {@link #published(int, int, String)}, otherwise it is handled as in {@link #published(int)}.
+     *
+     * @param messages
+     * @throws KuraStoreException
+     */
+    public void published(List<DataMessage> messages) throws KuraStoreException;
+
     /**
      * Acknowledges the delivery of the DataMessage published with the given
      * protocol (e.g. MQTT) message ID. This method is only called for messages
@@ -82,6 +93,14 @@ public interface DataStore {
      */
     public void confirmed(int msgId) throws KuraStoreException;
 
+    /**
+     * Acknowledges the delivery of several DataMessages with a single update.
+     *
+     * @param msgIds
+     * @throws KuraStoreException
+     */
+    public void confirmed(List<Integer> msgIds) throws KuraStoreException;
+
     /**
      * Gets the next unpublished message. Messages with higher
      * priority (0 is the highest priority) are returned first. Within each
@@ -92,6 +111,17 @@ public interface DataStore {
      */
     public DataMessage getNextMessage() throws KuraStoreException;
 
+    /**
+     * Gets up to {@code count} unpublished messages with a single query. The messages are returned in the same order
+     * in which they would be returned by subsequent {@link #getNextMessage()} calls.
+     *
+     * @param count
+     *            the maximum number of messages to be returned
+     * @return
+     * @throws KuraStoreException
+     */
+    public List<DataMessage> getNextMessages(int count) throws KuraStoreException;
+
     /**
      * Returns a message from the DataStore by its message id.
      *
@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.kura.data.DataTransportToken;
+
+/**
+ * Tracks the messages published with QoS > 0 that have not been confirmed yet, keyed by the
+ * (session ID, protocol message ID) pair of their {@link DataTransportToken}.
+ * <p>
+ * Messages are tracked by the publisher thread and untracked by the transport callback thread without any locking,
+ * the number of in-flight messages is kept in an atomic counter so that it can be checked on every publish without
+ * walking the map.
+ * <p>
+ * The token of a message is only known once the transport returns from the publish call, so the confirmation can be
+ * received before the message is tracked. Such a confirmation is parked in the map and matched when the message is
+ * tracked, both operations update the entry of the token atomically. A parked confirmation only matches the message
+ * whose publication was in progress when it has been received, see {@link #beginPublish()}: stray or duplicate
+ * confirmations are discarded when their token is reused and at most {@value #MAX_PARKED_CONFIRMATIONS} of them are
+ * kept.
+ */
+class InFlightTracker {
+
+    static final int MAX_PARKED_CONFIRMATIONS = 16;
+
+    private final Map<DataTransportToken, InFlightMessage> messages = new ConcurrentHashMap<>();
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicInteger parkedCount = new AtomicInteger();
+
+    // orders the publications and the parked confirmations
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile long publishSequence;
+
+    private final LongAdder confirmedCount = new LongAdder();
+    private final LongAdder confirmationLatencyTotal = new LongAdder();
+    private final AtomicLong confirmationLatencyMax = new AtomicLong();
+    private final LongAdder limitReachedCount = new LongAdder();
+    private final LongAdder duplicateTokenCount = new LongAdder();
+    private final LongAdder discardedConfirmationCount = new LongAdder();
+
+    /**
+     * Must be called by the publisher thread before publishing a message that will be tracked, the confirmations
+     * received from now on can be matched by the next {@link #track(DataTransportToken, int, String)} call.
+     */
+    void beginPublish() {
+        this.publishSequence = this.sequence.incrementAndGet();
+    }
+
+    /**
+     * Starts tracking a published message.
+     *
+     * @return {@link TrackResult#CONFIRMED} if the confirmation of the message has already been received, in which
+     *         case the message is not tracked, or {@link TrackResult#DUPLICATE} if the token was already tracked, in
+     *         which case the previous message is replaced
+     */
+    TrackResult track(DataTransportToken token, int messageId, String topic) {
+        final TrackResult[] result = { TrackResult.TRACKED };
+        final boolean[] unparked = new boolean[1];
+        final long currentPublishSequence = this.publishSequence;
+
+        this.messages.compute(token, (k, previous) -> {
+            if (previous instanceof ParkedConfirmation) {
+                unparked[0] = true;
+                if (((ParkedConfirmation) previous).sequence > currentPublishSequence) {
+                    result[0] = TrackResult.CONFIRMED;
+                    return null;
+                }
+                // received before this message has been published, it belongs to a previous use of the token
+                this.discardedConfirmationCount.increment();
+            } else if (previous != null) {
+                result[0] = TrackResult.DUPLICATE;
+            }
+            return new InFlightMessage(messageId, topic, System.nanoTime());
+        });
+
+        if (unparked[0]) {
+            this.parkedCount.decrementAndGet();
+        }
+
+        if (result[0] == TrackResult.CONFIRMED) {
+            this.confirmedCount.increment();
+        } else if (result[0] == TrackResult.DUPLICATE) {
+            this.duplicateTokenCount.increment();
+        } else {
+            this.count.incrementAndGet();
+        }
+        return result[0];
+    }
+
+    /**
+     * Restores a message which was in-flight before a restart, the confirmation latency of restored messages is not
+     * recorded.
+     */
+    void restore(DataTransportToken token, int messageId, String topic) {
+        final InFlightMessage previous = this.messages.put(token, new InFlightMessage(messageId, topic, 0));
+        if (previous instanceof ParkedConfirmation) {
+            this.parkedCount.decrementAndGet();
+        }
+        if (previous == null || previous instanceof ParkedConfirmation) {
+            this.count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Stops tracking the message published with the given token. If the token is not tracked yet the confirmation is
+     * parked until the message is tracked, unless {@value #MAX_PARKED_CONFIRMATIONS} confirmations are already parked.
+     *
+     * @return the confirmed message, or an empty optional if the token is not tracked
+     */
+    Optional<InFlightMessage> confirm(DataTransportToken token) {
+        final InFlightMessage[] confirmed = new InFlightMessage[1];
+        final boolean[] parked = new boolean[1];
+
+        if (this.parkedCount.get() >= MAX_PARKED_CONFIRMATIONS) {
+            discardStaleParkedConfirmations();
+        }
+
+        this.messages.compute(token, (k, message) -> {
+            if (message instanceof ParkedConfirmation) {
+                // a duplicate confirmation, the parked one is refreshed
+                return new ParkedConfirmation(this.sequence.incrementAndGet());
+            }
+            if (message == null) {
+                if (this.parkedCount.get() >= MAX_PARKED_CONFIRMATIONS) {
+                    this.discardedConfirmationCount.increment();
+                    return null;
+                }
+                parked[0] = true;
+                return new ParkedConfirmation(this.sequence.incrementAndGet());
+            }
+            confirmed[0] = message;
+            return null;
+        });
+
+        if (parked[0]) {
+            this.parkedCount.incrementAndGet();
+        }
+
+        final InFlightMessage message = confirmed[0];
+        if (message == null) {
+            return Optional.empty();
+        }
+        this.count.decrementAndGet();
+
+        if (message.publishedOn != 0) {
+            final long latency = System.nanoTime() - message.publishedOn;
+            this.confirmedCount.increment();
+            this.confirmationLatencyTotal.add(latency);
+            this.confirmationLatencyMax.accumulateAndGet(latency, Math::max);
+        }
+
+        return Optional.of(message);
+    }
+
+    /**
+     * Checks if a new message can be published without exceeding the given limit. Only the publisher thread adds
+     * messages, so a successful check cannot be invalidated by a concurrent confirmation.
+     */
+    boolean isLimitReached(int maxInFlightMessages) {
+        if (this.count.get() >= maxInFlightMessages) {
+            this.limitReachedCount.increment();
+            return true;
+        }
+        return false;
+    }
+
+    void clear() {
+        for (final DataTransportToken token : this.messages.keySet()) {
+            final InFlightMessage message = this.messages.remove(token);
+            if (message instanceof ParkedConfirmation) {
+                this.parkedCount.decrementAndGet();
+            } else if (message != null) {
+                this.count.decrementAndGet();
+            }
+        }
+    }
+
+    // Removes the confirmations parked before the current publication started, they cannot match any message
+    private void discardStaleParkedConfirmations() {
+        final long currentPublishSequence = this.publishSequence;
+
+        for (final Map.Entry<DataTransportToken, InFlightMessage> entry : this.messages.entrySet()) {
+            final InFlightMessage message = entry.getValue();
+            if (message instanceof ParkedConfirmation && ((ParkedConfirmation) message).sequence < currentPublishSequence
+                    && this.messages.remove(entry.getKey(), message)) {
+                this.parkedCount.decrementAndGet();
+                this.discardedConfirmationCount.increment();
+            }
+        }
+    }
+
+    int getParkedConfirmations() {
+        return this.parkedCount.get();
+    }
+
+    int size() {
+        return this.count.get();
+    }
+
+    boolean isEmpty() {
+        return this.count.get() == 0;
+    }
+
+    Optional<Integer> getMessageId(DataTransportToken token) {
+        return Optional.ofNullable(this.messages.get(token)).filter(m -> !(m instanceof ParkedConfirmation))
+                .map(InFlightMessage::getMessageId);
+    }
+
+    Metrics getMetrics() {
+        return new Metrics(this.count.get(), this.confirmedCount.sum(), this.confirmationLatencyTotal.sum(),
+                this.confirmationLatencyMax.get(), this.limitReachedCount.sum(), this.duplicateTokenCount.sum(),
+                this.discardedConfirmationCount.sum());
+    }
+
+    enum TrackResult {
+        TRACKED,
+        DUPLICATE,
+        CONFIRMED
+    }
+
+    static class InFlightMessage {
+
+        private final int messageId;
+        private final String topic;
+        private final long publishedOn;
+
+        InFlightMessage(int messageId, String topic) {
+            this(messageId, topic, 0);
+        }
+
+        InFlightMessage(int messageId, String topic, long publishedOn) {
+            this.messageId = messageId;
+            this.topic = topic;
+            this.publishedOn = publishedOn;
+        }
+
+        int getMessageId() {
+            return this.messageId;
+        }
+
+        String getTopic() {
+            return this.topic;
+        }
+    }
+
+    // A confirmation received before the message has been tracked
+    private static final class ParkedConfirmation extends InFlightMessage {
+
+        private final long sequence;
+
+        ParkedConfirmation(long sequence) {
+            super(-1, null, 0);
+            this.sequence = sequence;
+        }
+    }
+
+    static final class Metrics {
+
+        private final int inFlight;
+        private final long confirmed;
+        private final long latencyTotalNanos;
+        private final long latencyMaxNanos;
+        private final long limitReached;
+        private final long duplicateTokens;
+        private final long discardedConfirmations;
+
+        private Metrics(int inFlight, long confirmed, long latencyTotalNanos, long latencyMaxNanos, long limitReached,
+                long duplicateTokens, long discardedConfirmations) {
+            this.inFlight = inFlight;
+            this.confirmed = confirmed;
+            this.latencyTotalNanos = latencyTotalNanos;
+            this.latencyMaxNanos = latencyMaxNanos;
+            this.limitReached = limitReached;
+            this.duplicateTokens = duplicateTokens;
+            this.discardedConfirmations = discardedConfirmations;
+        }
+
+        int getInFlight() {
+            return this.inFlight;
+        }
+
+        long getConfirmed() {
+            return this.confirmed;
+        }
+
+        double getAverageConfirmationLatencyMillis() {
+            return this.confirmed == 0 ? 0 : this.latencyTotalNanos / 1e6 / this.confirmed;
+        }
+
+        double getMaxConfirmationLatencyMillis() {
+            return this.latencyMaxNanos / 1e6;
+        }
+
+        /**
+         * @return how many times the publisher found the in-flight window full
+         */
+        long getLimitReached() {
+            return this.limitReached;
+        }
+
+        long getDuplicateTokens() {
+            return this.duplicateTokens;
+        }
+
+        /**
+         * @return the number of confirmations that did not match any tracked message
+         */
+        long getDiscardedConfirmations() {
+            return this.discardedConfirmations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "in-flight: %d, confirmed: %d, confirmation latency avg: %.2f ms, max: %.2f ms, "
+                            + "in-flight limit reached: %d, duplicate tokens: %d, discarded confirmations: %d",
+                    this.inFlight, this.confirmed, getAverageConfirmationLatencyMillis(),
+                    getMaxConfirmationLatencyMillis(), this.limitReached, this.duplicateTokens,
+                    this.discardedConfirmations);
+        }
+    }
+}
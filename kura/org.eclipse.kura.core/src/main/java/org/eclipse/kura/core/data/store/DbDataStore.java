@@ -79,6 +79,11 @@ public class DbDataStore implements DataStore {
     private ScheduledFuture<?> houseKeeperTask;
     private int capacity;
 
+    private boolean groupCommitEnabled;
+    private int groupCommitMaxBatchSize = 1;
+    private long groupCommitMaxLinger;
+    private volatile GroupCommitter groupCommitter;
+
     private final String tableName;
     private final String sanitizedTableName;
 
@@ -89,9 +94,11 @@ public class DbDataStore implements DataStore {
     private final String sqlStore;
     private final String sqlGetMessage;
     private final String sqlGetNextMessage;
+    private final String sqlGetNextMessages;
     private final String sqlSetPublished;
     private final String sqlSetPublished2;
     private final String sqlSetConfirmed;
+    private final String sqlSetConfirmedAll;
     private final String sqlAllUnpublishedMessages;
     private final String sqlAllInFlightMessages;
     private final String sqlAllDroppedInFlightMessages;
@@ -133,11 +140,17 @@ public class DbDataStore implements DataStore {
                 + this.sanitizedTableName + " AS a JOIN (SELECT id, publishedOn FROM " + this.sanitizedTableName
                 + " ORDER BY publishedOn ASC NULLS FIRST, priority ASC, createdOn ASC LIMIT 1) AS b "
                 + "WHERE a.id = b.id AND b.publishedOn IS NULL;";
+        this.sqlGetNextMessages = "SELECT a.id, a.topic, a.qos, a.retain, a.createdOn, a.publishedOn, "
+                + "a.publishedMessageId, a.confirmedOn, a.smallPayload, a.largePayload, a.priority, a.sessionId, a.droppedOn FROM "
+                + this.sanitizedTableName + " AS a JOIN (SELECT id, publishedOn FROM " + this.sanitizedTableName
+                + " ORDER BY publishedOn ASC NULLS FIRST, priority ASC, createdOn ASC LIMIT ?) AS b "
+                + "WHERE a.id = b.id AND b.publishedOn IS NULL ORDER BY a.priority ASC, a.createdOn ASC, a.id ASC;";
 
         this.sqlSetPublished = UPDATE + this.sanitizedTableName
                 + " SET publishedOn = ?, publishedMessageId = ?, sessionId = ? WHERE id = ?;";
         this.sqlSetPublished2 = UPDATE + this.sanitizedTableName + " SET publishedOn = ? WHERE id = ?;";
         this.sqlSetConfirmed = UPDATE + this.sanitizedTableName + " SET confirmedOn = ? WHERE id = ?;";
+        this.sqlSetConfirmedAll = UPDATE + this.sanitizedTableName + " SET confirmedOn = ? WHERE id = ANY(?);";
         this.sqlAllUnpublishedMessages = SELECT_MESSAGE_METADATA_FROM + this.sanitizedTableName
                 + " WHERE publishedOn IS NULL ORDER BY priority ASC, createdOn ASC;";
         this.sqlAllInFlightMessages = SELECT_MESSAGE_METADATA_FROM + this.sanitizedTableName
@@ -184,17 +197,78 @@ public class DbDataStore implements DataStore {
         //
         // Set up the schema tables required by the DataStore
         update(houseKeeperInterval, purgeAge, capacity);
+
+        restartGroupCommitter();
     }
 
     @Override
-    public synchronized void stop() {
-        logger.info("Canceling the Housekeeper Task...");
-        if (this.houseKeeperTask != null) {
-            this.houseKeeperTask.cancel(true);
-            this.houseKeeperExecutor.shutdownNow();
-            this.houseKeeperTask = null;
+    public void stop() {
+        final GroupCommitter committer;
+
+        synchronized (this) {
+            logger.info("Canceling the Housekeeper Task...");
+            if (this.houseKeeperTask != null) {
+                this.houseKeeperTask.cancel(true);
+                this.houseKeeperExecutor.shutdownNow();
+                this.houseKeeperTask = null;
+            }
+            this.dbService = null;
+
+            committer = this.groupCommitter;
+            this.groupCommitter = null;
+        }
+
+        // the group commit thread might be waiting for the monitor of this object, stop it outside
+        if (committer != null) {
+            committer.stop();
+        }
+    }
+
+    /**
+     * Configures the group commit mode. When enabled, concurrent {@link #store(String, byte[], int, boolean, int)}
+     * calls are collected and persisted with a single JDBC batch and a single commit. Each caller is blocked until
+     * the batch containing its message has been committed.
+     *
+     * @param enabled
+     *            whether group commit is enabled
+     * @param maxBatchSize
+     *            the maximum number of messages persisted with a single commit
+     * @param maxLingerMillis
+     *            the maximum time in milliseconds a message waits for other messages to join its batch
+     */
+    public void setGroupCommit(boolean enabled, int maxBatchSize, long maxLingerMillis) {
+        final GroupCommitter previous;
+
+        synchronized (this) {
+            if (this.groupCommitEnabled == enabled && this.groupCommitMaxBatchSize == maxBatchSize
+                    && this.groupCommitMaxLinger == maxLingerMillis) {
+                return;
+            }
+
+            this.groupCommitEnabled = enabled;
+            this.groupCommitMaxBatchSize = maxBatchSize;
+            this.groupCommitMaxLinger = maxLingerMillis;
+
+            previous = this.groupCommitter;
+            this.groupCommitter = null;
+        }
+
+        if (previous != null) {
+            previous.stop();
+        }
+
+        restartGroupCommitter();
+    }
+
+    private synchronized void restartGroupCommitter() {
+        if (this.dbService == null || !this.groupCommitEnabled || this.groupCommitter != null) {
+            return;
         }
-        this.dbService = null;
+
+        logger.info("Enabling group commit, max batch size: {}, max linger: {} ms", this.groupCommitMaxBatchSize,
+                this.groupCommitMaxLinger);
+        this.groupCommitter = new GroupCommitter(this.tableName, this::storeBatch, this.groupCommitMaxBatchSize,
+                this.groupCommitMaxLinger);
     }
 
     private boolean isRepairEnabled() {
@@ -271,7 +345,23 @@ public class DbDataStore implements DataStore {
     }
 
     @Override
-    public synchronized DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
+    public DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
+            throws KuraStoreException {
+
+        final GroupCommitter committer = this.groupCommitter;
+
+        if (committer != null) {
+            if (topic == null || topic.trim().length() == 0) {
+                throw new IllegalArgumentException(TOPIC_ELEMENT);
+            }
+            // validation and capacity checks are performed once per batch by storeBatch()
+            return committer.submit(topic, payload, qos, retain, priority).await();
+        }
+
+        return storeSingle(topic, payload, qos, retain, priority);
+    }
+
+    private synchronized DataMessage storeSingle(String topic, byte[] payload, int qos, boolean retain, int priority)
             throws KuraStoreException {
 
         validate(topic, priority);
@@ -281,23 +371,75 @@ public class DbDataStore implements DataStore {
             message = storeInternal(topic, payload, qos, retain, priority);
         } catch (KuraStoreException e) {
             // Try to reset the sequence generator and store the message again.
-            Throwable cause = e.getCause();
-            if (cause instanceof SQLException) {
-                SQLException sqle = (SQLException) cause;
-                int errorCode = sqle.getErrorCode();
-                if (errorCode == NUMERIC_VALUE_OUT_OF_RANGE_1 || errorCode == NUMERIC_VALUE_OUT_OF_RANGE_2) {
+            if (isIdentityOverflow(e)) {
+                logger.warn("Identity generator limit exceeded. Resetting it...");
+                resetIdentityGenerator();
+                message = storeInternal(topic, payload, qos, retain, priority);
+            } else {
+                throw e;
+            }
+        }
+
+        return message;
+    }
+
+    private synchronized void storeBatch(final List<GroupCommitter.PendingMessage> batch) {
+        if (this.dbService == null) {
+            final KuraStoreException e = new KuraStoreException("DbService instance not attached");
+            batch.forEach(message -> message.fail(e));
+            return;
+        }
+
+        final List<GroupCommitter.PendingMessage> accepted = new ArrayList<>(batch.size());
+
+        try {
+            // Same policy as validate(), but the message count is queried only once for the whole batch
+            int count = -1;
+            for (final GroupCommitter.PendingMessage message : batch) {
+                final int priority = message.getPriority();
+                if (priority != 0 && priority != 1) {
+                    if (count == -1) {
+                        count = getMessageCount();
+                        logger.debug("Store message count: {}", count);
+                    }
+                    if (count + accepted.size() >= this.capacity) {
+                        logger.error("Store capacity exceeded");
+                        message.fail(new KuraStoreCapacityReachedException("Store capacity exceeded"));
+                        continue;
+                    }
+                }
+                accepted.add(message);
+            }
+
+            int[] ids;
+            try {
+                ids = storeBatchInternal(accepted);
+            } catch (KuraStoreException e) {
+                // Try to reset the sequence generator and store the messages again.
+                if (isIdentityOverflow(e)) {
                     logger.warn("Identity generator limit exceeded. Resetting it...");
                     resetIdentityGenerator();
-                    message = storeInternal(topic, payload, qos, retain, priority);
+                    ids = storeBatchInternal(accepted);
                 } else {
                     throw e;
                 }
-            } else {
-                throw e;
             }
+
+            for (int i = 0; i < ids.length; i++) {
+                accepted.get(i).complete(ids[i]);
+            }
+        } catch (KuraStoreException e) {
+            batch.stream().filter(message -> !message.isDone()).forEach(message -> message.fail(e));
         }
+    }
 
-        return message;
+    private boolean isIdentityOverflow(final KuraStoreException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof SQLException) {
+            final int errorCode = ((SQLException) cause).getErrorCode();
+            return errorCode == NUMERIC_VALUE_OUT_OF_RANGE_1 || errorCode == NUMERIC_VALUE_OUT_OF_RANGE_2;
+        }
+        return false;
     }
 
     private void validate(String topic, int priority) throws KuraStoreException {
@@ -336,26 +478,7 @@ public class DbDataStore implements DataStore {
 
             // store message
             try (PreparedStatement pstmt = c.prepareStatement(this.sqlStore, new String[] { "id" })) {
-                pstmt.setString(1, topic);                                          // topic
-                pstmt.setInt(2, qos);                                               // qos
-                pstmt.setBoolean(3, retain);                                        // retain
-                pstmt.setTimestamp(4, now, this.utcCalendar);                       // createdOn
-                pstmt.setTimestamp(5, null);                                        // publishedOn
-                pstmt.setInt(6, -1);                                                // publishedMessageId
-                pstmt.setTimestamp(7, null);                                        // confirmedOn
-
-                // smallPayload (=8) vs. largePayload (=9)
-                if (isNull(payload) || payload.length < PAYLOAD_BYTE_SIZE_THRESHOLD) {
-                    pstmt.setBytes(8, payload);
-                    pstmt.setNull(9, Types.BLOB);
-                } else {
-                    pstmt.setNull(8, Types.VARBINARY);
-                    pstmt.setBinaryStream(9, new ByteArrayInputStream(payload), payload.length);
-                }
-
-                pstmt.setInt(10, priority);                                         // priority
-                pstmt.setString(11, null);                                          // sessionId
-                pstmt.setTimestamp(12, null);                                       // droppedOn
+                bindStoreParameters(pstmt, topic, payload, qos, retain, priority, now);
                 pstmt.execute();
                 ResultSet rs = pstmt.getGeneratedKeys();
                 if (rs.next()) {
@@ -371,6 +494,65 @@ public class DbDataStore implements DataStore {
         return get(msgId);
     }
 
+    private int[] storeBatchInternal(final List<GroupCommitter.PendingMessage> messages) throws KuraStoreException {
+        if (messages.isEmpty()) {
+            return new int[0];
+        }
+
+        return withConnection(c -> {
+
+            final int[] result = new int[messages.size()];
+
+            // store messages
+            try (PreparedStatement pstmt = c.prepareStatement(this.sqlStore, new String[] { "id" })) {
+                for (final GroupCommitter.PendingMessage message : messages) {
+                    bindStoreParameters(pstmt, message.getTopic(), message.getPayload(), message.getQos(),
+                            message.isRetain(), message.getPriority(), message.getCreatedOn());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+
+                try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                    int count = 0;
+                    while (count < result.length && rs.next()) {
+                        result[count++] = rs.getInt(1);
+                    }
+                    if (count != result.length) {
+                        throw new SQLException("Expected " + result.length + " generated keys, got " + count);
+                    }
+                }
+            }
+
+            c.commit();
+
+            return result;
+        }, "Cannot store messages");
+    }
+
+    private void bindStoreParameters(PreparedStatement pstmt, String topic, byte[] payload, int qos, boolean retain,
+            int priority, Timestamp createdOn) throws SQLException {
+        pstmt.setString(1, topic);                                          // topic
+        pstmt.setInt(2, qos);                                               // qos
+        pstmt.setBoolean(3, retain);                                        // retain
+        pstmt.setTimestamp(4, createdOn, this.utcCalendar);                 // createdOn
+        pstmt.setTimestamp(5, null);                                        // publishedOn
+        pstmt.setInt(6, -1);                                                // publishedMessageId
+        pstmt.setTimestamp(7, null);                                        // confirmedOn
+
+        // smallPayload (=8) vs. largePayload (=9)
+        if (isNull(payload) || payload.length < PAYLOAD_BYTE_SIZE_THRESHOLD) {
+            pstmt.setBytes(8, payload);
+            pstmt.setNull(9, Types.BLOB);
+        } else {
+            pstmt.setNull(8, Types.VARBINARY);
+            pstmt.setBinaryStream(9, new ByteArrayInputStream(payload), payload.length);
+        }
+
+        pstmt.setInt(10, priority);                                         // priority
+        pstmt.setString(11, null);                                          // sessionId
+        pstmt.setTimestamp(12, null);                                       // droppedOn
+    }
+
     @Override
     public synchronized DataMessage get(int msgId) throws KuraStoreException {
 
@@ -403,6 +585,23 @@ public class DbDataStore implements DataStore {
         }, "Cannot get message next message");
     }
 
+    @Override
+    public synchronized List<DataMessage> getNextMessages(int count) throws KuraStoreException {
+
+        return withConnection(c -> {
+            try (PreparedStatement stmt = c.prepareStatement(this.sqlGetNextMessages)) {
+                stmt.setInt(1, count);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    final List<DataMessage> messages = new ArrayList<>();
+                    while (rs.next()) {
+                        messages.add(buildDataMessage(rs));
+                    }
+                    return messages;
+                }
+            }
+        }, "Cannot get next messages");
+    }
+
     @Override
     public synchronized void published(int msgId, int publishedMsgId, String sessionId) throws KuraStoreException {
         final Timestamp now = new Timestamp(new Date().getTime());
@@ -427,11 +626,72 @@ public class DbDataStore implements DataStore {
         updateTimestamp(this.sqlSetPublished2, msgId);
     }
 
+    @Override
+    public synchronized void published(List<DataMessage> messages) throws KuraStoreException {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        final Timestamp now = new Timestamp(new Date().getTime());
+
+        withConnection(c -> {
+            try (final PreparedStatement withSession = c.prepareStatement(this.sqlSetPublished);
+                    final PreparedStatement withoutSession = c.prepareStatement(this.sqlSetPublished2)) {
+                boolean hasWithSession = false;
+                boolean hasWithoutSession = false;
+
+                for (final DataMessage message : messages) {
+                    if (message.getSessionId() != null) {
+                        withSession.setTimestamp(1, now, this.utcCalendar); // timestamp
+                        withSession.setInt(2, message.getPublishedMessageId());
+                        withSession.setString(3, message.getSessionId());
+                        withSession.setInt(4, message.getId());
+                        withSession.addBatch();
+                        hasWithSession = true;
+                    } else {
+                        withoutSession.setTimestamp(1, now, this.utcCalendar); // timestamp
+                        withoutSession.setInt(2, message.getId());
+                        withoutSession.addBatch();
+                        hasWithoutSession = true;
+                    }
+                }
+
+                if (hasWithSession) {
+                    withSession.executeBatch();
+                }
+                if (hasWithoutSession) {
+                    withoutSession.executeBatch();
+                }
+                c.commit();
+                return (Void) null;
+            }
+        }, "Cannot update timestamp");
+    }
+
     @Override
     public synchronized void confirmed(int msgId) throws KuraStoreException {
         updateTimestamp(this.sqlSetConfirmed, msgId);
     }
 
+    @Override
+    public synchronized void confirmed(List<Integer> msgIds) throws KuraStoreException {
+        if (msgIds.isEmpty()) {
+            return;
+        }
+
+        final Timestamp now = new Timestamp(new Date().getTime());
+
+        withConnection(c -> {
+            try (final PreparedStatement pstmt = c.prepareStatement(this.sqlSetConfirmedAll)) {
+                pstmt.setTimestamp(1, now, this.utcCalendar);
+                pstmt.setArray(2, c.createArrayOf("INTEGER", msgIds.toArray()));
+                pstmt.execute();
+                c.commit();
+                return (Void) null;
+            }
+        }, "Cannot update timestamp");
+    }
+
     @Override
     public synchronized List<DataMessage> allUnpublishedMessagesNoPayload() throws KuraStoreException {
         // Order by priority, createdOn
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects concurrent store requests and hands them over to a {@link BatchWriter} in groups, so that several
+ * messages can be persisted with a single JDBC batch and a single commit.
+ * <p>
+ * A batch is flushed as soon as it contains {@code maxBatchSize} messages or when {@code maxLingerMillis} have
+ * elapsed since the first message of the batch has been queued. Requests that arrive while a batch is being written
+ * are collected in the next one.
+ */
+class GroupCommitter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitter.class);
+
+    interface BatchWriter {
+
+        /**
+         * Persists the given messages. Implementations must complete every message in the batch, either with
+         * {@link PendingMessage#complete(int)} or with {@link PendingMessage#fail(KuraStoreException)}.
+         *
+         * @param batch
+         *            the messages to be persisted
+         */
+        void write(List<PendingMessage> batch);
+    }
+
+    static final class PendingMessage {
+
+        private final String topic;
+        private final byte[] payload;
+        private final int qos;
+        private final boolean retain;
+        private final int priority;
+        private final Timestamp createdOn;
+        private final CompletableFuture<DataMessage> result = new CompletableFuture<>();
+
+        PendingMessage(String topic, byte[] payload, int qos, boolean retain, int priority) {
+            this.topic = topic;
+            this.payload = payload;
+            this.qos = qos;
+            this.retain = retain;
+            this.priority = priority;
+            this.createdOn = new Timestamp(System.currentTimeMillis());
+        }
+
+        String getTopic() {
+            return this.topic;
+        }
+
+        byte[] getPayload() {
+            return this.payload;
+        }
+
+        int getQos() {
+            return this.qos;
+        }
+
+        boolean isRetain() {
+            return this.retain;
+        }
+
+        int getPriority() {
+            return this.priority;
+        }
+
+        Timestamp getCreatedOn() {
+            return this.createdOn;
+        }
+
+        boolean isDone() {
+            return this.result.isDone();
+        }
+
+        void complete(int id) {
+            this.result.complete(new DataMessage.Builder(id).withTopic(this.topic).withQos(this.qos)
+                    .withRetain(this.retain).withCreatedOn(this.createdOn).withPublishedMessageId(-1)
+                    .withPayload(this.payload).withPriority(this.priority).build());
+        }
+
+        void fail(KuraStoreException e) {
+            this.result.completeExceptionally(e);
+        }
+
+        DataMessage await() throws KuraStoreException {
+            try {
+                return this.result.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KuraStoreException(e, "Interrupted while waiting for message to be stored");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof KuraStoreException) {
+                    throw (KuraStoreException) e.getCause();
+                }
+                throw new KuraStoreException(e.getCause(), "Cannot store message");
+            }
+        }
+    }
+
+    // queued by stop() to wake up the writer thread once the messages submitted before it have been written
+    private static final PendingMessage STOP = new PendingMessage(null, null, 0, false, 0);
+
+    private final BlockingQueue<PendingMessage> queue = new LinkedBlockingQueue<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final String name;
+    private final BatchWriter writer;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+
+    private volatile boolean running = true;
+
+    GroupCommitter(String name, BatchWriter writer, int maxBatchSize, long maxLingerMillis) {
+        this.name = name;
+        this.writer = writer;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxLingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxLingerMillis));
+
+        this.executor.execute(this::run);
+    }
+
+    PendingMessage submit(String topic, byte[] payload, int qos, boolean retain, int priority)
+            throws KuraStoreException {
+        if (!this.running) {
+            throw new KuraStoreException("Group commit writer stopped");
+        }
+
+        final PendingMessage message = new PendingMessage(topic, payload, qos, retain, priority);
+        this.queue.add(message);
+
+        if (!this.running) {
+            // stop() might have drained the queue before the message was added
+            failPending();
+        }
+        return message;
+    }
+
+    boolean isRunning() {
+        return this.running;
+    }
+
+    void stop() {
+        this.running = false;
+        this.queue.add(STOP);
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Group commit writer did not terminate in time");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        failPending();
+    }
+
+    private void run() {
+        Thread.currentThread().setName("DbDataStore:GroupCommit:" + this.name);
+
+        final List<PendingMessage> batch = new ArrayList<>(this.maxBatchSize);
+
+        boolean stopped = false;
+
+        while (!stopped) {
+            try {
+                batch.add(this.queue.take());
+                collect(batch);
+                stopped = batch.remove(STOP);
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(batch, new KuraStoreException("Group commit writer stopped"));
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+
+        logger.debug("Exited group commit loop.");
+    }
+
+    private void collect(final List<PendingMessage> batch) throws InterruptedException {
+        final long deadline = System.nanoTime() + this.maxLingerNanos;
+
+        while (batch.size() < this.maxBatchSize) {
+            this.queue.drainTo(batch, this.maxBatchSize - batch.size());
+            if (batch.size() >= this.maxBatchSize || !this.running) {
+                // do not linger if stopping, the messages still in the queue are written by the next iterations
+                return;
+            }
+
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+
+            final PendingMessage next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(final List<PendingMessage> batch) {
+        logger.debug("Storing a batch of {} messages", batch.size());
+        try {
+            this.writer.write(batch);
+        } catch (final Exception e) {
+            fail(batch, new KuraStoreException(e, "Cannot store message"));
+        }
+        // Safety net, should never happen if the writer honours its contract
+        fail(batch, new KuraStoreException("Message not stored"));
+    }
+
+    private void failPending() {
+        final List<PendingMessage> pending = new ArrayList<>();
+        this.queue.drainTo(pending);
+        pending.remove(STOP);
+        fail(pending, new KuraStoreException("Group commit writer stopped"));
+    }
+
+    private static void fail(final List<PendingMessage> messages, final KuraStoreException e) {
+        for (final PendingMessage message : messages) {
+            if (!message.isDone()) {
+                message.fail(e);
+            }
+        }
+    }
+}
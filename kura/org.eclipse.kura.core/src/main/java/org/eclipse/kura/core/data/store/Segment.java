@@ -0,0 +1,156 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory mapped, append-only segment file used by {@link SegmentedFileDataStore}.
+ * The file is preallocated to its full size, the unused space is filled with zeros.
+ */
+final class Segment {
+
+    private final long number;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private int position;
+    private int liveEntries;
+    private long liveBytes;
+
+    private Segment(long number, Path path, FileChannel channel, int size) throws IOException {
+        this.number = number;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = channel.map(MapMode.READ_WRITE, 0, size);
+    }
+
+    static Segment create(long number, Path path, int size) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        return new Segment(number, path, channel, size);
+    }
+
+    static Segment open(long number, Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Segment too large: " + path);
+        }
+        return new Segment(number, path, channel, (int) size);
+    }
+
+    long getNumber() {
+        return this.number;
+    }
+
+    Path getPath() {
+        return this.path;
+    }
+
+    int getCapacity() {
+        return this.buffer.capacity();
+    }
+
+    int getPosition() {
+        return this.position;
+    }
+
+    void setPosition(int position) {
+        this.position = position;
+    }
+
+    int remaining() {
+        return this.buffer.capacity() - this.position;
+    }
+
+    /**
+     * Returns a read only view of the segment content.
+     */
+    ByteBuffer view() {
+        return this.buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Appends the given data at the current position.
+     *
+     * @return the offset at which the data has been written
+     */
+    int append(ByteBuffer data) {
+        final int offset = this.position;
+        final ByteBuffer target = this.buffer.duplicate();
+        target.position(offset);
+        target.put(data);
+        this.position = target.position();
+        return offset;
+    }
+
+    byte[] read(int offset, int length) {
+        final byte[] result = new byte[length];
+        final ByteBuffer source = this.buffer.duplicate();
+        source.position(offset);
+        source.get(result);
+        return result;
+    }
+
+    /**
+     * Overwrites the content of the segment starting from the current position with zeros.
+     */
+    void clearTail() {
+        final ByteBuffer target = this.buffer.duplicate();
+        target.position(this.position);
+        while (target.hasRemaining()) {
+            target.put((byte) 0);
+        }
+    }
+
+    int getLiveEntries() {
+        return this.liveEntries;
+    }
+
+    long getLiveBytes() {
+        return this.liveBytes;
+    }
+
+    void addLiveEntry(int size) {
+        this.liveEntries++;
+        this.liveBytes += size;
+    }
+
+    void removeLiveEntry(int size) {
+        this.liveEntries--;
+        this.liveBytes -= size;
+    }
+
+    void force() {
+        this.buffer.force();
+    }
+
+    void close() throws IOException {
+        this.channel.close();
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(this.path);
+    }
+}
@@ -0,0 +1,792 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+import org.eclipse.kura.KuraStoreCapacityReachedException;
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.core.data.DataStore;
+import org.eclipse.kura.db.H2DbService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An implementation of the DataStore which appends messages and their state changes to memory mapped, append-only
+ * segment files.
+ * <p>
+ * The state of the messages is kept in an in-memory index that is rebuilt by replaying the segments in order at
+ * startup. Each record is protected by a checksum, the replay of a segment stops at the first incomplete or corrupted
+ * record, as left by a crash during a write.
+ * <p>
+ * Segments are reclaimed by deleting whole files once all the messages stored in them have been purged by the
+ * housekeeper. Segments are only deleted starting from the oldest one, since their state change records might refer
+ * to messages stored in previous segments. The few messages that are still alive in an almost empty oldest segment
+ * are relocated to the active segment, so that it can be deleted.
+ * <p>
+ * Writes are not synchronously flushed to the storage, the segments are forced to disk when the active segment is
+ * rolled, when the housekeeper runs and when the store is stopped.
+ */
+public class SegmentedFileDataStore implements DataStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedFileDataStore.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final byte RECORD_STORED = 1;
+    private static final byte RECORD_PUBLISHED = 2;
+    private static final byte RECORD_CONFIRMED = 3;
+    private static final byte RECORD_UNPUBLISHED = 4;
+    private static final byte RECORD_DROPPED = 5;
+
+    // body length (int) + CRC32 of the body (int)
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    // relocate the live messages of the oldest segment if they use less than 1/4 of it
+    private static final int RELOCATION_RATIO = 4;
+
+    private static final Comparator<Entry> MESSAGE_ORDER = Comparator.<Entry> comparingInt(e -> e.priority)
+            .thenComparingLong(e -> e.createdOn).thenComparingInt(e -> e.id);
+
+    private final Path directory;
+    private final int segmentSize;
+
+    private final Map<Integer, Entry> index = new HashMap<>();
+    private final NavigableSet<Entry> unpublished = new TreeSet<>(MESSAGE_ORDER);
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private int nextId = 1;
+    private boolean started;
+
+    private ScheduledExecutorService houseKeeperExecutor;
+    private ScheduledFuture<?> houseKeeperTask;
+    private int capacity;
+
+    public SegmentedFileDataStore(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    // ----------------------------------------------------------
+    //
+    // Start/Stop
+    //
+    // ----------------------------------------------------------
+
+    /**
+     * Starts the store. The {@code dbService} argument is ignored and can be {@code null}.
+     */
+    @Override
+    public synchronized void start(H2DbService dbService, int houseKeeperInterval, int purgeAge, int capacity)
+            throws KuraStoreException {
+        if (this.started) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(this.directory);
+            openSegments();
+            replay();
+            // purged messages are not recorded in the segments, drop them again
+            purgeStaleMessages(purgeAge);
+
+            if (this.segments.isEmpty()) {
+                this.active = createSegment(0, this.segmentSize);
+            } else {
+                this.active = this.segments.lastEntry().getValue();
+            }
+        } catch (IOException e) {
+            closeSegments();
+            throw new KuraStoreException(e, "Cannot open data store segments in " + this.directory);
+        }
+
+        logger.info("Data store {} started with {} segments and {} messages", this.directory, this.segments.size(),
+                this.index.size());
+
+        this.started = true;
+        this.houseKeeperExecutor = Executors.newSingleThreadScheduledExecutor();
+
+        update(houseKeeperInterval, purgeAge, capacity);
+    }
+
+    /**
+     * Returns {@code true} if the store has been successfully started and not stopped since.
+     */
+    public synchronized boolean isStarted() {
+        return this.started;
+    }
+
+    @Override
+    public synchronized void update(int houseKeeperInterval, int purgeAge, int capacity) {
+        this.capacity = capacity;
+
+        if (!this.started) {
+            return;
+        }
+
+        if (this.houseKeeperTask != null) {
+            this.houseKeeperTask.cancel(true);
+        }
+
+        this.houseKeeperTask = this.houseKeeperExecutor.scheduleWithFixedDelay(
+                new HouseKeeperTask(this, purgeAge, false), 1, houseKeeperInterval, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (!this.started) {
+            return;
+        }
+
+        logger.info("Canceling the Housekeeper Task...");
+        if (this.houseKeeperTask != null) {
+            this.houseKeeperTask.cancel(true);
+            this.houseKeeperTask = null;
+        }
+        this.houseKeeperExecutor.shutdownNow();
+
+        closeSegments();
+        this.started = false;
+    }
+
+    // ----------------------------------------------------------
+    //
+    // Message APIs
+    //
+    // ----------------------------------------------------------
+
+    @Override
+    public synchronized DataMessage store(String topic, byte[] payload, int qos, boolean retain, int priority)
+            throws KuraStoreException {
+        checkStarted();
+
+        if (topic == null || topic.trim().length() == 0) {
+            throw new IllegalArgumentException("topic");
+        }
+
+        // Same policy as DbDataStore: priority 0 and 1 messages bypass the capacity check
+        if (priority != 0 && priority != 1 && this.index.size() >= this.capacity) {
+            logger.error("Store capacity exceeded");
+            throw new KuraStoreCapacityReachedException("Store capacity exceeded");
+        }
+
+        final Entry entry = new Entry(allocateId());
+        entry.topic = topic;
+        entry.qos = qos;
+        entry.retain = retain;
+        entry.priority = priority;
+        entry.createdOn = System.currentTimeMillis();
+
+        appendStored(entry, payload);
+
+        this.index.put(entry.id, entry);
+        this.unpublished.add(entry);
+
+        return entry.toDataMessage(payload);
+    }
+
+    @Override
+    public synchronized void published(int msgId, int publishedMsgId, String sessionId) throws KuraStoreException {
+        checkStarted();
+
+        final Entry entry = this.index.get(msgId);
+        if (entry != null) {
+            setPublished(entry, System.currentTimeMillis(), publishedMsgId, sessionId);
+        }
+    }
+
+    @Override
+    public synchronized void published(int msgId) throws KuraStoreException {
+        checkStarted();
+
+        final Entry entry = this.index.get(msgId);
+        if (entry != null) {
+            setPublished(entry, System.currentTimeMillis(), entry.publishedMessageId, entry.sessionId);
+        }
+    }
+
+    @Override
+    public synchronized void published(List<DataMessage> messages) throws KuraStoreException {
+        checkStarted();
+
+        final long now = System.currentTimeMillis();
+
+        for (final DataMessage message : messages) {
+            final Entry entry = this.index.get(message.getId());
+            if (entry == null) {
+                continue;
+            }
+            if (message.getSessionId() != null) {
+                setPublished(entry, now, message.getPublishedMessageId(), message.getSessionId());
+            } else {
+                setPublished(entry, now, entry.publishedMessageId, entry.sessionId);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void confirmed(int msgId) throws KuraStoreException {
+        checkStarted();
+
+        final Entry entry = this.index.get(msgId);
+        if (entry != null) {
+            entry.confirmedOn = System.currentTimeMillis();
+            appendTimestampRecord(RECORD_CONFIRMED, entry.id, entry.confirmedOn);
+        }
+    }
+
+    @Override
+    public synchronized void confirmed(List<Integer> msgIds) throws KuraStoreException {
+        for (final int msgId : msgIds) {
+            confirmed(msgId);
+        }
+    }
+
+    @Override
+    public synchronized DataMessage getNextMessage() throws KuraStoreException {
+        checkStarted();
+
+        if (this.unpublished.isEmpty()) {
+            return null;
+        }
+
+        final Entry entry = this.unpublished.first();
+        return entry.toDataMessage(readPayload(entry));
+    }
+
+    @Override
+    public synchronized List<DataMessage> getNextMessages(int count) throws KuraStoreException {
+        checkStarted();
+
+        final List<DataMessage> result = new ArrayList<>(Math.min(count, this.unpublished.size()));
+        final Iterator<Entry> iterator = this.unpublished.iterator();
+
+        while (result.size() < count && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            result.add(entry.toDataMessage(readPayload(entry)));
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized DataMessage get(int msgId) throws KuraStoreException {
+        checkStarted();
+
+        final Entry entry = this.index.get(msgId);
+        if (entry == null) {
+            return null;
+        }
+
+        return entry.toDataMessage(readPayload(entry));
+    }
+
+    @Override
+    public synchronized List<DataMessage> allUnpublishedMessagesNoPayload() throws KuraStoreException {
+        checkStarted();
+
+        return this.unpublished.stream().map(e -> e.toDataMessage(null)).collect(Collectors.toList());
+    }
+
+    @Override
+    public synchronized List<DataMessage> allInFlightMessagesNoPayload() throws KuraStoreException {
+        checkStarted();
+
+        return listMessages(e -> e.isInFlight() && e.droppedOn == 0);
+    }
+
+    @Override
+    public synchronized List<DataMessage> allDroppedInFlightMessagesNoPayload() throws KuraStoreException {
+        checkStarted();
+
+        return listMessages(e -> e.droppedOn != 0);
+    }
+
+    @Override
+    public synchronized void unpublishAllInFlighMessages() throws KuraStoreException {
+        checkStarted();
+
+        for (final Entry entry : filter(Entry::isInFlight)) {
+            entry.publishedOn = 0;
+            appendIdRecord(RECORD_UNPUBLISHED, entry.id);
+            this.unpublished.add(entry);
+        }
+    }
+
+    @Override
+    public synchronized void dropAllInFlightMessages() throws KuraStoreException {
+        checkStarted();
+
+        final long now = System.currentTimeMillis();
+
+        for (final Entry entry : filter(Entry::isInFlight)) {
+            entry.droppedOn = now;
+            appendTimestampRecord(RECORD_DROPPED, entry.id, now);
+        }
+    }
+
+    @Override
+    public synchronized void deleteStaleMessages(int purgeAge) throws KuraStoreException {
+        checkStarted();
+
+        purgeStaleMessages(purgeAge);
+
+        try {
+            reclaimSegments();
+        } catch (IOException e) {
+            throw new KuraStoreException(e, "Cannot reclaim data store segments");
+        }
+
+        this.active.force();
+    }
+
+    /**
+     * Segments are validated through their checksums when the store is started, there is nothing to repair here.
+     */
+    @Override
+    public void repair() throws KuraStoreException {
+        // nothing to do
+    }
+
+    // ------------------------------------------------------------------
+    //
+    // Private Methods: Index
+    //
+    // ------------------------------------------------------------------
+
+    private void checkStarted() throws KuraStoreException {
+        if (!this.started) {
+            throw new KuraStoreException("Data store not started");
+        }
+    }
+
+    private int allocateId() {
+        int id = this.nextId;
+        while (this.index.containsKey(id)) {
+            id = id == Integer.MAX_VALUE ? 1 : id + 1;
+        }
+        this.nextId = id == Integer.MAX_VALUE ? 1 : id + 1;
+        return id;
+    }
+
+    private void purgeStaleMessages(int purgeAge) {
+        final long limit = System.currentTimeMillis() - purgeAge * 1000L;
+
+        final List<Entry> stale = filter(e -> e.droppedOn != 0 && e.droppedOn <= limit
+                || e.confirmedOn != 0 && e.confirmedOn <= limit
+                || e.qos == 0 && e.publishedOn != 0 && e.publishedOn <= limit);
+
+        for (final Entry entry : stale) {
+            remove(entry);
+        }
+        logger.debug("Deleted {} stale messages", stale.size());
+    }
+
+    private void setPublished(Entry entry, long publishedOn, int publishedMessageId, String sessionId)
+            throws KuraStoreException {
+        entry.publishedOn = publishedOn;
+        entry.publishedMessageId = publishedMessageId;
+        entry.sessionId = sessionId;
+        appendPublished(entry);
+        this.unpublished.remove(entry);
+    }
+
+    private void remove(Entry entry) {
+        this.index.remove(entry.id);
+        this.unpublished.remove(entry);
+        entry.segment.removeLiveEntry(entry.recordSize);
+    }
+
+    private List<Entry> filter(Predicate<Entry> predicate) {
+        return this.index.values().stream().filter(predicate).collect(Collectors.toList());
+    }
+
+    private List<DataMessage> listMessages(Predicate<Entry> predicate) {
+        return this.index.values().stream().filter(predicate).sorted(MESSAGE_ORDER).map(e -> e.toDataMessage(null))
+                .collect(Collectors.toList());
+    }
+
+    private byte[] readPayload(Entry entry) {
+        if (entry.payloadLength < 0) {
+            return null;
+        }
+        return entry.segment.read(entry.payloadOffset, entry.payloadLength);
+    }
+
+    // ------------------------------------------------------------------
+    //
+    // Private Methods: Records
+    //
+    // ------------------------------------------------------------------
+
+    private void appendStored(Entry entry, byte[] payload) throws KuraStoreException {
+        final byte[] topicBytes = entry.topic.getBytes(StandardCharsets.UTF_8);
+        final int payloadLength = payload == null ? 0 : payload.length;
+
+        final ByteBuffer body = ByteBuffer.allocate(1 + 4 + 8 + 1 + 1 + 4 + 4 + topicBytes.length + 4 + payloadLength);
+        body.put(RECORD_STORED);
+        body.putInt(entry.id);
+        body.putLong(entry.createdOn);
+        body.put((byte) entry.qos);
+        body.put((byte) (entry.retain ? 1 : 0));
+        body.putInt(entry.priority);
+        body.putInt(topicBytes.length);
+        body.put(topicBytes);
+        body.putInt(payload == null ? -1 : payload.length);
+        final int payloadPosition = body.position();
+        if (payload != null) {
+            body.put(payload);
+        }
+        body.flip();
+
+        final int recordSize = RECORD_HEADER_SIZE + body.remaining();
+        final int offset = append(body);
+
+        entry.segment = this.active;
+        entry.recordSize = recordSize;
+        entry.payloadOffset = offset + RECORD_HEADER_SIZE + payloadPosition;
+        entry.payloadLength = payload == null ? -1 : payload.length;
+        this.active.addLiveEntry(recordSize);
+    }
+
+    private void appendPublished(Entry entry) throws KuraStoreException {
+        final byte[] sessionBytes = entry.sessionId == null ? null : entry.sessionId.getBytes(StandardCharsets.UTF_8);
+
+        final ByteBuffer body = ByteBuffer
+                .allocate(1 + 4 + 8 + 4 + 4 + (sessionBytes == null ? 0 : sessionBytes.length));
+        body.put(RECORD_PUBLISHED);
+        body.putInt(entry.id);
+        body.putLong(entry.publishedOn);
+        body.putInt(entry.publishedMessageId);
+        body.putInt(sessionBytes == null ? -1 : sessionBytes.length);
+        if (sessionBytes != null) {
+            body.put(sessionBytes);
+        }
+        body.flip();
+
+        append(body);
+    }
+
+    private void appendTimestampRecord(byte type, int id, long timestamp) throws KuraStoreException {
+        final ByteBuffer body = ByteBuffer.allocate(1 + 4 + 8);
+        body.put(type);
+        body.putInt(id);
+        body.putLong(timestamp);
+        body.flip();
+
+        append(body);
+    }
+
+    private void appendIdRecord(byte type, int id) throws KuraStoreException {
+        final ByteBuffer body = ByteBuffer.allocate(1 + 4);
+        body.put(type);
+        body.putInt(id);
+        body.flip();
+
+        append(body);
+    }
+
+    /**
+     * Appends a record with the given body to the active segment, rolling it if needed.
+     *
+     * @return the offset of the record in the active segment
+     */
+    private int append(ByteBuffer body) throws KuraStoreException {
+        final int recordSize = RECORD_HEADER_SIZE + body.remaining();
+
+        if (this.active.remaining() < recordSize) {
+            try {
+                this.active.force();
+                this.active = createSegment(this.active.getNumber() + 1, Math.max(this.segmentSize, recordSize));
+            } catch (IOException e) {
+                throw new KuraStoreException(e, "Cannot create data store segment");
+            }
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(body.array(), body.arrayOffset() + body.position(), body.remaining());
+
+        final ByteBuffer record = ByteBuffer.allocate(recordSize);
+        record.putInt(body.remaining());
+        record.putInt((int) crc.getValue());
+        record.put(body);
+        record.flip();
+
+        return this.active.append(record);
+    }
+
+    // ------------------------------------------------------------------
+    //
+    // Private Methods: Segments
+    //
+    // ------------------------------------------------------------------
+
+    private Segment createSegment(long number, int size) throws IOException {
+        final Segment segment = Segment.create(number, segmentPath(number), size);
+        this.segments.put(number, segment);
+        logger.debug("Created data store segment {}", segment.getPath());
+        return segment;
+    }
+
+    private Path segmentPath(long number) {
+        return this.directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private void openSegments() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                try {
+                    final long number = Long.parseLong(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    this.segments.put(number, Segment.open(number, path));
+                } catch (NumberFormatException e) {
+                    logger.warn("Ignoring unexpected file {}", path);
+                }
+            }
+        }
+    }
+
+    private void closeSegments() {
+        for (final Segment segment : this.segments.values()) {
+            try {
+                segment.force();
+                segment.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close data store segment {}", segment.getPath(), e);
+            }
+        }
+        this.segments.clear();
+        this.index.clear();
+        this.unpublished.clear();
+        this.active = null;
+    }
+
+    private void replay() {
+        int maxId = 0;
+
+        for (final Segment segment : this.segments.values()) {
+            final ByteBuffer buffer = segment.view();
+            int position = 0;
+
+            while (position + RECORD_HEADER_SIZE <= buffer.limit()) {
+                final int length = buffer.getInt(position);
+                if (length <= 0 || position + RECORD_HEADER_SIZE + length > buffer.limit()) {
+                    break;
+                }
+
+                final int expectedCrc = buffer.getInt(position + 4);
+                final ByteBuffer body = buffer.duplicate();
+                body.position(position + RECORD_HEADER_SIZE);
+                body.limit(position + RECORD_HEADER_SIZE + length);
+
+                final CRC32 crc = new CRC32();
+                crc.update(body.duplicate());
+                if ((int) crc.getValue() != expectedCrc) {
+                    logger.warn("Found corrupted record in data store segment {} at offset {}", segment.getPath(),
+                            position);
+                    break;
+                }
+
+                final int id = apply(segment, position, body);
+                maxId = Math.max(maxId, id);
+                position += RECORD_HEADER_SIZE + length;
+            }
+
+            segment.setPosition(position);
+            if (position + RECORD_HEADER_SIZE <= buffer.limit() && buffer.getInt(position) != 0) {
+                // discard the incomplete record so that it will not be mistaken for valid data
+                segment.clearTail();
+            }
+        }
+
+        this.nextId = maxId == Integer.MAX_VALUE ? 1 : maxId + 1;
+    }
+
+    private int apply(Segment segment, int recordOffset, ByteBuffer body) {
+        final int bodyOffset = body.position();
+        final byte type = body.get();
+        final int id = body.getInt();
+
+        if (type == RECORD_STORED) {
+            final Entry previous = this.index.get(id);
+            if (previous != null) {
+                // the message has been relocated
+                remove(previous);
+            }
+
+            final Entry entry = new Entry(id);
+            entry.createdOn = body.getLong();
+            entry.qos = body.get();
+            entry.retain = body.get() != 0;
+            entry.priority = body.getInt();
+            entry.topic = readString(body);
+            entry.payloadLength = body.getInt();
+            entry.payloadOffset = body.position();
+            entry.segment = segment;
+            entry.recordSize = RECORD_HEADER_SIZE + body.limit() - bodyOffset;
+            segment.addLiveEntry(entry.recordSize);
+
+            this.index.put(id, entry);
+            this.unpublished.add(entry);
+            return id;
+        }
+
+        final Entry entry = this.index.get(id);
+        if (entry == null) {
+            return id;
+        }
+
+        switch (type) {
+        case RECORD_PUBLISHED:
+            entry.publishedOn = body.getLong();
+            entry.publishedMessageId = body.getInt();
+            entry.sessionId = readString(body);
+            this.unpublished.remove(entry);
+            break;
+        case RECORD_CONFIRMED:
+            entry.confirmedOn = body.getLong();
+            break;
+        case RECORD_UNPUBLISHED:
+            entry.publishedOn = 0;
+            this.unpublished.add(entry);
+            break;
+        case RECORD_DROPPED:
+            entry.droppedOn = body.getLong();
+            break;
+        default:
+            logger.warn("Unknown record type {} in data store segment {} at offset {}", type, segment.getPath(),
+                    recordOffset);
+        }
+
+        return id;
+    }
+
+    private static String readString(ByteBuffer body) {
+        final int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void reclaimSegments() throws IOException, KuraStoreException {
+        while (this.segments.size() > 1) {
+            final Segment head = this.segments.firstEntry().getValue();
+            if (head == this.active) {
+                return;
+            }
+
+            if (head.getLiveEntries() == 0) {
+                // the records relocated from this segment must be durable before it disappears
+                this.active.force();
+                this.segments.remove(head.getNumber());
+                head.delete();
+                logger.debug("Deleted data store segment {}", head.getPath());
+            } else if (head.getLiveBytes() * RELOCATION_RATIO < head.getCapacity()) {
+                relocate(head);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void relocate(Segment segment) throws KuraStoreException {
+        final List<Entry> entries = filter(e -> e.segment == segment);
+        logger.debug("Relocating {} messages from data store segment {}", entries.size(), segment.getPath());
+
+        for (final Entry entry : entries) {
+            final byte[] payload = readPayload(entry);
+
+            segment.removeLiveEntry(entry.recordSize);
+            appendStored(entry, payload);
+
+            if (entry.publishedOn != 0) {
+                appendPublished(entry);
+            }
+            if (entry.confirmedOn != 0) {
+                appendTimestampRecord(RECORD_CONFIRMED, entry.id, entry.confirmedOn);
+            }
+            if (entry.droppedOn != 0) {
+                appendTimestampRecord(RECORD_DROPPED, entry.id, entry.droppedOn);
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final int id;
+        private String topic;
+        private int qos;
+        private boolean retain;
+        private int priority;
+        private long createdOn;
+        private long publishedOn;
+        private int publishedMessageId = -1;
+        private String sessionId;
+        private long confirmedOn;
+        private long droppedOn;
+
+        private Segment segment;
+        private int recordSize;
+        private int payloadOffset;
+        private int payloadLength;
+
+        Entry(int id) {
+            this.id = id;
+        }
+
+        boolean isInFlight() {
+            return this.publishedOn != 0 && this.qos > 0 && this.confirmedOn == 0;
+        }
+
+        DataMessage toDataMessage(byte[] payload) {
+            return new DataMessage.Builder(this.id).withTopic(this.topic).withQos(this.qos).withRetain(this.retain)
+                    .withCreatedOn(toDate(this.createdOn)).withPublishedOn(toDate(this.publishedOn))
+                    .withPublishedMessageId(this.publishedMessageId).withConfirmedOn(toDate(this.confirmedOn))
+                    .withPayload(payload).withPriority(this.priority).withSessionId(this.sessionId)
+                    .withDroppedOn(toDate(this.droppedOn)).build();
+        }
+
+        private static Date toDate(long timestamp) {
+            return timestamp == 0 ? null : new Date(timestamp);
+        }
+    }
+}
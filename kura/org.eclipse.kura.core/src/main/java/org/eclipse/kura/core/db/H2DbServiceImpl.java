@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -21,14 +21,10 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Lock;
@@ -37,7 +33,6 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.eclipse.kura.KuraException;
 import org.eclipse.kura.configuration.ConfigurableComponent;
-import org.eclipse.kura.configuration.ConfigurationService;
 import org.eclipse.kura.crypto.CryptoService;
 import org.eclipse.kura.db.H2DbService;
 import org.h2.jdbcx.JdbcConnectionPool;
@@ -84,16 +79,13 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
 
     private final ReadWriteLock rwLock = new ReentrantReadWriteLock(true);
     private final AtomicInteger pendingUpdates = new AtomicInteger();
-    private final ThreadLocal<Boolean> isOnExecutor = new ThreadLocal<Boolean>() {
 
-        @Override
-        protected Boolean initialValue() {
-            return false;
-        }
-    };
-
-    private final ThreadPoolExecutor executorService = new ThreadPoolExecutor(0, 10, 0L, TimeUnit.MILLISECONDS,
-            new LinkedBlockingQueue<>());
+    /**
+     * Limits the number of threads concurrently running {@link #withConnection(ConnectionCallable)} callables to the
+     * connection pool size, callers in excess wait in FIFO order instead of failing with a pool timeout.
+     */
+    private final ConnectionPermits connectionPermits = new ConnectionPermits(10);
+    private final ThreadLocal<int[]> withConnectionDepth = ThreadLocal.withInitial(() -> new int[1]);
 
     // ----------------------------------------------------------------
     //
@@ -118,19 +110,6 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
     public void activate(final Map<String, Object> properties) {
         logger.info("activating...");
 
-        final String kuraServicePid = (String) properties.get(ConfigurationService.KURA_SERVICE_PID);
-        final ThreadFactory defaultFactory = this.executorService.getThreadFactory();
-        final AtomicInteger threadNumber = new AtomicInteger();
-
-        this.executorService.setThreadFactory(r -> {
-            final Thread result = defaultFactory.newThread(() -> {
-                this.isOnExecutor.set(true);
-                r.run();
-            });
-            result.setName("H2DbService_" + kuraServicePid + "_" + threadNumber.getAndIncrement());
-            return result;
-        });
-
         this.executor = Executors.newSingleThreadScheduledExecutor();
         updated(properties);
 
@@ -152,12 +131,15 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
             Thread.currentThread().interrupt();
         }
 
-        this.executorService.shutdown();
-        awaitExecutorServiceTermination();
+        // wait for the running withConnection() calls to complete
+        final Lock lock = this.rwLock.writeLock();
+        lock.lock();
         try {
             shutdownDb();
         } catch (SQLException e) {
             logger.warn("got exception while shutting down the database", e);
+        } finally {
+            lock.unlock();
         }
         logger.info("deactivate...done");
     }
@@ -183,9 +165,23 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
         }
     }
 
-    private <T> T withConnectionInternal(ConnectionCallable<T> callable) throws SQLException {
-        final Lock executorlock = this.rwLock.readLock();
-        executorlock.lock();
+    private <T> T withConnectionInternal(ConnectionCallable<T> callable, boolean nested) throws SQLException {
+        final Lock lock = this.rwLock.readLock();
+        if (nested) {
+            // the read lock is already held by this thread
+            lock.lock();
+        } else {
+            try {
+                lock.lockInterruptibly();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the database", e);
+            }
+        }
+
+        // H2 file channels are closed if the thread performing I/O on them is interrupted, this would close the
+        // database for every user. Clear the interrupt flag while the callable runs and restore it afterwards.
+        boolean interrupted = Thread.interrupted();
         Connection connection = null;
         try {
             connection = getConnectionInternal();
@@ -196,36 +192,48 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
             throw e;
         } finally {
             close(connection);
-            executorlock.unlock();
+            lock.unlock();
+            interrupted |= Thread.interrupted();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The caller waits for pending configuration updates and for a free connection interruptibly: if it is
+     * interrupted before the callable is started a {@link SQLException} is thrown and its interrupt status is kept.
+     * Nested calls do not wait and are not affected by the interrupt status.
+     */
     @Override
     public <T> T withConnection(ConnectionCallable<T> callable) throws SQLException {
-        if (this.pendingUpdates.get() > 0) {
-            syncWithExecutor();
-        }
+        final int[] depth = this.withConnectionDepth.get();
 
-        if (this.isOnExecutor.get()) {
-            return withConnectionInternal(callable);
+        if (depth[0] > 0) {
+            // nested call, the caller already holds a permit and the read lock
+            return withConnectionInternal(callable, true);
         }
 
-        final Future<T> result = this.executorService.submit(() -> withConnectionInternal(callable));
+        if (this.pendingUpdates.get() > 0) {
+            awaitPendingUpdates();
+        }
 
         try {
-            return result.get();
-        } catch (InterruptedException e) {
+            this.connectionPermits.acquire();
+        } catch (final InterruptedException e) {
             Thread.currentThread().interrupt();
-            throw new SQLException(e);
-        } catch (ExecutionException e) {
-            if (e.getCause() instanceof SQLException) {
-                throw (SQLException) e.getCause();
-            } else if (e.getCause() instanceof RuntimeException) {
-                throw (RuntimeException) e.getCause();
-            }
-            throw new IllegalStateException(e);
+            throw new SQLException("Interrupted while waiting for a connection", e);
         }
 
+        depth[0]++;
+        try {
+            return withConnectionInternal(callable, false);
+        } finally {
+            depth[0]--;
+            this.connectionPermits.release();
+        }
     }
 
     @Override
@@ -339,7 +347,7 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
 
             if (this.configuration == null
                     || newConfiguration.getConnectionPoolMaxSize() != this.configuration.getConnectionPoolMaxSize()) {
-                this.executorService.setMaximumPoolSize(newConfiguration.getConnectionPoolMaxSize());
+                this.connectionPermits.setPermits(newConfiguration.getConnectionPoolMaxSize());
             }
 
             this.configuration = newConfiguration;
@@ -356,15 +364,6 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
         }
     }
 
-    private void awaitExecutorServiceTermination() {
-        try {
-            this.executorService.awaitTermination(1, TimeUnit.MINUTES);
-        } catch (InterruptedException e1) {
-            logger.warn("Interrupted while waiting for db shutdown");
-            Thread.currentThread().interrupt();
-        }
-    }
-
     private void setParameters(H2DbServiceOptions configuration) throws SQLException {
         if (!configuration.isFileBasedLogLevelSpecified()) {
             executeInternal("SET TRACE_LEVEL_FILE 0");
@@ -378,6 +377,18 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
         this.connectionPool.setMaxConnections(configuration.getConnectionPoolMaxSize());
     }
 
+    private void awaitPendingUpdates() throws SQLException {
+        try {
+            this.executor.submit(() -> {
+            }).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database configuration update", e);
+        } catch (final Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private void syncWithExecutor() {
         try {
             this.executor.submit(() -> {
@@ -599,4 +610,28 @@ public class H2DbServiceImpl implements H2DbService, ConfigurableComponent {
             }
         }
     }
+
+    private static final class ConnectionPermits extends Semaphore {
+
+        private static final long serialVersionUID = 1L;
+
+        private int permits;
+
+        ConnectionPermits(final int permits) {
+            super(permits, true);
+            this.permits = permits;
+        }
+
+        synchronized void setPermits(final int newPermits) {
+            final int delta = newPermits - this.permits;
+
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+
+            this.permits = newPermits;
+        }
+    }
 }
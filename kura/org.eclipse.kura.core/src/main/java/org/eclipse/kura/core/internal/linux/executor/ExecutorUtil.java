@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2019, 2021 Eurotech and/or its affiliates and others
+ * Copyright (c) 2019, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -59,13 +59,30 @@ public class ExecutorUtil {
     private static final String DEFAULT_COMMAND_USERNAME = "kura";
 
     private String commandUsername;
+    private final ProcessTable processTable;
 
     public ExecutorUtil() {
-        this.commandUsername = DEFAULT_COMMAND_USERNAME;
+        this(DEFAULT_COMMAND_USERNAME);
     }
 
     public ExecutorUtil(String commandUsername) {
+        this(commandUsername, null);
+    }
+
+    public ExecutorUtil(ProcessTable processTable) {
+        this(DEFAULT_COMMAND_USERNAME, processTable);
+    }
+
+    /**
+     * @param commandUsername
+     *            the user running the unprivileged commands
+     * @param processTable
+     *            the table used to look up the running processes, if {@code null} or not available the ps command is
+     *            used instead
+     */
+    public ExecutorUtil(String commandUsername, ProcessTable processTable) {
         this.commandUsername = commandUsername;
+        this.processTable = processTable;
     }
 
     public String getCommandUsername() {
@@ -96,6 +113,18 @@ public class ExecutorUtil {
         executeAsync(command, commandLine, callback);
     }
 
+    private boolean isProcessTableAvailable() {
+        return this.processTable != null && this.processTable.isAvailable();
+    }
+
+    // the commands started or stopped here change the process table, the cached listing is discarded so that they are
+    // immediately visible
+    private void invalidateProcessTable() {
+        if (this.processTable != null) {
+            this.processTable.invalidate();
+        }
+    }
+
     public boolean stopUnprivileged(Pid pid, Signal signal) {
         boolean isStopped = true;
         if (isRunning(pid)) {
@@ -139,6 +168,10 @@ public class ExecutorUtil {
     }
 
     public boolean isRunning(Pid pid) {
+        if (isProcessTableAvailable()) {
+            return this.processTable.isRunning(pid.getPid());
+        }
+
         boolean isRunning = false;
         String pidString = ((Integer) pid.getPid()).toString();
         String psCommand = "ps -p " + pidString;
@@ -169,6 +202,10 @@ public class ExecutorUtil {
     }
 
     public Map<String, Pid> getPids(String[] commandLine) {
+        if (isProcessTableAvailable()) {
+            return getPids(this.processTable.getProcesses(), commandLine);
+        }
+
         Map<String, Pid> pids = new HashMap<>();
         CommandLine psCommandLine = new CommandLine("ps");
         psCommandLine.addArgument("-ax");
@@ -203,6 +240,16 @@ public class ExecutorUtil {
         }
     }
 
+    private Map<String, Pid> getPids(Map<Integer, String> processes, String[] commandLine) {
+        Map<String, Integer> pids = new HashMap<>();
+        for (Map.Entry<Integer, String> process : processes.entrySet()) {
+            if (checkLine(process.getValue(), commandLine)) {
+                pids.put(process.getValue(), process.getKey());
+            }
+        }
+        return sortPids(pids);
+    }
+
     private Map<String, Pid> parsePids(ByteArrayOutputStream out, String[] commandLine) {
         Map<String, Integer> pids = new HashMap<>();
         String pid;
@@ -220,6 +267,10 @@ public class ExecutorUtil {
                 pids.put(line, Integer.parseInt(pid));
             }
         }
+        return sortPids(pids);
+    }
+
+    private static Map<String, Pid> sortPids(Map<String, Integer> pids) {
         // Sort pids in reverse order (useful when stop processes...)
         return pids.entrySet().stream().sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
                 .collect(Collectors.toMap(Map.Entry::getKey, e -> new LinuxPid(e.getValue()), (e1, e2) -> e1,
@@ -257,6 +308,7 @@ public class ExecutorUtil {
             logger.debug(COMMAND_MESSAGE + " {} failed", commandLine, e);
         } finally {
             stopStreamHandler(executor);
+            invalidateProcessTable();
             commandStatus.setExitStatus(new LinuxExitStatus(exitStatus));
             commandStatus.setTimedout(executor.getWatchdog().killedProcess());
         }
@@ -307,7 +359,10 @@ public class ExecutorUtil {
 
         Executor executor = configureExecutor(command);
 
-        LinuxResultHandler resultHandler = new LinuxResultHandler(callback, executor);
+        LinuxResultHandler resultHandler = new LinuxResultHandler(status -> {
+            invalidateProcessTable();
+            callback.accept(status);
+        }, executor);
         resultHandler.setStatus(commandStatus);
 
         logger.debug("Executing: {}", commandLine);
@@ -320,6 +375,7 @@ public class ExecutorUtil {
             } else {
                 executor.execute(commandLine, resultHandler);
             }
+            invalidateProcessTable();
         } catch (IOException e) {
             stopStreamHandler(executor);
             commandStatus.setExitStatus(new LinuxExitStatus(1));
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.internal.linux.executor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The table of the running processes, read from the proc filesystem instead of running the ps command.
+ * <p>
+ * The command line of each process is rendered as in the output of {@code ps -ax}: the arguments separated by spaces,
+ * with control characters replaced by {@code ?}, or the process name between square brackets if the command line is
+ * not available, like for kernel threads, followed by {@code <defunct>} for zombie processes.
+ * <p>
+ * Listing the processes requires to read two files for each of them, the listing is cached for a short time and can
+ * be invalidated when a process is started or stopped. Checking if a single process is running does not use the cache.
+ */
+public class ProcessTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessTable.class);
+
+    private static final long DEFAULT_MAX_AGE_MILLIS = 500;
+    private static final ProcessTable DEFAULT = new ProcessTable(Paths.get("/proc"), DEFAULT_MAX_AGE_MILLIS);
+
+    private final Path procRoot;
+    private final long maxAgeNanos;
+
+    private SortedMap<Integer, String> snapshot;
+    private long snapshotTime;
+
+    public ProcessTable(Path procRoot, long maxAgeMillis) {
+        this.procRoot = procRoot;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+    }
+
+    /**
+     * @return the table of the processes of the system, shared by all the executor services
+     */
+    public static ProcessTable getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return {@code true} if the proc filesystem is mounted
+     */
+    public boolean isAvailable() {
+        return Files.isDirectory(this.procRoot.resolve("self"));
+    }
+
+    public boolean isRunning(int pid) {
+        return Files.isDirectory(this.procRoot.resolve(Integer.toString(pid)));
+    }
+
+    /**
+     * @return the command lines of the running processes, sorted by pid
+     */
+    public synchronized SortedMap<Integer, String> getProcesses() {
+        final long now = System.nanoTime();
+        if (this.snapshot == null || now - this.snapshotTime > this.maxAgeNanos) {
+            this.snapshot = Collections.unmodifiableSortedMap(readProcesses());
+            this.snapshotTime = now;
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * Discards the cached listing, the next call to {@link #getProcesses()} will read the proc filesystem again.
+     */
+    public synchronized void invalidate() {
+        this.snapshot = null;
+    }
+
+    private SortedMap<Integer, String> readProcesses() {
+        final SortedMap<Integer, String> processes = new TreeMap<>();
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(this.procRoot)) {
+            for (final Path entry : entries) {
+                final Integer pid = parsePid(entry.getFileName().toString());
+                if (pid == null) {
+                    continue;
+                }
+
+                try {
+                    processes.put(pid, readCommandLine(entry));
+                } catch (IOException e) {
+                    // the process terminated while reading
+                    logger.trace("Failed to read process {}", pid, e);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to list processes in {}", this.procRoot, e);
+        }
+
+        return processes;
+    }
+
+    private static String readCommandLine(final Path processDir) throws IOException {
+        final String stat = new String(Files.readAllBytes(processDir.resolve("stat")), UTF_8);
+        final int nameEnd = stat.lastIndexOf(')');
+        final String name = stat.substring(stat.indexOf('(') + 1, nameEnd);
+        final boolean isZombie = stat.length() > nameEnd + 2 && stat.charAt(nameEnd + 2) == 'Z';
+
+        final byte[] cmdline = Files.readAllBytes(processDir.resolve("cmdline"));
+        int length = cmdline.length;
+        while (length > 0 && cmdline[length - 1] == 0) {
+            length--;
+        }
+
+        final StringBuilder commandLine = new StringBuilder();
+        if (length == 0) {
+            commandLine.append('[').append(name).append(']');
+        } else {
+            for (int i = 0; i < length; i++) {
+                if (cmdline[i] == 0) {
+                    cmdline[i] = ' ';
+                } else if (cmdline[i] > 0 && cmdline[i] < ' ' || cmdline[i] == 0x7f) {
+                    // like ps, control characters are not printed
+                    cmdline[i] = '?';
+                }
+            }
+            commandLine.append(new String(cmdline, 0, length, UTF_8));
+        }
+
+        if (isZombie) {
+            commandLine.append(" <defunct>");
+        }
+
+        return commandLine.toString();
+    }
+
+    private static Integer parsePid(final String name) {
+        if (name.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return Integer.valueOf(name);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
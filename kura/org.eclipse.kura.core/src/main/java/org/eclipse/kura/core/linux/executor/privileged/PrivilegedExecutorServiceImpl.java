@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2019, 2021 Eurotech and/or its affiliates and others
+ * Copyright (c) 2019, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -19,6 +19,7 @@ import java.util.function.Consumer;
 
 import org.apache.commons.io.Charsets;
 import org.eclipse.kura.core.internal.linux.executor.ExecutorUtil;
+import org.eclipse.kura.core.internal.linux.executor.ProcessTable;
 import org.eclipse.kura.core.linux.executor.LinuxExitStatus;
 import org.eclipse.kura.core.linux.executor.LinuxSignal;
 import org.eclipse.kura.executor.Command;
@@ -43,7 +44,7 @@ public class PrivilegedExecutorServiceImpl implements PrivilegedExecutorService
     public void activate(ComponentContext componentContext) {
         logger.info("activate...");
         this.ctx = componentContext;
-        this.executorUtil = new ExecutorUtil();
+        this.executorUtil = new ExecutorUtil(ProcessTable.getDefault());
     }
 
     public void deactivate(ComponentContext componentContext) {
@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2018, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2018, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -13,7 +13,6 @@
 
 package org.eclipse.kura.internal.driver.opcua;
 
-import static org.eclipse.kura.internal.driver.opcua.Utils.fillRecord;
 import static org.eclipse.kura.internal.driver.opcua.Utils.fillStatus;
 import static org.eclipse.kura.internal.driver.opcua.Utils.runSafe;
 
@@ -36,14 +35,11 @@ import org.eclipse.milo.opcua.sdk.client.api.UaClient;
 import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfig;
 import org.eclipse.milo.opcua.sdk.client.api.config.OpcUaClientConfigBuilder;
 import org.eclipse.milo.opcua.stack.client.UaTcpStackClient;
-import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
 import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText;
 import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
 import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
 import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
 import org.eclipse.milo.opcua.stack.core.types.structured.EndpointDescription;
-import org.eclipse.milo.opcua.stack.core.types.structured.ReadResponse;
-import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
 import org.eclipse.milo.opcua.stack.core.types.structured.WriteResponse;
 import org.eclipse.milo.opcua.stack.core.types.structured.WriteValue;
 import org.slf4j.Logger;
@@ -62,6 +58,7 @@ public class ConnectionManager {
     private final SubscriptionManager subscriptionManager;
     private final SubtreeSubscriptionManager subtreeSubscriptionManager;
     private final OpcUaOptions options;
+    private final ReadDispatcher readDispatcher;
 
     public ConnectionManager(final OpcUaClient client, final OpcUaOptions options,
             final BiConsumer<ConnectionManager, Throwable> failureHandler,
@@ -75,6 +72,9 @@ public class ConnectionManager {
         this.subscriptionManager = new SubscriptionManager(options, client, this.queue, registrations);
         this.subtreeSubscriptionManager = new SubtreeSubscriptionManager(options, client, this.queue,
                 subtreeListenerRegistrations);
+        this.readDispatcher = new ReadDispatcher(ids -> client.read(0.0, TimestampsToReturn.Both, ids),
+                options.getMaxItemCountPerRequest(), options.getMaxOutstandingRequests(),
+                ex -> failureHandler.accept(this, ex));
     }
 
     public static CompletableFuture<ConnectionManager> connect(final OpcUaOptions options,
@@ -106,13 +106,7 @@ public class ConnectionManager {
     }
 
     public void read(final List<Request<ReadParams>> requests) throws Exception {
-
-        final int maxItemsPerRequest = this.options.getMaxItemCountPerRequest();
-        final ArrayList<ReadValueId> tempList = new ArrayList<>(maxItemsPerRequest);
-
-        for (int i = 0; i < requests.size(); i += maxItemsPerRequest) {
-            this.read(requests.subList(i, Math.min(i + maxItemsPerRequest, requests.size())), tempList);
-        }
+        this.readDispatcher.read(requests, this.options.getRequestTimeout());
     }
 
     public void write(final List<Request<WriteParams>> requests) throws Exception {
@@ -125,24 +119,6 @@ public class ConnectionManager {
         }
     }
 
-    private void read(final List<Request<ReadParams>> requests, final List<ReadValueId> tempList) throws Exception {
-        tempList.clear();
-
-        for (final Request<ReadParams> request : requests) {
-            tempList.add(request.getParameters().getReadValueId());
-        }
-
-        final ReadResponse response = runSafe(this.client.read(0.0, TimestampsToReturn.Both, tempList),
-                this.options.getRequestTimeout(), ex -> this.failureHandler.accept(this, ex));
-
-        final DataValue[] results = response.getResults();
-        for (int i = 0; i < requests.size(); i++) {
-            fillRecord(results[i], requests.get(i).getRecord());
-        }
-
-        logger.debug("Read Successful");
-    }
-
     private void write(final List<Request<WriteParams>> requests, final List<WriteValue> tempList) throws Exception {
         tempList.clear();
 
@@ -166,6 +142,7 @@ public class ConnectionManager {
     public synchronized void close() {
 
         logger.info("Disconnecting from OPC-UA...");
+        logger.info("Read statistics - {}", this.readDispatcher);
 
         this.queue.close(
                 () -> CompletableFuture.allOf(this.subscriptionManager.close(), this.subtreeSubscriptionManager.close()) //
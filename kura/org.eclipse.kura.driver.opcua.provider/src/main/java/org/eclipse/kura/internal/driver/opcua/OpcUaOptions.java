@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2016, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2016, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -140,6 +140,8 @@ final class OpcUaOptions {
 
     private static final String MAX_REQUEST_ITEMS = "max.request.items";
 
+    private static final String MAX_OUTSTANDING_REQUESTS = "max.outstanding.requests";
+
     private static final String FORCE_ENDPOINT_URL = "force.endpoint.url";
 
     private static final String SUBTREE_SUBSCRIPTION_CHANNEL_NAME_FORMAT = "subtree.subscription.name.format";
@@ -431,6 +433,14 @@ final class OpcUaOptions {
         return 10;
     }
 
+    int getMaxOutstandingRequests() {
+        final Object maxOutstandingRequests = this.properties.get(MAX_OUTSTANDING_REQUESTS);
+        if (maxOutstandingRequests instanceof Integer) {
+            return (Integer) maxOutstandingRequests;
+        }
+        return 4;
+    }
+
     boolean shouldForceEndpointUrl() {
         final Object raw = this.properties.get(FORCE_ENDPOINT_URL);
         if (raw instanceof Boolean) {
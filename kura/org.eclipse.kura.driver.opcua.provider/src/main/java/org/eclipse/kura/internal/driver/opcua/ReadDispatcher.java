@@ -0,0 +1,226 @@
+/**
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ */
+
+package org.eclipse.kura.internal.driver.opcua;
+
+import static java.util.Objects.requireNonNull;
+import static org.eclipse.kura.internal.driver.opcua.Utils.fillRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.eclipse.kura.internal.driver.opcua.request.ReadParams;
+import org.eclipse.kura.internal.driver.opcua.request.Request;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends the read requests of a session to the server.
+ * <p>
+ * The requests are split in chunks of at most {@code maxItemsPerRequest} items that are sent concurrently, keeping at
+ * most {@code maxOutstandingRequests} service calls pending on the session. A read of a node that is already being
+ * read, by the same call or by another one, is not sent again: the caller waits for the pending result instead, so
+ * that assets sharing the driver and polling the same nodes with the same period generate a single request.
+ */
+class ReadDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReadDispatcher.class);
+
+    private final Function<List<ReadValueId>, CompletableFuture<ReadResponse>> readFunction;
+    private final int maxItemsPerRequest;
+    private final Semaphore outstandingRequests;
+    private final Consumer<Throwable> failureHandler;
+
+    private final Map<ReadParams, CompletableFuture<DataValue>> pendingReads = new ConcurrentHashMap<>();
+
+    private final AtomicLong readCount = new AtomicLong();
+    private final AtomicLong itemCount = new AtomicLong();
+    private final AtomicLong coalescedItemCount = new AtomicLong();
+    private final AtomicLong serviceCallCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    ReadDispatcher(final Function<List<ReadValueId>, CompletableFuture<ReadResponse>> readFunction,
+            final int maxItemsPerRequest, final int maxOutstandingRequests, final Consumer<Throwable> failureHandler) {
+        this.readFunction = readFunction;
+        this.maxItemsPerRequest = Math.max(1, maxItemsPerRequest);
+        this.outstandingRequests = new Semaphore(Math.max(1, maxOutstandingRequests));
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * Reads the provided requests and fills their records, waiting at most {@code timeout} milliseconds.
+     *
+     * @throws Exception
+     *             if the server could not be read, in this case the failure handler is notified
+     */
+    void read(final List<Request<ReadParams>> requests, final long timeout) throws Exception {
+        if (requests.isEmpty()) {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        final List<CompletableFuture<DataValue>> results = new ArrayList<>(requests.size());
+        final List<ReadParams> toSend = new ArrayList<>();
+        final List<CompletableFuture<DataValue>> toComplete = new ArrayList<>();
+
+        for (final Request<ReadParams> request : requests) {
+            final ReadParams params = request.getParameters();
+            final CompletableFuture<DataValue> result = new CompletableFuture<>();
+            final CompletableFuture<DataValue> pending = this.pendingReads.putIfAbsent(params, result);
+
+            if (pending != null) {
+                results.add(pending);
+                this.coalescedItemCount.incrementAndGet();
+            } else {
+                results.add(result);
+                toSend.add(params);
+                toComplete.add(result);
+            }
+        }
+
+        try {
+            for (int i = 0; i < toSend.size(); i += this.maxItemsPerRequest) {
+                final int end = Math.min(i + this.maxItemsPerRequest, toSend.size());
+                send(toSend.subList(i, end), toComplete.subList(i, end), deadline);
+            }
+
+            CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[results.size()]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            fail(toSend, toComplete, e);
+            this.failureHandler.accept(e);
+            throw e;
+        }
+
+        for (int i = 0; i < requests.size(); i++) {
+            fillRecord(results.get(i).join(), requests.get(i).getRecord());
+        }
+
+        updateStatistics(requests.size(), System.nanoTime() - start);
+
+        logger.debug("Read Successful");
+    }
+
+    long getReadCount() {
+        return this.readCount.get();
+    }
+
+    long getItemCount() {
+        return this.itemCount.get();
+    }
+
+    long getCoalescedItemCount() {
+        return this.coalescedItemCount.get();
+    }
+
+    long getServiceCallCount() {
+        return this.serviceCallCount.get();
+    }
+
+    /**
+     * @return the average time in milliseconds spent by {@link #read(List, long)} for the successful reads
+     */
+    double getAverageLatency() {
+        final long reads = this.readCount.get();
+        return reads == 0 ? 0 : this.totalLatencyNanos.get() / (double) reads / 1_000_000;
+    }
+
+    /**
+     * @return the maximum time in milliseconds spent by {@link #read(List, long)} for a successful read
+     */
+    double getMaxLatency() {
+        return this.maxLatencyNanos.get() / 1_000_000d;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("reads: %d, items: %d, coalesced items: %d, service calls: %d, "
+                + "average latency: %.1f ms, max latency: %.1f ms", getReadCount(), getItemCount(),
+                getCoalescedItemCount(), getServiceCallCount(), getAverageLatency(), getMaxLatency());
+    }
+
+    private void send(final List<ReadParams> params, final List<CompletableFuture<DataValue>> results,
+            final long deadline) throws Exception {
+
+        if (!this.outstandingRequests.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+            throw new TimeoutException("Timeout waiting for the pending read requests to complete");
+        }
+
+        final List<ReadValueId> readValueIds = new ArrayList<>(params.size());
+        for (final ReadParams param : params) {
+            readValueIds.add(param.getReadValueId());
+        }
+
+        final CompletableFuture<ReadResponse> response;
+        try {
+            response = requireNonNull(this.readFunction.apply(readValueIds), "Read response cannot be null");
+        } catch (Exception e) {
+            this.outstandingRequests.release();
+            throw e;
+        }
+
+        this.serviceCallCount.incrementAndGet();
+
+        response.whenComplete((ok, err) -> {
+            this.outstandingRequests.release();
+
+            if (err != null) {
+                fail(params, results, err);
+                return;
+            }
+
+            final DataValue[] values = ok.getResults();
+            if (values == null || values.length != params.size()) {
+                fail(params, results, new IllegalStateException("Unexpected number of results in read response"));
+                return;
+            }
+
+            for (int i = 0; i < params.size(); i++) {
+                this.pendingReads.remove(params.get(i), results.get(i));
+                results.get(i).complete(values[i]);
+            }
+        });
+    }
+
+    private void fail(final List<ReadParams> params, final List<CompletableFuture<DataValue>> results,
+            final Throwable cause) {
+        for (int i = 0; i < params.size(); i++) {
+            this.pendingReads.remove(params.get(i), results.get(i));
+            results.get(i).completeExceptionally(cause);
+        }
+    }
+
+    private void updateStatistics(final int items, final long latencyNanos) {
+        this.readCount.incrementAndGet();
+        this.itemCount.addAndGet(items);
+        this.totalLatencyNanos.addAndGet(latencyNanos);
+        this.maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+
+        logger.debug("Read of {} items completed in {} ms", items, TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+    }
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2017, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -30,6 +30,7 @@ import org.eclipse.kura.driver.block.task.AbstractBlockDriver;
 import org.eclipse.kura.driver.block.task.BlockTask;
 import org.eclipse.kura.driver.block.task.Mode;
 import org.eclipse.kura.driver.block.task.ToplevelBlockTask;
+import org.eclipse.kura.internal.driver.s7plc.task.S7PlcMultiVarTask;
 import org.eclipse.kura.internal.driver.s7plc.task.S7PlcTaskBuilder;
 import org.eclipse.kura.internal.driver.s7plc.task.S7PlcToplevelBlockTask;
 import org.slf4j.Logger;
@@ -37,6 +38,7 @@ import org.slf4j.LoggerFactory;
 
 import Moka7.S7;
 import Moka7.S7Client;
+import Moka7.S7DataItem;
 
 /**
  * The Kura S7PlcDriver is a S7 PLC Driver implementation for Kura Asset-Driver
@@ -50,7 +52,12 @@ import Moka7.S7Client;
  *
  * The required properties are enlisted in {@link S7PlcChannelDescriptor} and
  * the driver connection specific properties are enlisted in
- * {@link S7PlcOptions}
+ * {@link S7PlcOptions}<br/>
+ * <br/>
+ *
+ * The blocks of the different data blocks involved in a read or write operation
+ * are transferred with S7 multiple read and write requests, packed in as few
+ * requests as the negotiated PDU length allows.
  *
  * @see S7PlcChannelDescriptor
  * @see S7PlcOptions
@@ -161,6 +168,17 @@ public class S7PlcDriver extends AbstractBlockDriver<S7PlcDomain> implements Con
         return (start, end) -> new S7PlcToplevelBlockTask(S7PlcDriver.this, mode, domain.getDB(), start, end);
     }
 
+    @Override
+    protected List<BlockTask> optimize(List<ChannelRecord> records, Mode mode) throws KuraException {
+        final List<BlockTask> tasks = super.optimize(records, mode);
+
+        if (tasks.size() < 2 || !this.options.get().isMultiVarEnabled()) {
+            return tasks;
+        }
+
+        return Collections.singletonList(new S7PlcMultiVarTask(this, tasks, mode));
+    }
+
     @Override
     protected Stream<Pair<S7PlcDomain, BlockTask>> toTasks(List<ChannelRecord> records, Mode mode) {
         return S7PlcTaskBuilder.build(records, mode);
@@ -186,9 +204,13 @@ public class S7PlcDriver extends AbstractBlockDriver<S7PlcDomain> implements Con
         }
     }
 
+    public static boolean isConnectionFailure(Exception e) {
+        return e instanceof Moka7Exception && ((Moka7Exception) e).getStatusCode() <= S7Client.errTCPConnectionReset;
+    }
+
     private void handleMoka7IOException(Moka7Exception e) {
         logger.warn("Operation failed due to IO error", e);
-        if (e.getStatusCode() <= S7Client.errTCPConnectionReset) {
+        if (isConnectionFailure(e)) {
             logger.warn("Connection problems detected, disconnecting, will attempt to reconnect at next read/write");
             try {
                 disconnect();
@@ -214,6 +236,24 @@ public class S7PlcDriver extends AbstractBlockDriver<S7PlcDomain> implements Con
         }
     }
 
+    public synchronized int getPduLength() {
+        return this.state.client.PDULength();
+    }
+
+    public synchronized void readMultiVars(S7DataItem[] items) throws IOException {
+        int result = this.state.client.ReadMultiVars(items, items.length);
+        if (result != 0) {
+            throw new Moka7Exception("Items: " + items.length + " status: " + result, result);
+        }
+    }
+
+    public synchronized void writeMultiVars(S7DataItem[] items) throws IOException {
+        int result = this.state.client.WriteMultiVars(items, items.length);
+        if (result != 0) {
+            throw new Moka7Exception("Items: " + items.length + " status: " + result, result);
+        }
+    }
+
     @SuppressWarnings("serial")
     static final class Moka7Exception extends IOException {
 
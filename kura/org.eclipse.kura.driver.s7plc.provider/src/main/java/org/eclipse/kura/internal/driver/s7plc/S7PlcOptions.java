@@ -1,5 +1,5 @@
 /**
- * Copyright (c) 2017, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -24,6 +24,7 @@ final class S7PlcOptions {
     private static final Property<Integer> RACK_PROP = new Property<>("rack", 0);
     private static final Property<Integer> SLOT_PROP = new Property<>("slot", 2);
     private static final Property<Integer> MINIMUM_GAP_SIZE_PROP = new Property<>("read.minimum.gap.size", 0);
+    private static final Property<Boolean> MULTI_VAR_ENABLED_PROP = new Property<>("multi.var.enabled", true);
 
     private final String ip;
     private final boolean authenticate;
@@ -31,6 +32,7 @@ final class S7PlcOptions {
     private final int rack;
     private final int slot;
     private final int minimumGapSize;
+    private final boolean multiVarEnabled;
 
     S7PlcOptions(final Map<String, Object> properties) {
         this.ip = IP_PROP.get(properties);
@@ -39,6 +41,7 @@ final class S7PlcOptions {
         this.rack = RACK_PROP.get(properties);
         this.slot = SLOT_PROP.get(properties);
         this.minimumGapSize = MINIMUM_GAP_SIZE_PROP.get(properties);
+        this.multiVarEnabled = MULTI_VAR_ENABLED_PROP.get(properties);
     }
 
     String getIp() {
@@ -65,6 +68,10 @@ final class S7PlcOptions {
         return this.minimumGapSize;
     }
 
+    boolean isMultiVarEnabled() {
+        return this.multiVarEnabled;
+    }
+
     private static class Property<T> {
 
         private final String key;
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+
+package org.eclipse.kura.internal.driver.s7plc.task;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.kura.driver.block.task.BlockTask;
+import org.eclipse.kura.driver.block.task.Mode;
+import org.eclipse.kura.internal.driver.s7plc.S7PlcDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import Moka7.S7DataItem;
+
+/**
+ * Runs the {@link S7PlcToplevelBlockTask} instances produced by the aggregation of all the data blocks, packing them
+ * into S7 multiple read and write telegrams. The tasks are packed when the task is run, using the PDU length
+ * negotiated by the current connection.
+ * <p>
+ * The tasks in {@link Mode#READ} mode are run before the ones in {@link Mode#WRITE} mode, the latter can depend on the
+ * former for the read-update-write operations.
+ */
+public class S7PlcMultiVarTask extends BlockTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(S7PlcMultiVarTask.class);
+
+    private final S7PlcDriver driver;
+    private final List<S7PlcToplevelBlockTask> readTasks = new ArrayList<>();
+    private final List<S7PlcToplevelBlockTask> writeTasks = new ArrayList<>();
+    private final List<BlockTask> otherTasks = new ArrayList<>();
+
+    public S7PlcMultiVarTask(S7PlcDriver driver, List<BlockTask> tasks, Mode mode) {
+        super(0, 0, mode);
+        this.driver = driver;
+
+        for (final BlockTask task : tasks) {
+            if (!(task instanceof S7PlcToplevelBlockTask)) {
+                this.otherTasks.add(task);
+            } else if (task.getMode() == Mode.READ) {
+                this.readTasks.add((S7PlcToplevelBlockTask) task);
+            } else {
+                this.writeTasks.add((S7PlcToplevelBlockTask) task);
+            }
+        }
+    }
+
+    @Override
+    public void run() throws IOException {
+        final int pduLength = this.driver.getPduLength();
+
+        final Execution execution = new Execution();
+
+        for (final List<S7PlcToplevelBlockTask> group : S7PlcTaskBuilder.pack(this.readTasks, Mode.READ,
+                pduLength)) {
+            execution.run(group, () -> read(group));
+        }
+
+        final List<S7PlcToplevelBlockTask> preparedWriteTasks = new ArrayList<>(this.writeTasks.size());
+        for (final S7PlcToplevelBlockTask task : this.writeTasks) {
+            execution.run(Collections.singletonList(task), () -> {
+                task.prepareWrite();
+                preparedWriteTasks.add(task);
+            });
+        }
+
+        for (final List<S7PlcToplevelBlockTask> group : S7PlcTaskBuilder.pack(preparedWriteTasks, Mode.WRITE,
+                pduLength)) {
+            execution.run(group, () -> write(group));
+        }
+
+        for (final BlockTask task : this.otherTasks) {
+            execution.run(Collections.singletonList(task), task::run);
+        }
+
+        execution.complete();
+    }
+
+    private void read(final List<S7PlcToplevelBlockTask> group) throws IOException {
+        if (group.size() == 1) {
+            group.get(0).run();
+            return;
+        }
+
+        logger.debug("Reading {} blocks from PLC with a single request", group.size());
+
+        final S7DataItem[] items = toDataItems(group);
+        try {
+            this.driver.readMultiVars(items);
+        } catch (IOException e) {
+            group.forEach(task -> task.onFailure(e));
+            throw e;
+        }
+
+        IOException failure = null;
+        for (int i = 0; i < items.length; i++) {
+            try {
+                group.get(i).completeRead(items[i]);
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void write(final List<S7PlcToplevelBlockTask> group) throws IOException {
+        if (group.size() == 1) {
+            group.get(0).completeWrite();
+            return;
+        }
+
+        logger.debug("Writing {} blocks to PLC with a single request", group.size());
+
+        final S7DataItem[] items = toDataItems(group);
+        try {
+            this.driver.writeMultiVars(items);
+        } catch (IOException e) {
+            group.forEach(task -> task.onFailure(e));
+            throw e;
+        }
+
+        IOException failure = null;
+        for (int i = 0; i < items.length; i++) {
+            try {
+                group.get(i).completeWrite(items[i]);
+            } catch (IOException e) {
+                failure = failure == null ? e : failure;
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static S7DataItem[] toDataItems(final List<S7PlcToplevelBlockTask> group) {
+        final S7DataItem[] items = new S7DataItem[group.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = group.get(i).toDataItem();
+        }
+        return items;
+    }
+
+    @Override
+    public void onFailure(Exception exception) {
+        this.readTasks.forEach(task -> task.onFailure(exception));
+        this.writeTasks.forEach(task -> task.onFailure(exception));
+        this.otherTasks.forEach(task -> task.onFailure(exception));
+    }
+
+    @Override
+    public void onSuccess() {
+        // the tasks are notified as soon as their transfer completes
+    }
+
+    private interface Step {
+
+        void run() throws IOException;
+    }
+
+    /*
+     * Runs the steps, each step notifies its tasks about the outcome. After a connection failure the remaining steps
+     * are not run and their tasks are notified with the same failure. On completion the connection failure, or the
+     * first failure if the connection has not been lost, is rethrown, so that the driver can handle it and
+     * disconnect.
+     */
+    private static class Execution {
+
+        private IOException failure;
+        private IOException connectionFailure;
+
+        void run(final List<? extends BlockTask> tasks, final Step step) {
+            if (this.connectionFailure != null) {
+                tasks.forEach(task -> task.onFailure(this.connectionFailure));
+                return;
+            }
+
+            try {
+                step.run();
+            } catch (IOException e) {
+                if (this.failure == null) {
+                    this.failure = e;
+                }
+                if (S7PlcDriver.isConnectionFailure(e)) {
+                    this.connectionFailure = e;
+                }
+            }
+        }
+
+        void complete() throws IOException {
+            if (this.connectionFailure != null) {
+                throw this.connectionFailure;
+            }
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -13,6 +13,8 @@
 
 package org.eclipse.kura.internal.driver.s7plc.task;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -36,8 +38,16 @@ import org.eclipse.kura.internal.driver.s7plc.S7PlcDataType;
 import org.eclipse.kura.internal.driver.s7plc.S7PlcDomain;
 import org.eclipse.kura.type.DataType;
 
+import Moka7.S7Client;
+
 public final class S7PlcTaskBuilder {
 
+    // sizes of the S7 multiple read/write telegrams, excluding the TPKT and COTP headers
+    private static final int REQUEST_HEADER_SIZE = 12;
+    private static final int REPLY_HEADER_SIZE = 14;
+    private static final int ITEM_SPEC_SIZE = 12;
+    private static final int ITEM_DATA_HEADER_SIZE = 4;
+
     private S7PlcTaskBuilder() {
     }
 
@@ -125,6 +135,77 @@ public final class S7PlcTaskBuilder {
 
     }
 
+    private static int getItemDataSize(S7PlcToplevelBlockTask task) {
+        final int size = task.getEnd() - task.getStart();
+        // odd items are padded, unless they are the last ones of the telegram
+        return ITEM_DATA_HEADER_SIZE + size + (size & 1);
+    }
+
+    private static int getItemCost(S7PlcToplevelBlockTask task, Mode mode) {
+        if (mode == Mode.READ) {
+            return getItemDataSize(task);
+        } else {
+            return ITEM_SPEC_SIZE + getItemDataSize(task);
+        }
+    }
+
+    /**
+     * Packs the provided tasks, that can belong to different data blocks, into groups that can be transferred with a
+     * single S7 multiple read or write telegram. The groups are filled in first fit decreasing order, the tasks that
+     * do not fit in a telegram alone are returned in a group of their own.
+     *
+     * @param tasks
+     *            the tasks, they must be either in {@link Mode#READ} or {@link Mode#WRITE} mode
+     * @param mode
+     *            the mode of the tasks
+     * @param pduLength
+     *            the PDU length negotiated with the PLC
+     * @return the groups
+     */
+    public static List<List<S7PlcToplevelBlockTask>> pack(List<S7PlcToplevelBlockTask> tasks, Mode mode,
+            int pduLength) {
+        final int capacity = pduLength - (mode == Mode.READ ? REPLY_HEADER_SIZE : REQUEST_HEADER_SIZE);
+        final int maxItems = Math.min(S7Client.MaxVars, (pduLength - REQUEST_HEADER_SIZE) / ITEM_SPEC_SIZE);
+
+        final List<S7PlcToplevelBlockTask> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparingInt((S7PlcToplevelBlockTask task) -> getItemCost(task, mode)).reversed());
+
+        final List<List<S7PlcToplevelBlockTask>> groups = new ArrayList<>();
+        final List<Integer> freeSpace = new ArrayList<>();
+
+        for (final S7PlcToplevelBlockTask task : sorted) {
+            final int cost = getItemCost(task, mode);
+
+            if (cost > capacity || maxItems < 2) {
+                final List<S7PlcToplevelBlockTask> single = new ArrayList<>(1);
+                single.add(task);
+                groups.add(single);
+                freeSpace.add(-1);
+                continue;
+            }
+
+            boolean added = false;
+            for (int i = 0; i < groups.size(); i++) {
+                final List<S7PlcToplevelBlockTask> group = groups.get(i);
+                if (freeSpace.get(i) >= cost && group.size() < maxItems) {
+                    group.add(task);
+                    freeSpace.set(i, freeSpace.get(i) - cost);
+                    added = true;
+                    break;
+                }
+            }
+
+            if (!added) {
+                final List<S7PlcToplevelBlockTask> group = new ArrayList<>();
+                group.add(task);
+                groups.add(group);
+                freeSpace.add(capacity - cost);
+            }
+        }
+
+        return groups;
+    }
+
     public static Stream<Pair<S7PlcDomain, BlockTask>> build(List<ChannelRecord> records, Mode mode) {
         return records.stream().map((record) -> {
             try {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -23,6 +23,9 @@ import org.eclipse.kura.internal.driver.s7plc.S7PlcDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import Moka7.S7;
+import Moka7.S7DataItem;
+
 public class S7PlcToplevelBlockTask extends ToplevelBlockTask {
 
     private static final Logger logger = LoggerFactory.getLogger(S7PlcDriver.class);
@@ -50,6 +53,66 @@ public class S7PlcToplevelBlockTask extends ToplevelBlockTask {
         }
     }
 
+    int getAreaNo() {
+        return this.areaNo;
+    }
+
+    S7DataItem toDataItem() {
+        return new S7DataItem(S7.S7AreaDB, this.areaNo, getStart(), getEnd() - getStart(),
+                ((ByteArrayBuffer) getBuffer()).getBackingArray());
+    }
+
+    /*
+     * The following methods split the execution of this task around a transfer performed by a S7PlcMultiVarTask,
+     * following the same steps of ToplevelBlockTask.run()
+     */
+
+    void completeRead(final S7DataItem item) throws IOException {
+        try {
+            checkResult(item);
+            runChildren();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    void prepareWrite() throws IOException {
+        try {
+            runChildren();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    void completeWrite() throws IOException {
+        try {
+            processBuffer();
+            onSuccess();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    void completeWrite(final S7DataItem item) throws IOException {
+        try {
+            checkResult(item);
+            onSuccess();
+        } catch (Exception e) {
+            onFailure(e);
+            throw e;
+        }
+    }
+
+    private void checkResult(final S7DataItem item) throws IOException {
+        if (item.Result != 0) {
+            throw new IOException("DB: " + this.areaNo + " off: " + getStart() + " len: " + item.Amount + " status: "
+                    + item.Result);
+        }
+    }
+
     @Override
     public Buffer getBuffer() {
         if (this.data == null) {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2021, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2021, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -12,15 +12,26 @@
  *******************************************************************************/
 package org.eclipse.kura.log.filesystem.provider;
 
-import java.io.EOFException;
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.util.LinkedList;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.log.LogEntry;
@@ -34,7 +45,7 @@ public class FilesystemLogProvider implements ConfigurableComponent, LogProvider
     private static final Logger logger = LoggerFactory.getLogger(FilesystemLogProvider.class);
     public static final String LOG_FILEPATH_PROP_KEY = "logFilePath";
 
-    private final List<LogListener> registeredListeners = new LinkedList<>();
+    private final List<LogListener> registeredListeners = new CopyOnWriteArrayList<>();
     private FileLogReader readerThread;
     private String filePath;
 
@@ -54,10 +65,17 @@ public class FilesystemLogProvider implements ConfigurableComponent, LogProvider
 
     public void updated(Map<String, Object> properties) {
         logger.info("Updated FilesystemLogProvider...");
+        String newFilePath = (String) properties.get(LOG_FILEPATH_PROP_KEY);
+        if (this.readerThread != null && this.readerThread.isAlive() && newFilePath != null
+                && newFilePath.equals(this.filePath)) {
+            // the file is already followed, restarting would notify its whole content again
+            logger.info("Updated FilesystemLogProvider... Done.");
+            return;
+        }
         if (this.readerThread != null) {
             this.readerThread.interrupt();
         }
-        this.filePath = (String) properties.get(LOG_FILEPATH_PROP_KEY);
+        this.filePath = newFilePath;
         this.readerThread = new FileLogReader(this.filePath);
         this.readerThread.start();
         logger.info("Updated FilesystemLogProvider... Done.");
@@ -73,83 +91,207 @@ public class FilesystemLogProvider implements ConfigurableComponent, LogProvider
         this.registeredListeners.remove(listener);
     }
 
+    /*
+     * Follows the log file reading blocks of bytes from a channel. The thread waits for changes in the directory of
+     * the file instead of sleeping for a fixed time, the file is also checked periodically in case the file system
+     * does not report the changes. A truncated file is read again from the beginning and a file replaced by log
+     * rotation, detected by its file key (the inode on Linux), is reopened.
+     */
     class FileLogReader extends Thread {
 
-        private static final long SAMPLE_INTERVAL = 100;
-        private final File logFile;
-        private boolean follow = true;
+        private static final int BUFFER_SIZE = 8192;
+        private static final long MAX_WAIT_INTERVAL = 1000;
+        private static final long PENDING_LINE_DELAY = 100;
+
+        private final Path logPath;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        private byte[] partialLine = new byte[256];
+        private int partialLineLength;
+
+        private String pendingLine;
+        private final StringBuilder pendingStacktrace = new StringBuilder();
+
+        private FileChannel channel;
+        private Object fileKey;
+        private long lastReadNanos;
 
         public FileLogReader(String filePath) {
-            this.logFile = new File(filePath);
-            this.follow = true;
+            this.logPath = Paths.get(filePath);
         }
 
         @Override
         public void run() {
-            try (RandomAccessFile file = new RandomAccessFile(this.logFile, "r")) {
-                while (this.follow) {
-                    readLinesAndNotifyListeners(file);
-                    sleep(SAMPLE_INTERVAL);
+            try (WatchService watchService = this.logPath.toAbsolutePath().getFileSystem().newWatchService()) {
+                open();
+                watchParentDirectory(watchService);
+
+                while (!isInterrupted()) {
+                    readAvailableLines();
+
+                    if (reopenIfRotated()) {
+                        continue;
+                    }
+
+                    awaitChanges(watchService, notifyPendingLineIfIdle());
                 }
-            } catch (FileNotFoundException fnf) {
-                logger.error("File '{}' not found.", this.logFile.getPath());
-            } catch (InterruptedException ie) {
+            } catch (NoSuchFileException fnf) {
+                logger.error("File '{}' not found.", this.logPath);
+            } catch (AccessDeniedException ade) {
+                logger.error("File '{}' not readable.", this.logPath);
+            } catch (InterruptedException | ClosedByInterruptException ie) {
                 // nothing to do
             } catch (Exception e) {
                 logger.error("Unexpected exception in FilesystemLogProvider.", e);
             } finally {
+                closeChannel();
                 Thread.currentThread().interrupt();
             }
         }
 
-        private void readLinesAndNotifyListeners(RandomAccessFile file) throws IOException {
-            Optional<String> line = readUntilNewLine(file);
+        private void open() throws IOException {
+            this.channel = FileChannel.open(this.logPath, StandardOpenOption.READ);
+            this.fileKey = Files.readAttributes(this.logPath, BasicFileAttributes.class).fileKey();
+        }
 
-            if (line.isPresent()) {
-                String stacktrace = readStacktrace(file);
-                notifyListeners(line.get(), stacktrace);
+        private void closeChannel() {
+            if (this.channel != null) {
+                try {
+                    this.channel.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close '{}'", this.logPath, e);
+                }
+                this.channel = null;
             }
         }
 
-        private Optional<String> readUntilNewLine(RandomAccessFile file) throws IOException {
-            StringBuilder resultLine = new StringBuilder();
-            long pointerToLastSuccessfulRead = file.getFilePointer();
+        private void watchParentDirectory(WatchService watchService) {
+            final Path parent = this.logPath.toAbsolutePath().getParent();
+            try {
+                parent.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException e) {
+                logger.warn("Cannot watch '{}', falling back to periodic checks.", parent, e);
+            }
+        }
 
-            if (pointerToLastSuccessfulRead < file.length()) {
-                char newChar = 0;
+        /*
+         * The last line could still be followed by its stacktrace, it is notified when no data has been written for
+         * a while. Returns how long to wait for changes.
+         */
+        private long notifyPendingLineIfIdle() {
+            if (this.pendingLine == null) {
+                return MAX_WAIT_INTERVAL;
+            }
 
-                do {
-                    try {
-                        newChar = (char) file.readByte();
-                        resultLine.append(newChar);
-                        pointerToLastSuccessfulRead = file.getFilePointer();
-                    } catch (EOFException eof) {
-                        file.seek(pointerToLastSuccessfulRead);
-                    }
-                } while (newChar != '\n');
+            final long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.lastReadNanos);
+            if (idleMillis >= PENDING_LINE_DELAY) {
+                notifyPendingLine();
+                return MAX_WAIT_INTERVAL;
+            }
 
-                return Optional.of(resultLine.toString());
-            } else {
-                return Optional.empty();
+            return PENDING_LINE_DELAY - idleMillis;
+        }
+
+        private void awaitChanges(WatchService watchService, long timeoutMillis) throws InterruptedException {
+            final WatchKey key = watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (key != null) {
+                // any event in the directory triggers a read, the events themselves are not needed
+                key.pollEvents();
+                key.reset();
             }
         }
 
-        private String readStacktrace(RandomAccessFile file) throws IOException {
-            StringBuilder stacktrace = new StringBuilder();
-            long lastReadPosition = file.getFilePointer();
+        private void readAvailableLines() throws IOException {
+            if (this.channel.size() < this.channel.position()) {
+                logger.info("File '{}' has been truncated, reading from the beginning.", this.logPath);
+                this.channel.position(0);
+                this.partialLineLength = 0;
+            }
+
+            while (this.channel.read(this.buffer) > 0) {
+                this.buffer.flip();
+                splitLines(this.buffer.array(), this.buffer.position(), this.buffer.limit());
+                this.buffer.clear();
+                this.lastReadNanos = System.nanoTime();
+            }
+        }
 
-            Optional<String> maybeStacktrace = readUntilNewLine(file);
+        private boolean reopenIfRotated() throws IOException {
+            final Object currentKey;
+            try {
+                currentKey = Files.readAttributes(this.logPath, BasicFileAttributes.class).fileKey();
+            } catch (NoSuchFileException e) {
+                // the new file has not been created yet
+                return false;
+            }
 
-            while (maybeStacktrace.isPresent() && isStacktrace(maybeStacktrace.get())) {
-                stacktrace.append(maybeStacktrace.get());
-                stacktrace.append("\n");
-                lastReadPosition = file.getFilePointer();
-                maybeStacktrace = readUntilNewLine(file);
+            if (currentKey == null || currentKey.equals(this.fileKey)) {
+                return false;
             }
 
-            file.seek(lastReadPosition);
+            logger.info("File '{}' has been rotated, reopening.", this.logPath);
+
+            // the old file could have been written after the last read and before being rotated
+            readAvailableLines();
+            notifyPartialLine();
+            notifyPendingLine();
+
+            closeChannel();
+            open();
 
-            return stacktrace.toString().trim();
+            return true;
+        }
+
+        private void splitLines(byte[] bytes, int from, int to) {
+            int lineStart = from;
+
+            for (int i = from; i < to; i++) {
+                if (bytes[i] == '\n') {
+                    appendToPartialLine(bytes, lineStart, i + 1);
+                    onLine(new String(this.partialLine, 0, this.partialLineLength, StandardCharsets.UTF_8));
+                    this.partialLineLength = 0;
+                    lineStart = i + 1;
+                }
+            }
+
+            // an incomplete line is kept until its end is written
+            appendToPartialLine(bytes, lineStart, to);
+        }
+
+        /*
+         * The last line of a rotated file will never be completed, it is notified as it is.
+         */
+        private void notifyPartialLine() {
+            if (this.partialLineLength > 0) {
+                onLine(new String(this.partialLine, 0, this.partialLineLength, StandardCharsets.UTF_8));
+                this.partialLineLength = 0;
+            }
+        }
+
+        private void appendToPartialLine(byte[] bytes, int from, int to) {
+            final int length = to - from;
+            if (this.partialLineLength + length > this.partialLine.length) {
+                this.partialLine = Arrays.copyOf(this.partialLine,
+                        Math.max(this.partialLine.length * 2, this.partialLineLength + length));
+            }
+            System.arraycopy(bytes, from, this.partialLine, this.partialLineLength, length);
+            this.partialLineLength += length;
+        }
+
+        /*
+         * The lines following a log line that are not log lines themselves are its stacktrace. The log line is kept
+         * pending until a new log line is found or until no more data is written.
+         */
+        private void onLine(String line) {
+            if (this.pendingLine != null && isStacktrace(line)) {
+                this.pendingStacktrace.append(line);
+                this.pendingStacktrace.append("\n");
+                return;
+            }
+
+            notifyPendingLine();
+            this.pendingLine = line;
         }
 
         private boolean isStacktrace(String line) {
@@ -158,17 +300,38 @@ public class FilesystemLogProvider implements ConfigurableComponent, LogProvider
              * 
              * in kura-audit log file the lines start with a '<'
              */
-            return line.length() > 4 && !line.substring(0, 4).matches("\\d{4}") && !line.startsWith("<");
+            return line.length() > 4 && !startsWithFourDigits(line) && line.charAt(0) != '<';
         }
 
-        private synchronized void notifyListeners(String message, String stacktrace) {
-            if (message != null) {
-                for (LogListener listener : FilesystemLogProvider.this.registeredListeners) {
-                    LogEntry entry = new KuraLogLineParser(message, FilesystemLogProvider.this.filePath, stacktrace)
-                            .createLogEntry();
-                    listener.newLogEntry(entry);
+        private boolean startsWithFourDigits(String line) {
+            for (int i = 0; i < 4; i++) {
+                final char c = line.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
                 }
             }
+            return true;
+        }
+
+        private void notifyPendingLine() {
+            if (this.pendingLine != null) {
+                notifyListeners(this.pendingLine, this.pendingStacktrace.toString().trim());
+                this.pendingLine = null;
+                this.pendingStacktrace.setLength(0);
+            }
+        }
+
+        private void notifyListeners(String message, String stacktrace) {
+            if (FilesystemLogProvider.this.registeredListeners.isEmpty()) {
+                return;
+            }
+
+            // LogEntry is immutable, the line is parsed once for all the listeners
+            LogEntry entry = new KuraLogLineParser(message, FilesystemLogProvider.this.filePath, stacktrace)
+                    .createLogEntry();
+            for (LogListener listener : FilesystemLogProvider.this.registeredListeners) {
+                listener.newLogEntry(entry);
+            }
         }
     }
 
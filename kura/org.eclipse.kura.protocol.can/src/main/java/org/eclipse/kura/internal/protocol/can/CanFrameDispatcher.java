@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.protocol.can;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.kura.protocol.can.CanMessage;
+import org.eclipse.kura.protocol.can.CanSubscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Receives the frames of a {@link CanTransport} in a dedicated thread and delivers them to the subscriptions whose
+ * filter matches the frame id.
+ * <p>
+ * Each subscription gets its own copy of the frame. The receive thread never blocks on the subscribers: if the queue
+ * of a subscription is full the frame is dropped for that subscription only. The frames that do not match any
+ * subscription are discarded, like the kernel does for the frames that do not match the filters of a socket.
+ */
+public class CanFrameDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(CanFrameDispatcher.class);
+
+    private static final long STOP_TIMEOUT_MILLIS = 1000;
+
+    private final CanTransport transport;
+    private final List<CanSubscriptionImpl> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong receivedFrames = new AtomicLong();
+    private final AtomicLong unmatchedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong sentFrames = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread receiveThread;
+
+    public CanFrameDispatcher(final CanTransport transport) {
+        this.transport = transport;
+    }
+
+    public synchronized void start() throws IOException {
+        if (this.running) {
+            return;
+        }
+
+        this.transport.open();
+        this.running = true;
+
+        this.receiveThread = new Thread(this::receiveLoop, "CanFrameDispatcher");
+        this.receiveThread.setDaemon(true);
+        this.receiveThread.start();
+    }
+
+    /**
+     * Closes the transport and all the subscriptions, and waits for the receive thread to terminate.
+     */
+    public void stop() throws IOException {
+        final Thread thread;
+        synchronized (this) {
+            this.running = false;
+            thread = this.receiveThread;
+            this.receiveThread = null;
+        }
+
+        try {
+            this.transport.close();
+        } finally {
+            closeSubscriptions();
+            if (thread != null && thread != Thread.currentThread()) {
+                try {
+                    thread.join(STOP_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the dispatcher has been stopped or if the receive thread terminated because of an error
+     */
+    public boolean isRunning() {
+        return this.running;
+    }
+
+    public CanSubscription subscribe(final int canId, final int canMask, final int queueSize) {
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException("Queue size must be greater than 0");
+        }
+        if (!this.running) {
+            throw new IllegalStateException("CAN Socket must be open before subscribing");
+        }
+
+        final CanSubscriptionImpl subscription = new CanSubscriptionImpl(canId, canMask, queueSize,
+                this.subscriptions::remove);
+        this.subscriptions.add(subscription);
+
+        if (!this.running) {
+            // stopped concurrently, closeSubscriptions() might not have seen this subscription
+            subscription.close();
+        }
+        return subscription;
+    }
+
+    public void send(final String ifName, final List<CanMessage> messages) throws IOException {
+        this.transport.send(ifName, messages);
+        this.sentFrames.addAndGet(messages.size());
+    }
+
+    public long getReceivedFrameCount() {
+        return this.receivedFrames.get();
+    }
+
+    /**
+     * @return the number of received frames that did not match any subscription
+     */
+    public long getUnmatchedFrameCount() {
+        return this.unmatchedFrames.get();
+    }
+
+    /**
+     * @return the number of frames dropped because the queue of a subscription was full, counted once for each
+     *         subscription
+     */
+    public long getDroppedFrameCount() {
+        return this.droppedFrames.get();
+    }
+
+    public long getSentFrameCount() {
+        return this.sentFrames.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("received frames: %d, unmatched frames: %d, dropped frames: %d, sent frames: %d",
+                getReceivedFrameCount(), getUnmatchedFrameCount(), getDroppedFrameCount(), getSentFrameCount());
+    }
+
+    void dispatch(final CanMessage message) {
+        this.receivedFrames.incrementAndGet();
+
+        boolean matched = false;
+        for (final CanSubscriptionImpl subscription : this.subscriptions) {
+            if (subscription.matches(message.getCanId())) {
+                matched = true;
+                if (!subscription.offer(copy(message))) {
+                    this.droppedFrames.incrementAndGet();
+                }
+            }
+        }
+
+        if (!matched) {
+            this.unmatchedFrames.incrementAndGet();
+        }
+    }
+
+    private void receiveLoop() {
+        while (this.running) {
+            final CanMessage message;
+            try {
+                message = this.transport.receive();
+            } catch (IOException | RuntimeException e) {
+                if (this.running) {
+                    logger.error("Error on CanSocket in receive loop, closing subscriptions", e);
+                    this.running = false;
+                    closeSubscriptions();
+                }
+                return;
+            }
+
+            dispatch(message);
+        }
+    }
+
+    private void closeSubscriptions() {
+        for (final CanSubscriptionImpl subscription : this.subscriptions) {
+            subscription.close();
+        }
+    }
+
+    private static CanMessage copy(final CanMessage message) {
+        final CanMessage result = new CanMessage();
+        result.setCanId(message.getCanId());
+        final byte[] data = message.getData();
+        result.setData(data != null ? data.clone() : null);
+        return result;
+    }
+}
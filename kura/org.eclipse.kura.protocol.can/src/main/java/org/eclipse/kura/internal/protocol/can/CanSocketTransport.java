@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.protocol.can;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.kura.protocol.can.CanMessage;
+
+import de.entropia.can.CanSocket;
+import de.entropia.can.CanSocket.CanFrame;
+import de.entropia.can.CanSocket.CanId;
+import de.entropia.can.CanSocket.CanInterface;
+import de.entropia.can.CanSocket.Mode;
+
+/**
+ * A {@link CanTransport} on a RAW CAN socket bound to all the interfaces.
+ * <p>
+ * Resolving an interface name requires an ioctl, the resolved interfaces are cached until the socket is closed. An
+ * interface is removed from the cache when a send on it fails, so that an interface that has been recreated, for
+ * example when an USB adapter is plugged again, is resolved again by the next send.
+ */
+public class CanSocketTransport implements CanTransport {
+
+    private final Map<String, CanInterface> interfaces = new ConcurrentHashMap<>();
+
+    private volatile CanSocket socket;
+
+    @Override
+    public synchronized void open() throws IOException {
+        if (this.socket == null) {
+            final CanSocket canSocket = new CanSocket(Mode.RAW);
+            canSocket.setLoopbackMode(false);
+            canSocket.bind(CanSocket.CAN_ALL_INTERFACES);
+            this.socket = canSocket;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.interfaces.clear();
+        if (this.socket != null) {
+            final CanSocket canSocket = this.socket;
+            this.socket = null;
+            canSocket.close();
+        }
+    }
+
+    @Override
+    public CanMessage receive() throws IOException {
+        final CanFrame frame = getSocket().recv();
+
+        final CanMessage message = new CanMessage();
+        message.setCanId(frame.getCanId().getCanId_EFF());
+        message.setData(frame.getData());
+        return message;
+    }
+
+    @Override
+    public void send(final String ifName, final List<CanMessage> messages) throws IOException {
+        final CanSocket canSocket = getSocket();
+        final CanInterface canInterface = getInterface(canSocket, ifName);
+
+        try {
+            for (final CanMessage message : messages) {
+                canSocket.send(new CanFrame(canInterface, new CanId(message.getCanId()), message.getData()));
+            }
+        } catch (IOException e) {
+            this.interfaces.remove(ifName, canInterface);
+            throw e;
+        }
+    }
+
+    private CanSocket getSocket() throws IOException {
+        final CanSocket canSocket = this.socket;
+        if (canSocket == null) {
+            throw new IOException("CAN socket is closed");
+        }
+        return canSocket;
+    }
+
+    private CanInterface getInterface(final CanSocket canSocket, final String ifName) throws IOException {
+        CanInterface canInterface = this.interfaces.get(ifName);
+        if (canInterface == null) {
+            canInterface = new CanInterface(canSocket, ifName);
+            this.interfaces.put(ifName, canInterface);
+        }
+        return canInterface;
+    }
+}
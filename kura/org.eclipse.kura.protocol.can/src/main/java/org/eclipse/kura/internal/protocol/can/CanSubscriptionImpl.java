@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.protocol.can;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.eclipse.kura.protocol.can.CanMessage;
+import org.eclipse.kura.protocol.can.CanSubscription;
+
+/**
+ * The frames are queued in a non blocking queue, bounded by a counter, so that the receive thread never waits for the
+ * subscribers. Each queued frame releases a permit of a semaphore, that is used by the subscribers to wait for frames.
+ * Closing the subscription releases an additional permit, that is passed from waiter to waiter once the queue is
+ * empty, so that all of them return.
+ */
+class CanSubscriptionImpl implements CanSubscription {
+
+    private final int canId;
+    private final int canMask;
+    private final int capacity;
+    private final Consumer<CanSubscriptionImpl> onClose;
+
+    private final Queue<CanMessage> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Semaphore available = new Semaphore(0);
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    private volatile boolean closed;
+
+    CanSubscriptionImpl(final int canId, final int canMask, final int capacity,
+            final Consumer<CanSubscriptionImpl> onClose) {
+        this.canId = canId;
+        this.canMask = canMask;
+        this.capacity = capacity;
+        this.onClose = onClose;
+    }
+
+    boolean matches(final int frameId) {
+        return (frameId & this.canMask) == (this.canId & this.canMask);
+    }
+
+    /**
+     * Called by the receive thread only.
+     *
+     * @return {@code false} if the frame has been dropped because the queue is full
+     */
+    boolean offer(final CanMessage message) {
+        if (this.closed) {
+            return true;
+        }
+
+        if (this.size.incrementAndGet() > this.capacity) {
+            this.size.decrementAndGet();
+            this.droppedFrames.incrementAndGet();
+            return false;
+        }
+
+        this.queue.offer(message);
+        this.available.release();
+        return true;
+    }
+
+    @Override
+    public CanMessage poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+        if (!this.available.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return take();
+    }
+
+    @Override
+    public CanMessage receive() throws InterruptedException {
+        this.available.acquire();
+        return take();
+    }
+
+    @Override
+    public long getDroppedFrameCount() {
+        return this.droppedFrames.get();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.onClose.accept(this);
+        this.available.release();
+    }
+
+    private CanMessage take() {
+        final CanMessage message = this.queue.poll();
+        if (message == null) {
+            // the permit released by close(), pass it to the next waiter
+            this.available.release();
+            return null;
+        }
+        this.size.decrementAndGet();
+        return message;
+    }
+}
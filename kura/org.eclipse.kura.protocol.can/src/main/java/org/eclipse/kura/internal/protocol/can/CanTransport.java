@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.protocol.can;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.kura.protocol.can.CanMessage;
+
+/**
+ * The connection used by {@link CanFrameDispatcher} to receive and send frames on all the CAN interfaces.
+ * <p>
+ * {@link #receive()} is only called by the receive thread of the dispatcher, while {@link #send(String, List)} can be
+ * called concurrently by any thread. Closing the transport must unblock a pending {@link #receive()}.
+ */
+public interface CanTransport {
+
+    public void open() throws IOException;
+
+    public void close() throws IOException;
+
+    /**
+     * Blocks until a frame is received on any interface.
+     *
+     * @return the received frame
+     * @throws IOException
+     *             if the transport has been closed or the frame could not be received
+     */
+    public CanMessage receive() throws IOException;
+
+    /**
+     * Sends the provided frames, in order, on the provided interface.
+     *
+     * @param ifName
+     *            the name of the interface (eg "can0")
+     * @param messages
+     *            the frames to send
+     * @throws IOException
+     *             if a frame could not be sent, the following frames are not sent
+     */
+    public void send(String ifName, List<CanMessage> messages) throws IOException;
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -13,6 +13,7 @@
 package org.eclipse.kura.protocol.can;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.eclipse.kura.KuraException;
 
@@ -50,6 +51,22 @@ public interface CanConnectionService {
      */
     public void sendCanMessage(String ifName, int canId, byte[] message) throws KuraException, IOException;
 
+    /**
+     * Sends a sequence of frames on a CAN socket, in order, on the same interface
+     *
+     * @param ifName
+     *            the name of the socket (eg "can0")
+     * @param messages
+     *            the frames to send, each with its can identifier and at most 8 bytes of data
+     * @throws KuraException
+     *             with {@link org.eclipse.kura.KuraErrorCode#INVALID_PARAMETER} if a frame is {@code null}, has no data
+     *             or more than 8 bytes of data, in this case no frame is sent
+     * @throws IOException
+     *             if a frame could not be sent, the following frames are not sent
+     * @since 2.1
+     */
+    public void sendCanMessages(String ifName, List<CanMessage> messages) throws KuraException, IOException;
+
     /**
      * Reads frames that are waiting on socket CAN (all interfaces) and returns an array
      * if canId is correct.
@@ -66,4 +83,32 @@ public interface CanConnectionService {
      * @throws IOException
      */
     public CanMessage receiveCanMessage(int canId, int canMask) throws IOException;
+
+    /**
+     * Subscribes to the frames received on all the interfaces whose id matches the provided filter, that is the frames
+     * for which {@code (frameId & canMask) == (canId & canMask)}.
+     * <p>
+     * The frames are received by a single thread and delivered to all the matching subscriptions, so that multiple
+     * consumers can share the bus. The subscription is closed when the CAN socket is disconnected.
+     *
+     * @param canId
+     *            id to be filtered
+     * @param canMask
+     *            mask to be applied to the id, 0 to receive all the frames
+     * @param queueSize
+     *            maximum number of frames queued for the subscription, further frames are dropped until the
+     *            subscriber consumes the queued ones
+     * @return the subscription
+     * @throws IllegalStateException
+     *             if the CAN socket is not connected
+     * @since 2.1
+     */
+    public CanSubscription subscribe(int canId, int canMask, int queueSize);
+
+    /**
+     * @return the number of received frames that have been dropped because the queue of a subscription was full,
+     *         since the CAN socket has been connected
+     * @since 2.1
+     */
+    public long getDroppedFrameCount();
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -13,67 +13,132 @@
 package org.eclipse.kura.protocol.can;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 import org.eclipse.kura.KuraErrorCode;
 import org.eclipse.kura.KuraException;
+import org.eclipse.kura.internal.protocol.can.CanFrameDispatcher;
+import org.eclipse.kura.internal.protocol.can.CanSocketTransport;
+import org.eclipse.kura.internal.protocol.can.CanTransport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import de.entropia.can.CanSocket;
-import de.entropia.can.CanSocket.CanFrame;
-import de.entropia.can.CanSocket.CanId;
-import de.entropia.can.CanSocket.CanInterface;
-import de.entropia.can.CanSocket.Mode;
-
 public class CanConnectionServiceImpl implements CanConnectionService {
 
     private static final Logger logger = LoggerFactory.getLogger(CanConnectionServiceImpl.class);
 
-    private CanSocket socket = null;
+    /**
+     * The number of frames buffered for each filter used with {@link #receiveCanMessage(int, int)}.
+     */
+    private static final int RECEIVE_QUEUE_SIZE = 256;
+
+    /**
+     * The time after which a subscription used by {@link #receiveCanMessage(int, int)} is closed if no thread is
+     * receiving from it.
+     */
+    private static final long RECEIVE_SUBSCRIPTION_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Supplier<CanTransport> transportFactory;
+    private final LongSupplier nanoClock;
+
+    /**
+     * The subscriptions used by {@link #receiveCanMessage(int, int)}, by filter. They are kept between the calls so
+     * that the frames received in the meantime are buffered, as they were by the socket, and closed once they are
+     * idle, so that the filters no longer used do not keep queueing and dropping frames. Guarded by itself.
+     */
+    private final Map<Long, ReceiveSubscription> receiveSubscriptions = new HashMap<>();
+
+    private volatile CanFrameDispatcher dispatcher = null;
+
+    public CanConnectionServiceImpl() {
+        this(CanSocketTransport::new);
+    }
+
+    public CanConnectionServiceImpl(Supplier<CanTransport> transportFactory) {
+        this(transportFactory, System::nanoTime);
+    }
+
+    public CanConnectionServiceImpl(Supplier<CanTransport> transportFactory, LongSupplier nanoClock) {
+        this.transportFactory = transportFactory;
+        this.nanoClock = nanoClock;
+    }
 
     protected void activate() {
         logger.info("activating CanConnectionService");
     }
 
     protected void deactivate() {
-        if (this.socket != null) {
-            try {
-                this.socket.close();
-            } catch (IOException e) {
-                logger.error("Error closing CAN socket");
-            }
+        try {
+            disconnectCanSocket();
+        } catch (IOException e) {
+            logger.error("Error closing CAN socket");
         }
     }
 
     @Override
-    public void connectCanSocket() throws IOException {
-        if (this.socket == null) {
-            this.socket = new CanSocket(Mode.RAW);
-            this.socket.setLoopbackMode(false);
-            this.socket.bind(CanSocket.CAN_ALL_INTERFACES);
+    public synchronized void connectCanSocket() throws IOException {
+        if (this.dispatcher != null && this.dispatcher.isRunning()) {
+            return;
         }
+
+        // the receive thread of the previous connection terminated because of an error
+        disconnectCanSocket();
+
+        final CanFrameDispatcher canFrameDispatcher = new CanFrameDispatcher(this.transportFactory.get());
+        canFrameDispatcher.start();
+        this.dispatcher = canFrameDispatcher;
     }
 
     @Override
-    public void disconnectCanSocket() throws IOException {
-        if (this.socket != null) {
-            this.socket.close();
-            this.socket = null;
+    public synchronized void disconnectCanSocket() throws IOException {
+        final CanFrameDispatcher canFrameDispatcher = this.dispatcher;
+        if (canFrameDispatcher != null) {
+            this.dispatcher = null;
+            synchronized (this.receiveSubscriptions) {
+                this.receiveSubscriptions.clear();
+            }
+            logger.info("CAN socket statistics - {}", canFrameDispatcher);
+            canFrameDispatcher.stop();
         }
     }
 
     @Override
     public void sendCanMessage(String ifName, int canId, byte[] message) throws KuraException, IOException {
-        if (message.length > 8) {
-            throw new KuraException(KuraErrorCode.INVALID_PARAMETER, "CAN send : Incorrect frame length");
+        final CanMessage canMessage = new CanMessage();
+        canMessage.setCanId(canId);
+        canMessage.setData(message);
+
+        sendCanMessages(ifName, Collections.singletonList(canMessage));
+    }
+
+    @Override
+    public void sendCanMessages(String ifName, List<CanMessage> messages) throws KuraException, IOException {
+        if (messages == null) {
+            throw new KuraException(KuraErrorCode.INVALID_PARAMETER, "CAN send : Messages cannot be null");
+        }
+        for (final CanMessage message : messages) {
+            if (message == null || message.getData() == null) {
+                throw new KuraException(KuraErrorCode.INVALID_PARAMETER, "CAN send : Frame data cannot be null");
+            }
+            if (message.getData().length > 8) {
+                throw new KuraException(KuraErrorCode.INVALID_PARAMETER, "CAN send : Incorrect frame length");
+            }
         }
-        if (this.socket == null) {
+        final CanFrameDispatcher canFrameDispatcher = this.dispatcher;
+        if (canFrameDispatcher == null) {
             throw new KuraException(KuraErrorCode.BAD_REQUEST, "CAN Socket must be open before sending");
         }
 
         try {
-            CanInterface canif = new CanInterface(this.socket, ifName);
-            this.socket.send(new CanFrame(canif, new CanId(canId), message));
+            canFrameDispatcher.send(ifName, messages);
         } catch (IOException e) {
             logger.error("Error on CanSocket in sendCanMessage");
             throw e;
@@ -82,24 +147,84 @@ public class CanConnectionServiceImpl implements CanConnectionService {
 
     @Override
     public CanMessage receiveCanMessage(int canId, int canMask) throws IOException {
-        if (this.socket == null) {
+        final CanFrameDispatcher canFrameDispatcher = this.dispatcher;
+        if (canFrameDispatcher == null) {
             throw new IllegalStateException("CAN Socket must be open before receiving");
         }
+
+        if (!canFrameDispatcher.isRunning()) {
+            logger.error("Error on CanSocket in receiveCanMessage");
+            throw new IOException("CAN socket has been closed");
+        }
+
+        final int filterId = canId >= 0 ? canId : 0;
+        final int filterMask = canId >= 0 ? canMask : 0;
+        final ReceiveSubscription subscription;
+        synchronized (this.receiveSubscriptions) {
+            closeIdleReceiveSubscriptions();
+            subscription = this.receiveSubscriptions.computeIfAbsent((long) filterId << 32 | filterMask & 0xFFFFFFFFL,
+                    key -> new ReceiveSubscription(canFrameDispatcher.subscribe(filterId, filterMask,
+                            RECEIVE_QUEUE_SIZE)));
+            subscription.receivers++;
+        }
+
         try {
-            if (canId >= 0) {
-                this.socket.setCanFilter(canId, canMask);
+            final CanMessage message = subscription.subscription.receive();
+            if (message == null) {
+                logger.error("Error on CanSocket in receiveCanMessage");
+                throw new IOException("CAN socket has been closed");
             }
-            CanFrame cf = this.socket.recv();
-            CanId ci = cf.getCanId();
+            return message;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while receiving CAN frame");
+        } finally {
+            synchronized (this.receiveSubscriptions) {
+                subscription.receivers--;
+                subscription.lastReceiveNanos = this.nanoClock.getAsLong();
+            }
+        }
+    }
 
-            CanMessage cm = new CanMessage();
-            cm.setCanId(ci.getCanId_EFF());
-            cm.setData(cf.getData());
-            return cm;
-        } catch (IOException e) {
-            logger.error("Error on CanSocket in receiveCanMessage");
-            throw e;
+    @Override
+    public CanSubscription subscribe(int canId, int canMask, int queueSize) {
+        final CanFrameDispatcher canFrameDispatcher = this.dispatcher;
+        if (canFrameDispatcher == null) {
+            throw new IllegalStateException("CAN Socket must be open before subscribing");
+        }
+        return canFrameDispatcher.subscribe(canId, canMask, queueSize);
+    }
+
+    @Override
+    public long getDroppedFrameCount() {
+        final CanFrameDispatcher canFrameDispatcher = this.dispatcher;
+        return canFrameDispatcher != null ? canFrameDispatcher.getDroppedFrameCount() : 0;
+    }
+
+    /*
+     * Must be called holding the receiveSubscriptions lock.
+     */
+    private void closeIdleReceiveSubscriptions() {
+        final long now = this.nanoClock.getAsLong();
+        final Iterator<ReceiveSubscription> iterator = this.receiveSubscriptions.values().iterator();
+        while (iterator.hasNext()) {
+            final ReceiveSubscription subscription = iterator.next();
+            if (subscription.receivers == 0
+                    && now - subscription.lastReceiveNanos >= RECEIVE_SUBSCRIPTION_IDLE_TIMEOUT_NANOS) {
+                iterator.remove();
+                subscription.subscription.close();
+            }
         }
     }
 
+    private final class ReceiveSubscription {
+
+        private final CanSubscription subscription;
+        private int receivers;
+        private long lastReceiveNanos = CanConnectionServiceImpl.this.nanoClock.getAsLong();
+
+        ReceiveSubscription(CanSubscription subscription) {
+            this.subscription = subscription;
+        }
+    }
 }
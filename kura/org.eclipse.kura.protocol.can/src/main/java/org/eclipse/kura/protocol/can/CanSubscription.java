@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.protocol.can;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A subscription to the CAN frames whose id matches a filter, returned by
+ * {@link CanConnectionService#subscribe(int, int, int)}.
+ * <p>
+ * The matching frames are queued by the receive thread of the service. If the queue is full, because the subscriber
+ * does not consume the frames fast enough, the new frames are dropped and counted.
+ *
+ * @since 2.1
+ */
+public interface CanSubscription extends AutoCloseable {
+
+    /**
+     * Returns the next frame, waiting up to the provided time if none is queued.
+     *
+     * @param timeout
+     *            the maximum time to wait
+     * @param unit
+     *            the unit of the timeout
+     * @return the next frame, or {@code null} if no frame has been received before the timeout or if the subscription
+     *         has been closed and all the queued frames have been consumed
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public CanMessage poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Returns the next frame, waiting until a frame is received or the subscription is closed.
+     *
+     * @return the next frame, or {@code null} if the subscription has been closed and all the queued frames have been
+     *         consumed
+     * @throws InterruptedException
+     *             if the calling thread is interrupted while waiting
+     */
+    public CanMessage receive() throws InterruptedException;
+
+    /**
+     * @return the number of frames that matched the subscription but were dropped because the queue was full
+     */
+    public long getDroppedFrameCount();
+
+    public boolean isClosed();
+
+    /**
+     * Stops receiving frames. The frames already queued can still be consumed. The subscriptions are also closed when
+     * the CAN socket is disconnected.
+     */
+    @Override
+    public void close();
+}
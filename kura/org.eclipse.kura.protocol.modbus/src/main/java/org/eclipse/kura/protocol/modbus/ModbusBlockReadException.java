@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ * 
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ * 
+ * SPDX-License-Identifier: EPL-2.0
+ * 
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.protocol.modbus;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown by the multiple block read methods of {@link ModbusProtocolDeviceService} if some of the blocks could not be
+ * read. It carries the registers of the blocks that have been read and the failure of each other block, its code is
+ * the code of the first failure.
+ *
+ * @since 1.1
+ */
+public class ModbusBlockReadException extends ModbusProtocolException {
+
+    private static final long serialVersionUID = 2811606426146591487L;
+
+    private final transient List<int[]> results;
+    private final transient List<ModbusProtocolException> failures;
+
+    /**
+     * Builds a new instance.
+     *
+     * @param results
+     *            the registers of each block, {@code null} for the blocks that could not be read
+     * @param failures
+     *            the failure of each block, {@code null} for the blocks that have been read
+     */
+    public ModbusBlockReadException(List<int[]> results, List<ModbusProtocolException> failures) {
+        super(getFirstFailure(failures).getCode(), getComplement(failures));
+        this.results = Collections.unmodifiableList(results);
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * @return the registers of each block, in the order of the requested addresses, {@code null} for the blocks that
+     *         could not be read
+     */
+    public List<int[]> getResults() {
+        return this.results;
+    }
+
+    /**
+     * @return the failure of each block, in the order of the requested addresses, {@code null} for the blocks that
+     *         have been read
+     */
+    public List<ModbusProtocolException> getFailures() {
+        return this.failures;
+    }
+
+    private static ModbusProtocolException getFirstFailure(List<ModbusProtocolException> failures) {
+        for (ModbusProtocolException failure : failures) {
+            if (failure != null) {
+                return failure;
+            }
+        }
+        throw new IllegalArgumentException("At least one block must have failed");
+    }
+
+    private static String getComplement(List<ModbusProtocolException> failures) {
+        int failed = 0;
+        for (ModbusProtocolException failure : failures) {
+            if (failure != null) {
+                failed++;
+            }
+        }
+        return failed + " of " + failures.size() + " blocks failed, first failure: "
+                + getFirstFailure(failures).getMessage();
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -20,8 +20,15 @@ import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.kura.KuraConnectionStatus;
 import org.eclipse.kura.comm.CommConnection;
@@ -59,7 +66,7 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
     private String connType = null;
     private Communicate comm;
     private Properties modbusProperties = null;
-    private static int transactionIndex = 0;
+    private static final int MBAP_HEADER_LENGTH = 6;
 
     public void setConnectionFactory(ConnectionFactory connectionFactory) {
         this.connectionFactory = connectionFactory;
@@ -288,6 +295,36 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
         abstract public int getConnectStatus();
 
         abstract public byte[] msgTransaction(byte[] msg) throws ModbusProtocolException;
+
+        /**
+         * Performs the given transactions, by default one after the other. A failed transaction does not prevent the
+         * others from being performed, unless the connection is lost.
+         *
+         * @param failures
+         *            filled with the failure of each transaction, in the order of the messages
+         * @return the responses, in the order of the messages, {@code null} for the failed transactions
+         */
+        public List<byte[]> msgTransactions(List<byte[]> msgs, ModbusProtocolException[] failures) {
+            List<byte[]> responses = new ArrayList<>(msgs.size());
+            ModbusProtocolException connectionFailure = null;
+            for (int i = 0; i < msgs.size(); i++) {
+                byte[] response = null;
+                if (connectionFailure != null) {
+                    failures[i] = connectionFailure;
+                } else {
+                    try {
+                        response = msgTransaction(msgs.get(i));
+                    } catch (ModbusProtocolException e) {
+                        failures[i] = e;
+                        if (getConnectStatus() != KuraConnectionStatus.CONNECTED) {
+                            connectionFailure = e;
+                        }
+                    }
+                }
+                responses.add(response);
+            }
+            return responses;
+        }
     }
 
     /**
@@ -647,8 +684,15 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
         int port;
         String ipAddress;
         String connType;
+        int maxOutstandingRequests;
         boolean connected = false;
 
+        // partially received MBAP frame, kept across socket timeouts in pipelined mode
+        final byte[] frameBuffer = new byte[MBAP_HEADER_LENGTH + 256];
+        int frameBufferCount;
+
+        final AtomicInteger transactionIndex = new AtomicInteger();
+
         public EthernetCommunicate(ConnectionFactory connFactory, Properties connectionConfig)
                 throws ModbusProtocolException {
             logger.debug("Configure TCP connection");
@@ -660,6 +704,15 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
                 throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_CONFIGURATION);
             }
             this.port = Integer.valueOf(sPort).intValue();
+            String sMaxOutstandingRequests = connectionConfig.getProperty("maxOutstandingRequests", "1");
+            try {
+                this.maxOutstandingRequests = Integer.parseInt(sMaxOutstandingRequests.trim());
+            } catch (NumberFormatException e) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_CONFIGURATION);
+            }
+            if (this.maxOutstandingRequests < 1) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_CONFIGURATION);
+            }
             ModbusProtocolDevice.this.connConfigd = true;
             this.socket = new Socket();
         }
@@ -713,6 +766,7 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
                     this.outputStream = null;
                     this.connected = false;
                     this.socket = null;
+                    this.frameBufferCount = 0;
                 }
             }
         }
@@ -736,21 +790,7 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
             // ---------------------------------------------------
             if (ModbusProtocolDevice.this.txMode == ModbusTransmissionMode.RTU_MODE) {
                 if (PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.connType)) {
-                    cmd = new byte[msg.length + 6];
-                    // build MBAP header
-                    int index = getNextTransactionIndex();
-                    cmd[0] = (byte) (index >> 8);
-                    cmd[1] = (byte) index;
-                    cmd[2] = 0;
-                    cmd[3] = 0;
-                    // length
-                    int len = msg.length;
-                    cmd[4] = (byte) (len >> 8);
-                    cmd[5] = (byte) len;
-                    for (int i = 0; i < msg.length; i++) {
-                        cmd[i + 6] = msg[i];
-                    }
-                    // No crc in Modbus TCP
+                    cmd = buildMbapFrame(getNextTransactionIndex(), msg);
                 } else {
                     cmd = new byte[msg.length + 2];
                     for (int i = 0; i < msg.length; i++) {
@@ -881,6 +921,211 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
             }
             return null;
         }
+
+        /**
+         * In Modbus TCP/IP mode, keeps up to maxOutstandingRequests requests in flight on the connection and matches
+         * the responses to the requests by transaction identifier, so that the responses can arrive in any order.
+         * Each request times out respTimeout milliseconds after it has been sent, a failed request does not prevent
+         * the others from completing.
+         */
+        @Override
+        public List<byte[]> msgTransactions(List<byte[]> msgs, ModbusProtocolException[] failures) {
+            if (!PROTOCOL_CONNECTION_TYPE_ETHER_TCP.equals(this.connType) || this.maxOutstandingRequests <= 1
+                    || msgs.size() <= 1) {
+                return super.msgTransactions(msgs, failures);
+            }
+
+            final byte[][] responses = new byte[msgs.size()][];
+
+            if (ModbusProtocolDevice.this.txMode != ModbusTransmissionMode.RTU_MODE) {
+                Arrays.fill(failures, new ModbusProtocolException(ModbusProtocolErrorCode.METHOD_NOT_SUPPORTED,
+                        "Only RTU over TCP/IP supported"));
+                return Arrays.asList(responses);
+            }
+
+            // Check connection status and connect
+            connect();
+            if (!this.connected) {
+                Arrays.fill(failures, new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "Cannot transact on closed socket"));
+                return Arrays.asList(responses);
+            }
+
+            final boolean hasTimeout = ModbusProtocolDevice.this.respTout > 0;
+            final long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(ModbusProtocolDevice.this.respTout);
+            final Map<Integer, PendingRequest> pending = new HashMap<>();
+            int next = 0;
+            int completed = 0;
+
+            try {
+                // flush input
+                while (this.inputStream.available() > 0) {
+                    this.inputStream.read();
+                }
+                this.frameBufferCount = 0;
+
+                while (completed < msgs.size()) {
+                    // fill the window
+                    boolean sent = false;
+                    while (next < msgs.size() && pending.size() < this.maxOutstandingRequests) {
+                        int transactionId = getNextTransactionIndex();
+                        byte[] msg = msgs.get(next);
+                        this.outputStream.write(buildMbapFrame(transactionId, msg));
+                        pending.put(transactionId, new PendingRequest(next, msg, System.nanoTime() + timeoutNanos));
+                        next++;
+                        sent = true;
+                    }
+                    if (sent) {
+                        this.outputStream.flush();
+                    }
+
+                    // fail the expired requests
+                    long now = System.nanoTime();
+                    long nextDeadline = Long.MAX_VALUE;
+                    Iterator<Map.Entry<Integer, PendingRequest>> iterator = pending.entrySet().iterator();
+                    while (hasTimeout && iterator.hasNext()) {
+                        Map.Entry<Integer, PendingRequest> entry = iterator.next();
+                        long remaining = entry.getValue().deadline - now;
+                        if (remaining <= 0) {
+                            iterator.remove();
+                            completed++;
+                            String failMsg = "Recv timeout for transaction " + entry.getKey();
+                            logger.warn(failMsg);
+                            failures[entry.getValue().index] = new ModbusProtocolException(
+                                    ModbusProtocolErrorCode.RESPONSE_TIMEOUT, failMsg);
+                        } else {
+                            nextDeadline = Math.min(nextDeadline, remaining);
+                        }
+                    }
+                    if (pending.isEmpty()) {
+                        continue;
+                    }
+
+                    // wait for the next response
+                    this.socket.setSoTimeout(
+                            hasTimeout ? (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextDeadline)) : 0);
+                    byte[] frame;
+                    try {
+                        frame = readMbapFrame();
+                    } catch (SocketTimeoutException e) {
+                        continue;
+                    }
+
+                    int transactionId = (frame[0] & 0xff) << 8 | frame[1] & 0xff;
+                    PendingRequest request = pending.remove(transactionId);
+                    if (request == null) {
+                        logger.debug("Discarding response with unexpected transaction id {}", transactionId);
+                        continue;
+                    }
+                    completed++;
+                    try {
+                        responses[request.index] = checkMbapResponse(request.msg, frame);
+                    } catch (ModbusProtocolException e) {
+                        failures[request.index] = e;
+                    }
+                }
+            } catch (IOException e) {
+                // Assume this means the socket is closed...make sure it is
+                logger.error("Socket disconnect in pipelined transaction: " + e);
+                disconnect();
+                // fail the requests that have not been completed, including the ones not sent yet
+                ModbusProtocolException failure = new ModbusProtocolException(
+                        ModbusProtocolErrorCode.TRANSACTION_FAILURE, "Pipelined transaction failure: " + e.getMessage());
+                for (int i = 0; i < msgs.size(); i++) {
+                    if (responses[i] == null && failures[i] == null) {
+                        failures[i] = failure;
+                    }
+                }
+            }
+
+            return Arrays.asList(responses);
+        }
+
+        /**
+         * Calculates and returns the next transaction index for Modbus TCP.
+         *
+         * @return the next transaction index.
+         */
+        private int getNextTransactionIndex() {
+            return this.transactionIndex.updateAndGet(index -> index + 1 & 0xffff);
+        }
+
+        /**
+         * Reads a complete MBAP frame. If the read times out, the bytes received so far are kept and the next call
+         * completes the same frame.
+         */
+        private byte[] readMbapFrame() throws IOException {
+            while (true) {
+                int expected = MBAP_HEADER_LENGTH;
+                if (this.frameBufferCount >= MBAP_HEADER_LENGTH) {
+                    int length = (this.frameBuffer[4] & 0xff) << 8 | this.frameBuffer[5] & 0xff;
+                    if (length < 2 || MBAP_HEADER_LENGTH + length > this.frameBuffer.length) {
+                        throw new IOException("Invalid MBAP length " + length);
+                    }
+                    expected += length;
+                    if (this.frameBufferCount == expected) {
+                        this.frameBufferCount = 0;
+                        return Arrays.copyOf(this.frameBuffer, expected);
+                    }
+                }
+                int read = this.inputStream.read(this.frameBuffer, this.frameBufferCount,
+                        expected - this.frameBufferCount);
+                if (read < 0) {
+                    throw new IOException("Connection closed by remote");
+                }
+                this.frameBufferCount += read;
+            }
+        }
+
+        private byte[] checkMbapResponse(byte[] msg, byte[] frame) throws ModbusProtocolException {
+            // test modbus id
+            if (frame[6] != msg[0]) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "incorrect modbus id " + String.format("%02X", frame[6]));
+            }
+            // test function number
+            if ((frame[7] & 0x7f) != msg[1]) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "incorrect function number " + String.format("%02X", frame[7]));
+            }
+            // check for an Exception response
+            if ((frame[7] & 0x80) == 0x80) {
+                throw new ModbusProtocolException(ModbusProtocolErrorCode.TRANSACTION_FAILURE,
+                        "Modbus responds an error = " + String.format("%02X", frame.length > 8 ? frame[8] : 0));
+            }
+            return Arrays.copyOfRange(frame, MBAP_HEADER_LENGTH, frame.length);
+        }
+    }
+
+    private static final class PendingRequest {
+
+        final int index;
+        final byte[] msg;
+        final long deadline;
+
+        PendingRequest(int index, byte[] msg, long deadline) {
+            this.index = index;
+            this.msg = msg;
+            this.deadline = deadline;
+        }
+    }
+
+    /**
+     * Builds a Modbus TCP frame, made of the MBAP header followed by the given PDU (No crc in Modbus TCP).
+     */
+    private static byte[] buildMbapFrame(int transactionId, byte[] msg) {
+        byte[] cmd = new byte[msg.length + MBAP_HEADER_LENGTH];
+        // build MBAP header
+        cmd[0] = (byte) (transactionId >> 8);
+        cmd[1] = (byte) transactionId;
+        cmd[2] = 0;
+        cmd[3] = 0;
+        // length
+        int len = msg.length;
+        cmd[4] = (byte) (len >> 8);
+        cmd[5] = (byte) len;
+        System.arraycopy(msg, 0, cmd, MBAP_HEADER_LENGTH, msg.length);
+        return cmd;
     }
 
     @Override
@@ -1094,77 +1339,102 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
             throw new ModbusProtocolException(ModbusProtocolErrorCode.NOT_CONNECTED);
         }
 
-        int[] ret = new int[count];
-        int index = 0;
-
-        byte[] resp;
-        /*
-         * construct the command issue and get results, putting the results
-         * away at index and then incrementing index for the next command
-         */
-        byte[] cmd = new byte[6];
-        cmd[0] = (byte) unitAddr;
-        cmd[1] = (byte) ModbusFunctionCodes.READ_HOLDING_REGS;
-        cmd[2] = (byte) (dataAddress / 256);
-        cmd[3] = (byte) (dataAddress % 256);
-        cmd[4] = 0;
-        cmd[5] = (byte) count;
-
         /*
          * send the message and get the response
          */
-        resp = this.comm.msgTransaction(cmd);
+        byte[] resp = this.comm
+                .msgTransaction(buildReadRegistersCommand(unitAddr, ModbusFunctionCodes.READ_HOLDING_REGS,
+                        dataAddress, count));
 
-        /*
-         * process the response (address & CRC already confirmed)
-         */
-        if (resp.length < 3 || resp.length < (resp[2] & 0xff) + 3) {
-            throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_TYPE);
-        }
-        if ((resp[2] & 0xff) == count * 2) {
-            int byteOffset = 3;
-            for (int j = 0; j < count; j++, index++) {
-                int val = resp[byteOffset + ModbusDataOrder.MODBUS_WORD_ORDER_BIG_ENDIAN.charAt(0) - '1'] & 0xff;
-                val <<= 8;
-                val += resp[byteOffset + ModbusDataOrder.MODBUS_WORD_ORDER_BIG_ENDIAN.charAt(1) - '1'] & 0xff;
+        return decodeRegisters(resp, count);
+    }
 
-                ret[index] = val;
+    @Override
+    public List<int[]> readHoldingRegisters(int unitAddr, int[] dataAddresses, int[] counts)
+            throws ModbusProtocolException {
+        return readRegisters(unitAddr, ModbusFunctionCodes.READ_HOLDING_REGS, dataAddresses, counts);
+    }
 
-                byteOffset += 2;
-            }
-        } else {
-            throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_ADDRESS);
+    @Override
+    public int[] readInputRegisters(int unitAddr, int dataAddress, int count) throws ModbusProtocolException {
+
+        if (!this.connConfigd) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.NOT_CONNECTED);
         }
-        return ret;
+
+        /*
+         * send the message and get the response
+         */
+        byte[] resp = this.comm.msgTransaction(
+                buildReadRegistersCommand(unitAddr, ModbusFunctionCodes.READ_INPUT_REGS, dataAddress, count));
+
+        return decodeRegisters(resp, count);
     }
 
     @Override
-    public int[] readInputRegisters(int unitAddr, int dataAddress, int count) throws ModbusProtocolException {
+    public List<int[]> readInputRegisters(int unitAddr, int[] dataAddresses, int[] counts)
+            throws ModbusProtocolException {
+        return readRegisters(unitAddr, ModbusFunctionCodes.READ_INPUT_REGS, dataAddresses, counts);
+    }
 
+    private List<int[]> readRegisters(int unitAddr, int functionCode, int[] dataAddresses, int[] counts)
+            throws ModbusProtocolException {
         if (!this.connConfigd) {
             throw new ModbusProtocolException(ModbusProtocolErrorCode.NOT_CONNECTED);
         }
+        if (dataAddresses.length != counts.length) {
+            throw new ModbusProtocolException(ModbusProtocolErrorCode.INVALID_DATA_LENGTH);
+        }
 
-        int[] ret = new int[count];
-        int index = 0;
+        List<byte[]> cmds = new ArrayList<>(dataAddresses.length);
+        for (int i = 0; i < dataAddresses.length; i++) {
+            cmds.add(buildReadRegistersCommand(unitAddr, functionCode, dataAddresses[i], counts[i]));
+        }
 
-        byte[] resp;
         /*
-         * construct the command issue and get results, putting the results
-         * away at index and then incrementing index for the next command
+         * send the messages and get the responses
          */
+        ModbusProtocolException[] failures = new ModbusProtocolException[cmds.size()];
+        List<byte[]> resps = this.comm.msgTransactions(cmds, failures);
+
+        List<int[]> ret = new ArrayList<>(resps.size());
+        boolean failed = false;
+        for (int i = 0; i < resps.size(); i++) {
+            int[] registers = null;
+            if (failures[i] == null) {
+                try {
+                    registers = decodeRegisters(resps.get(i), counts[i]);
+                } catch (ModbusProtocolException e) {
+                    failures[i] = e;
+                }
+            }
+            failed |= failures[i] != null;
+            ret.add(registers);
+        }
+
+        if (failed) {
+            throw new ModbusBlockReadException(ret, Arrays.asList(failures));
+        }
+        return ret;
+    }
+
+    /*
+     * construct the command issue and get results
+     */
+    private static byte[] buildReadRegistersCommand(int unitAddr, int functionCode, int dataAddress, int count) {
         byte[] cmd = new byte[6];
         cmd[0] = (byte) unitAddr;
-        cmd[1] = (byte) ModbusFunctionCodes.READ_INPUT_REGS;
+        cmd[1] = (byte) functionCode;
         cmd[2] = (byte) (dataAddress / 256);
         cmd[3] = (byte) (dataAddress % 256);
         cmd[4] = 0;
         cmd[5] = (byte) count;
+        return cmd;
+    }
 
-        /*
-         * send the message and get the response
-         */
-        resp = this.comm.msgTransaction(cmd);
+    private static int[] decodeRegisters(byte[] resp, int count) throws ModbusProtocolException {
+        int[] ret = new int[count];
+        int index = 0;
 
         /*
          * process the response (address & CRC already confirmed)
@@ -1404,17 +1674,4 @@ public class ModbusProtocolDevice implements ModbusProtocolDeviceService {
         return mce;
     }
 
-    /**
-     * Calculates and returns the next transaction index for Modbus TCP.
-     *
-     * @return the next transaction index.
-     */
-    private int getNextTransactionIndex() {
-        transactionIndex++;
-        if (transactionIndex > 0xffff) {
-            transactionIndex = 0;
-        }
-        return transactionIndex;
-    }
-
 }
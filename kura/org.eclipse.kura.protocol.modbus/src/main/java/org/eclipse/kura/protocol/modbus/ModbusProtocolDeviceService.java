@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2011, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2011, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -12,6 +12,7 @@
  *******************************************************************************/
 package org.eclipse.kura.protocol.modbus;
 
+import java.util.List;
 import java.util.Properties;
 
 import org.eclipse.kura.KuraConnectionStatus;
@@ -111,6 +112,9 @@ public interface ModbusProtocolDeviceService {
      *            <ul>
      *            <li>port : TCP port to be used
      *            <li>ipAddress : the 4 bytes IP address of the field device (xxx.xxx.xxx.xxx)
+     *            <li>maxOutstandingRequests : in "TCP/IP" mode, the maximum number of requests sent by the multiple
+     *            block read methods before waiting for the responses (default 1). Should not exceed the number of
+     *            outstanding requests supported by the field device or gateway.
      *            </ul>
      *            <br>
      *            Modbus properties :
@@ -305,6 +309,62 @@ public interface ModbusProtocolDeviceService {
      */
     public int[] readInputRegisters(int unitAddr, int dataAddress, int count) throws ModbusProtocolException;
 
+    /**
+     * <b>Modbus function 03</b><br>
+     * Read contents of several blocks of holding registers from the attached field device.
+     * <p>
+     * In "TCP/IP" mode, up to <i>maxOutstandingRequests</i> requests are sent before waiting for the responses,
+     * which are matched to the requests by transaction identifier. In the other modes, the requests are performed one
+     * after the other.
+     *
+     * @param unitAddr
+     *            modbus slave address (must be unique in the range 1 - 247)
+     * @param dataAddresses
+     *            starting address of each block
+     * @param counts
+     *            quantity of registers of each block (maximum 0x7D)
+     * @return the registers of each block, in the order of the provided addresses
+     * @throws ModbusProtocolException
+     *             with a {@link ModbusProtocolErrorCode#NOT_CONNECTED}
+     *             current connection is in a status other than <b>CONNECTED</b>
+     * @throws ModbusBlockReadException
+     *             if some of the blocks could not be read, carrying the registers of the blocks that have been read
+     *             and the failure of each other block, for instance a
+     *             {@link ModbusProtocolErrorCode#RESPONSE_TIMEOUT} if the response to a request is not received
+     *             within <i>respTimeout</i> milliseconds
+     * @since 1.1
+     */
+    public List<int[]> readHoldingRegisters(int unitAddr, int[] dataAddresses, int[] counts)
+            throws ModbusProtocolException;
+
+    /**
+     * <b>Modbus function 04</b><br>
+     * Read contents of several blocks of input registers from the attached field device.
+     * <p>
+     * In "TCP/IP" mode, up to <i>maxOutstandingRequests</i> requests are sent before waiting for the responses,
+     * which are matched to the requests by transaction identifier. In the other modes, the requests are performed one
+     * after the other.
+     *
+     * @param unitAddr
+     *            modbus slave address (must be unique in the range 1 - 247)
+     * @param dataAddresses
+     *            starting address of each block
+     * @param counts
+     *            quantity of registers of each block (maximum 0x7D)
+     * @return the registers of each block, in the order of the provided addresses
+     * @throws ModbusProtocolException
+     *             with a {@link ModbusProtocolErrorCode#NOT_CONNECTED}
+     *             current connection is in a status other than <b>CONNECTED</b>
+     * @throws ModbusBlockReadException
+     *             if some of the blocks could not be read, carrying the registers of the blocks that have been read
+     *             and the failure of each other block, for instance a
+     *             {@link ModbusProtocolErrorCode#RESPONSE_TIMEOUT} if the response to a request is not received
+     *             within <i>respTimeout</i> milliseconds
+     * @since 1.1
+     */
+    public List<int[]> readInputRegisters(int unitAddr, int[] dataAddresses, int[] counts)
+            throws ModbusProtocolException;
+
     /**
      * <b>Modbus function 06</b><br>
      * write a single holding register in the attached field device.
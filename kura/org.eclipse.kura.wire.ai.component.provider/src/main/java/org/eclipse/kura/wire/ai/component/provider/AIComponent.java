@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -14,16 +14,25 @@ package org.eclipse.kura.wire.ai.component.provider;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.kura.KuraErrorCode;
 import org.eclipse.kura.KuraException;
 import org.eclipse.kura.ai.inference.InferenceEngineService;
 import org.eclipse.kura.ai.inference.ModelInfo;
 import org.eclipse.kura.ai.inference.Tensor;
+import org.eclipse.kura.ai.inference.TensorDescriptor;
 import org.eclipse.kura.configuration.ConfigurableComponent;
 import org.eclipse.kura.wire.WireComponent;
 import org.eclipse.kura.wire.WireEmitter;
@@ -53,6 +62,11 @@ public class AIComponent implements WireEmitter, WireReceiver, ConfigurableCompo
     private Optional<ModelInfo> infoInfer;
     private Optional<ModelInfo> infoPost;
 
+    private final List<WireRecord> pendingRecords = new ArrayList<>();
+    private ScheduledExecutorService batchExecutor;
+    private ScheduledFuture<?> flushTask;
+    private CompletableFuture<Void> pendingEmission = CompletableFuture.completedFuture(null);
+
     public void bindWireHelperService(final WireHelperService wireHelperService) {
         if (this.wireHelperService == null) {
             this.wireHelperService = wireHelperService;
@@ -89,12 +103,25 @@ public class AIComponent implements WireEmitter, WireReceiver, ConfigurableCompo
 
     public void deactivate() {
         logger.info("Deactivating AIComponent...");
+
+        synchronized (this) {
+            flushPendingRecords();
+            if (this.batchExecutor != null) {
+                this.batchExecutor.shutdown();
+                this.batchExecutor = null;
+            }
+        }
+
         logger.info("Deactivating AIComponent... Done.");
     }
 
     public synchronized void updated(final Map<String, Object> properties) {
         logger.info("Updating AIComponent...");
 
+        if (this.options != null) {
+            flushPendingRecords();
+        }
+
         this.options = new AIComponentOptions(properties);
         this.infoPre = Optional.empty();
         this.infoInfer = Optional.empty();
@@ -112,19 +139,26 @@ public class AIComponent implements WireEmitter, WireReceiver, ConfigurableCompo
     public synchronized void onWireReceive(WireEnvelope wireEnvelope) {
         requireNonNull(wireEnvelope, "Wire Envelope cannot be null");
 
-        for (WireRecord wireRecord : wireEnvelope.getRecords()) {
-            try {
+        final int batchSize = this.options.getBatchSize();
 
-                Optional<List<WireRecord>> inferenceResult = inferenceProcess(wireRecord);
-                if (inferenceResult.isPresent()) {
-                    this.wireSupport.emit(inferenceResult.get());
-                }
+        if (batchSize <= 1) {
+            for (WireRecord wireRecord : wireEnvelope.getRecords()) {
+                process(Collections.singletonList(wireRecord));
+            }
+            return;
+        }
 
-            } catch (KuraException e) {
-                logger.error("Error processing WireRecord.", e);
+        for (WireRecord wireRecord : wireEnvelope.getRecords()) {
+            this.pendingRecords.add(wireRecord);
+            if (this.pendingRecords.size() >= batchSize) {
+                flushPendingRecords();
             }
         }
 
+        if (!this.pendingRecords.isEmpty() && this.flushTask == null) {
+            this.flushTask = getBatchExecutor().schedule(this::flushPendingRecords, this.options.getBatchTimeout(),
+                    TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
@@ -180,37 +214,137 @@ public class AIComponent implements WireEmitter, WireReceiver, ConfigurableCompo
         return info;
     }
 
-    private Optional<List<WireRecord>> inferenceProcess(WireRecord wireRecord) throws KuraException {
+    private synchronized void flushPendingRecords() {
+        if (this.flushTask != null) {
+            this.flushTask.cancel(false);
+            this.flushTask = null;
+        }
+
+        if (this.pendingRecords.isEmpty()) {
+            return;
+        }
+
+        final List<WireRecord> batch = new ArrayList<>(this.pendingRecords);
+        this.pendingRecords.clear();
+
+        process(batch);
+    }
+
+    private ScheduledExecutorService getBatchExecutor() {
+        if (this.batchExecutor == null) {
+            this.batchExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "AIComponentBatch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.batchExecutor;
+    }
+
+    private void process(List<WireRecord> wireRecords) {
+        try {
+
+            Optional<CompletableFuture<List<List<WireRecord>>>> inferenceResult = inferenceProcess(wireRecords);
+            if (inferenceResult.isPresent()) {
+                final CompletableFuture<List<List<WireRecord>>> result = inferenceResult.get();
+                this.pendingEmission = this.pendingEmission.thenCompose(ignored -> result)
+                        .handle((records, e) -> {
+                            if (e != null) {
+                                logger.error("Error processing WireRecord.", unwrap(e));
+                            } else {
+                                records.forEach(this.wireSupport::emit);
+                            }
+                            return null;
+                        });
+            }
+
+        } catch (KuraException e) {
+            logger.error("Error processing WireRecord.", e);
+        }
+    }
+
+    /*
+     * The records are sent to the models in a single request, stacking the tensors of each record along the first
+     * dimension, and the result is split back into the records of each input record. The models are invoked through
+     * the asynchronous API, the results are emitted in the order of the input records.
+     */
+    private Optional<CompletableFuture<List<List<WireRecord>>>> inferenceProcess(List<WireRecord> wireRecords)
+            throws KuraException {
         if (this.inferenceEngineService != null && this.inferenceEngineService.isEngineReady()) {
 
             loadModelInfos();
 
-            List<Tensor> tensors;
-            List<WireRecord> result = new LinkedList<>();
-
-            if (this.infoPre.isPresent()) {
-                tensors = TensorListAdapter.givenDescriptors(this.infoPre.get().getInputs()).fromWireRecord(wireRecord);
-                tensors = this.inferenceEngineService.infer(this.infoPre.get(), tensors);
-            } else {
-                tensors = TensorListAdapter.givenDescriptors(this.infoInfer.get().getInputs())
-                        .fromWireRecord(wireRecord);
+            if (wireRecords.size() > 1 && !isBatchable()) {
+                for (WireRecord wireRecord : wireRecords) {
+                    process(Collections.singletonList(wireRecord));
+                }
+                return Optional.empty();
             }
 
-            tensors = this.inferenceEngineService.infer(this.infoInfer.get(), tensors);
+            final InferenceEngineService engine = this.inferenceEngineService;
+            final Optional<ModelInfo> pre = this.infoPre;
+            final ModelInfo infer = this.infoInfer.get();
+            final Optional<ModelInfo> post = this.infoPost;
 
-            if (this.infoPost.isPresent()) {
-                tensors = this.inferenceEngineService.infer(this.infoPost.get(), tensors);
-                result.addAll(
-                        TensorListAdapter.givenDescriptors(this.infoPost.get().getOutputs()).fromTensorList(tensors));
+            CompletableFuture<List<Tensor>> tensors;
+
+            if (pre.isPresent()) {
+                tensors = engine.inferAsync(pre.get(), toTensors(pre.get(), wireRecords))
+                        .thenCompose(preResult -> engine.inferAsync(infer, preResult));
             } else {
-                result.addAll(
-                        TensorListAdapter.givenDescriptors(this.infoInfer.get().getOutputs()).fromTensorList(tensors));
+                tensors = engine.inferAsync(infer, toTensors(infer, wireRecords));
+            }
+
+            ModelInfo outputInfo = infer;
+            if (post.isPresent()) {
+                tensors = tensors.thenCompose(inferResult -> engine.inferAsync(post.get(), inferResult));
+                outputInfo = post.get();
             }
 
-            return Optional.of(result);
+            final List<TensorDescriptor> outputs = outputInfo.getOutputs();
+            return Optional.of(tensors.thenApply(result -> toWireRecords(outputs, result, wireRecords.size())));
         } else {
             logger.info("Selected InferenceEngineService not ready yet.");
             return Optional.empty();
         }
     }
+
+    private boolean isBatchable() {
+        return TensorBatches.isBatchable(this.infoInfer.get())
+                && (!this.infoPre.isPresent() || TensorBatches.isBatchable(this.infoPre.get()))
+                && (!this.infoPost.isPresent() || TensorBatches.isBatchable(this.infoPost.get()));
+    }
+
+    private static List<List<WireRecord>> toWireRecords(List<TensorDescriptor> outputs, List<Tensor> tensors,
+            int recordCount) {
+        final List<List<WireRecord>> result = new LinkedList<>();
+        try {
+            if (recordCount == 1) {
+                result.add(TensorListAdapter.givenDescriptors(outputs).fromTensorList(tensors));
+            } else {
+                for (List<Tensor> recordTensors : TensorBatches.split(tensors, recordCount)) {
+                    result.add(TensorListAdapter.givenDescriptors(outputs).fromTensorList(recordTensors));
+                }
+            }
+        } catch (KuraException e) {
+            throw new CompletionException(e);
+        }
+        return result;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private List<Tensor> toTensors(ModelInfo info, List<WireRecord> wireRecords) throws KuraException {
+        if (wireRecords.size() == 1) {
+            return TensorListAdapter.givenDescriptors(info.getInputs()).fromWireRecord(wireRecords.get(0));
+        }
+
+        final List<List<Tensor>> tensorsByRecord = new ArrayList<>(wireRecords.size());
+        for (WireRecord wireRecord : wireRecords) {
+            tensorsByRecord.add(TensorListAdapter.givenDescriptors(info.getInputs()).fromWireRecord(wireRecord));
+        }
+        return TensorBatches.stack(tensorsByRecord);
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -22,6 +22,11 @@ public class AIComponentOptions {
     private static final String PREPROCESSOR_MODEL_NAME = "preprocessor.model.name";
     private static final String INFERENCE_MODEL_NAME = "inference.model.name";
     private static final String POSTPROCESSOR_MODEL_NAME = "postprocessor.model.name";
+    private static final String BATCH_SIZE = "batch.size";
+    private static final String BATCH_TIMEOUT = "batch.timeout";
+
+    private static final int DEFAULT_BATCH_SIZE = 1;
+    private static final long DEFAULT_BATCH_TIMEOUT = 100;
 
     private final Map<String, Object> properties;
 
@@ -45,4 +50,14 @@ public class AIComponentOptions {
         return (value != null && !value.trim().isEmpty()) ? Optional.of(value.trim()) : Optional.empty();
     }
 
+    public int getBatchSize() {
+        Object value = this.properties.get(BATCH_SIZE);
+        return value instanceof Number ? Math.max(1, ((Number) value).intValue()) : DEFAULT_BATCH_SIZE;
+    }
+
+    public long getBatchTimeout() {
+        Object value = this.properties.get(BATCH_TIMEOUT);
+        return value instanceof Number ? Math.max(0, ((Number) value).longValue()) : DEFAULT_BATCH_TIMEOUT;
+    }
+
 }
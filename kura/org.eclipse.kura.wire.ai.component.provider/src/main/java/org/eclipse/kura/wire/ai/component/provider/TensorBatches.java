@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.wire.ai.component.provider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.eclipse.kura.KuraIOException;
+import org.eclipse.kura.ai.inference.ModelInfo;
+import org.eclipse.kura.ai.inference.Tensor;
+import org.eclipse.kura.ai.inference.TensorDescriptor;
+
+/**
+ * Joins the tensors created from several records into a single batch and splits the results of a batched inference
+ * back into one list of tensors for each record. The first dimension of the tensors is used as batch dimension, so
+ * the models must have been configured to support batching.
+ * <p>
+ * BYTES tensors are not supported, since their elements can have different lengths and the data of a record cannot
+ * be located in the data of the batch.
+ */
+final class TensorBatches {
+
+    private static final String BYTES_TYPE = "BYTES";
+
+    private TensorBatches() {
+    }
+
+    /**
+     * @param info
+     *            the model info
+     * @return {@code true} if the inputs and the outputs of the model can be stacked and split
+     */
+    static boolean isBatchable(ModelInfo info) {
+        return Stream.concat(info.getInputs().stream(), info.getOutputs().stream())
+                .noneMatch(descriptor -> BYTES_TYPE.equals(descriptor.getType()));
+    }
+
+    /**
+     * @param tensorsByRecord
+     *            the list of tensors of each record, all the lists must contain the same tensors in the same order
+     * @return a list containing a tensor for each tensor of the records, with the data of all the records
+     * @throws KuraIOException
+     *             if the tensors of the records do not match or are BYTES tensors
+     */
+    static List<Tensor> stack(List<List<Tensor>> tensorsByRecord) throws KuraIOException {
+        final int batchSize = tensorsByRecord.size();
+        final List<Tensor> first = tensorsByRecord.get(0);
+        final List<Tensor> result = new ArrayList<>(first.size());
+
+        for (int i = 0; i < first.size(); i++) {
+            final TensorDescriptor descriptor = first.get(i).getDescriptor();
+            final Class<?> type = first.get(i).getType();
+            requireFixedSize(descriptor, type);
+            final List<Object> data = new ArrayList<>();
+
+            for (final List<Tensor> tensors : tensorsByRecord) {
+                final Tensor tensor = tensors.get(i);
+                if (tensor.getType() != type || !tensor.getDescriptor().getName().equals(descriptor.getName())) {
+                    throw new KuraIOException("The tensors " + descriptor.getName() + " cannot be batched.");
+                }
+                data.addAll(tensor.getData(type).orElseThrow(
+                        () -> new KuraIOException("The tensor " + descriptor.getName() + " has no data.")));
+            }
+
+            result.add(newTensor(type, withBatchSize(descriptor, batchSize), data));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param tensors
+     *            the result of a batched inference
+     * @param batchSize
+     *            the number of records in the batch
+     * @return the list of tensors of each record, in the order of the batch
+     * @throws KuraIOException
+     *             if the size of a tensor is not a multiple of the batch size or a tensor is a BYTES tensor
+     */
+    static List<List<Tensor>> split(List<Tensor> tensors, int batchSize) throws KuraIOException {
+        final List<List<Tensor>> result = new ArrayList<>(batchSize);
+        for (int record = 0; record < batchSize; record++) {
+            result.add(new ArrayList<>(tensors.size()));
+        }
+
+        for (final Tensor tensor : tensors) {
+            final Class<?> type = tensor.getType();
+            final String name = tensor.getDescriptor().getName();
+            requireFixedSize(tensor.getDescriptor(), type);
+            final List<?> data = tensor.getData(type)
+                    .orElseThrow(() -> new KuraIOException("The tensor " + name + " has no data."));
+
+            if (data.size() % batchSize != 0) {
+                throw new KuraIOException(
+                        "The size of the tensor " + name + " is not a multiple of the batch size " + batchSize);
+            }
+
+            final int recordSize = data.size() / batchSize;
+            for (int record = 0; record < batchSize; record++) {
+                result.get(record).add(newTensor(type, withBatchSize(tensor.getDescriptor(), 1),
+                        data.subList(record * recordSize, (record + 1) * recordSize)));
+            }
+        }
+
+        return result;
+    }
+
+    private static void requireFixedSize(TensorDescriptor descriptor, Class<?> type) throws KuraIOException {
+        if (BYTES_TYPE.equals(descriptor.getType()) || type == byte[].class) {
+            throw new KuraIOException("The BYTES tensor " + descriptor.getName() + " cannot be batched.");
+        }
+    }
+
+    private static TensorDescriptor withBatchSize(TensorDescriptor descriptor, int batchSize) {
+        final List<Long> shape = new ArrayList<>(descriptor.getShape());
+        if (shape.isEmpty()) {
+            shape.add((long) batchSize);
+        } else {
+            shape.set(0, (long) batchSize);
+        }
+        return new TensorDescriptor(descriptor.getName(), descriptor.getType(), descriptor.getFormat(), shape,
+                descriptor.getParameters());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Tensor newTensor(Class<?> type, TensorDescriptor descriptor, List<?> data) {
+        return new Tensor((Class) type, descriptor, (List) data);
+    }
+}
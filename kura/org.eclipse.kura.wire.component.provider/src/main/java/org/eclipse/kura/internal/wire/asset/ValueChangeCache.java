@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -12,21 +12,60 @@
  *******************************************************************************/
 package org.eclipse.kura.internal.wire.asset;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.eclipse.kura.channel.ChannelFlag;
 import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.type.DoubleValue;
+import org.eclipse.kura.type.FloatValue;
+import org.eclipse.kura.type.IntegerValue;
+import org.eclipse.kura.type.LongValue;
 import org.eclipse.kura.type.TypedValue;
 
+/**
+ * Filters the {@link ChannelRecord}s whose value did not change since the last time it has been emitted.
+ * <p>
+ * By default a value is considered changed if it is not equal to the last emitted one. Each channel can additionally
+ * be configured with a {@link ChannelFilter} specifying an absolute or percentage deadband for numeric values, a
+ * minimum interval between two emissions and a heartbeat interval after which the value is emitted even if it did
+ * not change. The heartbeat is evaluated when the channel is read, so its resolution is bounded by the read rate.
+ * <p>
+ * Records reporting a failure are always emitted and reset the state of the channel.
+ */
 public class ValueChangeCache {
 
-    private final Map<String, TypedValue<?>> cache = new HashMap<>();
+    private static final ChannelFilter DEFAULT_FILTER = new ChannelFilter(0, 0, 0, 0);
 
-    private boolean update(final ChannelRecord channelRecord) {
+    private final Map<String, ChannelFilter> filters;
+    private final LongSupplier nanoClock;
+    private final Map<String, ChannelState> cache = new HashMap<>();
+
+    private long emittedCount;
+    private long suppressedCount;
+
+    public ValueChangeCache() {
+        this(Collections.emptyMap());
+    }
+
+    public ValueChangeCache(final Map<String, ChannelFilter> filters) {
+        this(filters, System::nanoTime);
+    }
+
+    ValueChangeCache(final Map<String, ChannelFilter> filters, final LongSupplier nanoClock) {
+        this.filters = new HashMap<>(filters);
+        this.nanoClock = nanoClock;
+    }
+
+    private boolean update(final ChannelRecord channelRecord, final long now) {
 
         final String key = channelRecord.getChannelName();
 
@@ -38,20 +77,180 @@ public class ValueChangeCache {
         }
 
         final TypedValue<?> value = channelRecord.getValue();
+        final ChannelState state = cache.get(key);
+
+        if (state == null) {
+            cache.put(key, new ChannelState(value, now));
+            return true;
+        }
+
+        final ChannelFilter filter = this.filters.getOrDefault(key, DEFAULT_FILTER);
+        final long elapsed = now - state.lastEmitNanos;
+
+        final boolean emit;
+
+        if (filter.heartbeatIntervalNanos > 0 && elapsed >= filter.heartbeatIntervalNanos) {
+            emit = true;
+        } else {
+            emit = elapsed >= filter.minEmitIntervalNanos && isChanged(filter, state, value);
+        }
+
+        if (emit) {
+            state.update(value, now);
+        }
+
+        return emit;
+    }
+
+    private static boolean isChanged(final ChannelFilter filter, final ChannelState state,
+            final TypedValue<?> value) {
 
-        if (Objects.equals(cache.get(key), value)) {
-            return false;
+        if (!filter.hasDeadband() || !state.isNumeric || !isNumeric(value)) {
+            return !Objects.equals(state.lastValue, value);
         }
 
-        cache.put(key, value);
+        final double delta = Math.abs(toDouble(value) - state.lastNumericValue);
+
+        if (Double.isNaN(delta)) {
+            return !Objects.equals(state.lastValue, value);
+        }
+
+        return delta > filter.absoluteDeadband
+                && delta > Math.abs(state.lastNumericValue) * filter.percentDeadband / 100;
+    }
 
-        return true;
+    private static boolean isNumeric(final TypedValue<?> value) {
+        return value instanceof IntegerValue || value instanceof LongValue || value instanceof FloatValue
+                || value instanceof DoubleValue;
+    }
 
+    private static double toDouble(final TypedValue<?> value) {
+        if (value instanceof DoubleValue) {
+            return ((DoubleValue) value).getValue();
+        } else if (value instanceof FloatValue) {
+            return ((FloatValue) value).getValue();
+        } else if (value instanceof LongValue) {
+            return ((LongValue) value).getValue();
+        } else {
+            return ((IntegerValue) value).getValue();
+        }
     }
 
     public synchronized List<ChannelRecord> filterRecords(final List<ChannelRecord> channelRecords) {
 
-        return channelRecords.stream().filter(this::update).collect(Collectors.toList());
+        final long now = this.nanoClock.getAsLong();
+        final List<ChannelRecord> result = new ArrayList<>(channelRecords.size());
+
+        for (final ChannelRecord channelRecord : channelRecords) {
+            if (update(channelRecord, now)) {
+                result.add(channelRecord);
+            }
+        }
+
+        this.emittedCount += result.size();
+        this.suppressedCount += channelRecords.size() - result.size();
+
+        return result;
+    }
+
+    public synchronized long getEmittedCount() {
+        return this.emittedCount;
+    }
+
+    public synchronized long getSuppressedCount() {
+        return this.suppressedCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("emitted records: %d, suppressed records: %d", this.emittedCount,
+                this.suppressedCount);
+    }
+
+    private static final class ChannelState {
+
+        private TypedValue<?> lastValue;
+        private boolean isNumeric;
+        private double lastNumericValue;
+        private long lastEmitNanos;
+
+        ChannelState(final TypedValue<?> value, final long now) {
+            update(value, now);
+        }
+
+        void update(final TypedValue<?> value, final long now) {
+            this.lastValue = value;
+            this.isNumeric = isNumeric(value);
+            this.lastNumericValue = this.isNumeric ? toDouble(value) : 0;
+            this.lastEmitNanos = now;
+        }
+    }
+
+    /**
+     * The per channel filter configuration, a value of 0 disables the corresponding filter.
+     */
+    public static final class ChannelFilter {
+
+        private static final Logger logger = LogManager.getLogger(ChannelFilter.class);
+
+        private final double absoluteDeadband;
+        private final double percentDeadband;
+        private final long minEmitIntervalNanos;
+        private final long heartbeatIntervalNanos;
+
+        public ChannelFilter(final double absoluteDeadband, final double percentDeadband,
+                final long minEmitIntervalMs, final long heartbeatIntervalMs) {
+            this.absoluteDeadband = Math.max(0, absoluteDeadband);
+            this.percentDeadband = Math.max(0, percentDeadband);
+            this.minEmitIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minEmitIntervalMs));
+            this.heartbeatIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, heartbeatIntervalMs));
+        }
+
+        public static ChannelFilter fromChannelConfiguration(final Map<String, Object> properties) {
+            return new ChannelFilter(
+                    getDouble(properties, WireAssetConstants.DEADBAND_ABSOLUTE_PROP_NAME.value()),
+                    getDouble(properties, WireAssetConstants.DEADBAND_PERCENT_PROP_NAME.value()),
+                    getLong(properties, WireAssetConstants.MIN_EMIT_INTERVAL_PROP_NAME.value()),
+                    getLong(properties, WireAssetConstants.HEARTBEAT_INTERVAL_PROP_NAME.value()));
+        }
+
+        public boolean isEnabled() {
+            return hasDeadband() || this.minEmitIntervalNanos > 0 || this.heartbeatIntervalNanos > 0;
+        }
+
+        private boolean hasDeadband() {
+            return this.absoluteDeadband > 0 || this.percentDeadband > 0;
+        }
+
+        private static double getDouble(final Map<String, Object> properties, final String key) {
+            final Object value = properties.get(key);
+
+            if (value == null) {
+                return 0;
+            }
+
+            try {
+                return Double.parseDouble(value.toString());
+            } catch (final NumberFormatException e) {
+                logger.warn("Failed to retrieve \"{}\" property from channel configuration", key.substring(1));
+                return 0;
+            }
+        }
+
+        private static long getLong(final Map<String, Object> properties, final String key) {
+            final Object value = properties.get(key);
+
+            if (value == null) {
+                return 0;
+            }
+
+            try {
+                return Long.parseLong(value.toString());
+            } catch (final NumberFormatException e) {
+                logger.warn("Failed to retrieve \"{}\" property from channel configuration", key.substring(1));
+                return 0;
+            }
+        }
     }
 
 }
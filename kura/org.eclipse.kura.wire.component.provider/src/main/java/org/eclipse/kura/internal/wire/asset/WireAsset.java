@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2016, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -18,7 +18,10 @@ import static java.util.Objects.requireNonNull;
 import static org.eclipse.kura.channel.ChannelType.READ_WRITE;
 import static org.eclipse.kura.channel.ChannelType.WRITE;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,6 +32,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.kura.KuraException;
 import org.eclipse.kura.asset.AssetConfiguration;
+import org.eclipse.kura.asset.provider.AssetConstants;
 import org.eclipse.kura.asset.provider.BaseAsset;
 import org.eclipse.kura.channel.Channel;
 import org.eclipse.kura.channel.ChannelRecord;
@@ -102,11 +106,17 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
 
     private static final Logger logger = LogManager.getLogger(WireAsset.class);
 
+    private static final Set<String> CHANNEL_FILTER_PROPERTIES = new HashSet<>(Arrays.asList(
+            WireAssetConstants.DEADBAND_ABSOLUTE_PROP_NAME.value(),
+            WireAssetConstants.DEADBAND_PERCENT_PROP_NAME.value(),
+            WireAssetConstants.MIN_EMIT_INTERVAL_PROP_NAME.value(),
+            WireAssetConstants.HEARTBEAT_INTERVAL_PROP_NAME.value()));
+
     private volatile WireHelperService wireHelperService;
 
     private WireSupport wireSupport;
 
-    private Optional<ValueChangeCache> valueChangeCache = Optional.empty();
+    private volatile Optional<ValueChangeCache> valueChangeCache = Optional.empty();
 
     private WireAssetOptions options = new WireAssetOptions();
 
@@ -164,13 +174,17 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
         logger.debug("Updating Wire Asset...");
         this.options = new WireAssetOptions(properties);
 
+        logValueChangeStatistics();
+
+        // installed before the channel listeners are attached again by super.updated()
         if (this.options.emitOnChange()) {
-            this.valueChangeCache = Optional.of(new ValueChangeCache());
+            this.valueChangeCache = Optional.of(new ValueChangeCache(getChannelFilters(properties)));
         } else {
             this.valueChangeCache = Optional.empty();
         }
 
         super.updated(properties);
+
         logger.debug("Updating Wire Asset...Done");
     }
 
@@ -183,10 +197,27 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
     @Override
     protected void deactivate(final ComponentContext context) {
         logger.debug("Deactivating Wire Asset...");
+        logValueChangeStatistics();
         super.deactivate(context);
         logger.debug("Deactivating Wire Asset...Done");
     }
 
+    /**
+     * @return the number of channel records emitted since emit on change has been enabled or the asset has been last
+     *         updated, 0 if emit on change is disabled
+     */
+    public long getEmittedChannelRecordCount() {
+        return this.valueChangeCache.map(ValueChangeCache::getEmittedCount).orElse(0L);
+    }
+
+    /**
+     * @return the number of channel records suppressed since emit on change has been enabled or the asset has been
+     *         last updated, 0 if emit on change is disabled
+     */
+    public long getSuppressedChannelRecordCount() {
+        return this.valueChangeCache.map(ValueChangeCache::getSuppressedCount).orElse(0L);
+    }
+
     /** {@inheritDoc} */
     @Override
     public void consumersConnected(final Wire[] wires) {
@@ -354,6 +385,48 @@ public final class WireAsset extends BaseAsset implements WireEmitter, WireRecei
         }
     }
 
+    /*
+     * The filters are read from the provided properties, since the asset configuration is replaced only by
+     * super.updated().
+     */
+    private static Map<String, ValueChangeCache.ChannelFilter> getChannelFilters(
+            final Map<String, Object> properties) {
+        final Map<String, Map<String, Object>> channelConfigurations = new HashMap<>();
+
+        for (final Entry<String, Object> e : properties.entrySet()) {
+            final String key = e.getKey();
+            final int pos = key.indexOf(AssetConstants.CHANNEL_PROPERTY_SEPARATOR.value());
+
+            if (pos <= 0) {
+                continue;
+            }
+
+            final String propertyName = key.substring(pos + 1);
+
+            if (CHANNEL_FILTER_PROPERTIES.contains(propertyName)) {
+                channelConfigurations.computeIfAbsent(key.substring(0, pos), k -> new HashMap<>())
+                        .put(propertyName, e.getValue());
+            }
+        }
+
+        final Map<String, ValueChangeCache.ChannelFilter> filters = new HashMap<>();
+
+        for (final Entry<String, Map<String, Object>> e : channelConfigurations.entrySet()) {
+            final ValueChangeCache.ChannelFilter filter = ValueChangeCache.ChannelFilter
+                    .fromChannelConfiguration(e.getValue());
+
+            if (filter.isEnabled()) {
+                filters.put(e.getKey(), filter);
+            }
+        }
+
+        return filters;
+    }
+
+    private void logValueChangeStatistics() {
+        this.valueChangeCache.ifPresent(c -> logger.info("Value change statistics - {}", c));
+    }
+
     private boolean isListeningChannel(final Map<String, Object> properties) {
         try {
             return Boolean.parseBoolean(properties.get(WireAssetConstants.LISTEN_PROP_NAME.value()).toString());
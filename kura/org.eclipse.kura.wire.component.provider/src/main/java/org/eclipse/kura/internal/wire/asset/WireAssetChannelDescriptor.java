@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2018, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -13,7 +13,11 @@
 
 package org.eclipse.kura.internal.wire.asset;
 
+import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.DEADBAND_ABSOLUTE_PROP_NAME;
+import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.DEADBAND_PERCENT_PROP_NAME;
+import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.HEARTBEAT_INTERVAL_PROP_NAME;
 import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.LISTEN_PROP_NAME;
+import static org.eclipse.kura.internal.wire.asset.WireAssetConstants.MIN_EMIT_INTERVAL_PROP_NAME;
 
 import org.eclipse.kura.asset.provider.BaseChannelDescriptor;
 import org.eclipse.kura.core.configuration.metatype.Tad;
@@ -36,6 +40,55 @@ public class WireAssetChannelDescriptor extends BaseChannelDescriptor {
 
         this.defaultElements.add(listen);
 
+        final Tad deadbandAbsolute = new Tad();
+        deadbandAbsolute.setName(DEADBAND_ABSOLUTE_PROP_NAME.value().substring(1));
+        deadbandAbsolute.setId(DEADBAND_ABSOLUTE_PROP_NAME.value());
+        deadbandAbsolute.setDescription("If emit.on.change is enabled, a numeric value is not emitted if it differs"
+                + " from the last emitted value by this amount or less. Set to 0 to emit on any change.");
+        deadbandAbsolute.setType(Tscalar.DOUBLE);
+        deadbandAbsolute.setRequired(false);
+        deadbandAbsolute.setDefault("0");
+        deadbandAbsolute.setMin("0");
+
+        this.defaultElements.add(deadbandAbsolute);
+
+        final Tad deadbandPercent = new Tad();
+        deadbandPercent.setName(DEADBAND_PERCENT_PROP_NAME.value().substring(1));
+        deadbandPercent.setId(DEADBAND_PERCENT_PROP_NAME.value());
+        deadbandPercent.setDescription("If emit.on.change is enabled, a numeric value is not emitted if it differs"
+                + " from the last emitted value by this percentage of the last emitted value or less."
+                + " Set to 0 to emit on any change.");
+        deadbandPercent.setType(Tscalar.DOUBLE);
+        deadbandPercent.setRequired(false);
+        deadbandPercent.setDefault("0");
+        deadbandPercent.setMin("0");
+
+        this.defaultElements.add(deadbandPercent);
+
+        final Tad minEmitInterval = new Tad();
+        minEmitInterval.setName(MIN_EMIT_INTERVAL_PROP_NAME.value().substring(1));
+        minEmitInterval.setId(MIN_EMIT_INTERVAL_PROP_NAME.value());
+        minEmitInterval.setDescription("If emit.on.change is enabled, the minimum time in milliseconds between two"
+                + " emissions of the channel value. Set to 0 to disable.");
+        minEmitInterval.setType(Tscalar.LONG);
+        minEmitInterval.setRequired(false);
+        minEmitInterval.setDefault("0");
+        minEmitInterval.setMin("0");
+
+        this.defaultElements.add(minEmitInterval);
+
+        final Tad heartbeatInterval = new Tad();
+        heartbeatInterval.setName(HEARTBEAT_INTERVAL_PROP_NAME.value().substring(1));
+        heartbeatInterval.setId(HEARTBEAT_INTERVAL_PROP_NAME.value());
+        heartbeatInterval.setDescription("If emit.on.change is enabled, the channel value is emitted even if it did"
+                + " not change when it has not been emitted for this time in milliseconds. Set to 0 to disable.");
+        heartbeatInterval.setType(Tscalar.LONG);
+        heartbeatInterval.setRequired(false);
+        heartbeatInterval.setDefault("0");
+        heartbeatInterval.setMin("0");
+
+        this.defaultElements.add(heartbeatInterval);
+
     }
 
     public static WireAssetChannelDescriptor get() {
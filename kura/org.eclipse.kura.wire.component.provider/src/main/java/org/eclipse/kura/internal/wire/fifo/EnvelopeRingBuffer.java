@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.fifo;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.kura.wire.WireEnvelope;
+
+/**
+ * A bounded, preallocated ring buffer of envelopes that can be filled by any number of producers and is drained by a
+ * single consumer thread.
+ * <p>
+ * Each slot carries a sequence number that tells producers and the consumer whether the slot is free or holds a
+ * published envelope, so that enqueueing only requires a compare-and-set on the tail and dequeueing does not require
+ * any atomic read-modify-write operation. Locks are only used to park producers waiting for room in a full buffer.
+ */
+final class EnvelopeRingBuffer {
+
+    private static final long MAX_PRODUCER_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int capacity;
+    private final int slotCount;
+    private final AtomicReferenceArray<WireEnvelope> slots;
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+    // written by the consumer thread only
+    private volatile long head;
+
+    private volatile Thread consumer;
+    private volatile boolean consumerParked;
+    private volatile boolean closed;
+
+    private final Lock producerLock = new ReentrantLock();
+    private final Condition notFull = this.producerLock.newCondition();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    EnvelopeRingBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be greater than zero");
+        }
+        this.capacity = capacity;
+        // a single slot cannot tell a published envelope from a free slot of the next lap
+        this.slotCount = Math.max(capacity, 2);
+        this.slots = new AtomicReferenceArray<>(this.slotCount);
+        this.sequences = new AtomicLongArray(this.slotCount);
+        for (int i = 0; i < this.slotCount; i++) {
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an envelope without blocking.
+     *
+     * @return {@code false} if the buffer is full or closed
+     */
+    boolean offer(final WireEnvelope envelope) {
+        if (this.closed) {
+            return false;
+        }
+
+        while (true) {
+            final long position = this.tail.get();
+            final int index = indexOf(position);
+            final long difference = this.sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (position - this.head >= this.capacity) {
+                    return false;
+                }
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    this.slots.lazySet(index, envelope);
+                    this.sequences.set(index, position + 1);
+                    wakeUpConsumer();
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Adds an envelope, waiting for room if the buffer is full.
+     *
+     * @return {@code false} if the buffer has been closed before the envelope could be added
+     */
+    boolean put(final WireEnvelope envelope) throws InterruptedException {
+        if (offer(envelope)) {
+            return true;
+        }
+
+        this.waitingProducers.incrementAndGet();
+        this.producerLock.lock();
+        try {
+            while (!this.closed) {
+                if (offer(envelope)) {
+                    return true;
+                }
+                this.notFull.awaitNanos(MAX_PRODUCER_WAIT_NANOS);
+            }
+            return false;
+        } finally {
+            this.producerLock.unlock();
+            this.waitingProducers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Moves up to {@code maxElements} envelopes to the given list, must only be called by the consumer thread.
+     *
+     * @return the number of envelopes moved
+     */
+    int drainTo(final List<WireEnvelope> target, final int maxElements) {
+        long position = this.head;
+        int count = 0;
+
+        while (count < maxElements) {
+            final int index = indexOf(position);
+            if (this.sequences.get(index) != position + 1) {
+                break;
+            }
+            target.add(this.slots.get(index));
+            this.slots.lazySet(index, null);
+            this.sequences.set(index, position + this.slotCount);
+            position++;
+            count++;
+        }
+
+        if (count > 0) {
+            this.head = position;
+            wakeUpProducers();
+        }
+        return count;
+    }
+
+    /**
+     * Parks the consumer thread until an envelope is available or the buffer is closed.
+     */
+    void awaitNotEmpty() {
+        this.consumer = Thread.currentThread();
+        while (!this.closed && isEmpty()) {
+            this.consumerParked = true;
+            if (!this.closed && isEmpty()) {
+                LockSupport.park(this);
+            }
+            this.consumerParked = false;
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rejects new envelopes and releases the waiting producers and consumer. Envelopes still in the buffer are
+     * discarded.
+     */
+    void close() {
+        this.closed = true;
+
+        this.producerLock.lock();
+        try {
+            this.notFull.signalAll();
+        } finally {
+            this.producerLock.unlock();
+        }
+
+        final Thread waitingConsumer = this.consumer;
+        if (waitingConsumer != null) {
+            LockSupport.unpark(waitingConsumer);
+        }
+    }
+
+    boolean isClosed() {
+        return this.closed;
+    }
+
+    boolean isEmpty() {
+        final long position = this.head;
+        return this.sequences.get(indexOf(position)) != position + 1;
+    }
+
+    int size() {
+        final long size = this.tail.get() - this.head;
+        return (int) Math.max(0, Math.min(size, this.capacity));
+    }
+
+    int capacity() {
+        return this.capacity;
+    }
+
+    private int indexOf(final long position) {
+        return (int) (position % this.slotCount);
+    }
+
+    private void wakeUpConsumer() {
+        if (this.consumerParked) {
+            final Thread waitingConsumer = this.consumer;
+            if (waitingConsumer != null) {
+                LockSupport.unpark(waitingConsumer);
+            }
+        }
+    }
+
+    private void wakeUpProducers() {
+        if (this.waitingProducers.get() > 0) {
+            this.producerLock.lock();
+            try {
+                this.notFull.signalAll();
+            } finally {
+                this.producerLock.unlock();
+            }
+        }
+    }
+}
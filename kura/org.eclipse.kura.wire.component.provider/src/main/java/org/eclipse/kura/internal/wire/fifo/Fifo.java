@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -16,10 +16,8 @@ import static java.util.Objects.isNull;
 import static java.util.Objects.requireNonNull;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
@@ -31,6 +29,7 @@ import org.eclipse.kura.wire.WireEmitter;
 import org.eclipse.kura.wire.WireEnvelope;
 import org.eclipse.kura.wire.WireHelperService;
 import org.eclipse.kura.wire.WireReceiver;
+import org.eclipse.kura.wire.WireRecord;
 import org.eclipse.kura.wire.WireSupport;
 import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
@@ -40,6 +39,9 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
 
     private static final String DISCARD_ENVELOPES_PROP_NAME = "discard.envelopes";
     private static final String QUEUE_CAPACITY_PROP_NAME = "queue.capacity";
+    private static final String COALESCE_ENVELOPES_PROP_NAME = "coalesce.envelopes";
+
+    private static final int MAX_BATCH_SIZE = 1000;
 
     private static final Logger logger = LogManager.getLogger(Fifo.class);
 
@@ -81,8 +83,9 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
                 + "-EmitterThread";
         int queueCapacity = (Integer) properties.getOrDefault(QUEUE_CAPACITY_PROP_NAME, 50);
         boolean discardEnvelopes = (Boolean) properties.getOrDefault(DISCARD_ENVELOPES_PROP_NAME, false);
+        boolean coalesceEnvelopes = (Boolean) properties.getOrDefault(COALESCE_ENVELOPES_PROP_NAME, false);
 
-        restartEmitterThread(threadName, queueCapacity, discardEnvelopes);
+        restartEmitterThread(threadName, queueCapacity, discardEnvelopes, coalesceEnvelopes);
 
         logger.info("Updating Fifo... Done");
     }
@@ -94,12 +97,14 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
         }
     }
 
-    private synchronized void restartEmitterThread(String threadName, int queueCapacity, boolean discardEnvelopes) {
+    private synchronized void restartEmitterThread(String threadName, int queueCapacity, boolean discardEnvelopes,
+            boolean coalesceEnvelopes) {
         stopEmitterThread();
 
-        logger.debug("Creating new emitter thread: {}, queue capacity: {}, discard envelopes: {}", threadName,
-                queueCapacity, discardEnvelopes);
-        this.emitterThread = new FifoEmitterThread(threadName, queueCapacity, discardEnvelopes);
+        logger.debug(
+                "Creating new emitter thread: {}, queue capacity: {}, discard envelopes: {}, coalesce envelopes: {}",
+                threadName, queueCapacity, discardEnvelopes, coalesceEnvelopes);
+        this.emitterThread = new FifoEmitterThread(threadName, queueCapacity, discardEnvelopes, coalesceEnvelopes);
         this.emitterThread.start();
     }
 
@@ -133,20 +138,19 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
 
     private class FifoEmitterThread extends Thread {
 
-        private final Lock lock = new ReentrantLock();
-
-        private final Condition producer = this.lock.newCondition();
-        private final Condition consumer = this.lock.newCondition();
+        private final EnvelopeRingBuffer queue;
+        private final boolean coalesceEnvelopes;
+        private final List<WireEnvelope> batch;
 
-        private boolean run = true;
-        private final ArrayList<WireEnvelope> queue;
-        private final int queueCapacity;
+        private volatile boolean run = true;
 
         private Consumer<WireEnvelope> submitter;
 
-        public FifoEmitterThread(String threadName, int queueCapacity, boolean discardEnvelopes) {
-            this.queue = new ArrayList<>();
-            this.queueCapacity = queueCapacity;
+        public FifoEmitterThread(String threadName, int queueCapacity, boolean discardEnvelopes,
+                boolean coalesceEnvelopes) {
+            this.queue = new EnvelopeRingBuffer(queueCapacity);
+            this.coalesceEnvelopes = coalesceEnvelopes;
+            this.batch = new ArrayList<>(Math.min(queueCapacity, MAX_BATCH_SIZE));
             setName(threadName);
             if (discardEnvelopes) {
                 this.submitter = getEnvelopeDiscardingSubmitter();
@@ -157,18 +161,10 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
 
         private Consumer<WireEnvelope> getEnvelopeDiscardingSubmitter() {
             return (envelope) -> {
-                try {
-                    this.lock.lock();
-                    if (!this.run || this.queue.size() >= this.queueCapacity) {
-                        logger.debug("envelope discarded");
-                        return;
-                    } else {
-                        this.queue.add(envelope);
-                        this.producer.signal();
-                        logger.debug("envelope submitted");
-                    }
-                } finally {
-                    this.lock.unlock();
+                if (!this.run || !this.queue.offer(envelope)) {
+                    logger.debug("envelope discarded");
+                } else {
+                    logger.debug("envelope submitted");
                 }
             };
         }
@@ -176,34 +172,19 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
         private Consumer<WireEnvelope> getEmitterBlockingSubmitter() {
             return (envelope) -> {
                 try {
-                    this.lock.lock();
-                    while (this.run && this.queue.size() >= this.queueCapacity) {
-                        this.consumer.await();
-                    }
-                    if (!this.run) {
-                        return;
+                    if (this.run && this.queue.put(envelope)) {
+                        logger.debug("envelope submitted");
                     }
-                    this.queue.add(envelope);
-                    this.producer.signal();
-                    logger.debug("envelope submitted");
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     logger.warn("Interrupted while adding new envelope to queue", e);
-                } finally {
-                    this.lock.unlock();
                 }
             };
         }
 
         public void shutdown() {
-            try {
-                this.lock.lock();
-                this.run = false;
-                this.producer.signalAll();
-                this.consumer.signalAll();
-            } finally {
-                this.lock.unlock();
-            }
+            this.run = false;
+            this.queue.close();
         }
 
         public void submit(WireEnvelope envelope) {
@@ -212,28 +193,37 @@ public class Fifo implements WireEmitter, WireReceiver, ConfigurableComponent {
 
         @Override
         public void run() {
+            // without coalescing envelopes are taken one at a time, so that no more than queue.capacity envelopes
+            // are waiting besides the one being emitted
+            final int maxBatchSize = this.coalesceEnvelopes ? MAX_BATCH_SIZE : 1;
+
             while (this.run) {
                 try {
-                    WireEnvelope next = null;
-                    try {
-                        this.lock.lock();
-                        while (this.run && this.queue.isEmpty()) {
-                            this.producer.await();
-                        }
-                        if (!this.run) {
-                            break;
-                        }
-                        next = this.queue.remove(0);
-                        this.consumer.signal();
-                    } finally {
-                        this.lock.unlock();
+                    this.queue.awaitNotEmpty();
+                    if (!this.run) {
+                        break;
                     }
-                    Fifo.this.wireSupport.emit(next.getRecords());
+                    this.queue.drainTo(this.batch, maxBatchSize);
+                    emit(this.batch);
                 } catch (Exception e) {
                     logger.warn("Unexpected exception while dispatching envelope", e);
+                } finally {
+                    this.batch.clear();
                 }
             }
             logger.debug("exiting");
         }
+
+        private void emit(List<WireEnvelope> envelopes) {
+            if (envelopes.size() == 1) {
+                Fifo.this.wireSupport.emit(envelopes.get(0).getRecords());
+            } else if (!envelopes.isEmpty()) {
+                final List<WireRecord> records = new ArrayList<>();
+                for (final WireEnvelope envelope : envelopes) {
+                    records.addAll(envelope.getRecords());
+                }
+                Fifo.this.wireSupport.emit(records);
+            }
+        }
     }
 }
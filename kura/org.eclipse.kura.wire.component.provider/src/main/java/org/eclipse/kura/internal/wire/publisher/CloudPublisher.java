@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2016, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -18,18 +18,25 @@ import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
 
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.kura.cloudconnection.message.KuraMessage;
 import org.eclipse.kura.configuration.ConfigurableComponent;
+import org.eclipse.kura.internal.wire.publisher.WireRecordBatcher.BatchedRecord;
 import org.eclipse.kura.message.KuraPayload;
 import org.eclipse.kura.message.KuraPosition;
 import org.eclipse.kura.position.NmeaPosition;
@@ -47,6 +54,11 @@ import org.osgi.framework.ServiceReference;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.wireadmin.Wire;
 
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonArray;
+import com.eclipsesource.json.JsonObject;
+import com.eclipsesource.json.JsonValue;
+
 /**
  * The Class CloudPublisher is the specific Wire Component to publish a list of
  * {@link WireRecord}s as received in {@link WireEnvelope} to the configured cloud
@@ -54,7 +66,13 @@ import org.osgi.service.wireadmin.Wire;
  * <br/>
  *
  * For every {@link WireRecord} as found in {@link WireEnvelope} will be wrapped inside a Kura
- * Payload and will be sent to the Cloud Platform.
+ * Payload and will be sent to the Cloud Platform.<br/>
+ * <br/>
+ *
+ * If batching is enabled, the records are buffered and published in a single message whose body is a JSON object
+ * with the reception timestamps of the records and, for each property, the array of its values in the records:
+ * <code>{"timestamps":[t0,t1],"metrics":{"name":[v0,v1]}}</code>. The properties of the first record of the batch
+ * are used as message properties.
  */
 public final class CloudPublisher implements WireReceiver, ConfigurableComponent {
 
@@ -62,7 +80,7 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
 
     private static final String ASSET_NAME_PROPERTY_KEY = "assetName";
 
-    private CloudPublisherOptions cloudPublisherOptions;
+    private volatile CloudPublisherOptions cloudPublisherOptions;
 
     private volatile WireHelperService wireHelperService;
     private PositionService positionService;
@@ -71,6 +89,9 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
 
     private org.eclipse.kura.cloudconnection.publisher.CloudPublisher cloudConnectionPublisher;
 
+    private ScheduledExecutorService batchExecutor;
+    private volatile WireRecordBatcher batcher;
+
     // ----------------------------------------------------------------
     //
     // Dependencies
@@ -99,6 +120,7 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
 
     public void unsetCloudPublisher(org.eclipse.kura.cloudconnection.publisher.CloudPublisher cloudPublisher) {
         if (cloudPublisher == this.cloudConnectionPublisher) {
+            flushBatch();
             this.cloudConnectionPublisher = null;
         }
     }
@@ -124,6 +146,7 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
 
         // Update properties
         this.cloudPublisherOptions = new CloudPublisherOptions(properties);
+        updateBatcher();
 
         logger.debug("Activating Cloud Publisher Wire Component... Done");
     }
@@ -138,6 +161,7 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
         logger.debug("Updating Cloud Publisher Wire Component...");
         // Update properties
         this.cloudPublisherOptions = new CloudPublisherOptions(properties);
+        updateBatcher();
 
         logger.debug("Updating Cloud Publisher Wire Component... Done");
     }
@@ -151,6 +175,8 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
     protected void deactivate(final ComponentContext componentContext) {
         logger.debug("Deactivating Cloud Publisher Wire Component...");
 
+        stopBatcher();
+
         logger.debug("Deactivating Cloud Publisher Wire Component... Done");
     }
 
@@ -161,10 +187,47 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
 
         if (nonNull(this.cloudConnectionPublisher)) {
             final List<WireRecord> records = wireEnvelope.getRecords();
-            publish(records);
+
+            if (this.batcher != null) {
+                final long timestamp = System.currentTimeMillis();
+                for (final WireRecord wireRecord : records) {
+                    if (!addToBatch(wireRecord, timestamp)) {
+                        publish(Collections.singletonList(wireRecord));
+                    }
+                }
+            } else {
+                publish(records);
+            }
         }
     }
 
+    /**
+     * @return the number of records received since batching has been enabled or last reconfigured, 0 if batching is
+     *         disabled
+     */
+    public long getBatchedRecordCount() {
+        final WireRecordBatcher currentBatcher = this.batcher;
+        return currentBatcher != null ? currentBatcher.getReceivedRecordCount() : 0;
+    }
+
+    /**
+     * @return the number of batch messages published since batching has been enabled or last reconfigured, 0 if
+     *         batching is disabled
+     */
+    public long getPublishedBatchCount() {
+        final WireRecordBatcher currentBatcher = this.batcher;
+        return currentBatcher != null ? currentBatcher.getPublishedBatchCount() : 0;
+    }
+
+    /**
+     * @return the average number of records per published batch message, 0 if batching is disabled or no batch has
+     *         been published yet
+     */
+    public double getRecordsPerBatch() {
+        final WireRecordBatcher currentBatcher = this.batcher;
+        return currentBatcher != null ? currentBatcher.getRecordsPerBatch() : 0;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void producersConnected(final Wire[] wires) {
@@ -278,14 +341,217 @@ public final class CloudPublisher implements WireReceiver, ConfigurableComponent
         }
     }
 
+    private synchronized void updateBatcher() {
+        stopBatcher();
+
+        if (!this.cloudPublisherOptions.isBatchingEnabled()) {
+            return;
+        }
+
+        this.batchExecutor = Executors.newSingleThreadScheduledExecutor();
+        this.batcher = new WireRecordBatcher(this.cloudPublisherOptions.getBatchMaxRecords(),
+                this.cloudPublisherOptions.getBatchMaxBytes(), this.cloudPublisherOptions.getBatchWindowMs(),
+                this.batchExecutor, this::publishBatch);
+    }
+
+    /*
+     * The batcher is replaced before being stopped, so that a receiver that finds it stopped reads the new one.
+     */
+    private boolean addToBatch(final WireRecord wireRecord, final long timestamp) {
+        WireRecordBatcher currentBatcher = this.batcher;
+
+        while (currentBatcher != null) {
+            if (currentBatcher.add(wireRecord, timestamp)) {
+                return true;
+            }
+            currentBatcher = this.batcher;
+        }
+
+        return false;
+    }
+
+    private synchronized void stopBatcher() {
+        final WireRecordBatcher currentBatcher = this.batcher;
+
+        if (currentBatcher == null) {
+            return;
+        }
+
+        this.batcher = null;
+        currentBatcher.stop();
+        logger.info("Batching statistics - {}", currentBatcher);
+
+        this.batchExecutor.shutdownNow();
+        this.batchExecutor = null;
+    }
+
+    private void flushBatch() {
+        final WireRecordBatcher currentBatcher = this.batcher;
+
+        if (currentBatcher != null) {
+            currentBatcher.flush();
+        }
+    }
+
+    /**
+     * Publishes the provided batch of {@link WireRecord}s in a single message
+     *
+     * @param batch
+     *            the buffered records
+     */
+    private void publishBatch(final List<BatchedRecord> batch) {
+        final org.eclipse.kura.cloudconnection.publisher.CloudPublisher publisher = this.cloudConnectionPublisher;
+
+        if (isNull(publisher)) {
+            logger.warn("Cloud publisher not available, dropping {} records", batch.size());
+            return;
+        }
+
+        try {
+            final KuraPayload kuraPayload = new KuraPayload();
+            kuraPayload.setTimestamp(new Date());
+
+            if (this.cloudPublisherOptions.getPositionType() != PositionType.NONE) {
+                kuraPayload.setPosition(getPosition());
+            }
+
+            kuraPayload.setBody(buildBatchBody(batch).getBytes(StandardCharsets.UTF_8));
+
+            final Map<String, Object> properties = buildKuraMessageProperties(batch.get(0).getWireRecord());
+            publisher.publish(new KuraMessage(kuraPayload, properties));
+
+            logger.debug("Published {} records in a single message", batch.size());
+        } catch (final Exception e) {
+            logger.error("Error in publishing wire records using cloud publisher..", e);
+        }
+    }
+
+    private static String buildBatchBody(final List<BatchedRecord> batch) {
+        final JsonArray timestamps = new JsonArray();
+        final JsonObject metrics = new JsonObject();
+
+        for (int i = 0; i < batch.size(); i++) {
+            final BatchedRecord batchedRecord = batch.get(i);
+            timestamps.add(batchedRecord.getTimestamp());
+
+            for (final Entry<String, TypedValue<?>> entry : batchedRecord.getWireRecord().getProperties().entrySet()) {
+                JsonArray values = (JsonArray) metrics.get(entry.getKey());
+
+                if (values == null) {
+                    values = new JsonArray();
+                    // the property was missing in the previous records
+                    for (int j = 0; j < i; j++) {
+                        values.add(Json.NULL);
+                    }
+                    metrics.add(entry.getKey(), values);
+                }
+
+                values.add(toJson(entry.getValue()));
+            }
+
+            // fill the properties missing in this record
+            for (final JsonObject.Member member : metrics) {
+                final JsonArray values = member.getValue().asArray();
+                if (values.size() <= i) {
+                    values.add(Json.NULL);
+                }
+            }
+        }
+
+        final JsonObject body = new JsonObject();
+        body.add("timestamps", timestamps);
+        body.add("metrics", metrics);
+
+        return body.toString();
+    }
+
+    private static JsonValue toJson(final TypedValue<?> typedValue) {
+        final Object value = typedValue.getValue();
+
+        if (value == null) {
+            return Json.NULL;
+        }
+
+        switch (typedValue.getType()) {
+        case BOOLEAN:
+            return Json.value((Boolean) value);
+        case INTEGER:
+            return Json.value((Integer) value);
+        case LONG:
+            return Json.value((Long) value);
+        case FLOAT:
+        case DOUBLE:
+            final double doubleValue = ((Number) value).doubleValue();
+            // JSON numbers cannot represent NaN and infinity
+            return Double.isFinite(doubleValue) ? Json.value(doubleValue) : Json.value(String.valueOf(doubleValue));
+        case BYTE_ARRAY:
+            return Json.value(Base64.getEncoder().encodeToString((byte[]) value));
+        default:
+            return Json.value(String.valueOf(value));
+        }
+    }
+
     private Map<String, Object> buildKuraMessageProperties(final WireRecord wireRecord) {
-        Map<String, TypedValue<?>> wireRecordProps = wireRecord.getProperties();
+        // KuraMessage copies the provided properties, a view avoids copying them twice
+        return new TypedValueMapView(wireRecord.getProperties());
+    }
+
+    /**
+     * Read only view of a {@link TypedValue} map, that returns the wrapped values.
+     */
+    private static final class TypedValueMapView extends AbstractMap<String, Object> {
+
+        private final Map<String, TypedValue<?>> typedValues;
+
+        TypedValueMapView(final Map<String, TypedValue<?>> typedValues) {
+            this.typedValues = typedValues;
+        }
+
+        @Override
+        public int size() {
+            return this.typedValues.size();
+        }
+
+        @Override
+        public boolean containsKey(final Object key) {
+            return this.typedValues.containsKey(key);
+        }
+
+        @Override
+        public Object get(final Object key) {
+            final TypedValue<?> typedValue = this.typedValues.get(key);
+            return typedValue != null ? typedValue.getValue() : null;
+        }
 
-        final Map<String, Object> properties = new HashMap<>();
-        List<String> l = new ArrayList<>(wireRecordProps.keySet());
-        for (String s : l) {
-            properties.put(s, wireRecordProps.get(s).getValue());
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<Entry<String, Object>>() {
+
+                @Override
+                public int size() {
+                    return TypedValueMapView.this.typedValues.size();
+                }
+
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    final Iterator<Entry<String, TypedValue<?>>> iterator = TypedValueMapView.this.typedValues
+                            .entrySet().iterator();
+
+                    return new Iterator<Entry<String, Object>>() {
+
+                        @Override
+                        public boolean hasNext() {
+                            return iterator.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            final Entry<String, TypedValue<?>> entry = iterator.next();
+                            return new SimpleImmutableEntry<>(entry.getKey(), entry.getValue().getValue());
+                        }
+                    };
+                }
+            };
         }
-        return properties;
     }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2016, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -32,6 +32,13 @@ final class CloudPublisherOptions {
 
     private static final String CONF_POSITION = "publish.position";
     private static final String CONF_BODY_PROPERTY = "set.body.from.property";
+    private static final String CONF_BATCH_MAX_RECORDS = "batch.max.records";
+    private static final String CONF_BATCH_MAX_BYTES = "batch.max.bytes";
+    private static final String CONF_BATCH_WINDOW = "batch.window.ms";
+
+    private static final int DEFAULT_BATCH_MAX_RECORDS = 1;
+    private static final long DEFAULT_BATCH_MAX_BYTES = 0;
+    private static final long DEFAULT_BATCH_WINDOW = 1000;
 
     private final Map<String, Object> properties;
 
@@ -82,4 +89,50 @@ final class CloudPublisherOptions {
 
         return Optional.of(property);
     }
+
+    /**
+     * Returns the maximum number of records published in a single message, records are not batched if it is 1
+     *
+     * @return the maximum number of records published in a single message
+     */
+    int getBatchMaxRecords() {
+        final Object maxRecords = this.properties.get(CONF_BATCH_MAX_RECORDS);
+
+        if (maxRecords instanceof Integer && (Integer) maxRecords > 0) {
+            return (Integer) maxRecords;
+        }
+        return DEFAULT_BATCH_MAX_RECORDS;
+    }
+
+    /**
+     * Returns the estimated size of the buffered records that causes a batch to be published, 0 means no limit
+     *
+     * @return the maximum estimated size of a batch, in bytes
+     */
+    long getBatchMaxBytes() {
+        final Object maxBytes = this.properties.get(CONF_BATCH_MAX_BYTES);
+
+        if (maxBytes instanceof Number && ((Number) maxBytes).longValue() >= 0) {
+            return ((Number) maxBytes).longValue();
+        }
+        return DEFAULT_BATCH_MAX_BYTES;
+    }
+
+    /**
+     * Returns the maximum time a record is buffered before the batch is published
+     *
+     * @return the batch time window, in milliseconds
+     */
+    long getBatchWindowMs() {
+        final Object window = this.properties.get(CONF_BATCH_WINDOW);
+
+        if (window instanceof Number && ((Number) window).longValue() > 0) {
+            return ((Number) window).longValue();
+        }
+        return DEFAULT_BATCH_WINDOW;
+    }
+
+    boolean isBatchingEnabled() {
+        return getBatchMaxRecords() > 1;
+    }
 }
\ No newline at end of file
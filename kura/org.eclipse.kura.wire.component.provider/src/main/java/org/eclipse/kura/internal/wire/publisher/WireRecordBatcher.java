@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.publisher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireRecord;
+
+/**
+ * Buffers the received {@link WireRecord}s and hands them over as a single batch when the maximum number of records or
+ * the maximum estimated size is reached, or when the oldest buffered record has waited for the configured time
+ * window.
+ * <p>
+ * The batches are delivered to the consumer while holding the lock of the batcher, so that they are published in
+ * the same order as the records have been received.
+ * <p>
+ * Once stopped, the batcher rejects the records, so that a record added concurrently with {@link #stop()} is not left
+ * in a buffer that will never be flushed.
+ */
+final class WireRecordBatcher {
+
+    private static final int TIMESTAMP_SIZE = 8;
+    private static final int NUMERIC_VALUE_SIZE = 8;
+
+    private final int maxRecords;
+    private final long maxBytes;
+    private final long windowMs;
+    private final ScheduledExecutorService executor;
+    private final Consumer<List<BatchedRecord>> consumer;
+
+    private List<BatchedRecord> records = new ArrayList<>();
+    private long bytes;
+    private ScheduledFuture<?> windowFuture;
+
+    private long receivedRecords;
+    private long publishedBatches;
+    private boolean stopped;
+
+    WireRecordBatcher(final int maxRecords, final long maxBytes, final long windowMs,
+            final ScheduledExecutorService executor, final Consumer<List<BatchedRecord>> consumer) {
+        this.maxRecords = maxRecords;
+        this.maxBytes = maxBytes;
+        this.windowMs = windowMs;
+        this.executor = executor;
+        this.consumer = consumer;
+    }
+
+    /**
+     * @return {@code false} if the record has not been buffered because the batcher has been stopped
+     */
+    synchronized boolean add(final WireRecord wireRecord, final long timestamp) {
+        if (this.stopped) {
+            return false;
+        }
+
+        if (this.records.isEmpty()) {
+            final List<BatchedRecord> batch = this.records;
+            this.windowFuture = this.executor.schedule(() -> flushWindow(batch), this.windowMs,
+                    TimeUnit.MILLISECONDS);
+        }
+
+        this.records.add(new BatchedRecord(wireRecord, timestamp));
+        this.bytes += estimateSize(wireRecord);
+        this.receivedRecords++;
+
+        if (this.records.size() >= this.maxRecords || this.maxBytes > 0 && this.bytes >= this.maxBytes) {
+            flush();
+        }
+
+        return true;
+    }
+
+    /**
+     * Flushes the buffered records, the records added afterwards are rejected.
+     */
+    synchronized void stop() {
+        flush();
+        this.stopped = true;
+    }
+
+    synchronized void flush() {
+        if (this.windowFuture != null) {
+            this.windowFuture.cancel(false);
+            this.windowFuture = null;
+        }
+
+        if (this.records.isEmpty()) {
+            return;
+        }
+
+        final List<BatchedRecord> batch = this.records;
+        this.records = new ArrayList<>(batch.size());
+        this.bytes = 0;
+        this.publishedBatches++;
+
+        this.consumer.accept(batch);
+    }
+
+    private synchronized void flushWindow(final List<BatchedRecord> batch) {
+        // the batch might have already been flushed while this task was waiting for the lock
+        if (this.records == batch) {
+            flush();
+        }
+    }
+
+    synchronized long getReceivedRecordCount() {
+        return this.receivedRecords;
+    }
+
+    synchronized long getPublishedBatchCount() {
+        return this.publishedBatches;
+    }
+
+    synchronized double getRecordsPerBatch() {
+        return this.publishedBatches > 0 ? (double) this.receivedRecords / this.publishedBatches : 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("received records: %d, published messages: %d, records per message: %.2f",
+                this.receivedRecords, this.publishedBatches, getRecordsPerBatch());
+    }
+
+    private static long estimateSize(final WireRecord wireRecord) {
+        long size = TIMESTAMP_SIZE;
+
+        for (final Map.Entry<String, TypedValue<?>> entry : wireRecord.getProperties().entrySet()) {
+            size += entry.getKey().length();
+
+            final Object value = entry.getValue().getValue();
+
+            if (value instanceof String) {
+                size += ((String) value).length();
+            } else if (value instanceof byte[]) {
+                size += ((byte[]) value).length;
+            } else {
+                size += NUMERIC_VALUE_SIZE;
+            }
+        }
+
+        return size;
+    }
+
+    static final class BatchedRecord {
+
+        private final WireRecord wireRecord;
+        private final long timestamp;
+
+        BatchedRecord(final WireRecord wireRecord, final long timestamp) {
+            this.wireRecord = wireRecord;
+            this.timestamp = timestamp;
+        }
+
+        WireRecord getWireRecord() {
+            return this.wireRecord;
+        }
+
+        long getTimestamp() {
+            return this.timestamp;
+        }
+    }
+}
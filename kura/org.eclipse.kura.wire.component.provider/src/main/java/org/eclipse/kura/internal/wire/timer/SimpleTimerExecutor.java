@@ -1,52 +1,167 @@
 /*******************************************************************************
- * Copyright (c) 2020 Eurotech and/or its affiliates and others
- * 
+ * Copyright (c) 2020, 2023 Eurotech and/or its affiliates and others
+ *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
  * which is available at https://www.eclipse.org/legal/epl-2.0/
- * 
+ *
  * SPDX-License-Identifier: EPL-2.0
- * 
+ *
  * Contributors:
  *  Eurotech
  *******************************************************************************/
 package org.eclipse.kura.internal.wire.timer;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ThreadFactory;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.kura.wire.WireSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class SimpleTimerExecutor implements TimerExecutor {
 
-    private final ScheduledExecutorService executor;
+    private static final Logger logger = LoggerFactory.getLogger(SimpleTimerExecutor.class);
+
+    private static WheelManager wheelManager = new WheelManager();
+
+    private final String pid;
+    private final TimingWheel.Task task;
 
     public SimpleTimerExecutor(final TimerOptions options, final WireSupport wireSupport) {
-        this.executor = Executors.newSingleThreadScheduledExecutor(getThreadFactory(options.getOwnPid()));
+        this.pid = options.getOwnPid();
 
-        long firstTickInterval = options.getSimpleInterval() * options.getSimpleTimeUnitMultiplier();
-        if (!options.isDefaultFirstTickBehavior()) {
+        final long interval = options.getSimpleInterval() * options.getSimpleTimeUnitMultiplier();
+
+        long firstTickInterval = interval;
+        if (options.isAlignedFirstTickBehavior()) {
+            firstTickInterval = alignedFirstTickInterval(System.currentTimeMillis(), interval);
+        } else if (!options.isDefaultFirstTickBehavior()) {
             firstTickInterval = options.firstTickInterval() * options.getSimpleTimeUnitMultiplier();
         }
 
-        this.executor.scheduleAtFixedRate(() -> Timer.emit(wireSupport), firstTickInterval,
-                options.getSimpleInterval() * options.getSimpleTimeUnitMultiplier(), TimeUnit.MILLISECONDS);
+        final TimingWheel wheel = wheelManager.onInstanceCreated();
+        try {
+            this.task = wheel.scheduleAtFixedRate(() -> emit(wireSupport), firstTickInterval, interval,
+                    TimeUnit.MILLISECONDS);
+        } catch (final RuntimeException e) {
+            wheelManager.onInstanceDestroyed();
+            throw e;
+        }
+    }
+
+    /*
+     * The delay before the next multiple of the interval since the epoch, so that timers with the same interval
+     * tick together regardless of when they have been started.
+     */
+    static long alignedFirstTickInterval(final long nowMillis, final long interval) {
+        return interval - nowMillis % interval;
+    }
+
+    /*
+     * The emit threads are shared by all the timers, they are renamed while emitting so that the thread of a timer
+     * can still be identified by its pid.
+     */
+    private void emit(final WireSupport wireSupport) {
+        final Thread thread = Thread.currentThread();
+        final String name = thread.getName();
+
+        thread.setName("WiresTimer_" + this.pid + "_" + System.identityHashCode(thread));
+        try {
+            Timer.emit(wireSupport);
+        } finally {
+            thread.setName(name);
+        }
+    }
+
+    /**
+     * @return the number of ticks that have been emitted
+     */
+    public long getTickCount() {
+        return this.task.getTickCount();
     }
 
-    private static ThreadFactory getThreadFactory(final String pid) {
-        final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+    /**
+     * @return the number of ticks that have been skipped because the previous emit was still in progress
+     */
+    public long getOverrunCount() {
+        return this.task.getOverrunCount();
+    }
+
+    /**
+     * @return the delay in milliseconds between the ideal time of the last tick and the time it has been fired
+     */
+    public long getLastDriftMillis() {
+        return this.task.getLastDrift(TimeUnit.MILLISECONDS);
+    }
 
-        return runnable -> {
-            final Thread result = defaultFactory.newThread(runnable);
-            result.setName("WiresTimer_" + pid + "_" + System.identityHashCode(result));
-            return result;
-        };
+    /**
+     * @return the maximum delay in milliseconds between the ideal time of a tick and the time it has been fired
+     */
+    public long getMaxDriftMillis() {
+        return this.task.getMaxDrift(TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void shutdown() {
-        this.executor.shutdownNow();
+        this.task.cancel();
+        wheelManager.onInstanceDestroyed();
+
+        logger.info("timer {} stopped, ticks: {}, overruns: {}, last drift: {} ms, max drift: {} ms", this.pid,
+                getTickCount(), getOverrunCount(), getLastDriftMillis(), getMaxDriftMillis());
+
+        if (this.task.getOverrunCount() > 0) {
+            logger.warn("timer {} skipped {} ticks because the previous emit was still in progress", this.pid,
+                    this.task.getOverrunCount());
+        }
+    }
+
+    private static class WheelManager {
+
+        private int instanceCount;
+        private Optional<TimingWheel> wheel = Optional.empty();
+        private Optional<ExecutorService> emitExecutor = Optional.empty();
+
+        synchronized TimingWheel onInstanceCreated() {
+            this.instanceCount++;
+
+            if (!this.wheel.isPresent()) {
+                final ExecutorService executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                        new SynchronousQueue<>(), runnable -> {
+                            final Thread result = new Thread(runnable);
+                            result.setName("WiresTimer_Emit_" + System.identityHashCode(result));
+                            result.setDaemon(true);
+                            return result;
+                        });
+                final TimingWheel newWheel = new TimingWheel(1, TimeUnit.MILLISECONDS, executor);
+                newWheel.start();
+
+                this.emitExecutor = Optional.of(executor);
+                this.wheel = Optional.of(newWheel);
+            }
+
+            return this.wheel.get();
+        }
+
+        synchronized void onInstanceDestroyed() {
+            this.instanceCount--;
+
+            if (this.instanceCount > 0) {
+                return;
+            }
+
+            if (this.wheel.isPresent()) {
+                this.wheel.get().shutdown();
+                this.wheel = Optional.empty();
+            }
+
+            if (this.emitExecutor.isPresent()) {
+                this.emitExecutor.get().shutdownNow();
+                this.emitExecutor = Optional.empty();
+            }
+        }
     }
 }
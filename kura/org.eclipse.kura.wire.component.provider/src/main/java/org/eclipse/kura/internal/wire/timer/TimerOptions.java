@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2016, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -37,6 +37,7 @@ final class TimerOptions {
 
     private static final String PROP_SIMPLE_TICK_POLICY = "simple.first.tick.policy";
     private static final String PROP_SIMPLE_TICK_POLICY_DEFAULT_VALUE = "DEFAULT";
+    private static final String PROP_SIMPLE_TICK_POLICY_ALIGNED_VALUE = "ALIGNED";
 
     private static final String PROP_SIMPLE_TICK_CUSTOM_INTERVAL = "simple.custom.first.tick.interval";
 
@@ -97,6 +98,12 @@ final class TimerOptions {
         return result;
     }
 
+    boolean isAlignedFirstTickBehavior() {
+        final Object selectedBehavior = this.properties.get(PROP_SIMPLE_TICK_POLICY);
+        return selectedBehavior instanceof String
+                && PROP_SIMPLE_TICK_POLICY_ALIGNED_VALUE.equalsIgnoreCase((String) selectedBehavior);
+    }
+
     int firstTickInterval() {
         int interval = 0;
         final Object firstTickInterval = this.properties.get(PROP_SIMPLE_TICK_CUSTOM_INTERVAL);
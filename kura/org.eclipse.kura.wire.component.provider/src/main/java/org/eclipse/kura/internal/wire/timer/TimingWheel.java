@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.timer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hierarchical timing wheel that drives any number of periodic tasks from a single thread.
+ * <p>
+ * The first level has a slot for each tick, each upper level has slots that span a whole revolution of the level
+ * below and is cascaded into it when the current time reaches the slot. The ticker thread only wakes up when a slot
+ * containing tasks is reached, so idle timers do not cost any wakeup.
+ * <p>
+ * The tasks do not run on the ticker thread: each expiration is handed off to the given executor and a task never
+ * has more than one execution in progress, the ticks that occur while the previous execution is still running are
+ * skipped and counted as overruns.
+ * <p>
+ * The ticker thread is only created by {@link #start()}, otherwise the wheel only moves when {@link #advance()} is
+ * called.
+ */
+final class TimingWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheel.class);
+
+    private static final int[] LEVEL_SLOTS = { 256, 64, 64, 64 };
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final long[] levelSpans = new long[LEVEL_SLOTS.length];
+    private final List<ArrayDeque<Task>[]> levels = new ArrayList<>(LEVEL_SLOTS.length);
+
+    private final Executor executor;
+    private final LongSupplier nanoClock;
+    private Thread ticker;
+
+    private long currentTick;
+    private int taskCount;
+    private boolean running = true;
+
+    TimingWheel(final long tickDuration, final TimeUnit unit, final Executor executor) {
+        this(tickDuration, unit, executor, System::nanoTime);
+    }
+
+    TimingWheel(final long tickDuration, final TimeUnit unit, final Executor executor, final LongSupplier nanoClock) {
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.nanoClock = nanoClock;
+        this.startNanos = nanoClock.getAsLong();
+        this.executor = executor;
+
+        long span = 1;
+        for (int level = 0; level < LEVEL_SLOTS.length; level++) {
+            this.levelSpans[level] = span;
+            this.levels.add(newSlots(LEVEL_SLOTS[level]));
+            span *= LEVEL_SLOTS[level];
+        }
+    }
+
+    synchronized void start() {
+        if (this.ticker == null && this.running) {
+            this.ticker = new Thread(this::run, "WiresTimer_Wheel");
+            this.ticker.setDaemon(true);
+            this.ticker.start();
+        }
+    }
+
+    /**
+     * Schedules a task at a fixed rate.
+     *
+     * @param task
+     *            the task to run
+     * @param initialDelay
+     *            the delay before the first execution
+     * @param period
+     *            the period between the start of successive executions, must be positive
+     * @param unit
+     *            the unit of {@code initialDelay} and {@code period}
+     * @return a handle that can be used to cancel the task and to retrieve its statistics
+     */
+    synchronized Task scheduleAtFixedRate(final Runnable task, final long initialDelay, final long period,
+            final TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be positive");
+        }
+        if (!this.running) {
+            throw new IllegalStateException("timing wheel has been shut down");
+        }
+
+        final Task result = new Task(task, this.nanoClock.getAsLong() + unit.toNanos(Math.max(0, initialDelay)),
+                unit.toNanos(period));
+
+        add(result);
+        this.taskCount++;
+        notifyAll();
+
+        return result;
+    }
+
+    /**
+     * Stops the ticker thread, the executor is not shut down.
+     */
+    synchronized void shutdown() {
+        this.running = false;
+        notifyAll();
+    }
+
+    /**
+     * Fires the tasks whose deadline has been reached.
+     *
+     * @return the delay in nanoseconds before the next deadline, or {@link Long#MAX_VALUE} if there are no tasks
+     */
+    synchronized long advance() {
+        final long nowTick = (this.nanoClock.getAsLong() - this.startNanos) / this.tickNanos;
+
+        if (this.taskCount == 0) {
+            this.currentTick = Math.max(this.currentTick, nowTick);
+        }
+
+        while (this.currentTick < nowTick) {
+            this.currentTick++;
+            cascade(this.currentTick);
+            expire(this.currentTick);
+        }
+
+        final long nextTick = nextExpirationTick();
+        if (nextTick == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return this.startNanos + nextTick * this.tickNanos - this.nanoClock.getAsLong();
+    }
+
+    private void run() {
+        synchronized (this) {
+            while (this.running) {
+                try {
+                    final long waitNanos = advance();
+                    if (waitNanos == Long.MAX_VALUE) {
+                        wait();
+                    } else if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+                    }
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void add(final Task task) {
+        final long deadlineTick = Math.max(this.currentTick + 1,
+                (task.deadlineNanos - this.startNanos + this.tickNanos - 1) / this.tickNanos);
+        final long delta = deadlineTick - this.currentTick;
+
+        task.deadlineTick = deadlineTick;
+
+        for (int level = 0; level < LEVEL_SLOTS.length; level++) {
+            final long span = this.levelSpans[level];
+            if (delta < span * LEVEL_SLOTS[level]) {
+                this.levels.get(level)[(int) (deadlineTick / span % LEVEL_SLOTS[level])].add(task);
+                return;
+            }
+        }
+
+        // beyond the range of the wheel, park in the slot that is cascaded last and reinsert from there
+        final int top = LEVEL_SLOTS.length - 1;
+        this.levels.get(top)[(int) (this.currentTick / this.levelSpans[top] % LEVEL_SLOTS[top])].add(task);
+    }
+
+    private void cascade(final long tick) {
+        for (int level = LEVEL_SLOTS.length - 1; level > 0; level--) {
+            final long span = this.levelSpans[level];
+            if (tick % span != 0) {
+                continue;
+            }
+
+            final ArrayDeque<Task> slot = this.levels.get(level)[(int) (tick / span % LEVEL_SLOTS[level])];
+            final List<Task> tasks = new ArrayList<>(slot);
+            slot.clear();
+
+            for (final Task task : tasks) {
+                if (task.cancelled) {
+                    this.taskCount--;
+                } else {
+                    add(task);
+                }
+            }
+        }
+    }
+
+    private void expire(final long tick) {
+        final ArrayDeque<Task> slot = this.levels.get(0)[(int) (tick % LEVEL_SLOTS[0])];
+        if (slot.isEmpty()) {
+            return;
+        }
+
+        final List<Task> tasks = new ArrayList<>(slot);
+        slot.clear();
+
+        final long now = this.nanoClock.getAsLong();
+
+        for (final Task task : tasks) {
+            if (task.cancelled) {
+                this.taskCount--;
+                continue;
+            }
+
+            task.fire(now);
+            add(task);
+        }
+    }
+
+    private long nextExpirationTick() {
+        if (this.taskCount == 0) {
+            return Long.MAX_VALUE;
+        }
+
+        long result = Long.MAX_VALUE;
+
+        for (int level = 0; level < LEVEL_SLOTS.length; level++) {
+            final long span = this.levelSpans[level];
+            final ArrayDeque<Task>[] slots = this.levels.get(level);
+            final long first = this.currentTick / span + 1;
+
+            for (long index = first; index <= first + LEVEL_SLOTS[level] - 1; index++) {
+                final long tick = index * span;
+                if (tick >= result) {
+                    break;
+                }
+                if (!slots[(int) (index % LEVEL_SLOTS[level])].isEmpty()) {
+                    result = tick;
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<Task>[] newSlots(final int count) {
+        final ArrayDeque<Task>[] result = new ArrayDeque[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = new ArrayDeque<>();
+        }
+        return result;
+    }
+
+    final class Task {
+
+        private final Runnable runnable;
+        private final long periodNanos;
+        private final AtomicBoolean inProgress = new AtomicBoolean();
+
+        private long deadlineNanos;
+        private long deadlineTick;
+        private volatile boolean cancelled;
+
+        private volatile long tickCount;
+        private volatile long overrunCount;
+        private volatile long lastDriftNanos;
+        private volatile long maxDriftNanos;
+
+        private Task(final Runnable runnable, final long firstDeadlineNanos, final long periodNanos) {
+            this.runnable = runnable;
+            this.deadlineNanos = firstDeadlineNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        void cancel() {
+            this.cancelled = true;
+        }
+
+        /**
+         * @return the number of ticks that have been handed off for execution
+         */
+        long getTickCount() {
+            return this.tickCount;
+        }
+
+        /**
+         * @return the number of ticks skipped because the previous execution was still in progress or because the
+         *         ticker fell behind by more than a period
+         */
+        long getOverrunCount() {
+            return this.overrunCount;
+        }
+
+        /**
+         * @return the delay between the ideal time of the last tick and the time it has been fired
+         */
+        long getLastDrift(final TimeUnit unit) {
+            return unit.convert(this.lastDriftNanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * @return the maximum delay between the ideal time of a tick and the time it has been fired
+         */
+        long getMaxDrift(final TimeUnit unit) {
+            return unit.convert(this.maxDriftNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void fire(final long now) {
+            final long drift = now - this.deadlineNanos;
+            this.lastDriftNanos = drift;
+            if (drift > this.maxDriftNanos) {
+                this.maxDriftNanos = drift;
+            }
+
+            // fixed rate, the next deadline does not depend on when this tick has been fired
+            this.deadlineNanos += this.periodNanos;
+            while (this.deadlineNanos <= now) {
+                this.deadlineNanos += this.periodNanos;
+                this.overrunCount++;
+            }
+
+            if (!this.inProgress.compareAndSet(false, true)) {
+                this.overrunCount++;
+                return;
+            }
+
+            this.tickCount++;
+
+            try {
+                TimingWheel.this.executor.execute(this::execute);
+            } catch (final Exception e) {
+                this.inProgress.set(false);
+                logger.warn("failed to dispatch timer tick", e);
+            }
+        }
+
+        private void execute() {
+            try {
+                if (!this.cancelled) {
+                    this.runnable.run();
+                }
+            } catch (final Exception e) {
+                logger.warn("timer task failed", e);
+            } finally {
+                this.inProgress.set(false);
+            }
+        }
+    }
+}
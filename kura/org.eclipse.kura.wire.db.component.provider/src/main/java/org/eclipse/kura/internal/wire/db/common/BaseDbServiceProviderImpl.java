@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -100,6 +100,14 @@ public class BaseDbServiceProviderImpl extends CommonDbServiceProvider implement
         }
     }
 
+    @Override
+    public void insertDataRecords(String tableName, List<WireRecord> wireRecords, List<Long> timestamps)
+            throws SQLException {
+        try (Connection c = this.dbHelper.getConnection()) {
+            insertDataRecords(c, tableName, wireRecords, timestamps, this::format);
+        }
+    }
+
     @Override
     public List<WireRecord> performSQLQuery(String query) throws SQLException {
         try (Connection c = this.dbHelper.getConnection()) {
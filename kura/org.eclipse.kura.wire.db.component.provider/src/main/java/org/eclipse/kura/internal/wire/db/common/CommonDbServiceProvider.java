@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -25,11 +25,14 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 
 import org.apache.logging.log4j.LogManager;
@@ -62,8 +65,13 @@ public class CommonDbServiceProvider {
     protected static final String SQL_TRUNCATE_TABLE = "TRUNCATE TABLE {0};";
     protected static final String[] TABLE_TYPE = new String[] { "TABLE" };
 
+    private static final int MAX_CACHED_INSERT_STATEMENTS = 64;
+
     protected DbServiceHelper dbHelper;
 
+    // INSERT statements by table name and column signature
+    private final Map<List<String>, String> insertStatements = new ConcurrentHashMap<>();
+
     protected Integer getTableSize(final String sqlTableName, Connection c,
             BiFunction<String, Object[], String> formatter) throws SQLException {
         try (final Statement stmt = c.createStatement();
@@ -133,18 +141,85 @@ public class CommonDbServiceProvider {
 
     protected void insertDataRecord(Connection c, String tableName, WireRecord wireRecord,
             BiFunction<String, Object[], String> formatter) throws SQLException {
-        final Map<String, TypedValue<?>> wireRecordProperties = wireRecord.getProperties();
-        try (final PreparedStatement stmt = prepareStatement(c, tableName, wireRecordProperties, new Date().getTime(),
-                formatter)) {
-            stmt.execute();
+        insertDataRecords(c, tableName, Collections.singletonList(wireRecord),
+                Collections.singletonList(new Date().getTime()), formatter);
+    }
+
+    /**
+     * Inserts the provided records as JDBC batches in a single transaction. Consecutive records with the same set of
+     * properties share a prepared statement, so that the rows are inserted in the order of the list. The TIMESTAMP
+     * column of each row is set to the element of {@code timestamps} at the same index of its record.
+     */
+    protected void insertDataRecords(Connection c, String tableName, List<WireRecord> wireRecords,
+            List<Long> timestamps, BiFunction<String, Object[], String> formatter) throws SQLException {
+        if (timestamps.size() != wireRecords.size()) {
+            throw new IllegalArgumentException("A timestamp is required for each record");
+        }
+        final Map<List<String>, PreparedStatement> statements = new HashMap<>();
+        final boolean autoCommit = c.getAutoCommit();
+
+        try {
+            if (autoCommit) {
+                c.setAutoCommit(false);
+            }
+
+            PreparedStatement pending = null;
+            final Iterator<Long> timestampIterator = timestamps.iterator();
+            for (final WireRecord wireRecord : wireRecords) {
+                final Map<String, TypedValue<?>> wireRecordProperties = wireRecord.getProperties();
+                final List<String> columns = getColumnSignature(wireRecordProperties);
+
+                PreparedStatement stmt = statements.get(columns);
+                if (stmt == null) {
+                    stmt = c.prepareStatement(getInsertStatement(tableName, columns, formatter));
+                    statements.put(columns, stmt);
+                }
+                if (pending != null && pending != stmt) {
+                    pending.executeBatch();
+                }
+
+                stmt.setLong(1, timestampIterator.next());
+                int i = 2;
+                for (final String column : columns) {
+                    setParameter(stmt, i++, wireRecordProperties.get(column));
+                }
+                stmt.addBatch();
+                pending = stmt;
+            }
+            if (pending != null) {
+                pending.executeBatch();
+            }
             c.commit();
-            logger.debug("Stored typed value");
+            logger.debug("Stored {} typed values", wireRecords.size());
+        } catch (final SQLException e) {
+            rollback(c);
+            throw e;
+        } finally {
+            for (final PreparedStatement stmt : statements.values()) {
+                stmt.close();
+            }
+            if (autoCommit) {
+                c.setAutoCommit(true);
+            }
         }
     }
 
-    private PreparedStatement prepareStatement(Connection connection, String tableName,
-            final Map<String, TypedValue<?>> properties, long timestamp, BiFunction<String, Object[], String> formatter)
-            throws SQLException {
+    private static List<String> getColumnSignature(final Map<String, TypedValue<?>> properties) {
+        final List<String> columns = new ArrayList<>(properties.keySet());
+        Collections.sort(columns);
+        return columns;
+    }
+
+    private String getInsertStatement(final String tableName, final List<String> columns,
+            final BiFunction<String, Object[], String> formatter) {
+        final List<String> key = new ArrayList<>(columns.size() + 1);
+        key.add(tableName);
+        key.addAll(columns);
+
+        String sqlInsert = this.insertStatements.get(key);
+        if (sqlInsert != null) {
+            return sqlInsert;
+        }
 
         final String sqlTableName = this.dbHelper.sanitizeSqlTableAndColumnName(tableName);
         final StringBuilder sbCols = new StringBuilder();
@@ -154,53 +229,61 @@ public class CommonDbServiceProvider {
         sbCols.append("TIMESTAMP");
         sbVals.append("?");
 
-        int i = 2;
-        for (Entry<String, TypedValue<?>> entry : properties.entrySet()) {
-            final String sqlColName = this.dbHelper.sanitizeSqlTableAndColumnName(entry.getKey());
+        for (final String column : columns) {
+            final String sqlColName = this.dbHelper.sanitizeSqlTableAndColumnName(column);
             sbCols.append(", ").append(sqlColName);
             sbVals.append(", ?");
         }
 
         logger.debug("Storing data into table {}...", sqlTableName);
-        final String sqlInsert = formatter.apply(SQL_INSERT_RECORD,
+        sqlInsert = formatter.apply(SQL_INSERT_RECORD,
                 new String[] { sqlTableName, sbCols.toString(), sbVals.toString() });
-        final PreparedStatement stmt = connection.prepareStatement(sqlInsert);
-        stmt.setLong(1, timestamp);
-
-        for (Entry<String, TypedValue<?>> entry : properties.entrySet()) {
-            final DataType dataType = entry.getValue().getType();
-            final Object value = entry.getValue();
-            switch (dataType) {
-            case BOOLEAN:
-                stmt.setBoolean(i, ((BooleanValue) value).getValue());
-                break;
-            case FLOAT:
-                stmt.setFloat(i, ((FloatValue) value).getValue());
-                break;
-            case DOUBLE:
-                stmt.setDouble(i, ((DoubleValue) value).getValue());
-                break;
-            case INTEGER:
-                stmt.setInt(i, ((IntegerValue) value).getValue());
-                break;
-            case LONG:
-                stmt.setLong(i, ((LongValue) value).getValue());
-                break;
-            case BYTE_ARRAY:
-                byte[] byteArrayValue = ((ByteArrayValue) value).getValue();
-                InputStream is = new ByteArrayInputStream(byteArrayValue);
-                stmt.setBlob(i, is, byteArrayValue.length);
-                break;
-            case STRING:
-                stmt.setString(i, ((StringValue) value).getValue());
-                break;
-            default:
-                break;
-            }
-            i++;
+
+        if (this.insertStatements.size() >= MAX_CACHED_INSERT_STATEMENTS) {
+            this.insertStatements.clear();
         }
-        return stmt;
+        this.insertStatements.put(key, sqlInsert);
+        return sqlInsert;
+    }
 
+    private static void setParameter(final PreparedStatement stmt, final int i, final TypedValue<?> value)
+            throws SQLException {
+        final DataType dataType = value.getType();
+        switch (dataType) {
+        case BOOLEAN:
+            stmt.setBoolean(i, ((BooleanValue) value).getValue());
+            break;
+        case FLOAT:
+            stmt.setFloat(i, ((FloatValue) value).getValue());
+            break;
+        case DOUBLE:
+            stmt.setDouble(i, ((DoubleValue) value).getValue());
+            break;
+        case INTEGER:
+            stmt.setInt(i, ((IntegerValue) value).getValue());
+            break;
+        case LONG:
+            stmt.setLong(i, ((LongValue) value).getValue());
+            break;
+        case BYTE_ARRAY:
+            byte[] byteArrayValue = ((ByteArrayValue) value).getValue();
+            InputStream is = new ByteArrayInputStream(byteArrayValue);
+            stmt.setBlob(i, is, byteArrayValue.length);
+            break;
+        case STRING:
+            stmt.setString(i, ((StringValue) value).getValue());
+            break;
+        default:
+            break;
+        }
+    }
+
+    private static void rollback(final Connection c) {
+        try {
+            c.rollback();
+        } catch (final SQLException e) {
+            logger.warn("Failed to rollback", e);
+        }
     }
 
     protected List<WireRecord> performSQLQuery(Connection c, String query) throws SQLException {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -83,6 +83,25 @@ public interface DbServiceProvider {
      */
     public void insertDataRecord(final String tableName, final WireRecord wireRecord) throws SQLException;
 
+    /**
+     * Insert the provided {@link WireRecord}s to the specified table in a single transaction
+     *
+     * @param tableName
+     *            the table name
+     * @param wireRecords
+     *            the {@link WireRecord}s, in insertion order
+     * @param timestamps
+     *            the value of the TIMESTAMP column of each record, in the same order as {@code wireRecords}
+     * @throws SQLException
+     *             the SQL exception, in which case none of the records has been inserted
+     * @throws NullPointerException
+     *             if any of the provided arguments is null
+     * @throws IllegalArgumentException
+     *             if the number of timestamps differs from the number of records
+     */
+    public void insertDataRecords(final String tableName, final List<WireRecord> wireRecords,
+            final List<Long> timestamps) throws SQLException;
+
     /**
      * Perform the given query
      * 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -102,6 +102,15 @@ public class H2DbServiceProviderImpl extends CommonDbServiceProvider implements
 
     }
 
+    @Override
+    public void insertDataRecords(String tableName, List<WireRecord> wireRecords, List<Long> timestamps)
+            throws SQLException {
+        this.dbHelper.withConnection(c -> {
+            insertDataRecords(c, tableName, wireRecords, timestamps, this::format);
+            return null;
+        });
+    }
+
     @Override
     public List<WireRecord> performSQLQuery(String query) throws SQLException {
         return this.dbHelper.withConnection(c -> performSQLQuery(c, query));
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -18,8 +18,16 @@ import static java.util.Objects.nonNull;
 import static java.util.Objects.requireNonNull;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -43,12 +51,18 @@ import org.osgi.service.wireadmin.Wire;
 /**
  * The Class DbWireRecordStore is a wire component which is responsible to store
  * the received {@link WireRecord}.
+ * <p>
+ * The records of an envelope, or of all the envelopes received during the configured batch window, are inserted as
+ * JDBC batches in a single transaction, each record keeping the time its envelope has been received as timestamp.
+ * The number of rows in the table is tracked in memory and only read from the
+ * database when the table changes or after a truncation.
  */
 public class DbWireRecordStore implements WireEmitter, WireReceiver, ConfigurableComponent {
 
     private static final Logger logger = LogManager.getLogger(DbWireRecordStore.class);
     private static final String NULL_TABLE_NAME_ERROR_MSG = "Table name cannot be null";
     private static final String NULL_WIRE_RECORD_ERROR_MSG = "WireRecord cannot be null";
+    private static final int UNKNOWN_TABLE_SIZE = -1;
 
     private DbServiceProvider dbServiceProvider;
     private BaseDbService dbService;
@@ -56,8 +70,14 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
     private WireHelperService wireHelperService;
     private WireSupport wireSupport;
 
+    private int tableSize = UNKNOWN_TABLE_SIZE;
+    private final List<ReceivedEnvelope> pendingEnvelopes = new ArrayList<>();
+    private ScheduledExecutorService batchExecutor;
+    private ScheduledFuture<?> flushTask;
+
     public synchronized void bindDbService(BaseDbService dbService) {
         this.dbService = dbService;
+        this.tableSize = UNKNOWN_TABLE_SIZE;
         if (this.dbService instanceof H2DbService) {
             this.dbServiceProvider = new H2DbServiceProviderImpl((H2DbService) this.dbService);
         } else {
@@ -70,6 +90,7 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
 
     public synchronized void unbindDbService(BaseDbService dbService) {
         if (this.dbService == dbService) {
+            flushPendingEnvelopes();
             this.dbServiceProvider = null;
             this.dbService = null;
             this.wireRecordStoreOptions = null;
@@ -119,7 +140,9 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
     public synchronized void updated(final Map<String, Object> properties) {
         logger.debug("Updating DB Wire Record Store...");
 
+        flushPendingEnvelopes();
         this.wireRecordStoreOptions = new DbWireRecordStoreOptions(properties);
+        this.tableSize = UNKNOWN_TABLE_SIZE;
 
         reconcileDB(this.wireRecordStoreOptions.getTableName());
 
@@ -134,9 +157,16 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
      */
     protected void deactivate(final ComponentContext componentContext) {
         logger.debug("Deactivating DB Wire Record Store...");
-        this.dbServiceProvider = null;
-        this.dbService = null;
-        this.wireRecordStoreOptions = null;
+        synchronized (this) {
+            flushPendingEnvelopes();
+            if (nonNull(this.batchExecutor)) {
+                this.batchExecutor.shutdown();
+                this.batchExecutor = null;
+            }
+            this.dbServiceProvider = null;
+            this.dbService = null;
+            this.wireRecordStoreOptions = null;
+        }
         logger.debug("Deactivating DB Wire Record Store... Done");
     }
 
@@ -161,12 +191,17 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
             this.dbServiceProvider.truncate(noOfRecordsToKeep, tableName, maxTableSize);
         } catch (final SQLException sqlException) {
             logger.error("Error in truncating the table {}...", tableName, sqlException);
+        } finally {
+            this.tableSize = UNKNOWN_TABLE_SIZE;
         }
     }
 
     private int getTableSize() throws SQLException {
-        final String tableName = this.wireRecordStoreOptions.getTableName();
-        return this.dbServiceProvider.getTableSize(tableName);
+        if (this.tableSize == UNKNOWN_TABLE_SIZE) {
+            final String tableName = this.wireRecordStoreOptions.getTableName();
+            this.tableSize = this.dbServiceProvider.getTableSize(tableName);
+        }
+        return this.tableSize;
     }
 
     /** {@inheritDoc} */
@@ -179,13 +214,67 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
     @Override
     public synchronized void onWireReceive(final WireEnvelope wireEvelope) {
         requireNonNull(wireEvelope, "Wire Envelope cannot be null");
-        final List<WireRecord> records = wireEvelope.getRecords();
+        final ReceivedEnvelope receivedEnvelope = new ReceivedEnvelope(wireEvelope, System.currentTimeMillis());
 
         if (this.dbServiceProvider == null) {
             logger.warn("DbService instance not attached");
             return;
         }
 
+        final long batchWindow = this.wireRecordStoreOptions.getInsertBatchWindowMillis();
+        if (batchWindow > 0) {
+            this.pendingEnvelopes.add(receivedEnvelope);
+            if (isNull(this.flushTask)) {
+                this.flushTask = getBatchExecutor().schedule(this::flushPendingEnvelopes, batchWindow,
+                        TimeUnit.MILLISECONDS);
+            }
+            return;
+        }
+
+        storeAndEmit(Collections.singletonList(receivedEnvelope));
+    }
+
+    private ScheduledExecutorService getBatchExecutor() {
+        if (isNull(this.batchExecutor)) {
+            this.batchExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "DbWireRecordStore-BatchWriter");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.batchExecutor;
+    }
+
+    /**
+     * Stores the envelopes collected during the current batch window.
+     */
+    private synchronized void flushPendingEnvelopes() {
+        if (nonNull(this.flushTask)) {
+            this.flushTask.cancel(false);
+            this.flushTask = null;
+        }
+        if (this.pendingEnvelopes.isEmpty()) {
+            return;
+        }
+
+        final List<ReceivedEnvelope> envelopes = new ArrayList<>(this.pendingEnvelopes);
+        this.pendingEnvelopes.clear();
+
+        if (this.dbServiceProvider == null) {
+            logger.warn("DbService instance not attached, discarding {} envelopes", envelopes.size());
+            return;
+        }
+
+        storeAndEmit(envelopes);
+    }
+
+    private void storeAndEmit(final List<ReceivedEnvelope> envelopes) {
+        final List<WireRecord> records = new ArrayList<>();
+        final List<Long> timestamps = new ArrayList<>();
+        for (final ReceivedEnvelope envelope : envelopes) {
+            envelope.addTo(records, timestamps);
+        }
+
         try {
             if (getTableSize() >= this.wireRecordStoreOptions.getMaximumTableSize()) {
                 truncate();
@@ -194,51 +283,95 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
             logger.warn("Exception while trying to clean db");
         }
 
-        for (WireRecord wireRecord : records) {
-            store(wireRecord);
+        if (!records.isEmpty() && !store(records, timestamps)) {
+            storeSeparately(envelopes, records.size());
         }
 
         // emit the list of Wire Records to the downstream components
-        this.wireSupport.emit(records);
+        for (final ReceivedEnvelope envelope : envelopes) {
+            this.wireSupport.emit(envelope.wireEnvelope.getRecords());
+        }
     }
 
     /**
-     * Stores the provided {@link WireRecord} in the database
+     * Stores the records of each envelope in its own transaction, after the transaction containing the records of all
+     * the envelopes collected during the batch window failed, so that a record that cannot be stored only discards
+     * the records of its envelope.
+     */
+    private void storeSeparately(final List<ReceivedEnvelope> envelopes, final int recordCount) {
+        int discarded = recordCount;
+
+        if (envelopes.size() > 1) {
+            logger.warn("Failed to store the records of {} envelopes, storing each envelope separately",
+                    envelopes.size());
+
+            for (final ReceivedEnvelope envelope : envelopes) {
+                final List<WireRecord> records = new ArrayList<>();
+                final List<Long> timestamps = new ArrayList<>();
+                envelope.addTo(records, timestamps);
+                if (records.isEmpty() || store(records, timestamps)) {
+                    discarded -= records.size();
+                }
+            }
+        }
+
+        if (discarded > 0) {
+            logger.warn("Discarded {} of {} records", discarded, recordCount);
+        }
+    }
+
+    /**
+     * Stores the provided {@link WireRecord}s in the database in a single transaction
      *
-     * @param wireRecord
-     *            the {@link WireRecord} to be stored
+     * @param wireRecords
+     *            the {@link WireRecord}s to be stored
+     * @param timestamps
+     *            the timestamp of each record
+     * @return {@code true} if the records have been stored
      * @throws NullPointerException
-     *             if the provided argument is null
+     *             if any of the provided records is null
      */
-    private void store(final WireRecord wireRecord) {
-        requireNonNull(wireRecord, NULL_WIRE_RECORD_ERROR_MSG);
+    private boolean store(final List<WireRecord> wireRecords, final List<Long> timestamps) {
+        for (final WireRecord wireRecord : wireRecords) {
+            requireNonNull(wireRecord, NULL_WIRE_RECORD_ERROR_MSG);
+        }
         int retryCount = 0;
         final String tableName = this.wireRecordStoreOptions.getTableName();
         do {
             try {
-                insertDataRecord(tableName, wireRecord);
-                break;
+                insertDataRecords(tableName, wireRecords, timestamps);
+                if (this.tableSize != UNKNOWN_TABLE_SIZE) {
+                    this.tableSize += wireRecords.size();
+                }
+                return true;
             } catch (final SQLException e) {
                 logger.error("Insertion failed. Reconciling Table and Columns...", e);
-                reconcileDB(wireRecord, tableName);
+                this.tableSize = UNKNOWN_TABLE_SIZE;
+                reconcileDB(wireRecords, tableName);
                 retryCount++;
             }
         } while (retryCount < 2);
+        return false;
     }
 
     /**
      * Tries to reconcile the database.
      *
-     * @param wireRecord
+     * @param wireRecords
      *            against which the database columns have to be reconciled.
      * @param tableName
      *            the table name in the database that needs to be reconciled.
      */
-    private void reconcileDB(final WireRecord wireRecord, final String tableName) {
+    private void reconcileDB(final List<WireRecord> wireRecords, final String tableName) {
         try {
             if (nonNull(tableName) && !tableName.isEmpty()) {
                 reconcileTable(tableName);
-                reconcileColumns(tableName, wireRecord);
+                final Set<Set<String>> reconciledColumns = new HashSet<>();
+                for (final WireRecord wireRecord : wireRecords) {
+                    if (reconciledColumns.add(wireRecord.getProperties().keySet())) {
+                        reconcileColumns(tableName, wireRecord);
+                    }
+                }
             }
         } catch (final SQLException ee) {
             logger.error("Error while storing Wire Records...", ee);
@@ -295,21 +428,24 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
     }
 
     /**
-     * Insert the provided {@link WireRecord} to the specified table
+     * Insert the provided {@link WireRecord}s to the specified table
      *
      * @param tableName
      *            the table name
-     * @param wireRecord
-     *            the {@link WireRecord}
+     * @param wireRecords
+     *            the {@link WireRecord}s
+     * @param timestamps
+     *            the timestamp of each record
      * @throws SQLException
      *             the SQL exception
      * @throws NullPointerException
      *             if any of the provided arguments is null
      */
-    private void insertDataRecord(final String tableName, final WireRecord wireRecord) throws SQLException {
+    private void insertDataRecords(final String tableName, final List<WireRecord> wireRecords,
+            final List<Long> timestamps) throws SQLException {
         requireNonNull(tableName, NULL_TABLE_NAME_ERROR_MSG);
-        requireNonNull(wireRecord, NULL_WIRE_RECORD_ERROR_MSG);
-        this.dbServiceProvider.insertDataRecord(tableName, wireRecord);
+        requireNonNull(wireRecords, NULL_WIRE_RECORD_ERROR_MSG);
+        this.dbServiceProvider.insertDataRecords(tableName, wireRecords, timestamps);
     }
 
     /** {@inheritDoc} */
@@ -329,4 +465,26 @@ public class DbWireRecordStore implements WireEmitter, WireReceiver, Configurabl
     public void updated(final Wire wire, final Object value) {
         this.wireSupport.updated(wire, value);
     }
+
+    /**
+     * A received {@link WireEnvelope} together with the time it has been received, which is stored as the timestamp
+     * of its records even if they are inserted later, at the end of the batch window.
+     */
+    private static final class ReceivedEnvelope {
+
+        private final WireEnvelope wireEnvelope;
+        private final long timestamp;
+
+        ReceivedEnvelope(final WireEnvelope wireEnvelope, final long timestamp) {
+            this.wireEnvelope = wireEnvelope;
+            this.timestamp = timestamp;
+        }
+
+        void addTo(final List<WireRecord> records, final List<Long> timestamps) {
+            for (final WireRecord wireRecord : this.wireEnvelope.getRecords()) {
+                records.add(wireRecord);
+                timestamps.add(this.timestamp);
+            }
+        }
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -34,6 +34,8 @@ public final class DbWireRecordStoreOptions {
 
     public static final String TABLE_NAME = "table.name";
 
+    public static final String INSERT_BATCH_WINDOW = "insert.batch.window";
+
     private final Map<String, Object> properties;
 
     /**
@@ -70,6 +72,21 @@ public final class DbWireRecordStoreOptions {
         return maximumSize;
     }
 
+    /**
+     * Returns the time, in milliseconds, during which the received envelopes are collected before being stored in a
+     * single transaction. A value of 0 means that each envelope is stored as soon as it is received.
+     *
+     * @return the batch window
+     */
+    public long getInsertBatchWindowMillis() {
+        long window = 0;
+        final Object propertiesWindow = this.properties.get(INSERT_BATCH_WINDOW);
+        if (nonNull(propertiesWindow) && propertiesWindow instanceof Integer) {
+            window = Math.max(0, (Integer) propertiesWindow);
+        }
+        return window;
+    }
+
     /**
      * Returns the name of the table as configured.
      *
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The options that control how envelopes are delivered to a receiver.
+ * <p>
+ * The options are read from the configuration properties of the receiving wire component and apply to all its
+ * incoming wires.
+ */
+final class DispatchOptions {
+
+    private static final Logger logger = LoggerFactory.getLogger(DispatchOptions.class);
+
+    static final String DISPATCH_MODE_PROP_NAME = "wire.dispatch.mode";
+    static final String DISPATCH_QUEUE_CAPACITY_PROP_NAME = "wire.dispatch.queue.capacity";
+    static final String DISPATCH_BACK_PRESSURE_PROP_NAME = "wire.dispatch.back.pressure";
+
+    private static final int DISPATCH_QUEUE_CAPACITY_DEFAULT = 100;
+
+    static final DispatchOptions DEFAULT = new DispatchOptions(Mode.SYNC, DISPATCH_QUEUE_CAPACITY_DEFAULT,
+            BackPressure.BLOCK);
+
+    enum Mode {
+        /**
+         * Envelopes are delivered on the thread of the emitter.
+         */
+        SYNC,
+        /**
+         * Envelopes are queued and delivered by a shared worker pool.
+         */
+        ASYNC
+    }
+
+    enum BackPressure {
+        /**
+         * The emitter waits until there is room in the queue.
+         */
+        BLOCK,
+        /**
+         * The oldest queued envelope is discarded.
+         */
+        DROP_OLDEST,
+        /**
+         * The new envelope is discarded.
+         */
+        DROP_NEWEST
+    }
+
+    private final Mode mode;
+    private final int queueCapacity;
+    private final BackPressure backPressure;
+
+    private DispatchOptions(Mode mode, int queueCapacity, BackPressure backPressure) {
+        this.mode = mode;
+        this.queueCapacity = queueCapacity;
+        this.backPressure = backPressure;
+    }
+
+    Mode getMode() {
+        return this.mode;
+    }
+
+    int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    BackPressure getBackPressure() {
+        return this.backPressure;
+    }
+
+    /**
+     * Returns a copy of these options, overridden by the given properties if present.
+     */
+    DispatchOptions override(final Function<String, Object> properties) {
+        final Mode newMode = parseEnum(Mode.class, properties.apply(DISPATCH_MODE_PROP_NAME), this.mode);
+        final BackPressure newBackPressure = parseEnum(BackPressure.class,
+                properties.apply(DISPATCH_BACK_PRESSURE_PROP_NAME), this.backPressure);
+
+        int newQueueCapacity = this.queueCapacity;
+        final Object capacity = properties.apply(DISPATCH_QUEUE_CAPACITY_PROP_NAME);
+        if (capacity instanceof Integer && (Integer) capacity > 0) {
+            newQueueCapacity = (Integer) capacity;
+        } else if (capacity != null) {
+            logger.warn("Invalid value for {}: {}", DISPATCH_QUEUE_CAPACITY_PROP_NAME, capacity);
+        }
+
+        return new DispatchOptions(newMode, newQueueCapacity, newBackPressure);
+    }
+
+    private static <E extends Enum<E>> E parseEnum(final Class<E> type, final Object value, final E defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.toString().trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid value for {}: {}", type.getSimpleName(), value);
+            return defaultValue;
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof DispatchOptions)) {
+            return false;
+        }
+        final DispatchOptions other = (DispatchOptions) obj;
+        return this.mode == other.mode && this.queueCapacity == other.queueCapacity
+                && this.backPressure == other.backPressure;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.mode, this.queueCapacity, this.backPressure);
+    }
+
+    @Override
+    public String toString() {
+        return this.mode + (this.mode == Mode.ASYNC ? " (capacity: " + this.queueCapacity + ", back pressure: "
+                + this.backPressure + ")" : "");
+    }
+}
@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import org.eclipse.kura.internal.wire.helper.DispatchOptions.BackPressure;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A bounded queue of envelopes to be delivered to a receiver through a single wire.
+ * <p>
+ * The envelopes are delivered in order by a task submitted to the shared executor, at most one task per queue is
+ * running at any time.
+ */
+final class WireDispatchQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(WireDispatchQueue.class);
+
+    private static final long DROP_WARNING_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String name;
+    private final int capacity;
+    private final BackPressure backPressure;
+    private final Executor executor;
+    private final Consumer<WireEnvelope> consumer;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition notFull = this.lock.newCondition();
+    private final Deque<WireEnvelope> queue = new ArrayDeque<>();
+
+    // guarded by lock
+    private boolean scheduled;
+    private boolean closed;
+    private int maxDepth;
+    private long lastDropWarning;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    WireDispatchQueue(final String name, final DispatchOptions options, final Executor executor,
+            final Consumer<WireEnvelope> consumer) {
+        this.name = name;
+        this.capacity = options.getQueueCapacity();
+        this.backPressure = options.getBackPressure();
+        this.executor = executor;
+        this.consumer = consumer;
+    }
+
+    void offer(final WireEnvelope envelope) {
+        final boolean schedule;
+
+        this.lock.lock();
+        try {
+            if (!makeRoom()) {
+                return;
+            }
+
+            this.queue.addLast(envelope);
+            this.maxDepth = Math.max(this.maxDepth, this.queue.size());
+
+            schedule = !this.scheduled;
+            this.scheduled = true;
+        } finally {
+            this.lock.unlock();
+        }
+
+        if (schedule) {
+            schedule();
+        }
+    }
+
+    /**
+     * Applies the back pressure policy until there is room for a new envelope.
+     *
+     * @return {@code false} if the new envelope must be discarded
+     */
+    private boolean makeRoom() {
+        while (!this.closed && this.queue.size() >= this.capacity) {
+            if (this.backPressure == BackPressure.DROP_OLDEST) {
+                this.queue.pollFirst();
+                onDropped();
+            } else if (this.backPressure == BackPressure.DROP_NEWEST) {
+                onDropped();
+                return false;
+            } else {
+                try {
+                    this.notFull.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    onDropped();
+                    return false;
+                }
+            }
+        }
+
+        if (this.closed) {
+            this.dropped.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private void onDropped() {
+        final long count = this.dropped.incrementAndGet();
+        final long now = System.nanoTime();
+        if (this.lastDropWarning == 0 || now - this.lastDropWarning > DROP_WARNING_INTERVAL_NANOS) {
+            this.lastDropWarning = now;
+            logger.warn("Dispatch queue for {} is full, {} envelopes dropped so far", this.name, count);
+        }
+    }
+
+    private void schedule() {
+        try {
+            this.executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            logger.warn("Cannot dispatch envelopes for {}", this.name, e);
+            this.lock.lock();
+            try {
+                this.dropped.addAndGet(this.queue.size());
+                this.queue.clear();
+                this.scheduled = false;
+                this.notFull.signalAll();
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            final WireEnvelope envelope;
+
+            this.lock.lock();
+            try {
+                envelope = this.queue.pollFirst();
+                if (envelope == null) {
+                    this.scheduled = false;
+                    return;
+                }
+                this.notFull.signal();
+            } finally {
+                this.lock.unlock();
+            }
+
+            try {
+                this.consumer.accept(envelope);
+            } catch (Exception e) {
+                logger.warn("Failed to deliver envelope for {}", this.name, e);
+            }
+            this.dispatched.incrementAndGet();
+        }
+    }
+
+    /**
+     * Discards the queued envelopes and rejects the new ones.
+     */
+    void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.dropped.addAndGet(this.queue.size());
+            this.queue.clear();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+        logger.info("Closed dispatch queue for {}: {}", this.name, getMetrics());
+    }
+
+    Metrics getMetrics() {
+        this.lock.lock();
+        try {
+            return new Metrics(this.queue.size(), this.maxDepth, this.capacity, this.dispatched.get(),
+                    this.dropped.get());
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * A snapshot of the state of a dispatch queue.
+     */
+    static final class Metrics {
+
+        private final int depth;
+        private final int maxDepth;
+        private final int capacity;
+        private final long dispatched;
+        private final long dropped;
+
+        private Metrics(int depth, int maxDepth, int capacity, long dispatched, long dropped) {
+            this.depth = depth;
+            this.maxDepth = maxDepth;
+            this.capacity = capacity;
+            this.dispatched = dispatched;
+            this.dropped = dropped;
+        }
+
+        int getDepth() {
+            return this.depth;
+        }
+
+        int getMaxDepth() {
+            return this.maxDepth;
+        }
+
+        int getCapacity() {
+            return this.capacity;
+        }
+
+        long getDispatched() {
+            return this.dispatched;
+        }
+
+        long getDropped() {
+            return this.dropped;
+        }
+
+        @Override
+        public String toString() {
+            return "depth: " + this.depth + "/" + this.capacity + ", max depth: " + this.maxDepth + ", dispatched: "
+                    + this.dispatched + ", dropped: " + this.dropped;
+        }
+    }
+}
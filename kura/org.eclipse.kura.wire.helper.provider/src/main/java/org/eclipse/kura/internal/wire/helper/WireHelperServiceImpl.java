@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2016, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -17,8 +17,17 @@ import static java.util.Objects.requireNonNull;
 import static org.eclipse.kura.configuration.ConfigurationService.KURA_SERVICE_PID;
 import static org.eclipse.kura.wire.graph.Constants.EMITTER_PORT_COUNT_PROP_NAME;
 import static org.eclipse.kura.wire.graph.Constants.RECEIVER_PORT_COUNT_PROP_NAME;
+import static org.osgi.framework.Constants.OBJECTCLASS;
+import static org.osgi.framework.Constants.SERVICE_ID;
 import static org.osgi.framework.Constants.SERVICE_PID;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.kura.util.service.ServiceUtil;
 import org.eclipse.kura.wire.WireComponent;
 import org.eclipse.kura.wire.WireEmitter;
@@ -27,7 +36,12 @@ import org.eclipse.kura.wire.WireReceiver;
 import org.eclipse.kura.wire.WireSupport;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.InvalidSyntaxException;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
 import org.osgi.framework.ServiceReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The Class WireHelperServiceImpl is the implementation of
@@ -35,6 +49,51 @@ import org.osgi.framework.ServiceReference;
  */
 public final class WireHelperServiceImpl implements WireHelperService {
 
+    private static final Logger logger = LoggerFactory.getLogger(WireHelperServiceImpl.class);
+
+    // Shared by the wire components configured for asynchronous dispatch, threads are only created when needed
+    private final ExecutorService dispatchExecutor = Executors.newCachedThreadPool(new DispatchThreadFactory());
+
+    // The wire supports created for the registered wire components, by service id
+    private final Map<Object, WireSupportImpl> wireSupports = new ConcurrentHashMap<>();
+
+    private BundleContext bundleContext;
+    private final ServiceListener dispatchOptionsListener = this::wireComponentChanged;
+
+    protected void activate(final BundleContext context) {
+        try {
+            context.addServiceListener(this.dispatchOptionsListener,
+                    "(" + OBJECTCLASS + "=" + WireComponent.class.getName() + ")");
+            this.bundleContext = context;
+        } catch (InvalidSyntaxException e) {
+            logger.warn("Cannot track the configuration changes of the wire components", e);
+        }
+    }
+
+    protected void deactivate() {
+        if (this.bundleContext != null) {
+            this.bundleContext.removeServiceListener(this.dispatchOptionsListener);
+            this.bundleContext = null;
+        }
+        this.wireSupports.clear();
+        this.dispatchExecutor.shutdownNow();
+    }
+
+    // Applies the dispatch options of a reconfigured wire component to its wire support
+    private void wireComponentChanged(final ServiceEvent event) {
+        final ServiceReference<?> reference = event.getServiceReference();
+        final Object serviceId = reference.getProperty(SERVICE_ID);
+
+        if (event.getType() == ServiceEvent.MODIFIED) {
+            final WireSupportImpl wireSupport = this.wireSupports.get(serviceId);
+            if (wireSupport != null) {
+                wireSupport.setDispatchOptions(DispatchOptions.DEFAULT.override(reference::getProperty));
+            }
+        } else if (event.getType() == ServiceEvent.UNREGISTERING) {
+            this.wireSupports.remove(serviceId);
+        }
+    }
+
     /** {@inheritDoc} */
     @Override
     public String getPid(final WireComponent wireComponent) {
@@ -151,6 +210,28 @@ public final class WireHelperServiceImpl implements WireHelperService {
         int emitterPortCount = getIntOrDefault(wireComponentRef.getProperty(EMITTER_PORT_COUNT_PROP_NAME.value()),
                 wireComponent instanceof WireEmitter ? 1 : 0);
 
-        return new WireSupportImpl(wireComponent, servicePid, kuraServicePid, receiverPortCount, emitterPortCount);
+        final DispatchOptions dispatchOptions = DispatchOptions.DEFAULT.override(wireComponentRef::getProperty);
+
+        final WireSupportImpl wireSupport = new WireSupportImpl(wireComponent, servicePid, kuraServicePid,
+                receiverPortCount, emitterPortCount, dispatchOptions, this.dispatchExecutor);
+
+        final Object serviceId = wireComponentRef.getProperty(SERVICE_ID);
+        if (this.bundleContext != null && serviceId != null) {
+            this.wireSupports.put(serviceId, wireSupport);
+        }
+
+        return wireSupport;
+    }
+
+    private static final class DispatchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+            final Thread thread = new Thread(r, "WireDispatcher-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
     }
 }
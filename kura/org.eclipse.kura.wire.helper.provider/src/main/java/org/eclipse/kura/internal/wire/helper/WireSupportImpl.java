@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2016, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -14,6 +14,7 @@
 package org.eclipse.kura.internal.wire.helper;
 
 import static java.util.Objects.requireNonNull;
+import static org.eclipse.kura.wire.graph.Constants.EMITTER_KURA_SERVICE_PID_PROP_NAME;
 import static org.eclipse.kura.wire.graph.Constants.WIRE_EMITTER_PORT_PROP_NAME;
 import static org.eclipse.kura.wire.graph.Constants.WIRE_RECEIVER_PORT_PROP_NAME;
 
@@ -22,9 +23,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
+import org.eclipse.kura.internal.wire.helper.DispatchOptions.Mode;
 import org.eclipse.kura.wire.WireComponent;
 import org.eclipse.kura.wire.WireEnvelope;
 import org.eclipse.kura.wire.WireReceiver;
@@ -40,6 +44,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * The Class WireSupportImpl implements {@link WireSupport}
+ * <p>
+ * Envelopes are delivered to the receiver on the thread of the emitter, unless the receiver is configured for
+ * asynchronous dispatch. In that case the envelopes received through each wire are appended to a bounded queue
+ * and delivered by a worker pool shared by all wire components, see {@link DispatchOptions}.
  */
 final class WireSupportImpl implements WireSupport, MultiportWireSupport {
 
@@ -57,8 +65,15 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
 
     private final Map<Wire, ReceiverPortImpl> receiverPortByWire;
 
+    private volatile DispatchOptions dispatchOptions;
+
+    private final Executor dispatchExecutor;
+
+    private final Map<Wire, WireDispatchQueue> dispatchQueueByWire;
+
     WireSupportImpl(final WireComponent wireComponent, final String servicePid, final String kuraServicePid,
-            int inputPortCount, int outputPortCount) {
+            int inputPortCount, int outputPortCount, final DispatchOptions dispatchOptions,
+            final Executor dispatchExecutor) {
         requireNonNull(wireComponent, "Wire component cannot be null");
         requireNonNull(servicePid, "service pid cannot be null");
         requireNonNull(kuraServicePid, "kura service pid cannot be null");
@@ -77,6 +92,9 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
         this.receiverPorts = new ArrayList<>(inputPortCount);
         this.emitterPorts = new ArrayList<>(outputPortCount);
         this.receiverPortByWire = new HashMap<>();
+        this.dispatchOptions = requireNonNull(dispatchOptions, "dispatch options cannot be null");
+        this.dispatchExecutor = requireNonNull(dispatchExecutor, "dispatch executor cannot be null");
+        this.dispatchQueueByWire = new ConcurrentHashMap<>();
 
         for (int i = 0; i < inputPortCount; i++) {
             receiverPorts.add(new ReceiverPortImpl());
@@ -89,6 +107,10 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
 
     private void clearReceiverPorts() {
         this.receiverPortByWire.clear();
+        for (final WireDispatchQueue queue : this.dispatchQueueByWire.values()) {
+            queue.close();
+        }
+        this.dispatchQueueByWire.clear();
         for (final ReceiverPort port : this.receiverPorts) {
             ((PortImpl) port).connectedWires.clear();
         }
@@ -146,12 +168,59 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
                 final ReceiverPortImpl receiverPort = (ReceiverPortImpl) this.receiverPorts.get(receiverPortIndex);
                 receiverPort.connectedWires.add(w);
                 this.receiverPortByWire.put(w, receiverPort);
+                createDispatchQueue(w);
             } catch (Exception e) {
                 logger.warn("Failed to assign incomimg wire to port", e);
             }
         }
     }
 
+    /**
+     * Applies new dispatch options to the incoming wires. If the options changed, the dispatch queues are recreated
+     * and the envelopes still queued are discarded, as when the wires are reconnected.
+     */
+    synchronized void setDispatchOptions(final DispatchOptions options) {
+        requireNonNull(options, "dispatch options cannot be null");
+        if (options.equals(this.dispatchOptions)) {
+            return;
+        }
+
+        this.dispatchOptions = options;
+
+        for (final WireDispatchQueue queue : this.dispatchQueueByWire.values()) {
+            queue.close();
+        }
+        this.dispatchQueueByWire.clear();
+        for (final Wire wire : this.receiverPortByWire.keySet()) {
+            createDispatchQueue(wire);
+        }
+    }
+
+    private void createDispatchQueue(final Wire wire) {
+        final DispatchOptions options = this.dispatchOptions;
+        if (options.getMode() != Mode.ASYNC) {
+            return;
+        }
+
+        final String name = wire.getProperties().get(EMITTER_KURA_SERVICE_PID_PROP_NAME.value()) + " -> "
+                + this.kuraServicePid;
+        logger.info("Using {} dispatch for {}", options, name);
+        this.dispatchQueueByWire.put(wire,
+                new WireDispatchQueue(name, options, this.dispatchExecutor, envelope -> deliver(wire, envelope)));
+    }
+
+    /**
+     * Returns the dispatch metrics of the incoming wires, by wire. The metrics of each queue are also logged when it
+     * is closed.
+     *
+     * @return the dispatch metrics, empty if the receiver uses synchronous dispatch
+     */
+    Map<Wire, WireDispatchQueue.Metrics> getDispatchMetrics() {
+        final Map<Wire, WireDispatchQueue.Metrics> result = new HashMap<>();
+        this.dispatchQueueByWire.forEach((wire, queue) -> result.put(wire, queue.getMetrics()));
+        return result;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void updated(final Wire wire, final Object value) {
@@ -160,6 +229,15 @@ final class WireSupportImpl implements WireSupport, MultiportWireSupport {
             return;
         }
         final WireEnvelope envelope = (WireEnvelope) value;
+        final WireDispatchQueue queue = this.dispatchQueueByWire.get(wire);
+        if (queue != null) {
+            queue.offer(envelope);
+        } else {
+            deliver(wire, envelope);
+        }
+    }
+
+    private void deliver(final Wire wire, final WireEnvelope envelope) {
         if (wireComponent instanceof WireReceiver) {
             ((WireReceiver) this.wireComponent).onWireReceive(envelope);
         } else {
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -12,7 +12,8 @@
  *******************************************************************************/
 package org.eclipse.kura.wire.script.tools;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -23,6 +24,7 @@ import org.eclipse.kura.type.TypedValue;
 import org.eclipse.kura.type.TypedValues;
 import org.eclipse.kura.wire.WireRecord;
 import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
 import org.graalvm.polyglot.HostAccess;
 import org.graalvm.polyglot.PolyglotException;
 import org.graalvm.polyglot.Source;
@@ -35,28 +37,79 @@ public abstract class EngineProvider {
     private static final Logger logger = LoggerFactory.getLogger(EngineProvider.class);
     public static final String LANGUAGE_ID = "js";
 
+    private static Engine sharedEngine;
+    private static int sharedEngineUsers;
+
     private Optional<Context> engine = Optional.empty();
     private Value bindings;
     private Optional<Value> currentResult;
 
+    private String parsedSourceCode;
+    private Value parsedProgram;
+
+    /*
+     * All the contexts are created on the same engine, so that the code parsed by a context can be reused by the
+     * others and by the contexts created when the script context is dropped. The engine is owned by the components
+     * holding a context: it is created by the first one that initializes its engine and closed when the last one
+     * closes it, that is when the last component is deactivated.
+     */
+    private static synchronized Engine acquireSharedEngine() {
+        if (sharedEngine == null) {
+            sharedEngine = Engine.newBuilder().option("engine.WarnInterpreterOnly", "false").build();
+        }
+        sharedEngineUsers++;
+        return sharedEngine;
+    }
+
+    private static synchronized void releaseSharedEngine() {
+        sharedEngineUsers--;
+
+        if (sharedEngineUsers == 0) {
+            try {
+                sharedEngine.close();
+            } catch (Exception e) {
+                logger.warn("Failed to close the shared engine.", e);
+            }
+            sharedEngine = null;
+        }
+    }
+
+    static synchronized boolean isSharedEngineOpen() {
+        return sharedEngine != null;
+    }
+
     public void initEngine() {
         closeEngine();
 
         try {
-            this.engine = Optional.of(Context.newBuilder(LANGUAGE_ID).option("engine.WarnInterpreterOnly", "false")
-                    .allowHostAccess(HostAccess.ALL).build());
+            final Engine shared = acquireSharedEngine();
+
+            try {
+                this.engine = Optional.of(
+                        Context.newBuilder(LANGUAGE_ID).engine(shared).allowHostAccess(HostAccess.ALL).build());
+            } catch (Exception e) {
+                releaseSharedEngine();
+                throw e;
+            }
+
             createDefaultBindings();
         } catch (Exception e) {
             logger.error("Failed to initialize engine for language '" + LANGUAGE_ID + "'.", e);
-            this.engine = Optional.empty();
+            closeEngine();
         }
     }
 
     public void closeEngine() {
         if (this.engine.isPresent()) {
-            this.engine.get().close(true);
-            this.engine = Optional.empty();
+            try {
+                this.engine.get().close(true);
+            } finally {
+                this.engine = Optional.empty();
+                releaseSharedEngine();
+            }
         }
+        this.parsedSourceCode = null;
+        this.parsedProgram = null;
     }
 
     public boolean isEngineInit() {
@@ -82,8 +135,7 @@ public abstract class EngineProvider {
         this.currentResult = Optional.empty();
         try {
             if (this.engine.isPresent()) {
-                Source source = Source.newBuilder(LANGUAGE_ID, sourceCode, null).build();
-                this.currentResult = Optional.of(this.engine.get().eval(source));
+                this.currentResult = Optional.of(getProgram(sourceCode).execute());
             } else {
                 logger.warn("Engine is not loaded!");
             }
@@ -94,6 +146,20 @@ public abstract class EngineProvider {
         }
     }
 
+    /*
+     * The script is parsed once and the resulting program is executed at each evaluation. Executing the program runs
+     * the script in the global scope of the context, as eval does.
+     */
+    private Value getProgram(String sourceCode) throws IOException {
+        if (this.parsedProgram == null || !sourceCode.equals(this.parsedSourceCode)) {
+            this.parsedProgram = null;
+            Source source = Source.newBuilder(LANGUAGE_ID, sourceCode, null).cached(true).build();
+            this.parsedProgram = this.engine.get().parse(source);
+            this.parsedSourceCode = sourceCode;
+        }
+        return this.parsedProgram;
+    }
+
     public Optional<TypedValue<Boolean>> getResultAsBoolean() {
         if (currentResult.isPresent() && this.currentResult.get().isBoolean()) {
             return Optional.of(TypedValues.newBooleanValue(this.currentResult.get().asBoolean()));
@@ -103,9 +169,10 @@ public abstract class EngineProvider {
     }
 
     private List<WireRecord> valueToWireRecordList(Value value) {
-        List<WireRecord> records = new LinkedList<>();
+        final int size = (int) value.getArraySize();
+        List<WireRecord> records = new ArrayList<>(size);
 
-        for (int i = 0; i < value.getArraySize(); i++) {
+        for (int i = 0; i < size; i++) {
             records.add(value.getArrayElement(i).as(WireRecord.class));
         }
 
@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.xml.marshaller.unmarshaller;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.kura.configuration.ComponentConfiguration;
+import org.eclipse.kura.core.configuration.ComponentConfigurationImpl;
+import org.eclipse.kura.core.configuration.XmlComponentConfigurations;
+import org.eclipse.kura.core.configuration.XmlConfigPropertiesAdapted;
+import org.eclipse.kura.core.configuration.XmlConfigPropertiesAdapter;
+import org.eclipse.kura.core.configuration.XmlConfigPropertyAdapted;
+
+/**
+ * Streaming counterpart of {@link XmlJavaComponentConfigurationsMapper}, used for the snapshots. The configurations
+ * are written directly to the output without building a DOM, producing the same document as the DOM mapper, and are
+ * read with a StAX reader.
+ * <p>
+ * Configurations including a definition are not supported by the writer, since the OCD is marshalled by
+ * {@link XmlJavaMetadataMapper}, see {@link #canMarshal(XmlComponentConfigurations)}. The reader ignores the OCD
+ * elements, as the DOM mapper does.
+ */
+public class XmlJavaComponentConfigurationsStreamMapper {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
+    private static final String INDENT = "    ";
+
+    private static final String CONFIGURATIONS = "configurations";
+    private static final String CONFIGURATION = "configuration";
+    private static final String PROPERTIES = "properties";
+    private static final String PROPERTY = "property";
+    private static final String VALUE = "value";
+
+    private static final String CONFIGURATION_PID = "pid";
+    private static final String PROPERTY_NAME = "name";
+    private static final String PROPERTY_ARRAY = "array";
+    private static final String PROPERTY_ENCRYPTED = "encrypted";
+    private static final String PROPERTY_TYPE = "type";
+
+    private static final String PREFIX = XmlJavaDataMapper.ESF_NAMESPACE + ":";
+
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * @return {@code true} if none of the configurations includes a definition
+     */
+    public static boolean canMarshal(XmlComponentConfigurations xmlConfigs) {
+        final List<ComponentConfiguration> configs = xmlConfigs.getConfigurations();
+        return configs == null || configs.stream().allMatch(c -> c == null || c.getDefinition() == null);
+    }
+
+    public void marshal(Writer w, XmlComponentConfigurations xmlConfigs) throws Exception {
+        w.write(XML_DECLARATION);
+        w.write('<');
+        w.write(PREFIX + CONFIGURATIONS);
+        w.write(" xmlns:esf=\"http://eurotech.com/esf/2.0\" xmlns:ocd=\"http://www.osgi.org/xmlns/metatype/v1.2.0\"");
+
+        final List<ComponentConfiguration> configs = xmlConfigs.getConfigurations();
+        if (configs == null || configs.isEmpty()) {
+            w.write("/>\n");
+            return;
+        }
+
+        w.write(">\n");
+        for (ComponentConfiguration config : configs) {
+            marshalConfiguration(w, config);
+        }
+        endElement(w, 0, CONFIGURATIONS);
+    }
+
+    public XmlComponentConfigurations unmarshal(Reader r) throws Exception {
+        final List<ComponentConfiguration> configs = new ArrayList<>();
+
+        final XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(r);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && isEsfElement(reader, CONFIGURATION)) {
+                    configs.add(parseConfiguration(reader));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        final XmlComponentConfigurations xmlConfigs = new XmlComponentConfigurations();
+        xmlConfigs.setConfigurations(configs);
+        return xmlConfigs;
+    }
+
+    //
+    // Marshaller's private methods
+    //
+    private void marshalConfiguration(Writer w, ComponentConfiguration config) throws Exception {
+        if (config == null) {
+            return;
+        }
+
+        startElement(w, 1, CONFIGURATION);
+        attribute(w, CONFIGURATION_PID, config.getPid());
+
+        final Map<String, Object> properties = config.getConfigurationProperties();
+        if (properties == null) {
+            w.write("/>\n");
+            return;
+        }
+        w.write(">\n");
+
+        final XmlConfigPropertyAdapted[] adaptedProperties = new XmlConfigPropertiesAdapter().marshal(properties)
+                .getProperties();
+
+        boolean hasProperties = false;
+        for (XmlConfigPropertyAdapted property : adaptedProperties) {
+            if (property.getValues() != null) {
+                hasProperties = true;
+                break;
+            }
+        }
+
+        startElement(w, 2, PROPERTIES);
+        if (hasProperties) {
+            w.write(">\n");
+            for (XmlConfigPropertyAdapted property : adaptedProperties) {
+                marshalProperty(w, property);
+            }
+            endElement(w, 2, PROPERTIES);
+        } else {
+            w.write("/>\n");
+        }
+
+        endElement(w, 1, CONFIGURATION);
+    }
+
+    private void marshalProperty(Writer w, XmlConfigPropertyAdapted property) throws IOException {
+        final String[] values = property.getValues();
+        if (values == null) {
+            return;
+        }
+
+        // same attribute order as the DOM serializer
+        startElement(w, 3, PROPERTY);
+        attribute(w, PROPERTY_ARRAY, Boolean.toString(property.getArray()));
+        attribute(w, PROPERTY_ENCRYPTED, Boolean.toString(property.isEncrypted()));
+        attribute(w, PROPERTY_NAME, property.getName());
+        attribute(w, PROPERTY_TYPE, XmlJavaComponentConfigurationsMapper.getStringValue(property.getType()));
+
+        if (values.length == 0) {
+            w.write("/>\n");
+            return;
+        }
+        w.write(">\n");
+
+        for (String value : values) {
+            startElement(w, 4, VALUE);
+            if (value == null || value.isEmpty()) {
+                w.write("/>\n");
+            } else {
+                w.write('>');
+                escape(w, value, false);
+                w.write("</" + PREFIX + VALUE + ">\n");
+            }
+        }
+
+        endElement(w, 3, PROPERTY);
+    }
+
+    private static void startElement(Writer w, int depth, String name) throws IOException {
+        indent(w, depth);
+        w.write('<');
+        w.write(PREFIX);
+        w.write(name);
+    }
+
+    private static void endElement(Writer w, int depth, String name) throws IOException {
+        indent(w, depth);
+        w.write("</");
+        w.write(PREFIX);
+        w.write(name);
+        w.write(">\n");
+    }
+
+    private static void attribute(Writer w, String name, String value) throws IOException {
+        w.write(' ');
+        w.write(name);
+        w.write("=\"");
+        if (value != null) {
+            escape(w, value, true);
+        }
+        w.write('"');
+    }
+
+    private static void indent(Writer w, int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            w.write(INDENT);
+        }
+    }
+
+    private static void escape(Writer w, String s, boolean isAttribute) throws IOException {
+        int start = 0;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // like the DOM serializer, characters outside the BMP are written as references
+                w.write(s, start, i - start);
+                w.write("&#" + Character.toCodePoint(c, s.charAt(i + 1)) + ";");
+                i++;
+                start = i + 1;
+                continue;
+            }
+            final String replacement = getReplacement(c, isAttribute);
+            if (replacement != null) {
+                w.write(s, start, i - start);
+                w.write(replacement);
+                start = i + 1;
+            }
+        }
+        w.write(s, start, s.length() - start);
+    }
+
+    private static String getReplacement(char c, boolean isAttribute) {
+        switch (c) {
+        case '&':
+            return "&amp;";
+        case '<':
+            return "&lt;";
+        case '>':
+            return "&gt;";
+        case '"':
+            return isAttribute ? "&quot;" : null;
+        case '\n':
+        case '\t':
+            // the parser normalizes white spaces in attribute values
+            return isAttribute ? "&#" + (int) c + ";" : null;
+        default:
+            // carriage returns would be normalized by the parser in text as well
+            return c < ' ' ? "&#" + (int) c + ";" : null;
+        }
+    }
+
+    //
+    // Unmarshaller's private methods
+    //
+    private ComponentConfiguration parseConfiguration(XMLStreamReader reader) throws Exception {
+        final String pid = getAttribute(reader, CONFIGURATION_PID);
+
+        XmlConfigPropertiesAdapted xmlPropertiesAdapted = new XmlConfigPropertiesAdapted();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            if (isEsfElement(reader, PROPERTIES)) {
+                xmlPropertiesAdapted = parseProperties(reader);
+            } else {
+                skipElement(reader);
+            }
+        }
+
+        final Map<String, Object> propertiesMap = new XmlConfigPropertiesAdapter().unmarshal(xmlPropertiesAdapted);
+        return new ComponentConfigurationImpl(pid, null, propertiesMap);
+    }
+
+    private XmlConfigPropertiesAdapted parseProperties(XMLStreamReader reader) throws XMLStreamException {
+        final List<XmlConfigPropertyAdapted> properties = new ArrayList<>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            properties.add(parseProperty(reader));
+        }
+
+        final XmlConfigPropertiesAdapted xmlPropertiesAdapted = new XmlConfigPropertiesAdapted();
+        xmlPropertiesAdapted.setProperties(properties.toArray(new XmlConfigPropertyAdapted[0]));
+        return xmlPropertiesAdapted;
+    }
+
+    private XmlConfigPropertyAdapted parseProperty(XMLStreamReader reader) throws XMLStreamException {
+        final String name = getAttribute(reader, PROPERTY_NAME);
+        final String type = getAttribute(reader, PROPERTY_TYPE);
+        final String array = getAttribute(reader, PROPERTY_ARRAY);
+        final String encrypted = getAttribute(reader, PROPERTY_ENCRYPTED);
+
+        final List<String> values = new ArrayList<>();
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            values.add(getTextContent(reader));
+        }
+
+        final XmlConfigPropertyAdapted xmlProperty = new XmlConfigPropertyAdapted(name,
+                XmlJavaComponentConfigurationsMapper.getType(type), values.toArray(new String[0]));
+        xmlProperty.setArray(Boolean.parseBoolean(array));
+        xmlProperty.setEncrypted(Boolean.parseBoolean(encrypted));
+        return xmlProperty;
+    }
+
+    private static boolean isEsfElement(XMLStreamReader reader, String localName) {
+        return XmlJavaDataMapper.ESF_NAMESPACE.equals(reader.getPrefix()) && localName.equals(reader.getLocalName());
+    }
+
+    private static String getAttribute(XMLStreamReader reader, String name) {
+        final String value = reader.getAttributeValue(null, name);
+        return value != null ? value : "";
+    }
+
+    /**
+     * Returns the text of the current element and of its descendants, leaving the reader on its end tag.
+     */
+    private static String getTextContent(XMLStreamReader reader) throws XMLStreamException {
+        final StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.ENTITY_REFERENCE) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString();
+    }
+
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
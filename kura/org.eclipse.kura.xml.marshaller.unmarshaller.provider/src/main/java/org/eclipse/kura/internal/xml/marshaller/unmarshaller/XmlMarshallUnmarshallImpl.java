@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2021 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -67,6 +67,13 @@ public class XmlMarshallUnmarshallImpl implements Marshaller, Unmarshaller {
     }
 
     private void marshal(Object object, Writer w) throws Exception {
+        if (object instanceof XmlComponentConfigurations
+                && XmlJavaComponentConfigurationsStreamMapper.canMarshal((XmlComponentConfigurations) object)) {
+            // Snapshots can be large, avoid building the DOM
+            new XmlJavaComponentConfigurationsStreamMapper().marshal(w, (XmlComponentConfigurations) object);
+            return;
+        }
+
         try {
             DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
             docFactory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
@@ -201,7 +208,17 @@ public class XmlMarshallUnmarshallImpl implements Marshaller, Unmarshaller {
         return unmarshal(sr, clazz);
     }
 
+    @SuppressWarnings("unchecked")
     private <T> T unmarshal(Reader r, Class<T> clazz) throws KuraException {
+        if (clazz.equals(XmlComponentConfigurations.class)) {
+            try {
+                // Snapshot parser
+                return (T) new XmlJavaComponentConfigurationsStreamMapper().unmarshal(r);
+            } catch (Exception e) {
+                throw new KuraException(KuraErrorCode.DECODER_ERROR, VALUE_CONSTANT, e);
+            }
+        }
+
         DocumentBuilderFactory factory = null;
         DocumentBuilder parser = null;
 
@@ -232,14 +249,7 @@ public class XmlMarshallUnmarshallImpl implements Marshaller, Unmarshaller {
         }
 
         // identify the correct parser that has to execute
-        if (clazz.equals(XmlComponentConfigurations.class)) {
-            try {
-                // Snapshot parser
-                return new XmlJavaComponentConfigurationsMapper().unmarshal(doc);
-            } catch (Exception e) {
-                throw new KuraException(KuraErrorCode.DECODER_ERROR, VALUE_CONSTANT, e);
-            }
-        } else if (clazz.equals(MetaData.class) || clazz.equals(Tmetadata.class)) {
+        if (clazz.equals(MetaData.class) || clazz.equals(Tmetadata.class)) {
             // MetaData parser
             return new XmlJavaMetadataMapper().unmarshal(doc);
         } else {
@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.ai.triton.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+
+import org.eclipse.kura.ai.inference.Tensor;
+import org.eclipse.kura.ai.inference.TensorDescriptor;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+
+public class RawTensorContentsTest {
+
+    private ByteString encoded;
+    private Tensor decoded;
+    private Exception occurredException;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldEncodeFloatsInLittleEndian() {
+        whenEncoding(tensor(Float.class, "FP32", Arrays.asList(1.0f, -2.5f)));
+
+        thenEncodedBytesAre(new byte[] { 0, 0, (byte) 0x80, 0x3f, 0, 0, 0x20, (byte) 0xc0 });
+    }
+
+    @Test
+    public void shouldEncodeBooleans() {
+        whenEncoding(tensor(Boolean.class, "BOOL", Arrays.asList(true, false, true)));
+
+        thenEncodedBytesAre(new byte[] { 1, 0, 1 });
+    }
+
+    @Test
+    public void shouldEncodeIntegersAsInt16() {
+        whenEncoding(tensor(Integer.class, "INT16", Arrays.asList(1, -1)));
+
+        thenEncodedBytesAre(new byte[] { 1, 0, (byte) 0xff, (byte) 0xff });
+    }
+
+    @Test
+    public void shouldEncodeBytesWithLength() {
+        whenEncoding(tensor(Byte.class, "BYTES", 1, Arrays.asList((byte) 10, (byte) 20)));
+
+        thenEncodedBytesAre(new byte[] { 2, 0, 0, 0, 10, 20 });
+    }
+
+    @Test
+    public void shouldEncodeLengthOfEachByteArray() {
+        whenEncoding(tensor(byte[].class, "BYTES", Arrays.asList(new byte[] { 10 }, new byte[] { 20, 30 })));
+
+        thenEncodedBytesAre(new byte[] { 1, 0, 0, 0, 10, 2, 0, 0, 0, 20, 30 });
+    }
+
+    @Test
+    public void shouldSplitBytesIntoElementsOfShape() {
+        whenEncoding(tensor(Byte.class, "BYTES", 2, Arrays.asList((byte) 10, (byte) 20, (byte) 30, (byte) 40)));
+
+        thenEncodedBytesAre(new byte[] { 2, 0, 0, 0, 10, 20, 2, 0, 0, 0, 30, 40 });
+    }
+
+    @Test
+    public void shouldRejectBytesNotMatchingShape() {
+        whenEncoding(tensor(Byte.class, "BYTES", 2, Arrays.asList((byte) 10, (byte) 20, (byte) 30)));
+
+        thenExceptionOccurred(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldRejectMismatchingType() {
+        whenEncoding(tensor(Double.class, "FP32", Arrays.asList(1.0d)));
+
+        thenExceptionOccurred(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void shouldDecodeWhatWasEncoded() {
+        givenEncoded(tensor(Double.class, "FP64", Arrays.asList(3.45, 7.34, 88.887)));
+
+        whenDecoding(DataType.FP64);
+
+        thenDecodedDataIs(Double.class, Arrays.asList(3.45, 7.34, 88.887));
+    }
+
+    @Test
+    public void shouldDecodeLongs() {
+        givenEncoded(tensor(Long.class, "INT64", Arrays.asList(56436L, -1L)));
+
+        whenDecoding(DataType.INT64);
+
+        thenDecodedDataIs(Long.class, Arrays.asList(56436L, -1L));
+    }
+
+    @Test
+    public void shouldDecodeBytesSkippingLength() {
+        givenEncoded(tensor(Byte.class, "BYTES", 1, Arrays.asList((byte) 10, (byte) -20)));
+
+        whenDecoding(DataType.BYTES);
+
+        thenDecodedDataIs(Byte.class, Arrays.asList((byte) 10, (byte) -20));
+    }
+
+    @Test
+    public void shouldDecodeEachByteArray() {
+        givenEncoded(tensor(byte[].class, "BYTES",
+                Arrays.asList(new byte[] { 10 }, new byte[] {}, new byte[] { 20, -30 })));
+
+        whenDecoding(DataType.BYTES);
+
+        thenDecodedByteArraysAre(new byte[] { 10 }, new byte[] {}, new byte[] { 20, -30 });
+    }
+
+    @Test
+    public void shouldDecodeBooleans() {
+        givenEncoded(tensor(Boolean.class, "BOOL", Arrays.asList(false, true)));
+
+        whenDecoding(DataType.BOOL);
+
+        thenDecodedDataIs(Boolean.class, Arrays.asList(false, true));
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenEncoded(Tensor tensor) {
+        whenEncoding(tensor);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenEncoding(Tensor tensor) {
+        try {
+            this.encoded = RawTensorContents.encode(tensor);
+        } catch (Exception e) {
+            this.occurredException = e;
+        }
+    }
+
+    private void whenDecoding(DataType type) {
+        this.decoded = RawTensorContents.decode(type,
+                new TensorDescriptor("output", type.name(), Optional.empty(), Arrays.asList(1L), new HashMap<>()),
+                this.encoded);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenEncodedBytesAre(byte[] expected) {
+        assertArrayEquals(expected, this.encoded.toByteArray());
+    }
+
+    private void thenExceptionOccurred(Class<? extends Exception> expected) {
+        assertTrue(expected.isInstance(this.occurredException));
+    }
+
+    private <T> void thenDecodedDataIs(Class<T> type, List<T> expected) {
+        assertEquals(type, this.decoded.getType());
+        assertEquals(expected, this.decoded.getData(type).get());
+    }
+
+    private void thenDecodedByteArraysAre(byte[]... expected) {
+        assertEquals(byte[].class, this.decoded.getType());
+        List<byte[]> data = this.decoded.getData(byte[].class).get();
+        assertEquals(expected.length, data.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertArrayEquals(expected[i], data.get(i));
+        }
+    }
+
+    /*
+     * Utilities
+     */
+
+    private static <T> Tensor tensor(Class<T> clazz, String type, List<T> data) {
+        return tensor(clazz, type, data.size(), data);
+    }
+
+    private static <T> Tensor tensor(Class<T> clazz, String type, long size, List<T> data) {
+        return new Tensor(clazz,
+                new TensorDescriptor("input", type, Optional.empty(), Arrays.asList(size), new HashMap<>()), data);
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -28,4 +28,13 @@ public class TritonServerServiceInferTest extends TritonServerServiceStepDefinit
         thenTensorsAreReturned();
     }
 
+    @Test
+    public void shouldInferDataAsync() throws IOException {
+        givenTritonServerServiceImpl(defaultProperties());
+
+        whenInferDataAsync(exampleModel(), exampleInputData());
+
+        thenTensorsAreReturned();
+    }
+
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -30,6 +30,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 
 import org.eclipse.kura.KuraException;
@@ -172,6 +175,17 @@ public abstract class TritonServerServiceStepDefinitions {
         }
     }
 
+    protected void whenInferDataAsync(ModelInfo modelInfo, List<Tensor> inputData) {
+        try {
+            this.tensorList = this.tritonServerService.inferAsync(modelInfo, inputData).get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.exceptionCaught = true;
+        } catch (ExecutionException | TimeoutException e) {
+            this.exceptionCaught = true;
+        }
+    }
+
     protected void whenAskingIfEngineIsReady() {
         this.isEngineReady = this.tritonServerService.isEngineReady();
     }
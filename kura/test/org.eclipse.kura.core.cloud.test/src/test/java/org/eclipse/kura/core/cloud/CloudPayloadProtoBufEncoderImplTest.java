@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.Map;
+
+import org.eclipse.kura.core.message.protobuf.KuraPayloadProto;
+import org.eclipse.kura.core.message.protobuf.KuraPayloadProto.KuraPayload.KuraMetric;
+import org.eclipse.kura.core.message.protobuf.KuraPayloadProto.KuraPayload.KuraMetric.ValueType;
+import org.eclipse.kura.message.KuraPayload;
+import org.eclipse.kura.message.KuraPosition;
+import org.junit.Test;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UninitializedMessageException;
+
+public class CloudPayloadProtoBufEncoderImplTest {
+
+    private final KuraPayload payload = new KuraPayload();
+    private byte[] encoded;
+    private Exception exception;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldEncodeEmptyPayload() throws Exception {
+        whenEncoded();
+
+        thenEncodedIsSameAsGenerated();
+        thenEncodedLengthIs(0);
+    }
+
+    @Test
+    public void shouldEncodeAllMetricTypes() throws Exception {
+        givenMetric("string", "foo");
+        givenMetric("unicode", "è€😀");
+        givenMetric("double", 1.5d);
+        givenMetric("float", -2.5f);
+        givenMetric("int", -1);
+        givenMetric("long", Long.MAX_VALUE);
+        givenMetric("boolean", true);
+        givenMetric("bytes", new byte[] { 1, 2, 3 });
+
+        whenEncoded();
+
+        thenEncodedIsSameAsGenerated();
+        thenDecodedMetricsAreSameAsOriginal();
+    }
+
+    @Test
+    public void shouldEncodeTimestampPositionAndBody() throws Exception {
+        givenTimestamp(1234567890L);
+        givenPosition(45.0, 12.0, 100.0, 1.0, 90.0, 10.0, 1234L, 7, 4);
+        givenMetric("metric", 1);
+        givenBody(new byte[] { 4, 5, 6 });
+
+        whenEncoded();
+
+        thenEncodedIsSameAsGenerated();
+    }
+
+    @Test
+    public void shouldEncodePositionWithOnlyRequiredFields() throws Exception {
+        givenPosition(45.0, 12.0, null, null, null, null, null, null, null);
+
+        whenEncoded();
+
+        thenEncodedIsSameAsGenerated();
+    }
+
+    @Test
+    public void shouldEncodeManyMetrics() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            givenMetric("metric" + i, (double) i);
+        }
+
+        whenEncoded();
+
+        thenEncodedIsSameAsGenerated();
+        thenDecodedMetricsAreSameAsOriginal();
+    }
+
+    @Test
+    public void shouldEncodeLongStringAndBody() throws Exception {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("value");
+        }
+        givenMetric("long", builder.toString());
+        givenBody(new byte[100000]);
+
+        whenEncoded();
+
+        thenEncodedIsSameAsGenerated();
+    }
+
+    @Test
+    public void shouldSkipNullMetrics() throws Exception {
+        givenMetric("null", null);
+        givenMetric("notNull", 1);
+
+        whenEncoded();
+
+        thenEncodedIsSameAsGenerated();
+        thenDecodedMetricCountIs(1);
+    }
+
+    @Test
+    public void shouldFailWithUnsupportedMetricType() {
+        givenMetric("unsupported", new Object());
+
+        whenEncoded();
+
+        thenExceptionIs(RuntimeException.class);
+    }
+
+    @Test
+    public void shouldFailWithPositionWithoutLatitude() {
+        givenPosition(null, 12.0, null, null, null, null, null, null, null);
+
+        whenEncoded();
+
+        thenExceptionIs(UninitializedMessageException.class);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenMetric(final String name, final Object value) {
+        this.payload.addMetric(name, value);
+    }
+
+    private void givenTimestamp(final long timestamp) {
+        this.payload.setTimestamp(new Date(timestamp));
+    }
+
+    private void givenBody(final byte[] body) {
+        this.payload.setBody(body);
+    }
+
+    private void givenPosition(final Double latitude, final Double longitude, final Double altitude,
+            final Double precision, final Double heading, final Double speed, final Long timestamp,
+            final Integer satellites, final Integer status) {
+        final KuraPosition position = new KuraPosition();
+        if (latitude != null) {
+            position.setLatitude(latitude);
+        }
+        if (longitude != null) {
+            position.setLongitude(longitude);
+        }
+        if (altitude != null) {
+            position.setAltitude(altitude);
+        }
+        if (precision != null) {
+            position.setPrecision(precision);
+        }
+        if (heading != null) {
+            position.setHeading(heading);
+        }
+        if (speed != null) {
+            position.setSpeed(speed);
+        }
+        if (timestamp != null) {
+            position.setTimestamp(new Date(timestamp));
+        }
+        if (satellites != null) {
+            position.setSatellites(satellites);
+        }
+        if (status != null) {
+            position.setStatus(status);
+        }
+        this.payload.setPosition(position);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenEncoded() {
+        try {
+            this.encoded = new CloudPayloadProtoBufEncoderImpl(this.payload).getBytes();
+        } catch (final Exception e) {
+            this.exception = e;
+        }
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenEncodedIsSameAsGenerated() {
+        assertArrayEquals(encodeWithGeneratedClasses(this.payload), this.encoded);
+    }
+
+    private void thenEncodedLengthIs(final int length) {
+        assertEquals(length, this.encoded.length);
+    }
+
+    private void thenDecodedMetricsAreSameAsOriginal() throws Exception {
+        final Map<String, Object> decoded = decode().metrics();
+
+        assertEquals(this.payload.metrics().keySet(), decoded.keySet());
+        for (final Map.Entry<String, Object> entry : this.payload.metrics().entrySet()) {
+            if (entry.getValue() instanceof byte[]) {
+                assertArrayEquals((byte[]) entry.getValue(), (byte[]) decoded.get(entry.getKey()));
+            } else {
+                assertEquals(entry.getValue(), decoded.get(entry.getKey()));
+            }
+        }
+    }
+
+    private void thenDecodedMetricCountIs(final int count) throws Exception {
+        assertEquals(count, decode().metrics().size());
+    }
+
+    private void thenExceptionIs(final Class<? extends Exception> exceptionClass) {
+        assertTrue(exceptionClass.isInstance(this.exception));
+    }
+
+    /*
+     * Utilities
+     */
+
+    private KuraPayload decode() throws Exception {
+        return new CloudPayloadProtoBufDecoderImpl(this.encoded).buildFromByteArray();
+    }
+
+    private static byte[] encodeWithGeneratedClasses(final KuraPayload kuraPayload) {
+        final KuraPayloadProto.KuraPayload.Builder builder = KuraPayloadProto.KuraPayload.newBuilder();
+
+        if (kuraPayload.getTimestamp() != null) {
+            builder.setTimestamp(kuraPayload.getTimestamp().getTime());
+        }
+
+        final KuraPosition position = kuraPayload.getPosition();
+        if (position != null) {
+            final KuraPayloadProto.KuraPayload.KuraPosition.Builder positionBuilder = KuraPayloadProto.KuraPayload.KuraPosition
+                    .newBuilder().setLatitude(position.getLatitude()).setLongitude(position.getLongitude());
+            if (position.getAltitude() != null) {
+                positionBuilder.setAltitude(position.getAltitude());
+            }
+            if (position.getPrecision() != null) {
+                positionBuilder.setPrecision(position.getPrecision());
+            }
+            if (position.getHeading() != null) {
+                positionBuilder.setHeading(position.getHeading());
+            }
+            if (position.getSpeed() != null) {
+                positionBuilder.setSpeed(position.getSpeed());
+            }
+            if (position.getTimestamp() != null) {
+                positionBuilder.setTimestamp(position.getTimestamp().getTime());
+            }
+            if (position.getSatellites() != null) {
+                positionBuilder.setSatellites(position.getSatellites());
+            }
+            if (position.getStatus() != null) {
+                positionBuilder.setStatus(position.getStatus());
+            }
+            builder.setPosition(positionBuilder);
+        }
+
+        for (final Map.Entry<String, Object> entry : kuraPayload.metrics().entrySet()) {
+            final Object value = entry.getValue();
+            final KuraMetric.Builder metric = KuraMetric.newBuilder().setName(entry.getKey());
+
+            if (value instanceof String) {
+                metric.setType(ValueType.STRING).setStringValue((String) value);
+            } else if (value instanceof Double) {
+                metric.setType(ValueType.DOUBLE).setDoubleValue((Double) value);
+            } else if (value instanceof Integer) {
+                metric.setType(ValueType.INT32).setIntValue((Integer) value);
+            } else if (value instanceof Float) {
+                metric.setType(ValueType.FLOAT).setFloatValue((Float) value);
+            } else if (value instanceof Long) {
+                metric.setType(ValueType.INT64).setLongValue((Long) value);
+            } else if (value instanceof Boolean) {
+                metric.setType(ValueType.BOOL).setBoolValue((Boolean) value);
+            } else if (value instanceof byte[]) {
+                metric.setType(ValueType.BYTES).setBytesValue(ByteString.copyFrom((byte[]) value));
+            } else {
+                continue;
+            }
+            builder.addMetric(metric);
+        }
+
+        if (kuraPayload.getBody() != null) {
+            builder.setBody(ByteString.copyFrom(kuraPayload.getBody()));
+        }
+
+        return builder.build().toByteArray();
+    }
+}
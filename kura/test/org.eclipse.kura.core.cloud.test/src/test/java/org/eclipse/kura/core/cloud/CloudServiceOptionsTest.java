@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2018, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2018, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -513,4 +513,21 @@ public class CloudServiceOptionsTest {
         assertNotNull(cloudPayloadEncoding);
         assertEquals(CloudPayloadEncoding.SIMPLE_JSON, cloudPayloadEncoding);
     }
+
+    @Test
+    public void testGetMessageDispatchThreadsDefault() {
+        CloudServiceOptions options = new CloudServiceOptions(new HashMap<>(), systemService);
+
+        assertEquals(2, options.getMessageDispatchThreads());
+    }
+
+    @Test
+    public void testGetMessageDispatchThreads() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("message.dispatch.threads", 8);
+
+        CloudServiceOptions options = new CloudServiceOptions(properties, systemService);
+
+        assertEquals(8, options.getMessageDispatchThreads());
+    }
 }
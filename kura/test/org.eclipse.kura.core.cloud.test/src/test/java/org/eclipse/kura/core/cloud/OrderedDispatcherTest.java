@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class OrderedDispatcherTest {
+
+    private OrderedDispatcher dispatcher;
+    private final Map<String, List<Integer>> received = Collections.synchronizedMap(new HashMap<>());
+    private CountDownLatch done;
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    @After
+    public void cleanUp() {
+        this.dispatcher.shutdown();
+    }
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldPreserveOrderForTheSameKey() throws InterruptedException {
+        givenDispatcher(4);
+
+        whenDispatching(new String[] { "a", "b", "c" }, 1000);
+
+        thenAllTasksCompleted();
+        thenTasksOfEachKeyRanInOrder(1000);
+    }
+
+    @Test
+    public void shouldNotBlockOtherKeysWhenAKeyIsSlow() throws InterruptedException {
+        givenDispatcher(2);
+        givenBlockedKey("slow");
+
+        whenDispatching(new String[] { "fast" }, 100);
+
+        thenAllTasksCompleted();
+        thenTasksOfEachKeyRanInOrder(100);
+    }
+
+    @Test
+    public void shouldDiscardTasksExceedingTheQueueCapacity() throws InterruptedException {
+        givenDispatcher(1, 10);
+        givenBlockedKey("slow");
+
+        whenDispatching(new String[] { "slow" }, 15);
+        whenKeyUnblocked();
+
+        thenTasksOfKeyRan("slow", 10);
+        thenDiscardedTaskCountIs(5);
+    }
+
+    @Test
+    public void shouldNotRunCancelledTasks() throws InterruptedException {
+        givenDispatcher(1, 100);
+        givenBlockedKey("cancelled");
+        givenTasksDispatched(new String[] { "cancelled", "other" }, 10);
+
+        whenCancelled("cancelled");
+        whenKeyUnblocked();
+
+        thenTasksOfKeyRan("other", 10);
+        thenTasksOfKeyRan("cancelled", 0);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenDispatcher(final int poolSize) {
+        givenDispatcher(poolSize, Integer.MAX_VALUE);
+    }
+
+    private void givenDispatcher(final int poolSize, final int maxQueuedTasksPerKey) {
+        this.dispatcher = new OrderedDispatcher(poolSize, maxQueuedTasksPerKey);
+    }
+
+    private void givenBlockedKey(final String key) throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        this.dispatcher.dispatch(key, () -> {
+            started.countDown();
+            try {
+                this.unblock.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+    }
+
+    private void givenTasksDispatched(final String[] keys, final int tasksPerKey) {
+        whenDispatching(keys, tasksPerKey);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenDispatching(final String[] keys, final int tasksPerKey) {
+        this.done = new CountDownLatch(keys.length * tasksPerKey);
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (final String key : keys) {
+                final int value = i;
+                this.dispatcher.dispatch(key, () -> {
+                    this.received.computeIfAbsent(key, k -> Collections.synchronizedList(new ArrayList<>()))
+                            .add(value);
+                    this.done.countDown();
+                });
+            }
+        }
+    }
+
+    private void whenCancelled(final String key) {
+        this.dispatcher.cancel(key);
+    }
+
+    private void whenKeyUnblocked() {
+        this.unblock.countDown();
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenAllTasksCompleted() throws InterruptedException {
+        assertTrue(this.done.await(10, TimeUnit.SECONDS));
+    }
+
+    private void thenTasksOfKeyRan(final String key, final int expectedCount) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (getReceivedCount(key) < expectedCount && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // give the tasks that should not run the time to do it
+        Thread.sleep(200);
+
+        assertEquals(expectedCount, getReceivedCount(key));
+    }
+
+    private void thenDiscardedTaskCountIs(final long expectedCount) {
+        assertEquals(expectedCount, this.dispatcher.getDiscardedTaskCount());
+    }
+
+    private void thenTasksOfEachKeyRanInOrder(final int tasksPerKey) {
+        for (final List<Integer> values : this.received.values()) {
+            assertEquals(tasksPerKey, values.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(i, (int) values.get(i));
+            }
+        }
+    }
+
+    /*
+     * Utilities
+     */
+
+    private int getReceivedCount(final String key) {
+        return this.received.getOrDefault(key, Collections.emptyList()).size();
+    }
+}
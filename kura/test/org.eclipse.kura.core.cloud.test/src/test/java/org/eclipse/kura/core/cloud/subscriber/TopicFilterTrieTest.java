@@ -0,0 +1,176 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.cloud.subscriber;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.kura.core.util.MqttTopicUtil;
+import org.junit.Test;
+
+public class TopicFilterTrieTest {
+
+    private static final List<String> FILTERS = Arrays.asList("$EDC/+/+/CONF-V1/#", "$EDC/+/+/CMD-V1/#",
+            "$EDC/+/+/DEPLOY-V2/EXEC/install", "+/+/app/#", "+/+/app/+/temperature", "account/device/app",
+            "account/+/app/", "#", "account/#", "+", "+/+", "a//b", "a/+/b");
+
+    // topics without empty levels or parent levels of multi level wildcards, where MqttTopicUtil follows the spec
+    private static final List<String> TOPICS = Arrays.asList("$EDC/account/device/CONF-V1/GET/configurations",
+            "$EDC/account/device/CMD-V1/EXEC/command", "$EDC/account/device/DEPLOY-V2/EXEC/install",
+            "$EDC/account/device/DEPLOY-V2/EXEC/uninstall", "account/device/other",
+            "account/device/app/sensor/temperature", "account/device/app/sensor/humidity", "account/device",
+            "a/x/b", "a/b", "a");
+
+    private TopicFilterTrie<String> trie;
+    private List<String> matched;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldMatchExactFilter() {
+        givenFilters("account/device/app");
+
+        whenMatching("account/device/app");
+
+        thenMatchedFiltersAre("account/device/app");
+    }
+
+    @Test
+    public void shouldMatchSingleLevelWildcard() {
+        givenFilters("+/+/app/+/temperature", "+/+/app/+/humidity");
+
+        whenMatching("account/device/app/sensor/temperature");
+
+        thenMatchedFiltersAre("+/+/app/+/temperature");
+    }
+
+    @Test
+    public void shouldMatchParentLevelOfMultiLevelWildcard() {
+        givenFilters("$EDC/+/+/CONF-V1/#");
+
+        whenMatching("$EDC/account/device/CONF-V1");
+
+        thenMatchedFiltersAre("$EDC/+/+/CONF-V1/#");
+    }
+
+    @Test
+    public void shouldMatchEmptyLevelWithSingleLevelWildcard() {
+        givenFilters("a/+/b", "a/+");
+
+        whenMatching("a//b");
+
+        thenMatchedFiltersAre("a/+/b");
+    }
+
+    @Test
+    public void shouldMatchParentLevelAfterSingleLevelWildcards() {
+        givenFilters("+/#", "+/+/#");
+
+        whenMatching("a");
+
+        thenMatchedFiltersAre("+/#");
+    }
+
+    @Test
+    public void shouldNotMatchDifferentTopic() {
+        givenFilters("$EDC/+/+/CONF-V1/#", "account/+/app");
+
+        whenMatching("$EDC/account/device/CMD-V1/EXEC");
+
+        thenMatchedFiltersAre();
+    }
+
+    @Test
+    public void shouldNotMatchSystemTopicWithLeadingWildcard() {
+        givenFilters("#", "+/+/CMD-V1/#", "+/account/#", "$EDC/#", "$EDC/+/device/#");
+
+        whenMatching("$EDC/account/device/CMD-V1/EXEC");
+
+        thenMatchedFiltersAre("$EDC/#", "$EDC/+/device/#");
+    }
+
+    @Test
+    public void shouldMatchTopicContainingDollarWithLeadingWildcard() {
+        givenFilters("#", "+/$SYS/#");
+
+        whenMatching("account/$SYS/info");
+
+        thenMatchedFiltersAre("#", "+/$SYS/#");
+    }
+
+    @Test
+    public void shouldMatchLikeMqttTopicUtil() {
+        givenFilters(FILTERS.toArray(new String[0]));
+
+        for (final String topic : TOPICS) {
+            whenMatching(topic);
+
+            thenMatchedFiltersAreTheSameAsMqttTopicUtil(topic);
+        }
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenFilters(final String... filters) {
+        this.trie = new TopicFilterTrie<>();
+        for (final String filter : filters) {
+            this.trie.add(filter, filter);
+        }
+    }
+
+    /*
+     * When
+     */
+
+    private void whenMatching(final String topic) {
+        this.matched = this.trie.match(topic);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenMatchedFiltersAre(final String... expected) {
+        assertEquals(new HashSet<>(Arrays.asList(expected)), new HashSet<>(this.matched));
+        assertEquals(expected.length, this.matched.size());
+    }
+
+    private void thenMatchedFiltersAreTheSameAsMqttTopicUtil(final String topic) {
+        final List<String> expected = new ArrayList<>();
+        for (final String filter : FILTERS) {
+            // MqttTopicUtil does not exclude the topics starting with $ from the filters starting with a wildcard
+            final boolean excluded = topic.startsWith("$") && (filter.startsWith("+") || filter.startsWith("#"));
+            if (!excluded && MqttTopicUtil.isMatched(filter, topic)) {
+                expected.add(filter);
+            }
+        }
+
+        final List<String> actual = new ArrayList<>(this.matched);
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals("topic: " + topic, expected, actual);
+    }
+}
@@ -0,0 +1,425 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.configuration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.kura.configuration.ComponentConfiguration;
+import org.eclipse.kura.configuration.Password;
+import org.eclipse.kura.crypto.CryptoService;
+import org.junit.Test;
+import org.osgi.service.cm.Configuration;
+import org.osgi.service.cm.ConfigurationAdmin;
+
+public class ComponentConfigurationCacheTest {
+
+    private static final String PID = "org.eclipse.kura.Test";
+    private static final String SERVICE_PID = "org.eclipse.kura.Test-1234";
+
+    private final ComponentConfigurationCache cache = new ComponentConfigurationCache();
+    private final AtomicInteger decryptions = new AtomicInteger();
+    private ComponentConfiguration result;
+    private long version;
+
+    private ConfigurationServiceImpl configurationService;
+    private ConfigurationAdmin configurationAdmin;
+    private CryptoService cryptoService;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldReturnCachedConfiguration() {
+        givenCachedConfiguration(PID, "a", 1);
+
+        whenGetting(PID);
+
+        thenPropertyIs("a", 1);
+        thenHitsAndMissesAre(1, 0);
+    }
+
+    @Test
+    public void shouldMissOnDifferentPid() {
+        givenCachedConfiguration(PID, "a", 1);
+
+        whenGetting("other");
+
+        thenResultIsNull();
+        thenHitsAndMissesAre(0, 1);
+    }
+
+    @Test
+    public void shouldNotExposeCachedProperties() {
+        givenCachedConfiguration(PID, "a", 1);
+        givenReturnedPropertiesModified(PID, "a", 2);
+
+        whenGetting(PID);
+
+        thenPropertyIs("a", 1);
+    }
+
+    @Test
+    public void shouldNotExposeCachedArrays() {
+        givenCachedConfiguration(PID, "a", new String[] { "foo", "bar" });
+        givenReturnedArrayElementModified(PID, "a", "baz");
+
+        whenGetting(PID);
+
+        thenArrayPropertyIs("a", "foo", "bar");
+    }
+
+    @Test
+    public void shouldNotExposeCachedPasswords() {
+        givenCachedConfiguration(PID, "a", new Password[] { new Password("foo") });
+        givenReturnedPasswordModified(PID, "a", 'x');
+
+        whenGetting(PID);
+
+        thenPasswordArrayPropertyIs("a", "foo");
+    }
+
+    @Test
+    public void shouldNotBeAffectedByChangesToStoredArrays() {
+        final String[] value = new String[] { "foo" };
+        givenCachedConfiguration(PID, "a", value);
+        value[0] = "bar";
+
+        whenGetting(PID);
+
+        thenArrayPropertyIs("a", "foo");
+    }
+
+    @Test
+    public void shouldExposeHitRateFromService() throws Exception {
+        givenConfigurationService();
+        givenPasswordInConfigurationAdmin("password", "encrypted", "plain");
+        givenDecryptedConfigurationReadFromService(PID);
+
+        whenGettingDecryptedFromService(PID);
+
+        thenServiceHitsAndMissesAre(1, 1);
+        thenServiceHitRateIs(0.5);
+    }
+
+    @Test
+    public void shouldDiscardInvalidatedConfiguration() {
+        givenCachedConfiguration(PID, "a", 1);
+        givenInvalidated(SERVICE_PID);
+
+        whenGetting(PID);
+
+        thenResultIsNull();
+    }
+
+    @Test
+    public void shouldNotStoreConfigurationReadBeforeInvalidation() {
+        givenVersionRetrieved();
+        givenInvalidated(SERVICE_PID);
+        givenConfigurationStored(PID, "a", 1);
+
+        whenGetting(PID);
+
+        thenResultIsNull();
+    }
+
+    @Test
+    public void shouldNotStoreConfigurationReadBeforeInvalidateAll() {
+        givenVersionRetrieved();
+        givenAllInvalidated();
+        givenConfigurationStored(PID, "a", 1);
+
+        whenGetting(PID);
+
+        thenResultIsNull();
+    }
+
+    @Test
+    public void shouldStoreConfigurationWhenOtherPidIsInvalidated() {
+        givenVersionRetrieved();
+        givenInvalidated("other");
+        givenConfigurationStored(PID, "a", 1);
+
+        whenGetting(PID);
+
+        thenPropertyIs("a", 1);
+    }
+
+    @Test
+    public void shouldDecryptOnlyOnce() {
+        givenCachedConfiguration(PID, "a", 1);
+        givenDecryptedConfigurationRead(PID);
+
+        whenGettingDecrypted(PID);
+
+        thenPropertyIs("a", "decrypted");
+        thenDecryptionsAre(1);
+        thenHitsAndMissesAre(2, 0);
+    }
+
+    @Test
+    public void shouldStoreDecryptedPropertiesOfCurrentVersion() {
+        givenCachedConfiguration(PID, "a", 1);
+        givenDecryptedPropertiesStored(PID, "a", "plain");
+
+        whenGettingDecrypted(PID);
+
+        thenPropertyIs("a", "plain");
+        thenDecryptionsAre(0);
+    }
+
+    @Test
+    public void shouldNotStoreDecryptedPropertiesReadBeforeInvalidation() {
+        givenCachedConfiguration(PID, "a", 1);
+        givenInvalidated(SERVICE_PID);
+        givenConfigurationReloaded(PID, "a", 2);
+        givenDecryptedPropertiesStored(PID, "a", "stale");
+
+        whenGettingDecrypted(PID);
+
+        thenPropertyIs("a", "decrypted");
+        thenDecryptionsAre(1);
+    }
+
+    @Test
+    public void shouldComputeHitRate() {
+        givenCachedConfiguration(PID, "a", 1);
+        givenConfigurationRead(PID);
+        givenConfigurationRead(PID);
+        givenConfigurationRead("other");
+
+        whenGetting(PID);
+
+        thenHitRateIs(0.75);
+    }
+
+    @Test
+    public void shouldNotReadConfigurationAdminAgain() throws Exception {
+        givenConfigurationService();
+        givenPasswordInConfigurationAdmin("password", "encrypted", "plain");
+        givenDecryptedConfigurationReadFromService(PID);
+
+        whenGettingDecryptedFromService(PID);
+
+        thenPasswordIs("password", "plain");
+        thenConfigurationAdminReads(1);
+        thenCryptoServiceDecryptions(1);
+    }
+
+    @Test
+    public void shouldReadConfigurationAdminAfterUnregistration() throws Exception {
+        givenConfigurationService();
+        givenPasswordInConfigurationAdmin("password", "encrypted", "plain");
+        givenDecryptedConfigurationReadFromService(PID);
+        givenComponentRegisteredAgain();
+
+        whenGettingDecryptedFromService(PID);
+
+        thenPasswordIs("password", "plain");
+        thenConfigurationAdminReads(2);
+        thenCryptoServiceDecryptions(2);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenCachedConfiguration(final String pid, final String key, final Object value) {
+        givenVersionRetrieved();
+        givenConfigurationStored(pid, key, value);
+    }
+
+    private void givenVersionRetrieved() {
+        this.version = this.cache.getVersion(SERVICE_PID);
+    }
+
+    private void givenConfigurationStored(final String pid, final String key, final Object value) {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(key, value);
+        this.cache.put(SERVICE_PID, this.version, new ComponentConfigurationImpl(pid, null, properties));
+    }
+
+    private void givenConfigurationReloaded(final String pid, final String key, final Object value) {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(key, value);
+        this.cache.put(SERVICE_PID, this.cache.getVersion(SERVICE_PID),
+                new ComponentConfigurationImpl(pid, null, properties));
+    }
+
+    private void givenDecryptedPropertiesStored(final String pid, final String key, final Object value) {
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put(key, value);
+        this.cache.putDecrypted(SERVICE_PID, pid, this.version, properties);
+    }
+
+    private void givenReturnedPropertiesModified(final String pid, final String key, final Object value) {
+        this.cache.get(SERVICE_PID, pid).getConfigurationProperties().put(key, value);
+        this.cache.getDecrypted(SERVICE_PID, pid, this::decrypt).getConfigurationProperties().put(key, value);
+    }
+
+    private void givenReturnedArrayElementModified(final String pid, final String key, final String value) {
+        ((String[]) this.cache.get(SERVICE_PID, pid).getConfigurationProperties().get(key))[0] = value;
+    }
+
+    private void givenReturnedPasswordModified(final String pid, final String key, final char value) {
+        final Password[] passwords = (Password[]) this.cache.get(SERVICE_PID, pid).getConfigurationProperties().get(key);
+        passwords[0].getPassword()[0] = value;
+    }
+
+    private void givenInvalidated(final String servicePid) {
+        this.cache.invalidate(servicePid);
+    }
+
+    private void givenAllInvalidated() {
+        this.cache.invalidateAll();
+    }
+
+    private void givenConfigurationRead(final String pid) {
+        whenGetting(pid);
+    }
+
+    private void givenDecryptedConfigurationRead(final String pid) {
+        whenGettingDecrypted(pid);
+    }
+
+    private void givenConfigurationService() {
+        this.configurationService = new ConfigurationServiceImpl();
+        this.configurationAdmin = mock(ConfigurationAdmin.class);
+        this.cryptoService = mock(CryptoService.class);
+        this.configurationService.setConfigurationAdmin(this.configurationAdmin);
+        this.configurationService.setCryptoService(this.cryptoService);
+        this.configurationService.registerComponentConfiguration(PID, SERVICE_PID, null);
+    }
+
+    private void givenPasswordInConfigurationAdmin(final String key, final String encrypted, final String plain)
+            throws Exception {
+        final Dictionary<String, Object> properties = new Hashtable<>();
+        properties.put(key, new Password(encrypted));
+
+        final Configuration configuration = mock(Configuration.class);
+        when(configuration.getProperties()).thenReturn(properties);
+        when(this.configurationAdmin.getConfiguration(SERVICE_PID, "?")).thenReturn(configuration);
+        when(this.cryptoService.decryptAes(encrypted.toCharArray())).thenReturn(plain.toCharArray());
+    }
+
+    private void givenDecryptedConfigurationReadFromService(final String pid) throws Exception {
+        whenGettingDecryptedFromService(pid);
+    }
+
+    private void givenComponentRegisteredAgain() {
+        this.configurationService.unregisterComponentConfiguration(PID);
+        this.configurationService.registerComponentConfiguration(PID, SERVICE_PID, null);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenGetting(final String pid) {
+        this.result = this.cache.get(SERVICE_PID, pid);
+    }
+
+    private void whenGettingDecrypted(final String pid) {
+        this.result = this.cache.getDecrypted(SERVICE_PID, pid, this::decrypt);
+    }
+
+    private void whenGettingDecryptedFromService(final String pid) throws Exception {
+        this.result = this.configurationService.getComponentConfiguration(pid);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenPropertyIs(final String key, final Object expected) {
+        assertNotNull(this.result);
+        assertEquals(expected, this.result.getConfigurationProperties().get(key));
+    }
+
+    private void thenArrayPropertyIs(final String key, final String... expected) {
+        assertNotNull(this.result);
+        assertArrayEquals(expected, (String[]) this.result.getConfigurationProperties().get(key));
+    }
+
+    private void thenPasswordArrayPropertyIs(final String key, final String expected) {
+        assertNotNull(this.result);
+        assertEquals(expected, ((Password[]) this.result.getConfigurationProperties().get(key))[0].toString());
+    }
+
+    private void thenPasswordIs(final String key, final String expected) {
+        assertNotNull(this.result);
+        assertEquals(expected, this.result.getConfigurationProperties().get(key).toString());
+    }
+
+    private void thenResultIsNull() {
+        assertNull(this.result);
+    }
+
+    private void thenHitsAndMissesAre(final long hits, final long misses) {
+        assertEquals(hits, this.cache.getHitCount());
+        assertEquals(misses, this.cache.getMissCount());
+    }
+
+    private void thenHitRateIs(final double expected) {
+        assertEquals(expected, this.cache.getHitRate(), 0.0001);
+    }
+
+    private void thenServiceHitsAndMissesAre(final long hits, final long misses) {
+        assertEquals(hits, this.configurationService.getConfigurationCacheHitCount());
+        assertEquals(misses, this.configurationService.getConfigurationCacheMissCount());
+    }
+
+    private void thenServiceHitRateIs(final double expected) {
+        assertEquals(expected, this.configurationService.getConfigurationCacheHitRate(), 0.0001);
+    }
+
+    private void thenDecryptionsAre(final int expected) {
+        assertEquals(expected, this.decryptions.get());
+    }
+
+    private void thenConfigurationAdminReads(final int expected) throws Exception {
+        verify(this.configurationAdmin, times(expected)).getConfiguration(SERVICE_PID, "?");
+    }
+
+    private void thenCryptoServiceDecryptions(final int expected) throws Exception {
+        verify(this.cryptoService, times(expected)).decryptAes((char[]) any());
+    }
+
+    /*
+     * Utilities
+     */
+
+    private Map<String, Object> decrypt(final Map<String, Object> properties) {
+        this.decryptions.incrementAndGet();
+        properties.replaceAll((key, value) -> "decrypted");
+        return properties;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2016, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2016, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -31,6 +31,7 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -1698,6 +1699,73 @@ public class ConfigurationServiceJunitTest {
         d1.delete();
     }
 
+    @Test
+    public void testEncryptPlainSnapshotsSkipsEncrypted() throws Throwable {
+        // test that snapshots already encrypted are neither decoded nor written again
+
+        final Set<Long> snapshotList = new TreeSet<>();
+        snapshotList.add(223L);
+        snapshotList.add(224L);
+
+        final String dir = "snapshotDirEPSSE";
+        File d1 = new File(dir);
+        d1.mkdirs();
+        d1.deleteOnExit();
+
+        File f1 = new File(dir, "snapshot_223.xml");
+        f1.deleteOnExit();
+        FileWriter fw = new FileWriter(f1);
+        fw.append("QUJDREVGR0g=");
+        fw.close();
+
+        File f2 = new File(dir, "snapshot_224.xml");
+        f2.deleteOnExit();
+        fw = new FileWriter(f2);
+        fw.append(prepareSnapshotXML());
+        fw.close();
+
+        final List<String> unmarshalled = new ArrayList<>();
+
+        ConfigurationServiceImpl cs = new ConfigurationServiceImpl() {
+
+            @Override
+            public Set<Long> getSnapshots() throws KuraException {
+                return snapshotList;
+            }
+
+            @Override
+            String getSnapshotsDirectory() {
+                return dir;
+            }
+
+            @Override
+            protected <T> T unmarshal(String xmlString, Class<T> clazz) throws KuraException {
+                unmarshalled.add(xmlString);
+                return new XmlMarshallUnmarshallImpl().unmarshal(xmlString, clazz);
+            }
+
+            @Override
+            protected String marshal(Object object) throws KuraException {
+                return new XmlMarshallUnmarshallImpl().marshal(object);
+            }
+        };
+
+        CryptoService cryptoServiceMock = mock(CryptoService.class);
+        cs.setCryptoService(cryptoServiceMock);
+        when(cryptoServiceMock.encryptAes((char[]) ArgumentMatchers.any())).thenReturn("encrypted".toCharArray());
+
+        TestUtil.invokePrivate(cs, "encryptPlainSnapshots");
+
+        assertEquals("only the plain snapshot is decoded", 1, unmarshalled.size());
+        verify(cryptoServiceMock, times(1)).encryptAes((char[]) ArgumentMatchers.any());
+        assertEquals("encrypted snapshot untouched", "QUJDREVGR0g=", new String(Files.readAllBytes(f1.toPath())));
+        assertEquals("plain snapshot encrypted", "encrypted", new String(Files.readAllBytes(f2.toPath())));
+
+        f1.delete();
+        f2.delete();
+        d1.delete();
+    }
+
     private String prepareSnapshotXml(final XmlComponentConfigurations configs) throws KuraException {
         XmlMarshallUnmarshallImpl xmlMarshaller = new XmlMarshallUnmarshallImpl();
         return xmlMarshaller.marshal(configs);
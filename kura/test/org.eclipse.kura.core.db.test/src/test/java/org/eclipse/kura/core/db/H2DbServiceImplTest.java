@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -14,7 +14,9 @@ package org.eclipse.kura.core.db;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -23,9 +25,18 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.kura.KuraException;
 import org.eclipse.kura.core.testutil.TestUtil;
@@ -257,4 +268,189 @@ public class H2DbServiceImplTest {
         }
     }
 
+    @Test
+    public void testWithConnectionRunsOnCallerThread() throws Throwable {
+        H2DbServiceImpl svc = createService("jdbc:h2:mem:callerthread", 10);
+
+        final Thread caller = Thread.currentThread();
+        final Thread executing = svc.withConnection(c -> Thread.currentThread());
+
+        assertSame(caller, executing);
+
+        svc.deactivate();
+    }
+
+    @Test
+    public void testWithConnectionNested() throws Throwable {
+        H2DbServiceImpl svc = createService("jdbc:h2:mem:nested", 2);
+
+        final String result = svc.withConnection(c -> svc.withConnection(c2 -> selectUser(c2)));
+
+        assertEquals("USR", result);
+
+        svc.deactivate();
+    }
+
+    @Test
+    public void testWithConnectionLimitsConcurrency() throws Throwable {
+        final int poolSize = 2;
+        final int callers = 6;
+
+        H2DbServiceImpl svc = createService("jdbc:h2:mem:concurrency", poolSize);
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(poolSize);
+
+        final ExecutorService callerExecutor = Executors.newFixedThreadPool(callers);
+        final List<Future<String>> results = new ArrayList<>();
+
+        for (int i = 0; i < callers; i++) {
+            results.add(callerExecutor.submit(() -> svc.withConnection(c -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                started.countDown();
+                try {
+                    started.await();
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return selectUser(c);
+            })));
+        }
+
+        for (Future<String> result : results) {
+            assertEquals("USR", result.get(10, TimeUnit.SECONDS));
+        }
+
+        callerExecutor.shutdown();
+
+        assertEquals(poolSize, maxRunning.get());
+
+        svc.deactivate();
+    }
+
+    @Test
+    public void testWithConnectionFailsIfCallerIsInterrupted() throws Throwable {
+        H2DbServiceImpl svc = createService("jdbc:h2:mem:interrupt", 2);
+
+        final AtomicInteger calls = new AtomicInteger();
+
+        Thread.currentThread().interrupt();
+        try {
+            svc.withConnection(c -> calls.incrementAndGet());
+            fail("SQLException expected");
+        } catch (SQLException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertEquals(0, calls.get());
+        assertEquals("USR", svc.withConnection(H2DbServiceImplTest::selectUser));
+
+        svc.deactivate();
+    }
+
+    @Test
+    public void testWithConnectionWaitingCallerCanBeInterrupted() throws Throwable {
+        H2DbServiceImpl svc = createService("jdbc:h2:mem:interruptwaiting", 1);
+
+        final CountDownLatch holding = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService callerExecutor = Executors.newFixedThreadPool(2);
+
+        final Future<String> holder = callerExecutor.submit(() -> svc.withConnection(c -> {
+            holding.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return selectUser(c);
+        }));
+        assertTrue(holding.await(10, TimeUnit.SECONDS));
+
+        final AtomicBoolean interruptedAfterFailure = new AtomicBoolean();
+        final Future<?> waiter = callerExecutor.submit(() -> {
+            try {
+                svc.withConnection(H2DbServiceImplTest::selectUser);
+            } catch (SQLException e) {
+                interruptedAfterFailure.set(Thread.currentThread().isInterrupted());
+            }
+            return null;
+        });
+
+        Thread.sleep(100);
+        waiter.cancel(true);
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!interruptedAfterFailure.get() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(interruptedAfterFailure.get());
+
+        release.countDown();
+        assertEquals("USR", holder.get(10, TimeUnit.SECONDS));
+        assertEquals("USR", svc.withConnection(H2DbServiceImplTest::selectUser));
+
+        callerExecutor.shutdown();
+        svc.deactivate();
+    }
+
+    @Test
+    public void testWithConnectionRestoresInterruptAfterCallable() throws Throwable {
+        H2DbServiceImpl svc = createService("jdbc:h2:mem:interruptcallable", 2);
+
+        final boolean interruptedInNestedCallable;
+        try {
+            interruptedInNestedCallable = svc.withConnection(c -> {
+                Thread.currentThread().interrupt();
+                return svc.withConnection(c2 -> {
+                    selectUser(c2);
+                    return Thread.currentThread().isInterrupted();
+                });
+            });
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+
+        assertFalse(interruptedInNestedCallable);
+        assertEquals("USR", svc.withConnection(H2DbServiceImplTest::selectUser));
+
+        svc.deactivate();
+    }
+
+    private H2DbServiceImpl createService(String url, int poolSize) throws KuraException {
+        final String enc = "enc";
+        char[] encPass = enc.toCharArray();
+
+        H2DbServiceImpl svc = new H2DbServiceImpl();
+        svc.activate(Collections.emptyMap());
+
+        CryptoService csMock = mock(CryptoService.class);
+        svc.setCryptoService(csMock);
+
+        when(csMock.decryptAes(encPass)).thenReturn("pass".toCharArray());
+
+        Map<String, Object> props = new HashMap<>();
+        props.put("db.user", "USR");
+        props.put("db.password", enc);
+        props.put("db.connection.pool.max.size", poolSize);
+        props.put("db.connector.url", url);
+
+        svc.updated(props);
+
+        return svc;
+    }
+
+    private static String selectUser(Connection conn) throws SQLException {
+        try (PreparedStatement statement = conn.prepareStatement("SELECT USER()");
+                ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
 }
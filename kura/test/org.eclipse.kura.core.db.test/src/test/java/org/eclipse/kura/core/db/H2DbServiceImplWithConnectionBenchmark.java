@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.core.db;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.crypto.CryptoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link H2DbServiceImpl#withConnection(org.eclipse.kura.db.H2DbService.ConnectionCallable)} throughput
+ * with 1, 4 and 16 concurrent callers, running the callables on the caller threads or handing each of them off to a
+ * thread pool as the service used to do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class H2DbServiceImplWithConnectionBenchmark {
+
+    private static final int POOL_SIZE = 10;
+
+    @Param({ "false", "true" })
+    public boolean handoff;
+
+    private H2DbServiceImpl service;
+    private ExecutorService handoffExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws KuraException {
+        final String encryptedPassword = "enc";
+
+        final CryptoService cryptoService = mock(CryptoService.class);
+        when(cryptoService.decryptAes(encryptedPassword.toCharArray())).thenReturn("pass".toCharArray());
+
+        this.service = new H2DbServiceImpl();
+        this.service.activate(Collections.emptyMap());
+        this.service.setCryptoService(cryptoService);
+
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("db.user", "USR");
+        properties.put("db.password", encryptedPassword);
+        properties.put("db.connection.pool.max.size", POOL_SIZE);
+        properties.put("db.connector.url", "jdbc:h2:mem:withconnectionbenchmark");
+        this.service.updated(properties);
+
+        if (this.handoff) {
+            this.handoffExecutor = Executors.newFixedThreadPool(POOL_SIZE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.handoffExecutor != null) {
+            this.handoffExecutor.shutdown();
+        }
+        this.service.deactivate();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String callers01() throws Exception {
+        return withConnection();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String callers04() throws Exception {
+        return withConnection();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String callers16() throws Exception {
+        return withConnection();
+    }
+
+    private String withConnection() throws SQLException, InterruptedException, ExecutionException {
+        if (this.handoff) {
+            return this.handoffExecutor
+                    .submit(() -> this.service.withConnection(H2DbServiceImplWithConnectionBenchmark::selectUser))
+                    .get();
+        }
+        return this.service.withConnection(H2DbServiceImplWithConnectionBenchmark::selectUser);
+    }
+
+    private static String selectUser(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT USER()");
+                ResultSet rs = statement.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.core.deployment.download.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.kura.core.deployment.CloudDeploymentHandlerV2;
+import org.eclipse.kura.core.deployment.download.DeploymentPackageDownloadOptions;
+import org.eclipse.kura.core.deployment.download.DownloadFileUtilities;
+import org.eclipse.kura.core.deployment.download.DownloadTargetFile;
+import org.eclipse.kura.core.deployment.util.HashUtil;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HttpDownloadCountingOutputStreamTest {
+
+    private static final int FILE_SIZE = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = new byte[FILE_SIZE];
+    private HttpFileServer server;
+    private DeploymentPackageDownloadOptions options;
+
+    @After
+    public void cleanUp() throws IOException {
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldDownloadAndVerifyTheFile() throws Exception {
+        givenServer();
+        givenOptions(false, 1);
+        givenHash("MD5");
+
+        whenDownloading();
+
+        thenFileIsDownloaded();
+        thenRangesRequestedAre("");
+    }
+
+    @Test
+    public void shouldDeleteTheFileWithWrongHash() throws Exception {
+        givenServer();
+        givenOptions(false, 1);
+        givenWrongHash();
+
+        whenDownloading();
+
+        thenNoFileIsLeft();
+    }
+
+    @Test
+    public void shouldResumeAnInterruptedDownload() throws Exception {
+        givenServer();
+        givenOptions(true, 1);
+        givenHash("SHA-256");
+        givenNextResponseDroppedAfter(600 * 1024);
+        givenDownloadFailed();
+
+        whenDownloading();
+
+        thenFileIsDownloaded();
+        thenRangesRequestedAre("", "bytes=614400-");
+    }
+
+    @Test
+    public void shouldDiscardThePartialFileWhenResumeIsDisabled() throws Exception {
+        givenServer();
+        givenOptions(false, 1);
+        givenNextResponseDroppedAfter(600 * 1024);
+
+        whenDownloading();
+
+        thenNoFileIsLeft();
+    }
+
+    @Test
+    public void shouldDownloadTheWholeFileWhenRangesAreNotSupported() throws Exception {
+        givenServer();
+        givenRangesNotSupported();
+        givenOptions(true, 4);
+        givenHash("MD5");
+        givenPartialFile(1000);
+
+        whenDownloading();
+
+        thenFileIsDownloaded();
+        thenRangesRequestedAre("bytes=1000-");
+    }
+
+    @Test
+    public void shouldDownloadParallelSegments() throws Exception {
+        givenServer();
+        givenOptions(false, 4);
+        givenHash("MD5");
+
+        whenDownloading();
+
+        thenFileIsDownloaded();
+        thenRangesRequestedAre("", "bytes=262144-524287", "bytes=524288-786431", "bytes=786432-1048575");
+    }
+
+    @Test
+    public void shouldResumeAnInterruptedParallelDownload() throws Exception {
+        givenServer();
+        givenOptions(true, 4);
+        givenHash("MD5");
+        givenNextResponseDroppedAfter(100 * 1024);
+        givenDownloadFailed();
+
+        whenDownloading();
+
+        thenFileIsDownloaded();
+        thenLastRangeRequestedIs("bytes=102400-");
+    }
+
+    @Test
+    public void shouldNotResumeAPartialFileLeftByASegmentedDownload() throws Exception {
+        givenServer();
+        givenOptions(true, 4);
+        givenHash("MD5");
+        givenPartialFileWithHoles(1000);
+        givenSegmentsMarkerFile();
+
+        whenDownloading();
+
+        thenFileIsDownloaded();
+        thenRangesRequestedAre("", "bytes=262144-524287", "bytes=524288-786431", "bytes=786432-1048575");
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenServer() throws IOException {
+        new Random(1).nextBytes(this.content);
+        this.server = new HttpFileServer(this.content);
+    }
+
+    private void givenRangesNotSupported() {
+        this.server.setRangesSupported(false);
+    }
+
+    private void givenOptions(final boolean resume, final int segments) {
+        this.options = new DeploymentPackageDownloadOptions(this.server.getUrl(), "test", "1.0.0");
+        this.options.setJobId(1L);
+        this.options.setDownloadProtocol("HTTP");
+        this.options.setDownloadDirectory(this.folder.getRoot().getAbsolutePath());
+        this.options.setInstall(false);
+        this.options.setResume(resume);
+        this.options.setSegments(segments);
+    }
+
+    private void givenHash(final String algorithm) throws Exception {
+        final String hash = HashUtil.toHexString(MessageDigest.getInstance(algorithm).digest(this.content));
+        this.options.setHash(algorithm + ":" + hash);
+    }
+
+    private void givenWrongHash() {
+        this.options.setHash("MD5:d41d8cd98f00b204e9800998ecf8427e");
+    }
+
+    private void givenNextResponseDroppedAfter(final long bytes) {
+        this.server.dropNextResponseAfter(bytes);
+    }
+
+    private void givenPartialFile(final int length) throws IOException {
+        Files.write(getPartialFile().toPath(), Arrays.copyOf(this.content, length));
+    }
+
+    private void givenPartialFileWithHoles(final int length) throws IOException {
+        Files.write(getPartialFile().toPath(), new byte[length]);
+    }
+
+    private void givenSegmentsMarkerFile() throws IOException {
+        Files.createFile(getSegmentsMarkerFile().toPath());
+    }
+
+    private void givenDownloadFailed() throws Exception {
+        whenDownloading();
+
+        assertFalse(getDpFile().exists());
+        assertTrue(getPartialFile().exists());
+    }
+
+    /*
+     * When
+     */
+
+    private void whenDownloading() throws Exception {
+        new DownloadImpl(this.options, mock(CloudDeploymentHandlerV2.class)).downloadDeploymentPackageInternal();
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenFileIsDownloaded() throws IOException {
+        assertArrayEquals(this.content, Files.readAllBytes(getDpFile().toPath()));
+        assertFalse(getPartialFile().exists());
+        assertFalse(getSegmentsMarkerFile().exists());
+    }
+
+    private void thenNoFileIsLeft() throws IOException {
+        assertFalse(getDpFile().exists());
+        assertFalse(getPartialFile().exists());
+        assertFalse(getSegmentsMarkerFile().exists());
+    }
+
+    private void thenRangesRequestedAre(final String... expected) {
+        final List<String> ranges = this.server.getRanges();
+        ranges.sort(null);
+        assertEquals(Arrays.asList(expected), ranges);
+    }
+
+    private void thenLastRangeRequestedIs(final String expected) {
+        final List<String> ranges = this.server.getRanges();
+        assertEquals(expected, ranges.get(ranges.size() - 1));
+    }
+
+    /*
+     * Utility methods
+     */
+
+    private File getDpFile() throws IOException {
+        return DownloadFileUtilities.getDpDownloadFile(this.options);
+    }
+
+    private File getPartialFile() throws IOException {
+        return DownloadTargetFile.getPartialFile(getDpFile());
+    }
+
+    private File getSegmentsMarkerFile() throws IOException {
+        return DownloadTargetFile.getSegmentsMarkerFile(getDpFile());
+    }
+}
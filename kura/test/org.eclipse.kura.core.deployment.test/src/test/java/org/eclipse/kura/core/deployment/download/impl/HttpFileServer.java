@@ -0,0 +1,154 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.core.deployment.download.impl;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal HTTP server serving a single file to GET requests, with optional support for single Range requests. Each
+ * connection is served by its own thread and closed after the response.
+ */
+public class HttpFileServer implements Closeable {
+
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d+)-(\\d*)");
+
+    private final ServerSocket serverSocket;
+    private final byte[] content;
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<>());
+
+    private volatile boolean rangesSupported = true;
+    private volatile long dropAfter = -1;
+
+    public HttpFileServer(final byte[] content) throws IOException {
+        this.content = content;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+
+        final Thread acceptThread = new Thread(this::accept, "HttpFileServer");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + this.serverSocket.getLocalPort() + "/file.dp";
+    }
+
+    public void setRangesSupported(final boolean rangesSupported) {
+        this.rangesSupported = rangesSupported;
+    }
+
+    /**
+     * Closes the connection of the next response after the provided number of body bytes has been sent.
+     */
+    public void dropNextResponseAfter(final long bytes) {
+        this.dropAfter = bytes;
+    }
+
+    /**
+     * @return the value of the Range header of each request received, or an empty string if not present
+     */
+    public List<String> getRanges() {
+        return new ArrayList<>(this.ranges);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                final Socket socket = this.serverSocket.accept();
+                final Thread thread = new Thread(() -> serve(socket), "HttpFileServer connection");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // server closed
+            }
+        }
+    }
+
+    private void serve(final Socket socket) {
+        try (Socket s = socket) {
+            final BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+
+            reader.readLine();
+            String range = "";
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                if (line.toLowerCase().startsWith("range:")) {
+                    range = line.substring(6).trim();
+                }
+            }
+            this.ranges.add(range);
+
+            final long drop;
+            synchronized (this) {
+                drop = this.dropAfter;
+                this.dropAfter = -1;
+            }
+
+            respond(s.getOutputStream(), range, drop);
+        } catch (IOException e) {
+            // connection closed
+        }
+    }
+
+    private void respond(final OutputStream out, final String range, final long drop) throws IOException {
+        int start = 0;
+        int end = this.content.length;
+        final StringBuilder headers = new StringBuilder();
+
+        final Matcher matcher = RANGE_PATTERN.matcher(range);
+        if (this.rangesSupported && matcher.matches()) {
+            start = Integer.parseInt(matcher.group(1));
+            if (!matcher.group(2).isEmpty()) {
+                end = Math.min(end, Integer.parseInt(matcher.group(2)) + 1);
+            }
+            if (start >= this.content.length) {
+                out.write(("HTTP/1.1 416 Range Not Satisfiable\r\nContent-Range: bytes */" + this.content.length
+                        + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                return;
+            }
+            headers.append("HTTP/1.1 206 Partial Content\r\n");
+            headers.append("Content-Range: bytes " + start + "-" + (end - 1) + "/" + this.content.length + "\r\n");
+        } else {
+            headers.append("HTTP/1.1 200 OK\r\n");
+        }
+
+        if (this.rangesSupported) {
+            headers.append("Accept-Ranges: bytes\r\n");
+        }
+        headers.append("Content-Length: " + (end - start) + "\r\n");
+        headers.append("Connection: close\r\n\r\n");
+        out.write(headers.toString().getBytes(StandardCharsets.US_ASCII));
+
+        final int length = drop >= 0 ? (int) Math.min(drop, end - start) : end - start;
+        out.write(this.content, start, length);
+        out.flush();
+    }
+}
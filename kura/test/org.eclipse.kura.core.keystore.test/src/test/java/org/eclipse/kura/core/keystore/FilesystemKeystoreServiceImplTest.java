@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2021, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2021, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -35,6 +35,7 @@ import java.security.KeyPairGenerator;
 import java.security.KeyStore;
 import java.security.KeyStore.Entry;
 import java.security.KeyStore.PrivateKeyEntry;
+import java.security.KeyStore.TrustedCertificateEntry;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
@@ -1126,6 +1127,134 @@ public class FilesystemKeystoreServiceImplTest {
                 AdditionalMatchers.aryEq("foo".toCharArray()));
     }
 
+    @Test
+    public void testKeystoreIsCachedIfFileNotModified() throws KuraException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(KEY_KEYSTORE_PATH, STORE_PATH);
+        properties.put(KEY_KEYSTORE_PASSWORD, STORE_PASS);
+
+        CryptoService cryptoService = mock(CryptoService.class);
+        ComponentContext componentContext = mock(ComponentContext.class);
+        EventAdmin eventAdmin = Mockito.mock(EventAdmin.class);
+
+        FilesystemKeystoreServiceImpl keystoreService = new FilesystemKeystoreServiceImpl();
+        keystoreService.setEventAdmin(eventAdmin);
+        keystoreService.setCryptoService(cryptoService);
+        keystoreService.activate(componentContext, properties);
+
+        KeystoreInstance keystore = keystoreService.loadKeystore();
+
+        assertTrue(keystore == keystoreService.loadKeystore());
+        Mockito.verify(eventAdmin, Mockito.times(0)).postEvent(Mockito.any());
+    }
+
+    @Test
+    public void testGetKeyStoreReturnsACopy() throws GeneralSecurityException, KuraException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(KEY_KEYSTORE_PATH, STORE_PATH);
+        properties.put(KEY_KEYSTORE_PASSWORD, STORE_PASS);
+
+        CryptoService cryptoService = mock(CryptoService.class);
+        ComponentContext componentContext = mock(ComponentContext.class);
+
+        FilesystemKeystoreServiceImpl keystoreService = new FilesystemKeystoreServiceImpl();
+        keystoreService.setEventAdmin(mock(EventAdmin.class));
+        keystoreService.setCryptoService(cryptoService);
+        keystoreService.activate(componentContext, properties);
+
+        KeyStore keystore = keystoreService.getKeyStore();
+        keystore.deleteEntry(DEFAULT_KEY_ALIAS);
+
+        assertTrue(keystore != keystoreService.loadKeystore().getKeystore());
+        assertEquals(Collections.singletonList(DEFAULT_KEY_ALIAS), keystoreService.getAliases());
+        assertEquals(1, keystoreService.getKeyStore().size());
+    }
+
+    @Test
+    public void testKeystoreIsReloadedIfFileModified() throws GeneralSecurityException, IOException, KuraException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(KEY_KEYSTORE_PATH, STORE_PATH);
+        properties.put(KEY_KEYSTORE_PASSWORD, STORE_PASS);
+
+        CryptoService cryptoService = mock(CryptoService.class);
+        ComponentContext componentContext = mock(ComponentContext.class);
+        EventAdmin eventAdmin = Mockito.mock(EventAdmin.class);
+
+        FilesystemKeystoreServiceImpl keystoreService = new FilesystemKeystoreServiceImpl();
+        keystoreService.setEventAdmin(eventAdmin);
+        keystoreService.setCryptoService(cryptoService);
+        keystoreService.activate(componentContext, properties);
+
+        assertEquals(Collections.singletonList(DEFAULT_KEY_ALIAS), keystoreService.getAliases());
+
+        createEmptyKeystore(STORE_PATH, STORE_PASS);
+
+        assertTrue(keystoreService.getAliases().isEmpty());
+        Mockito.verify(eventAdmin, Mockito.times(1)).postEvent(Mockito.any());
+    }
+
+    @Test
+    public void testSetEntryDoesNotModifyCachedKeystore()
+            throws GeneralSecurityException, IOException, KuraException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(KEY_KEYSTORE_PATH, STORE_PATH);
+        properties.put(KEY_KEYSTORE_PASSWORD, STORE_PASS);
+
+        CryptoService cryptoService = mock(CryptoService.class);
+        when(cryptoService.decryptAes(STORE_PASS.toCharArray())).thenReturn(STORE_PASS.toCharArray());
+        when(cryptoService.getKeyStorePassword(STORE_PATH)).thenReturn(STORE_PASS.toCharArray());
+        ComponentContext componentContext = mock(ComponentContext.class);
+        EventAdmin eventAdmin = Mockito.mock(EventAdmin.class);
+
+        FilesystemKeystoreServiceImpl keystoreService = new FilesystemKeystoreServiceImpl();
+        keystoreService.setEventAdmin(eventAdmin);
+        keystoreService.setCryptoService(cryptoService);
+        keystoreService.activate(componentContext, properties);
+
+        KeyStore keystore = keystoreService.getKeyStore();
+
+        InputStream is = new FileInputStream(CERT_FILE_PATH);
+        Certificate certificate = CertificateFactory.getInstance("X.509").generateCertificate(is);
+        is.close();
+
+        keystoreService.setEntry(DEFAULT_KEY_ALIAS + "1", new TrustedCertificateEntry(certificate));
+
+        assertEquals(1, keystore.size());
+        assertEquals(2, keystoreService.getKeyStore().size());
+        assertNotNull(keystoreService.getEntry(DEFAULT_KEY_ALIAS + "1"));
+        Mockito.verify(eventAdmin, Mockito.times(1)).postEvent(Mockito.any());
+
+        final KeyStore stored = KeyStore.getInstance(KeyStore.getDefaultType());
+        try (final FileInputStream in = new FileInputStream(STORE_PATH)) {
+            stored.load(in, STORE_PASS.toCharArray());
+        }
+        assertEquals(2, stored.size());
+    }
+
+    @Test
+    public void testKeystoreIsReloadedAfterPathChange() throws GeneralSecurityException, IOException, KuraException {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(KEY_KEYSTORE_PATH, STORE_PATH);
+        properties.put(KEY_KEYSTORE_PASSWORD, STORE_PASS);
+
+        CryptoService cryptoService = mock(CryptoService.class);
+        when(cryptoService.decryptAes((char[]) ArgumentMatchers.any())).thenAnswer(i -> i.getArgument(0, char[].class));
+        ComponentContext componentContext = mock(ComponentContext.class);
+
+        FilesystemKeystoreServiceImpl keystoreService = new FilesystemKeystoreServiceImpl();
+        keystoreService.setEventAdmin(mock(EventAdmin.class));
+        keystoreService.setCryptoService(cryptoService);
+        keystoreService.activate(componentContext, properties);
+
+        assertEquals(Collections.singletonList(DEFAULT_KEY_ALIAS), keystoreService.getAliases());
+
+        createEmptyKeystore(NEW_STORE_PATH, STORE_PASS);
+        properties.put(KEY_KEYSTORE_PATH, NEW_STORE_PATH);
+        keystoreService.updated(properties);
+
+        assertTrue(keystoreService.getAliases().isEmpty());
+    }
+
     private void assertKeystoreIsLoadable(final String path, final String password)
             throws NoSuchAlgorithmException, CertificateException, IOException, KeyStoreException {
         final KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
@@ -13,17 +13,23 @@
 package org.eclipse.kura.core.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -40,6 +46,7 @@ import org.eclipse.kura.status.CloudConnectionStatusService;
 import org.eclipse.kura.watchdog.WatchdogService;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.component.ComponentContext;
 
@@ -81,15 +88,10 @@ public class DataServiceImplTest {
 
         verify(storeMock, times(1)).start(dbServiceMock, hkInterval, age, capacity);
 
-        Map<DataTransportToken, Integer> ifMsgs = (Map<DataTransportToken, Integer>) TestUtil.getFieldValue(svc,
-                "inFlightMsgIds");
+        InFlightTracker inFlightTracker = (InFlightTracker) TestUtil.getFieldValue(svc, "inFlightTracker");
 
-        assertEquals(1, ifMsgs.size());
-        ifMsgs.forEach((key, value) -> {
-            assertEquals(id, (int) value);
-            assertEquals(pmi, key.getMessageId());
-            assertEquals(sessionId, key.getSessionId());
-        });
+        assertEquals(1, inFlightTracker.size());
+        assertEquals(Optional.of(id), inFlightTracker.getMessageId(new DataTransportToken(pmi, sessionId)));
     }
 
     @Test
@@ -138,14 +140,14 @@ public class DataServiceImplTest {
 
         TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = mock(Map.class);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        InFlightTracker inFlightTracker = mock(InFlightTracker.class);
+        TestUtil.setFieldValue(svc, "inFlightTracker", inFlightTracker);
 
         svc.onConnectionEstablished(true);
 
         verify(ccssMock, times(1)).updateStatus(svc, CloudConnectionStatusEnum.ON);
         verify(storeMock, times(1)).dropAllInFlightMessages();
-        verify(inFlightMsgIds, times(1)).clear();
+        verify(inFlightTracker, times(1)).clear();
     }
 
     @Test
@@ -172,14 +174,14 @@ public class DataServiceImplTest {
 
         TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = mock(Map.class);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        InFlightTracker inFlightTracker = mock(InFlightTracker.class);
+        TestUtil.setFieldValue(svc, "inFlightTracker", inFlightTracker);
 
         svc.onConnectionEstablished(true);
 
         verify(ccssMock, times(1)).updateStatus(svc, CloudConnectionStatusEnum.ON);
         verify(storeMock, times(1)).dropAllInFlightMessages();
-        verify(inFlightMsgIds, times(0)).clear();
+        verify(inFlightTracker, times(0)).clear();
     }
 
     @Test
@@ -204,14 +206,14 @@ public class DataServiceImplTest {
 
         TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = mock(Map.class);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        InFlightTracker inFlightTracker = mock(InFlightTracker.class);
+        TestUtil.setFieldValue(svc, "inFlightTracker", inFlightTracker);
 
         svc.onConnectionEstablished(true);
 
         verify(ccssMock, times(1)).updateStatus(svc, CloudConnectionStatusEnum.ON);
         verify(storeMock, times(1)).unpublishAllInFlighMessages();
-        verify(inFlightMsgIds, times(1)).clear();
+        verify(inFlightTracker, times(1)).clear();
     }
 
     @Test
@@ -238,14 +240,14 @@ public class DataServiceImplTest {
 
         TestUtil.setFieldValue(svc, "dataServiceOptions", dataServiceOptions);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = mock(Map.class);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        InFlightTracker inFlightTracker = mock(InFlightTracker.class);
+        TestUtil.setFieldValue(svc, "inFlightTracker", inFlightTracker);
 
         svc.onConnectionEstablished(true);
 
         verify(ccssMock, times(1)).updateStatus(svc, CloudConnectionStatusEnum.ON);
         verify(storeMock, times(1)).unpublishAllInFlighMessages();
-        verify(inFlightMsgIds, times(0)).clear();
+        verify(inFlightTracker, times(0)).clear();
     }
 
     @Test
@@ -399,8 +401,8 @@ public class DataServiceImplTest {
         String sessionId = "sess1234";
         DataTransportToken token = new DataTransportToken(msgId, sessionId);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = new HashMap<>();
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        InFlightTracker inFlightTracker = new InFlightTracker();
+        TestUtil.setFieldValue(svc, "inFlightTracker", inFlightTracker);
 
         Map<String, Object> properties = new HashMap<>();
         properties.put("in-flight-messages.max-number", 0);
@@ -421,14 +423,15 @@ public class DataServiceImplTest {
         String sessionId = "sess1234";
         DataTransportToken token = new DataTransportToken(msgId, sessionId);
 
-        Map<DataTransportToken, Integer> inFlightMsgIds = new HashMap<>();
-        inFlightMsgIds.put(token, msgId);
-        TestUtil.setFieldValue(svc, "inFlightMsgIds", inFlightMsgIds);
+        InFlightTracker inFlightTracker = new InFlightTracker();
+        inFlightTracker.track(token, msgId, "topic");
+        TestUtil.setFieldValue(svc, "inFlightTracker", inFlightTracker);
+        TestUtil.setFieldValue(svc, "confirmationExecutor", Executors.newSingleThreadExecutor());
 
         DataStore storeMock = mock(DataStore.class);
         TestUtil.setFieldValue(svc, "store", storeMock);
 
-        doThrow(new KuraStoreException("test")).when(storeMock).confirmed(msgId);
+        doThrow(new KuraStoreException("test")).when(storeMock).confirmed(Collections.singletonList(msgId));
 
         Map<String, Object> properties = new HashMap<>();
         properties.put("in-flight-messages.max-number", 0);
@@ -438,7 +441,82 @@ public class DataServiceImplTest {
 
         svc.onMessageConfirmed(token);
 
-        verify(storeMock, times(1)).confirmed(msgId);
+        verify(storeMock, timeout(5000).times(1)).confirmed(Collections.singletonList(msgId));
+        assertEquals(0, inFlightTracker.size());
+    }
+
+    @Test
+    public void testMessageConfirmedAfterPublishedMarkIsStored() throws Throwable {
+        DataServiceImpl svc = new DataServiceImpl();
+
+        int msgId = 1234;
+        DataTransportToken token = new DataTransportToken(5678, "sess1234");
+
+        InFlightTracker inFlightTracker = new InFlightTracker();
+        TestUtil.setFieldValue(svc, "inFlightTracker", inFlightTracker);
+        TestUtil.setFieldValue(svc, "confirmationExecutor", Executors.newSingleThreadExecutor());
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", mock(DataServiceListenerS.class));
+
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        when(dtsMock.publish("topic", new byte[0], 1, false)).thenReturn(token);
+        TestUtil.setFieldValue(svc, "dataTransportService", dtsMock);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("in-flight-messages.max-number", 9);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", new DataServiceOptions(properties));
+
+        DataMessage message = new DataMessage.Builder(msgId).withTopic("topic").withPayload(new byte[0]).withQos(1)
+                .withRetain(false).build();
+        TestUtil.invokePrivate(svc, "publishInternal", message);
+
+        svc.onMessageConfirmed(token);
+
+        verify(storeMock, timeout(5000).times(1)).confirmed(Collections.singletonList(msgId));
+
+        InOrder inOrder = inOrder(storeMock);
+        inOrder.verify(storeMock).published(anyList());
+        inOrder.verify(storeMock).confirmed(Collections.singletonList(msgId));
+    }
+
+    @Test
+    public void testMessageConfirmedBeforeTracked() throws Throwable {
+        DataServiceImpl svc = new DataServiceImpl();
+
+        int msgId = 1234;
+        DataTransportToken token = new DataTransportToken(5678, "sess1234");
+
+        InFlightTracker inFlightTracker = new InFlightTracker();
+        TestUtil.setFieldValue(svc, "inFlightTracker", inFlightTracker);
+        TestUtil.setFieldValue(svc, "confirmationExecutor", Executors.newSingleThreadExecutor());
+
+        DataStore storeMock = mock(DataStore.class);
+        TestUtil.setFieldValue(svc, "store", storeMock);
+
+        DataServiceListenerS listenersMock = mock(DataServiceListenerS.class);
+        TestUtil.setFieldValue(svc, "dataServiceListeners", listenersMock);
+
+        // the confirmation is received by the transport before publish returns the token
+        DataTransportService dtsMock = mock(DataTransportService.class);
+        when(dtsMock.publish("topic", new byte[0], 1, false)).thenAnswer(invocation -> {
+            svc.onMessageConfirmed(token);
+            return token;
+        });
+        TestUtil.setFieldValue(svc, "dataTransportService", dtsMock);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("in-flight-messages.max-number", 9);
+        TestUtil.setFieldValue(svc, "dataServiceOptions", new DataServiceOptions(properties));
+
+        DataMessage message = new DataMessage.Builder(msgId).withTopic("topic").withPayload(new byte[0]).withQos(1)
+                .withRetain(false).build();
+        TestUtil.invokePrivate(svc, "publishInternal", message);
+
+        verify(storeMock, timeout(5000).times(1)).confirmed(Collections.singletonList(msgId));
+        verify(listenersMock, timeout(5000).times(1)).onMessageConfirmed(msgId, "topic");
+        assertTrue(inFlightTracker.isEmpty());
     }
 
     @Test
@@ -0,0 +1,306 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.core.data.InFlightTracker.InFlightMessage;
+import org.eclipse.kura.core.data.InFlightTracker.TrackResult;
+import org.eclipse.kura.data.DataTransportToken;
+import org.junit.Test;
+
+public class InFlightTrackerTest {
+
+    private final InFlightTracker tracker = new InFlightTracker();
+    private Optional<InFlightMessage> confirmed;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldTrackAndConfirmMessage() {
+        givenTracked(1, "session", 10, "topic");
+
+        whenConfirmed(1, "session");
+
+        thenConfirmedMessageIs(10, "topic");
+        thenSizeIs(0);
+        thenConfirmedCountIs(1);
+    }
+
+    @Test
+    public void shouldDistinguishSessions() {
+        givenTracked(1, "session1", 10, "topic");
+        givenTracked(1, "session2", 11, "topic");
+
+        whenConfirmed(1, "session2");
+
+        thenConfirmedMessageIs(11, "topic");
+        thenSizeIs(1);
+    }
+
+    @Test
+    public void shouldIgnoreUnknownToken() {
+        givenTracked(1, "session", 10, "topic");
+
+        whenConfirmed(2, "session");
+
+        thenNoMessageConfirmed();
+        thenSizeIs(1);
+    }
+
+    @Test
+    public void shouldMatchConfirmationReceivedBeforeTracking() {
+        whenConfirmed(1, "session");
+
+        thenNoMessageConfirmed();
+        thenTrackingReturns(1, "session", 10, TrackResult.CONFIRMED);
+        thenSizeIs(0);
+        thenConfirmedCountIs(1);
+        thenTrackingReturns(1, "session", 11, TrackResult.TRACKED);
+        thenSizeIs(1);
+    }
+
+    @Test
+    public void shouldNotMatchConfirmationReceivedBeforePublishing() {
+        givenConfirmed(1, "session");
+        givenPublishing();
+
+        thenTrackingReturns(1, "session", 10, TrackResult.TRACKED);
+        thenSizeIs(1);
+        thenParkedConfirmationsAre(0);
+        thenDiscardedConfirmationsCountIs(1);
+    }
+
+    @Test
+    public void shouldMatchConfirmationReceivedWhilePublishing() {
+        givenPublishing();
+
+        whenConfirmed(1, "session");
+
+        thenNoMessageConfirmed();
+        thenTrackingReturns(1, "session", 10, TrackResult.CONFIRMED);
+        thenParkedConfirmationsAre(0);
+    }
+
+    @Test
+    public void shouldBoundParkedConfirmations() {
+        for (int i = 0; i < InFlightTracker.MAX_PARKED_CONFIRMATIONS * 2; i++) {
+            givenConfirmed(i, "session");
+        }
+
+        thenParkedConfirmationsAre(InFlightTracker.MAX_PARKED_CONFIRMATIONS);
+        thenDiscardedConfirmationsCountIs(InFlightTracker.MAX_PARKED_CONFIRMATIONS);
+    }
+
+    @Test
+    public void shouldDiscardStaleParkedConfirmationsWhenBoundIsReached() {
+        for (int i = 0; i < InFlightTracker.MAX_PARKED_CONFIRMATIONS; i++) {
+            givenConfirmed(i, "session");
+        }
+        givenPublishing();
+
+        whenConfirmed(1000, "session");
+
+        thenParkedConfirmationsAre(1);
+        thenDiscardedConfirmationsCountIs(InFlightTracker.MAX_PARKED_CONFIRMATIONS);
+        thenTrackingReturns(1000, "session", 10, TrackResult.CONFIRMED);
+    }
+
+    @Test
+    public void shouldNotCountParkedConfirmations() {
+        givenTracked(1, "session", 10, "topic");
+
+        whenConfirmed(2, "session");
+        whenConfirmed(2, "session");
+        whenCleared();
+
+        thenSizeIs(0);
+        thenTrackingReturns(2, "session", 11, TrackResult.TRACKED);
+        thenSizeIs(1);
+    }
+
+    @Test
+    public void shouldCountDuplicateTokenOnce() {
+        givenTracked(1, "session", 10, "topic");
+
+        thenTrackingReturns(1, "session", 11, TrackResult.DUPLICATE);
+        thenSizeIs(1);
+        thenDuplicateTokensCountIs(1);
+    }
+
+    @Test
+    public void shouldReportLimitReached() {
+        givenTracked(1, "session", 10, "topic");
+        givenTracked(2, "session", 11, "topic");
+
+        thenLimitReached(2, true);
+        thenLimitReached(3, false);
+        thenLimitReachedCountIs(1);
+    }
+
+    @Test
+    public void shouldNotRecordLatencyOfRestoredMessages() {
+        givenRestored(1, "session", 10, "topic");
+
+        whenConfirmed(1, "session");
+
+        thenConfirmedMessageIs(10, "topic");
+        thenConfirmedCountIs(0);
+    }
+
+    @Test
+    public void shouldClear() {
+        givenTracked(1, "session", 10, "topic");
+        givenTracked(2, "session", 11, "topic");
+
+        whenCleared();
+
+        thenSizeIs(0);
+        assertTrue(this.tracker.isEmpty());
+    }
+
+    @Test
+    public void shouldKeepCountConsistentUnderConcurrentConfirmations() throws Exception {
+        for (int i = 0; i < 10000; i++) {
+            givenTracked(i, "session", i, "topic");
+        }
+
+        whenConfirmingConcurrently(4, 10000);
+
+        thenSizeIs(0);
+        thenConfirmedCountIs(10000);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenTracked(int mqttMessageId, String sessionId, int messageId, String topic) {
+        assertEquals(TrackResult.TRACKED,
+                this.tracker.track(new DataTransportToken(mqttMessageId, sessionId), messageId, topic));
+    }
+
+    private void givenConfirmed(int mqttMessageId, String sessionId) {
+        whenConfirmed(mqttMessageId, sessionId);
+    }
+
+    private void givenPublishing() {
+        this.tracker.beginPublish();
+    }
+
+    private void givenRestored(int mqttMessageId, String sessionId, int messageId, String topic) {
+        this.tracker.restore(new DataTransportToken(mqttMessageId, sessionId), messageId, topic);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenConfirmed(int mqttMessageId, String sessionId) {
+        this.confirmed = this.tracker.confirm(new DataTransportToken(mqttMessageId, sessionId));
+    }
+
+    private void whenCleared() {
+        this.tracker.clear();
+    }
+
+    private void whenConfirmingConcurrently(int threads, int messages) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = offset; i < messages; i += threads) {
+                    this.tracker.confirm(new DataTransportToken(i, "session"));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        try {
+            for (final Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenConfirmedMessageIs(int messageId, String topic) {
+        assertTrue(this.confirmed.isPresent());
+        assertEquals(messageId, this.confirmed.get().getMessageId());
+        assertEquals(topic, this.confirmed.get().getTopic());
+    }
+
+    private void thenNoMessageConfirmed() {
+        assertFalse(this.confirmed.isPresent());
+    }
+
+    private void thenSizeIs(int expected) {
+        assertEquals(expected, this.tracker.size());
+        assertEquals(expected, this.tracker.getMetrics().getInFlight());
+    }
+
+    private void thenConfirmedCountIs(long expected) {
+        assertEquals(expected, this.tracker.getMetrics().getConfirmed());
+    }
+
+    private void thenTrackingReturns(int mqttMessageId, String sessionId, int messageId, TrackResult expected) {
+        assertEquals(expected, this.tracker.track(new DataTransportToken(mqttMessageId, sessionId), messageId, "t"));
+    }
+
+    private void thenDuplicateTokensCountIs(long expected) {
+        assertEquals(expected, this.tracker.getMetrics().getDuplicateTokens());
+    }
+
+    private void thenLimitReached(int limit, boolean expected) {
+        assertEquals(expected, this.tracker.isLimitReached(limit));
+    }
+
+    private void thenLimitReachedCountIs(long expected) {
+        assertEquals(expected, this.tracker.getMetrics().getLimitReached());
+    }
+
+    private void thenParkedConfirmationsAre(int expected) {
+        assertEquals(expected, this.tracker.getParkedConfirmations());
+    }
+
+    private void thenDiscardedConfirmationsCountIs(long expected) {
+        assertEquals(expected, this.tracker.getMetrics().getDiscardedConfirmations());
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.db.H2DbService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link DbDataStore#store(String, byte[], int, boolean, int)} throughput of the per-message commit with
+ * the group commit mode, on a file backed database so that the cost of the commits is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class DbDataStoreGroupCommitBenchmark {
+
+    private static final String TOPIC = "TEST-TOPIC";
+    private static final String TABLE_NAME = "group-commit-benchmark";
+    private static final int PRIORITY_LOW = 5;
+
+    private final byte[] payload = new byte[] { 1, 2, 3, 4 };
+
+    @Param({ "false", "true" })
+    public boolean groupCommit;
+
+    @Param({ "100" })
+    public int maxBatchSize;
+
+    @Param({ "2" })
+    public long maxLinger;
+
+    private File dbDirectory;
+    private DbDataStore dataStore;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, KuraStoreException {
+        this.dbDirectory = Files.createTempDirectory("groupcommit").toFile();
+
+        this.dataStore = new DbDataStore(TABLE_NAME);
+        this.dataStore.setGroupCommit(this.groupCommit, this.maxBatchSize, this.maxLinger);
+        this.dataStore.start(new FileH2DbService("jdbc:h2:file:" + this.dbDirectory.getAbsolutePath() + "/kuradb"),
+                10000, 10000, Integer.MAX_VALUE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.dataStore.stop();
+
+        final File[] files = this.dbDirectory.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                file.delete();
+            }
+        }
+        this.dbDirectory.delete();
+    }
+
+    @Benchmark
+    public DataMessage store() throws KuraStoreException {
+        return this.dataStore.store(TOPIC, this.payload, 1, false, PRIORITY_LOW);
+    }
+
+    private static final class FileH2DbService implements H2DbService {
+
+        private final String url;
+
+        FileH2DbService(final String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection result = DriverManager.getConnection(this.url, "sa", "");
+            result.setAutoCommit(false);
+            return result;
+        }
+
+        @Override
+        public void close(Connection conn) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void rollback(Connection conn) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void close(ResultSet... rss) {
+            // ignore
+        }
+
+        @Override
+        public void close(Statement... stmts) {
+            // ignore
+        }
+
+        @Override
+        public <T> T withConnection(ConnectionCallable<T> task) throws SQLException {
+            final Connection c = getConnection();
+            try {
+                return task.call(c);
+            } catch (SQLException e) {
+                rollback(c);
+                throw e;
+            } finally {
+                close(c);
+            }
+        }
+
+    }
+}
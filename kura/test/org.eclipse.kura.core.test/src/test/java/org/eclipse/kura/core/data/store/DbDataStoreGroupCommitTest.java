@@ -0,0 +1,405 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraStoreCapacityReachedException;
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.db.H2DbService;
+import org.junit.After;
+import org.junit.Test;
+
+public class DbDataStoreGroupCommitTest {
+
+    private static final String TOPIC = "TEST-TOPIC";
+    private static final String TABLE_NAME = "group-commit-table";
+    private static final int PRIORITY_HIGH = 0;
+    private static final int PRIORITY_LOW = 5;
+
+    private final byte[] payload = new byte[] { 1, 2, 3, 4 };
+
+    private Connection connection;
+    private DbDataStore dataStore;
+    private final List<DataMessage> storedMessages = Collections.synchronizedList(new ArrayList<>());
+    private final List<Exception> occurredExceptions = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch writerEntered = new CountDownLatch(1);
+    private final CountDownLatch writerReleased = new CountDownLatch(1);
+    private GroupCommitter groupCommitter;
+    private GroupCommitter.PendingMessage pendingMessage;
+    private CompletableFuture<Void> stopFuture;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldStoreConcurrentMessagesWithDistinctIds() {
+        givenDbDataStore(10000, true, 50, 5);
+
+        whenStoringConcurrently(8, 100, PRIORITY_LOW);
+
+        thenNoExceptionsOccurred();
+        thenStoredMessageCountIs(800);
+        thenStoredMessagesHaveDistinctIds();
+        thenStoredMessagesCanBeLoaded();
+    }
+
+    @Test
+    public void shouldStoreSingleMessageWithGroupCommit() {
+        givenDbDataStore(10000, true, 50, 5);
+
+        whenStoringConcurrently(1, 1, PRIORITY_LOW);
+
+        thenNoExceptionsOccurred();
+        thenStoredMessageCountIs(1);
+        thenStoredMessagesCanBeLoaded();
+    }
+
+    @Test
+    public void shouldEnforceCapacityWithGroupCommit() {
+        givenDbDataStore(10, true, 100, 20);
+
+        whenStoringConcurrently(4, 5, PRIORITY_LOW);
+
+        thenStoredMessageCountIs(10);
+        thenCapacityExceptionsCountIs(10);
+    }
+
+    @Test
+    public void shouldStoreHighPriorityMessagesWhenCapacityExceededWithGroupCommit() {
+        givenDbDataStore(0, true, 100, 20);
+
+        whenStoringConcurrently(4, 5, PRIORITY_HIGH);
+
+        thenNoExceptionsOccurred();
+        thenStoredMessageCountIs(20);
+    }
+
+    @Test
+    public void shouldSwitchGroupCommitAtRuntime() {
+        givenDbDataStore(10000, false, 1, 0);
+
+        whenStoringConcurrently(2, 10, PRIORITY_LOW);
+        whenGroupCommitIs(true, 10, 1);
+        whenStoringConcurrently(2, 10, PRIORITY_LOW);
+        whenGroupCommitIs(false, 10, 1);
+        whenStoringConcurrently(2, 10, PRIORITY_LOW);
+
+        thenNoExceptionsOccurred();
+        thenStoredMessageCountIs(60);
+        thenStoredMessagesHaveDistinctIds();
+    }
+
+    @Test
+    public void shouldFailPendingMessagesAfterStop() {
+        givenDbDataStore(10000, true, 10, 1);
+
+        whenStopped();
+        whenStoringConcurrently(1, 1, PRIORITY_LOW);
+
+        thenStoredMessageCountIs(0);
+        thenExceptionsCountIs(1);
+    }
+
+    @Test
+    public void shouldWriteBatchInProgressOnStop() throws Exception {
+        givenBlockingGroupCommitter();
+        givenMessageSubmitted();
+        givenWriterIsBlocked();
+
+        whenStoppingAsynchronously();
+        whenWriterIsReleased();
+
+        thenSubmittedMessageIsStored();
+        thenGroupCommitterStops();
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenDbDataStore(int capacity, boolean groupCommit, int maxBatchSize, long maxLinger) {
+        givenDataStore("jdbc:h2:mem:groupcommitdb;DB_CLOSE_DELAY=-1", capacity, groupCommit, maxBatchSize,
+                maxLinger);
+    }
+
+    private void givenDataStore(String url, int capacity, boolean groupCommit, int maxBatchSize, long maxLinger) {
+        try {
+            Class.forName("org.h2.Driver");
+            this.connection = DriverManager.getConnection(url, "sa", "");
+            this.connection.setAutoCommit(false);
+        } catch (SQLException | ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.dataStore = new DbDataStore(TABLE_NAME);
+        this.dataStore.setGroupCommit(groupCommit, maxBatchSize, maxLinger);
+        try {
+            this.dataStore.start(new MockH2DbService(url), 10000, 10000, capacity);
+        } catch (KuraStoreException e) {
+            throw new IllegalStateException(e);
+        }
+        this.storedMessages.clear();
+        this.occurredExceptions.clear();
+    }
+
+    private void givenBlockingGroupCommitter() {
+        this.groupCommitter = new GroupCommitter("test", batch -> {
+            this.writerEntered.countDown();
+            boolean interrupted = false;
+            try {
+                this.writerReleased.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                interrupted = true;
+            }
+            for (final GroupCommitter.PendingMessage message : batch) {
+                if (interrupted) {
+                    message.fail(new KuraStoreException("Interrupted"));
+                } else {
+                    message.complete(1);
+                }
+            }
+        }, 10, 0);
+    }
+
+    private void givenMessageSubmitted() throws KuraStoreException {
+        this.pendingMessage = this.groupCommitter.submit(TOPIC, this.payload, 1, false, PRIORITY_LOW);
+    }
+
+    private void givenWriterIsBlocked() throws InterruptedException {
+        assertTrue(this.writerEntered.await(10, TimeUnit.SECONDS));
+    }
+
+    /*
+     * When
+     */
+
+    private void whenStoppingAsynchronously() throws InterruptedException {
+        this.stopFuture = CompletableFuture.runAsync(this.groupCommitter::stop);
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (this.groupCommitter.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private void whenWriterIsReleased() {
+        this.writerReleased.countDown();
+    }
+
+    private void whenGroupCommitIs(boolean enabled, int maxBatchSize, long maxLinger) {
+        this.dataStore.setGroupCommit(enabled, maxBatchSize, maxLinger);
+    }
+
+    private void whenStopped() {
+        this.dataStore.stop();
+    }
+
+    private void whenStoringConcurrently(int threads, int messagesPerThread, int priority) {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Void>> futures = new ArrayList<>();
+
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit((Callable<Void>) () -> {
+                for (int j = 0; j < messagesPerThread; j++) {
+                    try {
+                        this.storedMessages.add(this.dataStore.store(TOPIC, this.payload, 1, false, priority));
+                    } catch (Exception e) {
+                        this.occurredExceptions.add(e);
+                    }
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (final Future<Void> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenSubmittedMessageIsStored() throws KuraStoreException {
+        assertEquals(1, this.pendingMessage.await().getId());
+    }
+
+    private void thenGroupCommitterStops() throws Exception {
+        this.stopFuture.get(10, TimeUnit.SECONDS);
+    }
+
+    private void thenNoExceptionsOccurred() {
+        assertTrue("unexpected exceptions: " + this.occurredExceptions, this.occurredExceptions.isEmpty());
+    }
+
+    private void thenExceptionsCountIs(int expected) {
+        assertEquals(expected, this.occurredExceptions.size());
+    }
+
+    private void thenCapacityExceptionsCountIs(int expected) {
+        thenExceptionsCountIs(expected);
+        for (final Exception e : this.occurredExceptions) {
+            assertTrue(e instanceof KuraStoreCapacityReachedException);
+        }
+    }
+
+    private void thenStoredMessageCountIs(int expected) {
+        assertEquals(expected, this.storedMessages.size());
+
+        try (Statement stmt = this.connection.createStatement();
+                ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM \"" + TABLE_NAME + "\"")) {
+            assertTrue(rs.next());
+            assertEquals(expected, rs.getInt(1));
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void thenStoredMessagesHaveDistinctIds() {
+        final Set<Integer> ids = new HashSet<>();
+        for (final DataMessage message : this.storedMessages) {
+            assertTrue("duplicate id " + message.getId(), ids.add(message.getId()));
+        }
+    }
+
+    private void thenStoredMessagesCanBeLoaded() {
+        try {
+            for (final DataMessage message : this.storedMessages) {
+                final DataMessage loaded = this.dataStore.get(message.getId());
+                assertNotNull(loaded);
+                assertEquals(TOPIC, loaded.getTopic());
+                assertArrayEquals(this.payload, loaded.getPayload());
+                assertArrayEquals(this.payload, message.getPayload());
+            }
+        } catch (KuraStoreException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /*
+     * Utilities
+     */
+
+    @After
+    public void stop() {
+        if (this.dataStore != null) {
+            this.dataStore.stop();
+            this.dataStore = null;
+        }
+        try {
+            if (this.connection != null) {
+                try (Statement stmt = this.connection.createStatement()) {
+                    stmt.execute("DROP TABLE IF EXISTS \"" + TABLE_NAME + "\"");
+                }
+                this.connection.commit();
+                this.connection.close();
+                this.connection = null;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class MockH2DbService implements H2DbService {
+
+        private final String url;
+
+        MockH2DbService(final String url) {
+            this.url = url;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection result = DriverManager.getConnection(this.url, "sa", "");
+            result.setAutoCommit(false);
+            return result;
+        }
+
+        @Override
+        public void close(Connection conn) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void rollback(Connection conn) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void close(ResultSet... rss) {
+            // ignore
+        }
+
+        @Override
+        public void close(Statement... stmts) {
+            // ignore
+        }
+
+        @Override
+        public <T> T withConnection(ConnectionCallable<T> task) throws SQLException {
+            final Connection c = getConnection();
+            try {
+                return task.call(c);
+            } catch (SQLException e) {
+                rollback(c);
+                throw e;
+            } finally {
+                close(c);
+            }
+        }
+
+    }
+}
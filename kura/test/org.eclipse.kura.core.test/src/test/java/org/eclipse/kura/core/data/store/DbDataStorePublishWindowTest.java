@@ -0,0 +1,282 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.eclipse.kura.db.H2DbService;
+import org.junit.After;
+import org.junit.Test;
+
+public class DbDataStorePublishWindowTest {
+
+    private static final String URL = "jdbc:h2:mem:publishwindowdb;DB_CLOSE_DELAY=-1";
+    private static final String TABLE_NAME = "publish-window-table";
+
+    private Connection connection;
+    private DbDataStore dataStore;
+    private final List<DataMessage> storedMessages = new ArrayList<>();
+    private List<DataMessage> window;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldReturnWindowInPriorityOrder() throws KuraStoreException {
+        givenDbDataStore();
+        givenStoredMessages(5, 7, 3, 5, 7);
+
+        whenGettingNextMessages(10);
+
+        thenWindowPriorities(3, 5, 5, 7, 7);
+        thenWindowHasPayloads();
+    }
+
+    @Test
+    public void shouldLimitWindowSize() throws KuraStoreException {
+        givenDbDataStore();
+        givenStoredMessages(5, 5, 5, 5, 5);
+
+        whenGettingNextMessages(2);
+
+        thenWindowIds(this.storedMessages.get(0).getId(), this.storedMessages.get(1).getId());
+    }
+
+    @Test
+    public void shouldMatchNextMessage() throws KuraStoreException {
+        givenDbDataStore();
+        givenStoredMessages(8, 2, 4);
+
+        whenGettingNextMessages(1);
+
+        thenWindowIds(this.dataStore.getNextMessage().getId());
+    }
+
+    @Test
+    public void shouldMarkWindowAsPublishedInOneCall() throws KuraStoreException {
+        givenDbDataStore();
+        givenStoredMessages(5, 5, 5);
+
+        whenGettingNextMessages(10);
+        whenMarkedAsPublished(new DataMessage.Builder(this.window.get(0).getId()).withPublishedMessageId(12)
+                .withSessionId("session").build(), new DataMessage.Builder(this.window.get(1).getId()).build());
+        whenGettingNextMessages(10);
+
+        thenWindowIds(this.storedMessages.get(2).getId());
+        thenPublishedMessageIs(this.storedMessages.get(0).getId(), 12, "session");
+        thenPublishedMessageIs(this.storedMessages.get(1).getId(), -1, null);
+    }
+
+    @Test
+    public void shouldMarkMessagesAsConfirmedInOneCall() throws KuraStoreException {
+        givenDbDataStore();
+        givenStoredMessages(5, 5, 5);
+        givenPublished();
+
+        whenConfirmed(this.storedMessages.get(0).getId(), this.storedMessages.get(2).getId());
+
+        thenInFlightIds(this.storedMessages.get(1).getId());
+        thenConfirmed(this.storedMessages.get(0).getId());
+        thenConfirmed(this.storedMessages.get(2).getId());
+    }
+
+    @Test
+    public void shouldReturnEmptyWindow() throws KuraStoreException {
+        givenDbDataStore();
+
+        whenGettingNextMessages(10);
+
+        thenWindowIds();
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenDbDataStore() throws KuraStoreException {
+        try {
+            Class.forName("org.h2.Driver");
+            this.connection = DriverManager.getConnection(URL, "sa", "");
+        } catch (SQLException | ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.dataStore = new DbDataStore(TABLE_NAME);
+        this.dataStore.start(new MockH2DbService(), 10000, 10000, 10000);
+    }
+
+    private void givenStoredMessages(int... priorities) throws KuraStoreException {
+        for (final int priority : priorities) {
+            this.storedMessages
+                    .add(this.dataStore.store("topic/" + priority, new byte[] { (byte) priority }, 1, false, priority));
+        }
+    }
+
+    private void givenPublished() throws KuraStoreException {
+        int publishedMessageId = 1;
+        for (final DataMessage message : this.storedMessages) {
+            this.dataStore.published(message.getId(), publishedMessageId++, "session");
+        }
+    }
+
+    /*
+     * When
+     */
+
+    private void whenConfirmed(Integer... ids) throws KuraStoreException {
+        this.dataStore.confirmed(Arrays.asList(ids));
+    }
+
+    private void whenGettingNextMessages(int count) throws KuraStoreException {
+        this.window = this.dataStore.getNextMessages(count);
+    }
+
+    private void whenMarkedAsPublished(DataMessage... messages) throws KuraStoreException {
+        final List<DataMessage> published = new ArrayList<>();
+        for (final DataMessage message : messages) {
+            published.add(message);
+        }
+        this.dataStore.published(published);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenWindowPriorities(int... priorities) {
+        assertEquals(priorities.length, this.window.size());
+        for (int i = 0; i < priorities.length; i++) {
+            assertEquals(priorities[i], this.window.get(i).getPriority());
+        }
+    }
+
+    private void thenWindowIds(int... ids) {
+        assertEquals(ids.length, this.window.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], this.window.get(i).getId());
+        }
+    }
+
+    private void thenInFlightIds(int... ids) throws KuraStoreException {
+        final List<DataMessage> inFlight = this.dataStore.allInFlightMessagesNoPayload();
+        assertEquals(ids.length, inFlight.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], inFlight.get(i).getId());
+        }
+    }
+
+    private void thenConfirmed(int id) throws KuraStoreException {
+        assertNotNull(this.dataStore.get(id).getConfirmedOn());
+    }
+
+    private void thenWindowHasPayloads() {
+        for (final DataMessage message : this.window) {
+            assertNotNull(message.getPayload());
+            assertEquals(message.getPriority(), message.getPayload()[0]);
+        }
+    }
+
+    private void thenPublishedMessageIs(int id, int publishedMessageId, String sessionId) throws KuraStoreException {
+        final DataMessage message = this.dataStore.get(id);
+        assertNotNull(message.getPublishedOn());
+        assertEquals(publishedMessageId, message.getPublishedMessageId());
+        if (sessionId == null) {
+            assertNull(message.getSessionId());
+        } else {
+            assertEquals(sessionId, message.getSessionId());
+        }
+    }
+
+    /*
+     * Utilities
+     */
+
+    @After
+    public void cleanUp() throws SQLException {
+        if (this.dataStore != null) {
+            this.dataStore.stop();
+        }
+        if (this.connection != null) {
+            try (Statement stmt = this.connection.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS \"" + TABLE_NAME + "\"");
+            }
+            this.connection.close();
+        }
+    }
+
+    private static final class MockH2DbService implements H2DbService {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final Connection result = DriverManager.getConnection(URL, "sa", "");
+            result.setAutoCommit(false);
+            return result;
+        }
+
+        @Override
+        public void close(Connection conn) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void rollback(Connection conn) {
+            try {
+                conn.rollback();
+            } catch (SQLException e) {
+                // ignore
+            }
+        }
+
+        @Override
+        public void close(ResultSet... rss) {
+            // ignore
+        }
+
+        @Override
+        public void close(Statement... stmts) {
+            // ignore
+        }
+
+        @Override
+        public <T> T withConnection(ConnectionCallable<T> task) throws SQLException {
+            final Connection c = getConnection();
+            try {
+                return task.call(c);
+            } finally {
+                close(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,451 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.core.data.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.kura.KuraStoreCapacityReachedException;
+import org.eclipse.kura.KuraStoreException;
+import org.eclipse.kura.core.data.DataMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentedFileDataStoreTest {
+
+    private static final String TOPIC = "TEST-TOPIC";
+    private static final int SEGMENT_SIZE = 4096;
+
+    private Path directory;
+    private SegmentedFileDataStore dataStore;
+    private final List<DataMessage> storedMessages = new ArrayList<>();
+    private Exception occurredException;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldStoreAndGetMessage() throws KuraStoreException {
+        givenDataStore(100);
+        givenStoredMessages(1, 5, 5);
+
+        thenMessageIsStored(this.storedMessages.get(0), 1);
+        thenMessageIsStored(this.storedMessages.get(1), 1);
+    }
+
+    @Test
+    public void shouldStoreNullPayload() throws KuraStoreException {
+        givenDataStore(100);
+
+        whenStoring(TOPIC, null, 1, 5);
+
+        thenStoredPayloadIsNull();
+    }
+
+    @Test
+    public void shouldReturnMessagesInPriorityOrder() throws KuraStoreException {
+        givenDataStore(100);
+        givenStoredMessages(1, 7, 3, 5, 3);
+
+        thenNextMessagesPriorities(3, 3, 5, 7);
+        thenNextMessageIs(this.storedMessages.get(1));
+    }
+
+    @Test
+    public void shouldTrackPublishedAndConfirmedMessages() throws KuraStoreException {
+        givenDataStore(100);
+        givenStoredMessages(1, 5, 5, 5);
+
+        whenPublished(this.storedMessages.get(0), 10, "session");
+        whenPublished(this.storedMessages.get(1), 11, "session");
+        whenConfirmed(this.storedMessages.get(0));
+
+        thenUnpublishedCountIs(1);
+        thenInFlightIds(this.storedMessages.get(1).getId());
+        thenNextMessageIs(this.storedMessages.get(2));
+    }
+
+    @Test
+    public void shouldUnpublishAndDropInFlightMessages() throws KuraStoreException {
+        givenDataStore(100);
+        givenStoredMessages(1, 5, 5);
+
+        whenPublished(this.storedMessages.get(0), 10, "session");
+        whenPublished(this.storedMessages.get(1), 11, "session");
+        whenUnpublishingAllInFlightMessages();
+
+        thenUnpublishedCountIs(2);
+
+        whenPublished(this.storedMessages.get(0), 12, "session");
+        whenDroppingAllInFlightMessages();
+
+        thenDroppedIds(this.storedMessages.get(0).getId());
+        thenInFlightIds();
+    }
+
+    @Test
+    public void shouldRestoreStateAfterRestart() throws KuraStoreException {
+        givenDataStore(100);
+        givenStoredMessages(1, 5, 5, 5, 2);
+        givenPublished(this.storedMessages.get(0), 10, "session");
+        givenPublished(this.storedMessages.get(1), 11, "session");
+        givenConfirmed(this.storedMessages.get(1));
+
+        whenRestarted(100);
+
+        thenMessageIsStored(this.storedMessages.get(2), 1);
+        thenInFlightIds(this.storedMessages.get(0).getId());
+        thenNextMessagesPriorities(2, 5);
+        thenPublishedMessageIs(this.storedMessages.get(0), 10, "session");
+    }
+
+    @Test
+    public void shouldNotReuseIdsAfterRestart() throws KuraStoreException {
+        givenDataStore(100);
+        givenStoredMessages(1, 5, 5);
+
+        whenRestarted(100);
+        whenStoring(TOPIC, new byte[] { 1 }, 1, 5);
+
+        thenIdsAreDistinct();
+    }
+
+    @Test
+    public void shouldRecoverFromTornRecord() throws KuraStoreException, IOException {
+        givenDataStore(100);
+        givenStoredMessages(1, 5, 5);
+        givenStopped();
+        givenGarbageAfterLastRecord();
+
+        whenStarted(100);
+        whenStoring(TOPIC, new byte[] { 1, 2 }, 1, 5);
+        whenRestarted(100);
+
+        thenUnpublishedCountIs(3);
+        thenMessageIsStored(this.storedMessages.get(1), 1);
+    }
+
+    @Test
+    public void shouldRollAndReclaimSegments() throws KuraStoreException, IOException {
+        givenDataStore(10000);
+        givenStoredMessages(256, 0, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5,
+                5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5, 5);
+
+        thenSegmentCountIsAtLeast(3);
+
+        whenAllButFirstMessagePublishedWithQos0();
+        whenDeletingStaleMessages();
+
+        thenSegmentCountIs(1);
+        thenUnpublishedCountIs(1);
+        thenMessageIsStored(this.storedMessages.get(0), 256);
+
+        whenRestarted(10000);
+
+        thenUnpublishedCountIs(1);
+        thenMessageIsStored(this.storedMessages.get(0), 256);
+    }
+
+    @Test
+    public void shouldStoreMessageLargerThanSegment() throws KuraStoreException {
+        givenDataStore(100);
+
+        givenStoredMessages(SEGMENT_SIZE * 2, 5);
+        whenRestarted(100);
+
+        thenMessageIsStored(this.storedMessages.get(0), SEGMENT_SIZE * 2);
+    }
+
+    @Test
+    public void shouldEnforceCapacity() throws KuraStoreException {
+        givenDataStore(2);
+        givenStoredMessages(1, 5, 5);
+
+        whenStoring(TOPIC, new byte[] { 1 }, 1, 5);
+
+        thenExceptionOccurred(KuraStoreCapacityReachedException.class);
+    }
+
+    @Test
+    public void shouldStoreHighPriorityMessagesWhenCapacityReached() throws KuraStoreException {
+        givenDataStore(2);
+        givenStoredMessages(1, 5, 5);
+
+        whenStoring(TOPIC, new byte[] { 1 }, 1, 1);
+
+        thenExceptionOccurred(null);
+        thenUnpublishedCountIs(3);
+    }
+
+    @Test
+    public void shouldReportStartedStore() throws KuraStoreException {
+        givenDataStore(100);
+
+        thenStoreIsStarted(true);
+    }
+
+    @Test
+    public void shouldNotReportStartedStoreIfStartFails() throws IOException {
+        givenDirectoryIsAFile();
+
+        whenStartingFails();
+
+        thenExceptionOccurred(KuraStoreException.class);
+        thenStoreIsStarted(false);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenDataStore(int capacity) throws KuraStoreException {
+        this.dataStore = new SegmentedFileDataStore(this.directory, SEGMENT_SIZE);
+        this.dataStore.start(null, 10000, 1000, capacity);
+    }
+
+    private void givenStoredMessages(int payloadSize, int... priorities) throws KuraStoreException {
+        for (final int priority : priorities) {
+            this.storedMessages.add(this.dataStore.store(TOPIC, payload(payloadSize, this.storedMessages.size()), 1,
+                    false, priority));
+        }
+    }
+
+    private void givenPublished(DataMessage message, int publishedMessageId, String sessionId)
+            throws KuraStoreException {
+        whenPublished(message, publishedMessageId, sessionId);
+    }
+
+    private void givenConfirmed(DataMessage message) throws KuraStoreException {
+        whenConfirmed(message);
+    }
+
+    private void givenStopped() {
+        this.dataStore.stop();
+    }
+
+    private void givenDirectoryIsAFile() throws IOException {
+        Files.delete(this.directory);
+        Files.createFile(this.directory);
+    }
+
+    private void givenGarbageAfterLastRecord() throws IOException {
+        final Path last = segmentFiles().get(segmentFiles().size() - 1);
+        try (RandomAccessFile file = new RandomAccessFile(last.toFile(), "rw")) {
+            // find the end of the last record
+            long position = 0;
+            while (true) {
+                file.seek(position);
+                final int length = file.readInt();
+                if (length == 0) {
+                    break;
+                }
+                position += 8 + length;
+            }
+            // a record header announcing a body that was never written
+            file.seek(position);
+            file.writeInt(100);
+            file.writeInt(12345);
+            file.writeLong(0xdeadbeefL);
+        }
+    }
+
+    /*
+     * When
+     */
+
+    private void whenStarted(int capacity) throws KuraStoreException {
+        givenDataStore(capacity);
+    }
+
+    private void whenStartingFails() {
+        try {
+            givenDataStore(100);
+        } catch (Exception e) {
+            this.occurredException = e;
+        }
+    }
+
+    private void whenRestarted(int capacity) throws KuraStoreException {
+        this.dataStore.stop();
+        givenDataStore(capacity);
+    }
+
+    private void whenStoring(String topic, byte[] payload, int qos, int priority) {
+        try {
+            this.storedMessages.add(this.dataStore.store(topic, payload, qos, false, priority));
+        } catch (Exception e) {
+            this.occurredException = e;
+        }
+    }
+
+    private void whenPublished(DataMessage message, int publishedMessageId, String sessionId)
+            throws KuraStoreException {
+        this.dataStore.published(message.getId(), publishedMessageId, sessionId);
+    }
+
+    private void whenConfirmed(DataMessage message) throws KuraStoreException {
+        this.dataStore.confirmed(message.getId());
+    }
+
+    private void whenUnpublishingAllInFlightMessages() throws KuraStoreException {
+        this.dataStore.unpublishAllInFlighMessages();
+    }
+
+    private void whenDroppingAllInFlightMessages() throws KuraStoreException {
+        this.dataStore.dropAllInFlightMessages();
+    }
+
+    private void whenAllButFirstMessagePublishedWithQos0() throws KuraStoreException {
+        for (final DataMessage message : this.storedMessages.subList(1, this.storedMessages.size())) {
+            // confirmed messages are purged like published QoS 0 messages
+            this.dataStore.published(message.getId(), 1, "session");
+            this.dataStore.confirmed(message.getId());
+        }
+    }
+
+    private void whenDeletingStaleMessages() throws KuraStoreException {
+        this.dataStore.deleteStaleMessages(0);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenMessageIsStored(DataMessage expected, int payloadSize) throws KuraStoreException {
+        final DataMessage message = this.dataStore.get(expected.getId());
+        assertNotNull(message);
+        assertEquals(TOPIC, message.getTopic());
+        assertEquals(expected.getPriority(), message.getPriority());
+        assertEquals(expected.getCreatedOn(), message.getCreatedOn());
+        assertArrayEquals(payload(payloadSize, this.storedMessages.indexOf(expected)), message.getPayload());
+    }
+
+    private void thenStoredPayloadIsNull() throws KuraStoreException {
+        assertNull(this.dataStore.get(this.storedMessages.get(0).getId()).getPayload());
+    }
+
+    private void thenNextMessagesPriorities(int... priorities) throws KuraStoreException {
+        final List<DataMessage> messages = this.dataStore.getNextMessages(priorities.length);
+        assertEquals(priorities.length, messages.size());
+        for (int i = 0; i < priorities.length; i++) {
+            assertEquals(priorities[i], messages.get(i).getPriority());
+            assertNotNull(messages.get(i).getPayload());
+        }
+    }
+
+    private void thenNextMessageIs(DataMessage expected) throws KuraStoreException {
+        assertEquals(expected.getId(), this.dataStore.getNextMessage().getId());
+    }
+
+    private void thenUnpublishedCountIs(int expected) throws KuraStoreException {
+        assertEquals(expected, this.dataStore.allUnpublishedMessagesNoPayload().size());
+    }
+
+    private void thenInFlightIds(Integer... ids) throws KuraStoreException {
+        assertEquals(Stream.of(ids).collect(Collectors.toList()), this.dataStore.allInFlightMessagesNoPayload()
+                .stream().map(DataMessage::getId).collect(Collectors.toList()));
+    }
+
+    private void thenDroppedIds(Integer... ids) throws KuraStoreException {
+        assertEquals(Stream.of(ids).collect(Collectors.toList()), this.dataStore
+                .allDroppedInFlightMessagesNoPayload().stream().map(DataMessage::getId).collect(Collectors.toList()));
+    }
+
+    private void thenPublishedMessageIs(DataMessage expected, int publishedMessageId, String sessionId)
+            throws KuraStoreException {
+        final DataMessage message = this.dataStore.get(expected.getId());
+        assertNotNull(message.getPublishedOn());
+        assertEquals(publishedMessageId, message.getPublishedMessageId());
+        assertEquals(sessionId, message.getSessionId());
+    }
+
+    private void thenIdsAreDistinct() {
+        assertEquals(this.storedMessages.size(),
+                this.storedMessages.stream().map(DataMessage::getId).distinct().count());
+    }
+
+    private void thenSegmentCountIs(int expected) throws IOException {
+        assertEquals(expected, segmentFiles().size());
+    }
+
+    private void thenSegmentCountIsAtLeast(int expected) throws IOException {
+        assertTrue(segmentFiles().size() >= expected);
+    }
+
+    private void thenStoreIsStarted(boolean expected) {
+        assertEquals(expected, this.dataStore.isStarted());
+    }
+
+    private void thenExceptionOccurred(Class<? extends Exception> expected) {
+        if (expected == null) {
+            assertNull(this.occurredException);
+        } else {
+            assertNotNull(this.occurredException);
+            assertTrue(expected.isInstance(this.occurredException));
+        }
+    }
+
+    /*
+     * Utilities
+     */
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("segmented-store");
+    }
+
+    @After
+    public void cleanUp() throws IOException {
+        if (this.dataStore != null) {
+            this.dataStore.stop();
+        }
+        if (Files.isDirectory(this.directory)) {
+            for (final Path file : segmentFiles()) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(this.directory);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static byte[] payload(int size, int seed) {
+        final byte[] payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) (seed + i);
+        }
+        return payload;
+    }
+}
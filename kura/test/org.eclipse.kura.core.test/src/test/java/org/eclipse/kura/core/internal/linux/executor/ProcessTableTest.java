@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.core.internal.linux.executor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.eclipse.kura.core.linux.executor.LinuxPid;
+import org.eclipse.kura.executor.Pid;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProcessTableTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ProcessTable processTable;
+    private ExecutorUtil executorUtil;
+    private SortedMap<Integer, String> processes;
+    private Map<String, Pid> pids;
+    private boolean isRunning;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldRenderCommandLinesLikePs() throws IOException {
+        givenProcessTable(60000);
+        givenProcess(1, "(systemd)", "S", "/sbin/init", "splash");
+        givenProcess(2, "(kthreadd)", "S");
+        givenProcess(4333, "(find)", "R", "find", "/", "-name", "bar");
+        givenProcess(4400, "(sh)", "Z");
+        givenProcess(4500, "(my (odd) name)", "S");
+
+        whenReadingProcesses();
+
+        thenProcessesAre("1:/sbin/init splash", "2:[kthreadd]", "4333:find / -name bar", "4400:[sh] <defunct>",
+                "4500:[my (odd) name]");
+    }
+
+    @Test
+    public void shouldIgnoreNonProcessEntries() throws IOException {
+        givenProcessTable(60000);
+        givenProcess(10, "(sleep)", "S", "sleep", "100");
+        givenFile("uptime");
+        givenDirectory("sys");
+
+        whenReadingProcesses();
+
+        thenProcessesAre("10:sleep 100");
+    }
+
+    @Test
+    public void shouldCacheTheListing() throws IOException {
+        givenProcessTable(60000);
+        givenProcess(10, "(sleep)", "S", "sleep", "100");
+        givenProcessesRead();
+        givenProcess(11, "(sleep)", "S", "sleep", "200");
+
+        whenReadingProcesses();
+
+        thenProcessesAre("10:sleep 100");
+    }
+
+    @Test
+    public void shouldReadTheListingAgainWhenInvalidated() throws IOException {
+        givenProcessTable(60000);
+        givenProcess(10, "(sleep)", "S", "sleep", "100");
+        givenProcessesRead();
+        givenProcess(11, "(sleep)", "S", "sleep", "200");
+        givenInvalidated();
+
+        whenReadingProcesses();
+
+        thenProcessesAre("10:sleep 100", "11:sleep 200");
+    }
+
+    @Test
+    public void shouldReadTheListingAgainWhenExpired() throws Exception {
+        givenProcessTable(10);
+        givenProcess(10, "(sleep)", "S", "sleep", "100");
+        givenProcessesRead();
+        givenProcess(11, "(sleep)", "S", "sleep", "200");
+        Thread.sleep(50);
+
+        whenReadingProcesses();
+
+        thenProcessesAre("10:sleep 100", "11:sleep 200");
+    }
+
+    @Test
+    public void shouldCheckIfPidIsRunningWithoutCache() throws IOException {
+        givenProcessTable(60000);
+        givenProcessesRead();
+        givenProcess(10, "(sleep)", "S", "sleep", "100");
+        givenExecutorUtil();
+
+        whenCheckIfRunning(new LinuxPid(10));
+
+        thenIsRunning(true);
+    }
+
+    @Test
+    public void shouldNotBeRunningPid() throws IOException {
+        givenProcessTable(60000);
+        givenProcess(10, "(sleep)", "S", "sleep", "100");
+        givenExecutorUtil();
+
+        whenCheckIfRunning(new LinuxPid(1234));
+
+        thenIsRunning(false);
+    }
+
+    @Test
+    public void shouldRetrievePidsMatchingAllTokens() throws IOException {
+        givenProcessTable(60000);
+        givenProcess(4333, "(find)", "R", "find", "/", "-name", "bar");
+        givenProcess(4334, "(find)", "R", "find", "/", "-name", "foo");
+        givenProcess(4400, "(find)", "R", "find", "/tmp", "-name", "bar");
+        givenExecutorUtil();
+
+        whenRetrievingPids("find", "/", "-name", "bar");
+
+        thenPidsAre(4400, 4333);
+    }
+
+    @Test
+    public void shouldBeRunningCommandLine() throws IOException {
+        givenProcessTable(60000);
+        givenProcess(4333, "(find)", "R", "find", "/", "-name", "bar");
+        givenExecutorUtil();
+
+        whenCheckIfRunning("find", "/", "-name", "bar");
+
+        thenIsRunning(true);
+    }
+
+    @Test
+    public void shouldNotBeRunningCommandLine() throws IOException {
+        givenProcessTable(60000);
+        givenProcess(4333, "(find)", "R", "find", "/", "-name", "bar");
+        givenExecutorUtil();
+
+        whenCheckIfRunning("find", "/", "-name", "foo");
+
+        thenIsRunning(false);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenProcessTable(final long maxAgeMillis) throws IOException {
+        this.folder.newFolder("self");
+        this.processTable = new ProcessTable(this.folder.getRoot().toPath(), maxAgeMillis);
+    }
+
+    private void givenProcess(final int pid, final String name, final String state, final String... args)
+            throws IOException {
+        final Path processDir = this.folder.newFolder(Integer.toString(pid)).toPath();
+
+        Files.write(processDir.resolve("stat"),
+                (pid + " " + name + " " + state + " 1 1 1 0 -1 4194560 100 0 0 0 0 0 0 0 20 0 1 0 100\n")
+                        .getBytes(UTF_8));
+
+        final StringBuilder cmdline = new StringBuilder();
+        for (final String arg : args) {
+            cmdline.append(arg).append('\0');
+        }
+        Files.write(processDir.resolve("cmdline"), cmdline.toString().getBytes(UTF_8));
+    }
+
+    private void givenFile(final String name) throws IOException {
+        this.folder.newFile(name);
+    }
+
+    private void givenDirectory(final String name) throws IOException {
+        this.folder.newFolder(name);
+    }
+
+    private void givenProcessesRead() {
+        this.processTable.getProcesses();
+    }
+
+    private void givenInvalidated() {
+        this.processTable.invalidate();
+    }
+
+    private void givenExecutorUtil() {
+        this.executorUtil = new ExecutorUtil(this.processTable);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenReadingProcesses() {
+        this.processes = this.processTable.getProcesses();
+    }
+
+    private void whenCheckIfRunning(final Pid pid) {
+        this.isRunning = this.executorUtil.isRunning(pid);
+    }
+
+    private void whenCheckIfRunning(final String... commandLine) {
+        this.isRunning = this.executorUtil.isRunning(commandLine);
+    }
+
+    private void whenRetrievingPids(final String... commandLine) {
+        this.pids = this.executorUtil.getPids(commandLine);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenProcessesAre(final String... expected) {
+        final List<String> actual = new ArrayList<>();
+        this.processes.forEach((pid, commandLine) -> actual.add(pid + ":" + commandLine));
+        assertEquals(Arrays.asList(expected), actual);
+    }
+
+    private void thenIsRunning(final boolean expected) {
+        assertEquals(expected, this.isRunning);
+    }
+
+    private void thenPidsAre(final Integer... expected) {
+        final List<Integer> actual = new ArrayList<>();
+        this.pids.values().forEach(pid -> actual.add(pid.getPid()));
+        assertEquals(Arrays.asList(expected), actual);
+        assertFalse(this.pids.isEmpty());
+        assertTrue(this.pids.containsKey("find / -name bar"));
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -26,7 +26,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.eclipse.kura.KuraException;
@@ -261,11 +260,8 @@ public class OpcUaDriverTest {
         ReadResponse response = mock(ReadResponse.class);
         when(response.getResults()).thenReturn(new DataValue[] { value });
 
-        CompletableFuture<ReadResponse> futureValue = mock(CompletableFuture.class);
-        when(futureValue.get(1000, TimeUnit.MILLISECONDS)).thenReturn(response);
-
         when(clientMock.read(Mockito.eq(0.0), Mockito.eq(TimestampsToReturn.Both), any()))
-                .thenReturn(futureValue);
+                .thenReturn(CompletableFuture.completedFuture(response));
     }
 
     @Test
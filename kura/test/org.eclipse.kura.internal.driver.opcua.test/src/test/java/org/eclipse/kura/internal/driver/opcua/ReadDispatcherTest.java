@@ -0,0 +1,434 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.internal.driver.opcua;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.internal.driver.opcua.request.ReadParams;
+import org.eclipse.kura.internal.driver.opcua.request.Request;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue;
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode;
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadResponse;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.junit.After;
+import org.junit.Test;
+
+public class ReadDispatcherTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private final LinkedBlockingQueue<ServiceCall> serviceCalls = new LinkedBlockingQueue<>();
+    private final List<ServiceCall> sentServiceCalls = new CopyOnWriteArrayList<>();
+    private final List<Throwable> failures = new CopyOnWriteArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Future<?>> reads = new ArrayList<>();
+    private final List<List<ChannelRecord>> records = new ArrayList<>();
+
+    private ReadDispatcher dispatcher;
+    private Exception exception;
+
+    @After
+    public void cleanUp() {
+        this.executor.shutdownNow();
+    }
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldSendChunksConcurrently() throws Exception {
+        givenDispatcher(2, 3);
+        givenReadStarted(1, 2, 3, 4, 5, 6);
+
+        whenServiceCallsAreSent(3);
+
+        thenServiceCallItemsAre(0, 1, 2);
+        thenServiceCallItemsAre(1, 3, 4);
+        thenServiceCallItemsAre(2, 5, 6);
+    }
+
+    @Test
+    public void shouldFillRecordsWhenAllChunksComplete() throws Exception {
+        givenDispatcher(2, 3);
+        givenReadStarted(1, 2, 3, 4, 5);
+        givenServiceCallsSent(3);
+
+        whenAllServiceCallsComplete();
+
+        thenReadCompletes(0);
+        thenRecordValuesAre(0, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void shouldLimitOutstandingServiceCalls() throws Exception {
+        givenDispatcher(1, 2);
+        givenReadStarted(1, 2, 3);
+        givenServiceCallsSent(2);
+
+        whenServiceCallCompletes(0);
+
+        thenServiceCallIsSent();
+        thenServiceCallItemsAre(2, 3);
+    }
+
+    @Test
+    public void shouldNotExceedOutstandingServiceCalls() throws Exception {
+        givenDispatcher(1, 2);
+        givenReadStarted(1, 2, 3);
+
+        whenServiceCallsAreSent(2);
+
+        thenNoMoreServiceCallsAreSent();
+    }
+
+    @Test
+    public void shouldCoalesceReadsOfTheSameNodes() throws Exception {
+        givenDispatcher(10, 4);
+        givenReadStarted(1, 2);
+        givenServiceCallsSent(1);
+        givenReadStarted(2, 1);
+        givenCoalescedItems(2);
+
+        whenAllServiceCallsComplete();
+
+        thenReadCompletes(0);
+        thenReadCompletes(1);
+        thenRecordValuesAre(0, 1, 2);
+        thenRecordValuesAre(1, 2, 1);
+        thenServiceCallCountIs(1);
+        thenCoalescedItemCountIs(2);
+    }
+
+    @Test
+    public void shouldSendOnlyTheNodesThatAreNotPending() throws Exception {
+        givenDispatcher(10, 4);
+        givenReadStarted(1, 2);
+        givenServiceCallsSent(1);
+        givenReadStarted(2, 3);
+
+        whenServiceCallsAreSent(1);
+
+        thenServiceCallItemsAre(1, 3);
+    }
+
+    @Test
+    public void shouldSendDuplicatedNodesOnce() throws Exception {
+        givenDispatcher(10, 4);
+        givenReadStarted(1, 1, 2);
+
+        whenServiceCallsAreSent(1);
+
+        thenServiceCallItemsAre(0, 1, 2);
+    }
+
+    @Test
+    public void shouldReportServiceCallFailure() throws Exception {
+        givenDispatcher(10, 4);
+        givenReadStarted(1);
+        givenServiceCallsSent(1);
+
+        whenServiceCallFails(0);
+
+        thenReadFails(0, ExecutionException.class);
+        thenFailureHandlerIsCalled();
+    }
+
+    @Test
+    public void shouldSendAgainAfterFailure() throws Exception {
+        givenDispatcher(10, 4);
+        givenReadStarted(1);
+        givenServiceCallsSent(1);
+        givenServiceCallFailed(0);
+        givenReadFailed(0);
+        givenReadStarted(1);
+
+        whenServiceCallsAreSent(1);
+
+        thenServiceCallItemsAre(1, 1);
+    }
+
+    @Test
+    public void shouldTimeoutIfServerDoesNotRespond() throws Exception {
+        givenDispatcher(10, 4);
+
+        whenReading(100, 1);
+
+        thenExceptionIs(TimeoutException.class);
+        thenFailureHandlerIsCalled();
+    }
+
+    @Test
+    public void shouldNotCoalesceWithTimedOutRead() throws Exception {
+        givenDispatcher(10, 4);
+        givenReadAttempted(100, 1);
+        givenReadStarted(1);
+
+        whenServiceCallsAreSent(2);
+
+        thenServiceCallItemsAre(1, 1);
+    }
+
+    @Test
+    public void shouldCollectStatistics() throws Exception {
+        givenDispatcher(1, 4);
+        givenReadStarted(1, 2);
+        givenServiceCallsSent(2);
+        givenAllServiceCallsCompleted();
+
+        whenReadCompletes(0);
+
+        thenReadCountIs(1);
+        thenItemCountIs(2);
+        thenServiceCallCountIs(2);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenDispatcher(final int maxItemsPerRequest, final int maxOutstandingRequests) {
+        this.dispatcher = new ReadDispatcher(this::sendServiceCall, maxItemsPerRequest, maxOutstandingRequests,
+                this.failures::add);
+    }
+
+    private void givenReadStarted(final int... nodeIds) {
+        final List<ChannelRecord> readRecords = createRecords(nodeIds);
+        final List<Request<ReadParams>> requests = Request.extractReadRequests(readRecords);
+        this.records.add(readRecords);
+        this.reads.add(this.executor.submit(() -> {
+            this.dispatcher.read(requests, TIMEOUT);
+            return null;
+        }));
+    }
+
+    private void givenServiceCallsSent(final int count) throws InterruptedException {
+        whenServiceCallsAreSent(count);
+    }
+
+    private void givenCoalescedItems(final long count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+        while (this.dispatcher.getCoalescedItemCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void givenAllServiceCallsCompleted() {
+        whenAllServiceCallsComplete();
+    }
+
+    private void givenServiceCallFailed(final int index) {
+        whenServiceCallFails(index);
+    }
+
+    private void givenReadFailed(final int index) throws Exception {
+        thenReadFails(index, ExecutionException.class);
+    }
+
+    private void givenReadAttempted(final long timeout, final int... nodeIds) {
+        whenReading(timeout, nodeIds);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenServiceCallsAreSent(final int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            thenServiceCallIsSent();
+        }
+    }
+
+    private void whenServiceCallCompletes(final int index) {
+        this.sentServiceCalls.get(index).complete();
+    }
+
+    private void whenAllServiceCallsComplete() {
+        for (final ServiceCall call : this.sentServiceCalls) {
+            call.complete();
+        }
+    }
+
+    private void whenServiceCallFails(final int index) {
+        this.sentServiceCalls.get(index).response.completeExceptionally(new IllegalStateException("test"));
+    }
+
+    private void whenReadCompletes(final int index) throws Exception {
+        thenReadCompletes(index);
+    }
+
+    private void whenReading(final long timeout, final int... nodeIds) {
+        final List<ChannelRecord> readRecords = createRecords(nodeIds);
+        this.records.add(readRecords);
+        try {
+            this.dispatcher.read(Request.extractReadRequests(readRecords), timeout);
+        } catch (Exception e) {
+            this.exception = e;
+        }
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenServiceCallIsSent() throws InterruptedException {
+        final ServiceCall call = this.serviceCalls.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull("service call not sent", call);
+        this.sentServiceCalls.add(call);
+    }
+
+    private void thenNoMoreServiceCallsAreSent() throws InterruptedException {
+        assertNull(this.serviceCalls.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private void thenServiceCallItemsAre(final int index, final int... nodeIds) {
+        final List<Integer> actual = new ArrayList<>();
+        for (final ReadValueId id : this.sentServiceCalls.get(index).readValueIds) {
+            actual.add(((UInteger) id.getNodeId().getIdentifier()).intValue());
+        }
+        assertEquals(toList(nodeIds), actual);
+    }
+
+    private void thenReadCompletes(final int index) throws Exception {
+        this.reads.get(index).get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private void thenReadFails(final int index, final Class<? extends Exception> expected) throws Exception {
+        try {
+            this.reads.get(index).get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(expected.isInstance(e.getCause()));
+            return;
+        }
+        throw new AssertionError("read did not fail");
+    }
+
+    private void thenRecordValuesAre(final int index, final int... values) {
+        final List<Integer> actual = new ArrayList<>();
+        for (final ChannelRecord record : this.records.get(index)) {
+            assertEquals(ChannelFlag.SUCCESS, record.getChannelStatus().getChannelFlag());
+            actual.add((Integer) record.getValue().getValue());
+        }
+        assertEquals(toList(values), actual);
+    }
+
+    private void thenExceptionIs(final Class<? extends Exception> expected) {
+        assertNotNull(this.exception);
+        assertTrue(expected.isInstance(this.exception));
+    }
+
+    private void thenFailureHandlerIsCalled() {
+        assertFalse(this.failures.isEmpty());
+    }
+
+    private void thenServiceCallCountIs(final long expected) {
+        assertEquals(expected, this.dispatcher.getServiceCallCount());
+    }
+
+    private void thenCoalescedItemCountIs(final long expected) {
+        assertEquals(expected, this.dispatcher.getCoalescedItemCount());
+    }
+
+    private void thenReadCountIs(final long expected) {
+        assertEquals(expected, this.dispatcher.getReadCount());
+    }
+
+    private void thenItemCountIs(final long expected) {
+        assertEquals(expected, this.dispatcher.getItemCount());
+    }
+
+    /*
+     * Utilities
+     */
+
+    private CompletableFuture<ReadResponse> sendServiceCall(final List<ReadValueId> readValueIds) {
+        final ServiceCall call = new ServiceCall(new ArrayList<>(readValueIds));
+        this.serviceCalls.add(call);
+        return call.response;
+    }
+
+    private static List<ChannelRecord> createRecords(final int... nodeIds) {
+        final List<ChannelRecord> result = new ArrayList<>();
+        for (final int nodeId : nodeIds) {
+            final ChannelRecord record = ChannelRecord.createReadRecord("ch" + nodeId, DataType.INTEGER);
+            final Map<String, Object> channelConfig = new HashMap<>();
+            channelConfig.put("node.namespace.index", "1");
+            channelConfig.put("node.id.type", "NUMERIC");
+            channelConfig.put("opcua.type", "DEFINED_BY_JAVA_TYPE");
+            channelConfig.put("node.id", Integer.toString(nodeId));
+            channelConfig.put("attribute", "Value");
+            record.setChannelConfig(channelConfig);
+            result.add(record);
+        }
+        return result;
+    }
+
+    private static List<Integer> toList(final int... values) {
+        final List<Integer> result = new ArrayList<>();
+        for (final int value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    private static final class ServiceCall {
+
+        private final List<ReadValueId> readValueIds;
+        private final CompletableFuture<ReadResponse> response = new CompletableFuture<>();
+
+        ServiceCall(final List<ReadValueId> readValueIds) {
+            this.readValueIds = readValueIds;
+        }
+
+        void complete() {
+            final DataValue[] values = new DataValue[this.readValueIds.size()];
+            for (int i = 0; i < values.length; i++) {
+                final UInteger nodeId = (UInteger) this.readValueIds.get(i).getNodeId().getIdentifier();
+                values[i] = new DataValue(new Variant(nodeId.intValue()), StatusCode.GOOD);
+            }
+
+            final ReadResponse readResponse = mock(ReadResponse.class);
+            when(readResponse.getResults()).thenReturn(values);
+            this.response.complete(readResponse);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.internal.driver.s7plc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.driver.Driver.ConnectionException;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValues;
+import org.junit.After;
+import org.junit.Test;
+
+import Moka7.S7;
+import Moka7.S7Client;
+
+public class S7PlcMultiVarTest {
+
+    private S7PlcSimulator simulator;
+    private S7PlcDriver driver;
+    private S7Client client;
+    private final List<ChannelRecord> records = new ArrayList<>();
+
+    @After
+    public void cleanUp() throws IOException {
+        if (this.driver != null) {
+            this.driver.deactivate();
+        }
+        if (this.simulator != null) {
+            this.simulator.close();
+        }
+    }
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldReadChannelsOfManyDataBlocksWithASingleRequest() throws Exception {
+        givenSimulator(240);
+        givenIntValuesInDataBlocks(1, 10);
+        givenDriver(true);
+        givenIntReadRecords(1, 10);
+
+        whenReading();
+
+        thenReadRequestItemsAre(10);
+        thenIntValuesAreRead(1, 10);
+    }
+
+    @Test
+    public void shouldSplitReadsWhenTheRequestDoesNotFitInThePdu() throws Exception {
+        givenSimulator(240);
+        givenIntValuesInDataBlocks(1, 30);
+        givenDriver(true);
+        givenIntReadRecords(1, 30);
+
+        whenReading();
+
+        // (240 - 12) / 12 = 19 items fit in a request
+        thenReadRequestItemsAre(19, 11);
+        thenIntValuesAreRead(1, 30);
+    }
+
+    @Test
+    public void shouldReadBlocksLargerThanThePduWithSingleRequests() throws Exception {
+        givenSimulator(240);
+        givenIntValuesInDataBlocks(1, 2);
+        givenByteArrayInDataBlock(3, 300);
+        givenDriver(true);
+        givenIntReadRecords(1, 2);
+        givenByteArrayReadRecord(3, 300);
+
+        whenReading();
+
+        // the large block is read with two ReadArea requests
+        thenReadRequestItemsAre(1, 1, 2);
+        thenIntValuesAreRead(1, 2);
+        thenByteArrayIsRead(2, 300);
+    }
+
+    @Test
+    public void shouldReportTheFailureOfASingleItem() throws Exception {
+        givenSimulator(240);
+        givenIntValuesInDataBlocks(1, 2);
+        givenDriver(true);
+        givenIntReadRecords(1, 3);
+
+        whenReading();
+
+        thenReadRequestItemsAre(3);
+        thenIntValuesAreRead(1, 2);
+        thenRecordFailed(2);
+    }
+
+    @Test
+    public void shouldWriteChannelsOfManyDataBlocksWithASingleRequest() throws Exception {
+        givenSimulator(240);
+        givenIntValuesInDataBlocks(1, 5);
+        givenDriver(true);
+        givenIntWriteRecords(1, 5);
+
+        whenWriting();
+
+        thenWriteRequestItemsAre(5);
+        thenIntValuesAreWritten(1, 5);
+    }
+
+    @Test
+    public void shouldUpdateBitsOfManyDataBlocksWithASingleReadAndWrite() throws Exception {
+        givenSimulator(240);
+        givenIntValuesInDataBlocks(1, 3);
+        givenDriver(true);
+        givenBitWriteRecords(1, 3);
+
+        whenWriting();
+
+        thenReadRequestItemsAre(3);
+        thenWriteRequestItemsAre(3);
+        thenBitsAreSetPreservingTheOtherBits(1, 3);
+    }
+
+    @Test
+    public void shouldDisconnectWhenConnectionIsLostAfterAnotherFailure() throws Exception {
+        givenClientFailingReads(S7Client.errS7FunctionError, S7Client.errTCPDataRecv);
+        givenIntReadRecords(1, 30);
+
+        whenReading();
+
+        thenClientIsDisconnected();
+        thenRecordsFailed(0, 30);
+    }
+
+    @Test
+    public void shouldNotDisconnectWhenConnectionIsNotLost() throws Exception {
+        givenClientFailingReads(S7Client.errS7FunctionError, S7Client.errS7FunctionError);
+        givenIntReadRecords(1, 30);
+
+        whenReading();
+
+        thenClientIsNotDisconnected();
+        thenRecordsFailed(0, 30);
+    }
+
+    @Test
+    public void shouldUseASingleRequestForEachBlockWhenDisabled() throws Exception {
+        givenSimulator(240);
+        givenIntValuesInDataBlocks(1, 3);
+        givenDriver(false);
+        givenIntReadRecords(1, 3);
+
+        whenReading();
+
+        thenReadRequestItemsAre(1, 1, 1);
+        thenIntValuesAreRead(1, 3);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenSimulator(final int pduLength) throws IOException {
+        this.simulator = new S7PlcSimulator(pduLength);
+    }
+
+    private void givenIntValuesInDataBlocks(final int firstDb, final int lastDb) {
+        for (int db = firstDb; db <= lastDb; db++) {
+            final byte[] data = this.simulator.addDataBlock(db, 8);
+            S7.SetShortAt(data, 2, 100 + db);
+            data[5] = (byte) 0x81;
+        }
+    }
+
+    private void givenByteArrayInDataBlock(final int db, final int size) {
+        final byte[] data = this.simulator.addDataBlock(db, size);
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+    }
+
+    private void givenDriver(final boolean multiVarEnabled) throws ConnectionException {
+        final S7Client client = new S7Client();
+        client.RemotePort = this.simulator.getPort();
+
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("host.ip", "127.0.0.1");
+        properties.put("multi.var.enabled", multiVarEnabled);
+
+        this.driver = S7PlcDriverTest.createTestDriver(client);
+        this.driver.activate(properties);
+        this.driver.connect();
+    }
+
+    private void givenClientFailingReads(final int firstResult, final int secondResult) throws ConnectionException {
+        this.client = mock(S7Client.class);
+        when(this.client.PDULength()).thenReturn(240);
+        when(this.client.ReadMultiVars(any(), anyInt())).thenReturn(firstResult, secondResult);
+
+        final Map<String, Object> properties = new HashMap<>();
+        properties.put("host.ip", "127.0.0.1");
+        properties.put("multi.var.enabled", true);
+
+        this.driver = S7PlcDriverTest.createTestDriver(this.client);
+        this.driver.activate(properties);
+        this.driver.connect();
+        this.client.Connected = true;
+    }
+
+    private void givenIntReadRecords(final int firstDb, final int lastDb) {
+        for (int db = firstDb; db <= lastDb; db++) {
+            final ChannelRecord record = ChannelRecord.createReadRecord("ch" + db, DataType.INTEGER);
+            record.setChannelConfig(channelConfig(db, 2, S7PlcDataType.INT));
+            this.records.add(record);
+        }
+    }
+
+    private void givenByteArrayReadRecord(final int db, final int size) {
+        final ChannelRecord record = ChannelRecord.createReadRecord("ch" + db, DataType.BYTE_ARRAY);
+        final Map<String, Object> config = channelConfig(db, 0, S7PlcDataType.BYTE);
+        config.put("byte.count", size);
+        record.setChannelConfig(config);
+        this.records.add(record);
+    }
+
+    private void givenIntWriteRecords(final int firstDb, final int lastDb) {
+        for (int db = firstDb; db <= lastDb; db++) {
+            final ChannelRecord record = ChannelRecord.createWriteRecord("ch" + db,
+                    TypedValues.newIntegerValue(1000 + db));
+            record.setChannelConfig(channelConfig(db, 2, S7PlcDataType.INT));
+            this.records.add(record);
+        }
+    }
+
+    private void givenBitWriteRecords(final int firstDb, final int lastDb) {
+        for (int db = firstDb; db <= lastDb; db++) {
+            final ChannelRecord record = ChannelRecord.createWriteRecord("ch" + db,
+                    TypedValues.newBooleanValue(true));
+            final Map<String, Object> config = channelConfig(db, 5, S7PlcDataType.BOOL);
+            config.put("bit.index", 1);
+            record.setChannelConfig(config);
+            this.records.add(record);
+        }
+    }
+
+    /*
+     * When
+     */
+
+    private void whenReading() throws ConnectionException {
+        this.driver.read(this.records);
+    }
+
+    private void whenWriting() throws ConnectionException {
+        this.driver.write(this.records);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenReadRequestItemsAre(final Integer... expected) {
+        final List<Integer> actual = this.simulator.getReadRequestItems();
+        Collections.sort(actual);
+        final List<Integer> expectedList = new ArrayList<>(Arrays.asList(expected));
+        Collections.sort(expectedList);
+        assertEquals(expectedList, actual);
+    }
+
+    private void thenWriteRequestItemsAre(final Integer... expected) {
+        assertEquals(Arrays.asList(expected), this.simulator.getWriteRequestItems());
+    }
+
+    private void thenIntValuesAreRead(final int firstDb, final int lastDb) {
+        for (int db = firstDb; db <= lastDb; db++) {
+            final ChannelRecord record = this.records.get(db - 1);
+            assertEquals(ChannelFlag.SUCCESS, record.getChannelStatus().getChannelFlag());
+            assertEquals(TypedValues.newIntegerValue(100 + db), record.getValue());
+        }
+    }
+
+    private void thenByteArrayIsRead(final int index, final int size) {
+        final ChannelRecord record = this.records.get(index);
+        assertEquals(ChannelFlag.SUCCESS, record.getChannelStatus().getChannelFlag());
+        final byte[] value = (byte[]) record.getValue().getValue();
+        assertEquals(size, value.length);
+        for (int i = 0; i < size; i++) {
+            assertEquals((byte) i, value[i]);
+        }
+    }
+
+    private void thenRecordFailed(final int index) {
+        assertEquals(ChannelFlag.FAILURE, this.records.get(index).getChannelStatus().getChannelFlag());
+    }
+
+    private void thenRecordsFailed(final int fromIndex, final int toIndex) {
+        for (int i = fromIndex; i < toIndex; i++) {
+            thenRecordFailed(i);
+        }
+    }
+
+    private void thenClientIsDisconnected() {
+        verify(this.client, times(1)).Disconnect();
+    }
+
+    private void thenClientIsNotDisconnected() {
+        verify(this.client, never()).Disconnect();
+    }
+
+    private void thenIntValuesAreWritten(final int firstDb, final int lastDb) {
+        for (int db = firstDb; db <= lastDb; db++) {
+            assertEquals(ChannelFlag.SUCCESS, this.records.get(db - 1).getChannelStatus().getChannelFlag());
+            assertEquals(1000 + db, S7.GetShortAt(this.simulator.getDataBlock(db), 2));
+        }
+    }
+
+    private void thenBitsAreSetPreservingTheOtherBits(final int firstDb, final int lastDb) {
+        for (int db = firstDb; db <= lastDb; db++) {
+            assertEquals(ChannelFlag.SUCCESS, this.records.get(db - 1).getChannelStatus().getChannelFlag());
+            final byte value = this.simulator.getDataBlock(db)[5];
+            assertTrue(S7.GetBitAt(new byte[] { value }, 0, 1));
+            assertTrue(S7.GetBitAt(new byte[] { value }, 0, 0));
+            assertTrue(S7.GetBitAt(new byte[] { value }, 0, 7));
+        }
+    }
+
+    /*
+     * Utility methods
+     */
+
+    private static Map<String, Object> channelConfig(final int db, final int offset, final S7PlcDataType type) {
+        final Map<String, Object> config = new HashMap<>();
+        config.put("data.block.no", db);
+        config.put("offset", offset);
+        config.put("s7.data.type", type.name());
+        return config;
+    }
+}
@@ -0,0 +1,256 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.internal.driver.s7plc;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A minimal S7 PLC speaking ISO on TCP, supporting the connection setup and the read and write var functions with
+ * one or more items, on the DB area only. Each data block is a byte array.
+ */
+public class S7PlcSimulator implements Closeable {
+
+    private static final int ISO_HEADER_SIZE = 7;
+    private static final int AREA_DB = 0x84;
+
+    private static final int RESULT_OK = 0xFF;
+    private static final int RESULT_OBJECT_NOT_EXISTS = 0x0A;
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+    private final int pduLength;
+
+    private final Map<Integer, byte[]> dataBlocks = new ConcurrentHashMap<>();
+    private final List<Integer> readRequestItems = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> writeRequestItems = Collections.synchronizedList(new ArrayList<>());
+
+    public S7PlcSimulator(final int pduLength) throws IOException {
+        this.pduLength = pduLength;
+        this.serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        this.acceptThread = new Thread(this::accept, "S7PlcSimulator");
+        this.acceptThread.setDaemon(true);
+        this.acceptThread.start();
+    }
+
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    public byte[] addDataBlock(final int db, final int size) {
+        final byte[] data = new byte[size];
+        this.dataBlocks.put(db, data);
+        return data;
+    }
+
+    public byte[] getDataBlock(final int db) {
+        return this.dataBlocks.get(db);
+    }
+
+    /**
+     * @return the number of items of each read request received
+     */
+    public List<Integer> getReadRequestItems() {
+        return new ArrayList<>(this.readRequestItems);
+    }
+
+    /**
+     * @return the number of items of each write request received
+     */
+    public List<Integer> getWriteRequestItems() {
+        return new ArrayList<>(this.writeRequestItems);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try (Socket socket = this.serverSocket.accept()) {
+                serve(new DataInputStream(socket.getInputStream()), socket.getOutputStream());
+            } catch (IOException e) {
+                // connection closed
+            }
+        }
+    }
+
+    private void serve(final DataInputStream in, final OutputStream out) throws IOException {
+        while (true) {
+            final byte[] header = new byte[4];
+            in.readFully(header);
+            final byte[] packet = new byte[getWord(header, 2)];
+            System.arraycopy(header, 0, packet, 0, 4);
+            in.readFully(packet, 4, packet.length - 4);
+
+            final int cotpType = packet[5] & 0xFF;
+            if (cotpType == 0xE0) {
+                out.write(connectionConfirm());
+            } else {
+                out.write(handleJob(packet));
+            }
+            out.flush();
+        }
+    }
+
+    private static byte[] connectionConfirm() {
+        return new byte[] { 0x03, 0x00, 0x00, 0x16, 0x11, (byte) 0xD0, 0x00, 0x01, 0x00, 0x01, 0x00, (byte) 0xC0,
+                0x01, 0x0A, (byte) 0xC1, 0x02, 0x01, 0x00, (byte) 0xC2, 0x02, 0x01, 0x02 };
+    }
+
+    private byte[] handleJob(final byte[] packet) {
+        final int function = packet[17] & 0xFF;
+
+        if (function == 0xF0) {
+            final ByteArrayOutputStream params = new ByteArrayOutputStream();
+            params.write(0xF0);
+            params.write(0x00);
+            writeWord(params, 1);
+            writeWord(params, 1);
+            writeWord(params, this.pduLength);
+            return ackData(packet, params.toByteArray(), new byte[0]);
+        } else if (function == 0x04) {
+            return readVar(packet);
+        } else if (function == 0x05) {
+            return writeVar(packet);
+        }
+
+        throw new IllegalStateException("unsupported function " + function);
+    }
+
+    private byte[] readVar(final byte[] packet) {
+        final int itemCount = packet[18] & 0xFF;
+        this.readRequestItems.add(itemCount);
+
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (int i = 0; i < itemCount; i++) {
+            final Item item = new Item(packet, 19 + i * 12);
+            final byte[] db = item.getDataBlock();
+
+            if (db == null) {
+                data.write(RESULT_OBJECT_NOT_EXISTS);
+                data.write(0);
+                writeWord(data, 0);
+                continue;
+            }
+
+            data.write(RESULT_OK);
+            data.write(0x04);
+            writeWord(data, item.amount << 3);
+            data.write(db, item.start, item.amount);
+            if ((item.amount & 1) != 0 && i < itemCount - 1) {
+                data.write(0);
+            }
+        }
+
+        return ackData(packet, new byte[] { 0x04, (byte) itemCount }, data.toByteArray());
+    }
+
+    private byte[] writeVar(final byte[] packet) {
+        final int itemCount = packet[18] & 0xFF;
+        this.writeRequestItems.add(itemCount);
+
+        final byte[] results = new byte[itemCount];
+        int offset = 19 + itemCount * 12;
+        for (int i = 0; i < itemCount; i++) {
+            final Item item = new Item(packet, 19 + i * 12);
+            final byte[] db = item.getDataBlock();
+            final int length = getWord(packet, offset + 2) >> 3;
+
+            if (db == null) {
+                results[i] = RESULT_OBJECT_NOT_EXISTS;
+            } else {
+                System.arraycopy(packet, offset + 4, db, item.start, length);
+                results[i] = (byte) RESULT_OK;
+            }
+
+            offset += 4 + length;
+            if ((length & 1) != 0 && i < itemCount - 1) {
+                offset++;
+            }
+        }
+
+        return ackData(packet, new byte[] { 0x05, (byte) itemCount }, results);
+    }
+
+    private static byte[] ackData(final byte[] request, final byte[] params, final byte[] data) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final int size = ISO_HEADER_SIZE + 12 + params.length + data.length;
+
+        // TPKT + COTP
+        out.write(0x03);
+        out.write(0x00);
+        writeWord(out, size);
+        out.write(0x02);
+        out.write(0xF0);
+        out.write(0x80);
+        // S7 header
+        out.write(0x32);
+        out.write(0x03);
+        writeWord(out, 0);
+        out.write(request[11]);
+        out.write(request[12]);
+        writeWord(out, params.length);
+        writeWord(out, data.length);
+        writeWord(out, 0);
+
+        out.write(params, 0, params.length);
+        out.write(data, 0, data.length);
+
+        return out.toByteArray();
+    }
+
+    private static int getWord(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xFF) << 8 | buffer[offset + 1] & 0xFF;
+    }
+
+    private static void writeWord(final ByteArrayOutputStream out, final int value) {
+        out.write(value >> 8 & 0xFF);
+        out.write(value & 0xFF);
+    }
+
+    private class Item {
+
+        private final int amount;
+        private final int dbNumber;
+        private final int area;
+        private final int start;
+
+        Item(final byte[] packet, final int offset) {
+            this.amount = getWord(packet, offset + 4);
+            this.dbNumber = getWord(packet, offset + 6);
+            this.area = packet[offset + 8] & 0xFF;
+            this.start = ((packet[offset + 9] & 0xFF) << 16 | getWord(packet, offset + 10)) >> 3;
+        }
+
+        byte[] getDataBlock() {
+            final byte[] db = S7PlcSimulator.this.dataBlocks.get(this.dbNumber);
+            if (this.area != AREA_DB || db == null || this.start + this.amount > db.length) {
+                return null;
+            }
+            return db;
+        }
+    }
+}
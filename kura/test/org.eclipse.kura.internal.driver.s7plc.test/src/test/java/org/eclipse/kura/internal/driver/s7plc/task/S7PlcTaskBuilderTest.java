@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -17,6 +17,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -113,6 +114,63 @@ public class S7PlcTaskBuilderTest {
         assertEquals(9, count.get());
     }
 
+    @Test
+    public void testPackReadTasksOfManyDataBlocks() {
+        List<S7PlcToplevelBlockTask> tasks = new ArrayList<>();
+        for (int db = 1; db <= 25; db++) {
+            tasks.add(new S7PlcToplevelBlockTask(null, Mode.READ, db, 0, 4));
+        }
+
+        List<List<S7PlcToplevelBlockTask>> groups = S7PlcTaskBuilder.pack(tasks, Mode.READ, 480);
+
+        // the request size limits the items to S7Client.MaxVars
+        assertEquals(2, groups.size());
+        assertEquals(20, groups.get(0).size());
+        assertEquals(5, groups.get(1).size());
+    }
+
+    @Test
+    public void testPackFillsTheReplyFirstFitDecreasing() {
+        List<S7PlcToplevelBlockTask> tasks = new ArrayList<>();
+        // a 240 bytes PDU has room for 226 bytes of reply items, 4 bytes of header each
+        tasks.add(new S7PlcToplevelBlockTask(null, Mode.READ, 1, 0, 40));
+        tasks.add(new S7PlcToplevelBlockTask(null, Mode.READ, 2, 0, 150));
+        tasks.add(new S7PlcToplevelBlockTask(null, Mode.READ, 3, 0, 60));
+        tasks.add(new S7PlcToplevelBlockTask(null, Mode.READ, 4, 0, 100));
+        tasks.add(new S7PlcToplevelBlockTask(null, Mode.READ, 5, 0, 300));
+
+        List<List<S7PlcToplevelBlockTask>> groups = S7PlcTaskBuilder.pack(tasks, Mode.READ, 240);
+
+        assertEquals(3, groups.size());
+        assertEquals(5, groups.get(0).get(0).getAreaNo());
+        assertEquals(1, groups.get(0).size());
+        assertEquals(Arrays.asList(2, 3), areaNumbers(groups.get(1)));
+        assertEquals(Arrays.asList(4, 1), areaNumbers(groups.get(2)));
+    }
+
+    @Test
+    public void testPackWriteTasksAccountsForTheItemSpecification() {
+        List<S7PlcToplevelBlockTask> tasks = new ArrayList<>();
+        // each item takes 12 bytes of specification, 4 of data header and 2 of data
+        for (int db = 1; db <= 13; db++) {
+            tasks.add(new S7PlcToplevelBlockTask(null, Mode.WRITE, db, 0, 2));
+        }
+
+        List<List<S7PlcToplevelBlockTask>> groups = S7PlcTaskBuilder.pack(tasks, Mode.WRITE, 240);
+
+        assertEquals(2, groups.size());
+        assertEquals(12, groups.get(0).size());
+        assertEquals(1, groups.get(1).size());
+    }
+
+    private static List<Integer> areaNumbers(List<S7PlcToplevelBlockTask> group) {
+        List<Integer> result = new ArrayList<>();
+        for (S7PlcToplevelBlockTask task : group) {
+            result.add(task.getAreaNo());
+        }
+        return result;
+    }
+
     private void assertExpectedType(BinaryData type, BlockTask second) {
         try {
             assertEquals(type, TestUtil.getFieldValue(second, "dataType"));
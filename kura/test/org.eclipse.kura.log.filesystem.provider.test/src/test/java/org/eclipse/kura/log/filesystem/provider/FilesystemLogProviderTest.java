@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2021, 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2021, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -21,6 +21,8 @@ import static org.mockito.Mockito.verifyNoInteractions;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -135,6 +137,57 @@ public class FilesystemLogProviderTest {
         thenListenersAreNotCalled();
     }
 
+    @Test
+    public void rotatedFileShouldBeFollowed() {
+        givenFile("kuratest");
+        givenPropertiesWithLogFilePath();
+        givenFilesystemLogProvider();
+        givenLogListeners(1);
+
+        whenRegisteringLogListeners();
+        whenActivate();
+        whenFileIsRotated();
+        whenNewLogLinesAreAppendedToFile(5);
+
+        thenListenersGetCalled(this.nLogLines);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void linesWrittenBeforeRotationShouldBeNotified() {
+        givenFile("kuratest");
+        givenPropertiesWithLogFilePath();
+        givenFilesystemLogProvider();
+        givenLogListeners(1);
+
+        whenRegisteringLogListeners();
+        whenActivate();
+        whenFileIsRotatedRightAfterAppending("20210111 - line11\n20210112 - li");
+        whenNewLogLinesAreAppendedToFile(5);
+
+        thenListenersGetCalled(this.nLogLines + 2);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void partialLineShouldBeNotifiedWhenComplete() {
+        givenFile("kuratest");
+        givenPropertiesWithLogFilePath();
+        givenFilesystemLogProvider();
+        givenLogListeners(1);
+
+        whenRegisteringLogListeners();
+        whenActivate();
+        whenTextIsAppendedToFile("20210111 - li");
+
+        thenListenersGetCalled(this.nLogLines);
+
+        whenTextIsAppendedToFile("ne11\n");
+
+        thenListenersGetCalled(this.nLogLines + 1);
+        thenNoExceptionsOccurred();
+    }
+
     /*
      * Steps
      */
@@ -240,6 +293,51 @@ public class FilesystemLogProviderTest {
         }
     }
 
+    private void whenFileIsRotated() {
+        waitUntilListenersAreNotified(this.nLogLines);
+
+        try {
+            File rotated = new File(this.file.getAbsolutePath() + ".1");
+            rotated.deleteOnExit();
+            Files.move(this.file.toPath(), rotated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            this.exceptionOccured = true;
+        }
+    }
+
+    private void whenFileIsRotatedRightAfterAppending(String text) {
+        waitUntilListenersAreNotified(this.nLogLines);
+
+        whenTextIsAppendedToFile(text);
+
+        try {
+            File rotated = new File(this.file.getAbsolutePath() + ".1");
+            rotated.deleteOnExit();
+            Files.move(this.file.toPath(), rotated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            this.exceptionOccured = true;
+        }
+    }
+
+    private void whenNewLogLinesAreAppendedToFile(int nLines) {
+        try (FileWriter writer = new FileWriter(this.file, true)) {
+            for (int i = 0; i < nLines; i++) {
+                writer.write("2021020" + i + " - line" + (this.nLogLines + i) + "\n");
+            }
+            this.nLogLines += nLines;
+        } catch (IOException e) {
+            this.exceptionOccured = true;
+        }
+    }
+
+    private void whenTextIsAppendedToFile(String text) {
+        try (FileWriter writer = new FileWriter(this.file, true)) {
+            writer.write(text);
+        } catch (IOException e) {
+            this.exceptionOccured = true;
+        }
+    }
+
     private void whenUnregisteringLogListeners() {
         for (LogListener listener : this.listeners) {
             verify(listener, timeout(LISTENER_CALL_TIMEOUT).times(this.nLogLines))
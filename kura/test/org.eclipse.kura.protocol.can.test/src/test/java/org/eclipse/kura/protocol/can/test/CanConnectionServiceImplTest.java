@@ -0,0 +1,518 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.protocol.can.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.internal.protocol.can.CanTransport;
+import org.eclipse.kura.protocol.can.CanConnectionServiceImpl;
+import org.eclipse.kura.protocol.can.CanMessage;
+import org.eclipse.kura.protocol.can.CanSubscription;
+import org.junit.After;
+import org.junit.Test;
+
+public class CanConnectionServiceImplTest {
+
+    private static final long TIMEOUT = 5000;
+
+    private final List<InMemoryCanTransport> transports = new CopyOnWriteArrayList<>();
+    private final CanConnectionServiceImpl service = new CanConnectionServiceImpl(this::createTransport,
+            () -> this.nowNanos);
+    private final List<CanSubscription> subscriptions = new ArrayList<>();
+    private CompletableFuture<CanMessage> pendingReceive;
+    private Exception exception;
+    private volatile long nowNanos;
+
+    @After
+    public void cleanUp() throws IOException {
+        this.service.disconnectCanSocket();
+    }
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldDeliverFramesToAllMatchingSubscriptions() throws Exception {
+        givenConnected();
+        givenSubscription(0x100, 0x7F0, 10);
+        givenSubscription(0x101, 0x7FF, 10);
+        givenSubscription(0x200, 0x7FF, 10);
+
+        whenFramesAreReceived(0x101, 0x10F);
+
+        thenSubscriptionReceives(0, 0x101, 0x10F);
+        thenSubscriptionReceives(1, 0x101);
+        thenSubscriptionReceivesNothing(1);
+        thenSubscriptionReceivesNothing(2);
+    }
+
+    @Test
+    public void shouldDeliverIndependentCopies() throws Exception {
+        givenConnected();
+        givenSubscription(0, 0, 10);
+        givenSubscription(0, 0, 10);
+
+        whenFramesAreReceived(0x10);
+
+        thenSubscriptionsReceiveDistinctCopies();
+    }
+
+    @Test
+    public void shouldDropFramesWhenQueueIsFull() throws Exception {
+        givenConnected();
+        givenSubscription(0, 0, 2);
+        givenSubscription(0, 0, 10);
+
+        whenFramesAreReceived(1, 2, 3, 4, 5);
+
+        thenSubscriptionReceives(1, 1, 2, 3, 4, 5);
+        thenSubscriptionReceives(0, 1, 2);
+        thenSubscriptionReceivesNothing(0);
+        thenDroppedFramesAre(0, 3);
+        thenServiceDroppedFramesAre(3);
+    }
+
+    @Test
+    public void shouldBufferFramesBetweenReceiveCalls() throws Exception {
+        givenConnected();
+        givenFramesReceived(-1, 0, 1);
+        givenFramesQueued(2, 3);
+
+        whenReceiving(-1, 0);
+
+        thenReceivedFrameIs(2);
+        thenNextReceivedFramesAre(-1, 0, 3);
+    }
+
+    @Test
+    public void shouldFilterReceivedFrames() throws Exception {
+        givenConnected();
+        givenFramesReceived(0x123, 0x7FF, 0x123);
+        givenFramesQueued(0x124, 0x123);
+
+        whenReceiving(0x123, 0x7FF);
+
+        thenReceivedFrameIs(0x123);
+    }
+
+    @Test
+    public void shouldCloseIdleReceiveSubscriptions() throws Exception {
+        givenConnected();
+        givenFramesReceived(0x100, 0x7FF, 0x100);
+        givenTimeElapsed(2, TimeUnit.MINUTES);
+        givenReceiveStarted(0x200, 0x7FF);
+
+        whenFramesAreReceived(repeat(0x100, 300));
+
+        thenServiceDroppedFramesAreEventually(0);
+    }
+
+    @Test
+    public void shouldNotCloseReceiveSubscriptionsInUse() throws Exception {
+        givenConnected();
+        givenReceiveStarted(0x100, 0x7FF);
+        givenTimeElapsed(2, TimeUnit.MINUTES);
+        givenOtherReceiveStarted(0x200, 0x7FF);
+
+        whenFramesAreReceived(0x100);
+
+        thenReceivedFrameIs(0x100);
+    }
+
+    @Test
+    public void shouldKeepBufferingForRecentlyUsedReceiveSubscriptions() throws Exception {
+        givenConnected();
+        givenFramesReceived(0x100, 0x7FF, 0x100);
+        givenTimeElapsed(30, TimeUnit.SECONDS);
+        givenReceiveStarted(0x200, 0x7FF);
+
+        whenFramesAreReceived(0x100);
+
+        thenNextReceivedFramesAre(0x100, 0x7FF, 0x100);
+    }
+
+    @Test
+    public void shouldCloseSubscriptionsOnDisconnect() throws Exception {
+        givenConnected();
+        givenSubscription(0, 0, 10);
+        givenReceiveStarted(-1, 0);
+
+        whenDisconnected();
+
+        thenSubscriptionIsClosed(0);
+        thenPendingReceiveFails(IOException.class);
+    }
+
+    @Test
+    public void shouldCloseSubscriptionsOnTransportError() throws Exception {
+        givenConnected();
+        givenSubscription(0, 0, 10);
+
+        whenTransportFails(0);
+
+        thenSubscriptionIsClosed(0);
+    }
+
+    @Test
+    public void shouldReconnectAfterTransportError() throws Exception {
+        givenConnected();
+        givenTransportFailed(0);
+        givenConnected();
+        givenSubscription(0, 0, 10);
+
+        whenFramesAreReceivedOn(1, 0x10);
+
+        thenSubscriptionReceives(0, 0x10);
+    }
+
+    @Test
+    public void shouldSendFramesInOrder() throws Exception {
+        givenConnected();
+
+        whenSending("can0", 1, 2, 3);
+
+        thenSentFramesAre("can0", 1, 2, 3);
+    }
+
+    @Test
+    public void shouldNotSendAnyFrameIfOneIsTooLong() throws Exception {
+        givenConnected();
+
+        whenSending("can0", new CanMessage[] { message(1, new byte[8]), message(2, new byte[9]) });
+
+        thenExceptionIs(KuraException.class);
+        thenNoFramesAreSent();
+    }
+
+    @Test
+    public void shouldNotSendFramesWithoutData() throws Exception {
+        givenConnected();
+
+        whenSending("can0", new CanMessage[] { message(1, new byte[1]), message(2, null) });
+
+        thenExceptionIs(KuraException.class);
+        thenNoFramesAreSent();
+    }
+
+    @Test
+    public void shouldNotSendNullMessages() throws Exception {
+        givenConnected();
+
+        whenSending("can0", new CanMessage[] { null });
+
+        thenExceptionIs(KuraException.class);
+        thenNoFramesAreSent();
+    }
+
+    @Test
+    public void shouldNotSendIfNotConnected() throws Exception {
+        whenSending("can0", 1);
+
+        thenExceptionIs(KuraException.class);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotSubscribeIfNotConnected() {
+        givenSubscription(0, 0, 10);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenConnected() throws IOException {
+        this.service.connectCanSocket();
+    }
+
+    private void givenSubscription(final int canId, final int canMask, final int queueSize) {
+        this.subscriptions.add(this.service.subscribe(canId, canMask, queueSize));
+    }
+
+    private void givenFramesReceived(final int canId, final int canMask, final int... frameIds) throws Exception {
+        givenReceiveStarted(canId, canMask);
+        whenFramesAreReceived(frameIds);
+        this.pendingReceive.get(TIMEOUT, TimeUnit.MILLISECONDS);
+    }
+
+    private void givenFramesQueued(final int... frameIds) throws InterruptedException {
+        whenFramesAreReceived(frameIds);
+        waitForDispatch(0);
+    }
+
+    private void givenReceiveStarted(final int canId, final int canMask) throws InterruptedException {
+        this.pendingReceive = receiveAsync(canId, canMask);
+        // frames received before the receiving thread subscribes are not buffered
+        Thread.sleep(200);
+    }
+
+    private void givenOtherReceiveStarted(final int canId, final int canMask) throws InterruptedException {
+        receiveAsync(canId, canMask);
+        Thread.sleep(200);
+    }
+
+    private void givenTimeElapsed(final long duration, final TimeUnit unit) {
+        this.nowNanos += unit.toNanos(duration);
+    }
+
+    private void givenTransportFailed(final int index) throws InterruptedException {
+        whenTransportFails(index);
+        waitForReceiveThread(index);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenFramesAreReceived(final int... frameIds) throws InterruptedException {
+        whenFramesAreReceivedOn(this.transports.size() - 1, frameIds);
+    }
+
+    private void whenFramesAreReceivedOn(final int transport, final int... frameIds) throws InterruptedException {
+        for (final int frameId : frameIds) {
+            this.transports.get(transport).inject(message(frameId, new byte[] { (byte) frameId }));
+        }
+    }
+
+    private void whenReceiving(final int canId, final int canMask) throws Exception {
+        this.pendingReceive = receiveAsync(canId, canMask);
+    }
+
+    private void whenDisconnected() throws IOException {
+        this.service.disconnectCanSocket();
+    }
+
+    private void whenTransportFails(final int index) throws InterruptedException {
+        this.transports.get(index).fail();
+    }
+
+    private void whenSending(final String ifName, final int... frameIds) {
+        final CanMessage[] messages = new CanMessage[frameIds.length];
+        for (int i = 0; i < frameIds.length; i++) {
+            messages[i] = message(frameIds[i], new byte[] { (byte) i });
+        }
+        whenSending(ifName, messages);
+    }
+
+    private void whenSending(final String ifName, final CanMessage[] messages) {
+        try {
+            this.service.sendCanMessages(ifName, Arrays.asList(messages));
+        } catch (Exception e) {
+            this.exception = e;
+        }
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenSubscriptionReceives(final int index, final int... frameIds) throws InterruptedException {
+        for (final int frameId : frameIds) {
+            final CanMessage message = this.subscriptions.get(index).poll(TIMEOUT, TimeUnit.MILLISECONDS);
+            assertNotNull(message);
+            assertEquals(frameId, message.getCanId());
+            assertArrayEquals(new byte[] { (byte) frameId }, message.getData());
+        }
+    }
+
+    private void thenSubscriptionReceivesNothing(final int index) throws InterruptedException {
+        assertNull(this.subscriptions.get(index).poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    private void thenSubscriptionsReceiveDistinctCopies() throws InterruptedException {
+        final CanMessage first = this.subscriptions.get(0).poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        final CanMessage second = this.subscriptions.get(1).poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        assertTrue(first != second);
+        assertTrue(first.getData() != second.getData());
+        assertArrayEquals(first.getData(), second.getData());
+    }
+
+    private void thenDroppedFramesAre(final int index, final long expected) {
+        assertEquals(expected, this.subscriptions.get(index).getDroppedFrameCount());
+    }
+
+    private void thenServiceDroppedFramesAre(final long expected) {
+        assertEquals(expected, this.service.getDroppedFrameCount());
+    }
+
+    private void thenServiceDroppedFramesAreEventually(final long expected) throws InterruptedException {
+        waitForDispatch(0);
+        thenServiceDroppedFramesAre(expected);
+    }
+
+    private void thenReceivedFrameIs(final int frameId) throws Exception {
+        assertEquals(frameId, this.pendingReceive.get(TIMEOUT, TimeUnit.MILLISECONDS).getCanId());
+    }
+
+    private void thenNextReceivedFramesAre(final int canId, final int canMask, final int... frameIds)
+            throws Exception {
+        for (final int frameId : frameIds) {
+            this.pendingReceive = receiveAsync(canId, canMask);
+            thenReceivedFrameIs(frameId);
+        }
+    }
+
+    private void thenSubscriptionIsClosed(final int index) throws InterruptedException {
+        assertNull(this.subscriptions.get(index).poll(TIMEOUT, TimeUnit.MILLISECONDS));
+        assertTrue(this.subscriptions.get(index).isClosed());
+    }
+
+    private void thenPendingReceiveFails(final Class<? extends Exception> expected) throws Exception {
+        try {
+            this.pendingReceive.get(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            assertTrue(expected.isInstance(e.getCause()));
+            return;
+        }
+        throw new AssertionError("receive did not fail");
+    }
+
+    private void thenSentFramesAre(final String ifName, final int... frameIds) {
+        final List<String> expected = new ArrayList<>();
+        for (final int frameId : frameIds) {
+            expected.add(ifName + ":" + frameId);
+        }
+        assertEquals(expected, this.transports.get(0).sent);
+    }
+
+    private void thenNoFramesAreSent() {
+        assertTrue(this.transports.get(0).sent.isEmpty());
+    }
+
+    private void thenExceptionIs(final Class<? extends Exception> expected) {
+        assertNotNull(this.exception);
+        assertTrue(expected.isInstance(this.exception));
+    }
+
+    /*
+     * Utilities
+     */
+
+    private CanTransport createTransport() {
+        final InMemoryCanTransport transport = new InMemoryCanTransport();
+        this.transports.add(transport);
+        return transport;
+    }
+
+    private CompletableFuture<CanMessage> receiveAsync(final int canId, final int canMask) {
+        final CompletableFuture<CanMessage> result = new CompletableFuture<>();
+        final Thread thread = new Thread(() -> {
+            try {
+                result.complete(this.service.receiveCanMessage(canId, canMask));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    private void waitForDispatch(final int index) throws InterruptedException {
+        final InMemoryCanTransport transport = this.transports.get(index);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+        while (!transport.incoming.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // the last frame taken from the queue might still be dispatching
+        Thread.sleep(50);
+    }
+
+    private void waitForReceiveThread(final int index) throws InterruptedException {
+        waitForDispatch(index);
+    }
+
+    private static int[] repeat(final int frameId, final int count) {
+        final int[] frameIds = new int[count];
+        Arrays.fill(frameIds, frameId);
+        return frameIds;
+    }
+
+    private static CanMessage message(final int canId, final byte[] data) {
+        final CanMessage message = new CanMessage();
+        message.setCanId(canId);
+        message.setData(data);
+        return message;
+    }
+
+    private static final class InMemoryCanTransport implements CanTransport {
+
+        private static final CanMessage CLOSED = new CanMessage();
+        private static final CanMessage FAILED = new CanMessage();
+
+        private final LinkedBlockingQueue<CanMessage> incoming = new LinkedBlockingQueue<>();
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+
+        void inject(final CanMessage message) throws InterruptedException {
+            this.incoming.put(message);
+        }
+
+        void fail() throws InterruptedException {
+            this.incoming.put(FAILED);
+        }
+
+        @Override
+        public void open() {
+            // nothing to open
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.incoming.add(CLOSED);
+        }
+
+        @Override
+        public CanMessage receive() throws IOException {
+            try {
+                final CanMessage message = this.incoming.take();
+                if (message == CLOSED) {
+                    throw new IOException("closed");
+                } else if (message == FAILED) {
+                    throw new IOException("failed");
+                }
+                return message;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public void send(final String ifName, final List<CanMessage> messages) {
+            for (final CanMessage message : messages) {
+                this.sent.add(ifName + ":" + message.getCanId());
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+
+package org.eclipse.kura.protocol.modbus;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+
+import org.eclipse.kura.protocol.modbus.test.ModbusTcpSimulator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ModbusProtocolDevicePipelineTest {
+
+    private static final int BLOCK_SIZE = 10;
+
+    private ModbusTcpSimulator simulator;
+    private ModbusProtocolDevice modbusDevice;
+    private List<int[]> result;
+    private ModbusProtocolException occurredException;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldReadBlocksWithOutstandingRequests() throws Exception {
+        givenResponseDelay(5);
+        givenConnectedDevice(8, 5000);
+
+        whenReadingHoldingRegisters(blockAddresses(40));
+
+        thenNoExceptionOccurred();
+        thenHoldingRegistersAreCorrect(blockAddresses(40));
+        thenMaxOutstandingRequestsIs(8);
+    }
+
+    @Test
+    public void shouldReadBlocksOneAtATimeByDefault() throws Exception {
+        givenConnectedDevice(0, 5000);
+
+        whenReadingHoldingRegisters(blockAddresses(10));
+
+        thenNoExceptionOccurred();
+        thenHoldingRegistersAreCorrect(blockAddresses(10));
+        thenMaxOutstandingRequestsIs(1);
+    }
+
+    @Test
+    public void shouldMatchResponsesReceivedOutOfOrder() throws Exception {
+        givenReversedResponseDelay(200);
+        givenConnectedDevice(10, 5000);
+
+        whenReadingHoldingRegisters(blockAddresses(10));
+
+        thenNoExceptionOccurred();
+        thenHoldingRegistersAreCorrect(blockAddresses(10));
+    }
+
+    @Test
+    public void shouldReadInputRegisters() throws Exception {
+        givenConnectedDevice(4, 5000);
+
+        whenReadingInputRegisters(blockAddresses(10));
+
+        thenNoExceptionOccurred();
+        thenInputRegistersAreCorrect(blockAddresses(10));
+    }
+
+    @Test
+    public void shouldTimeOutSingleRequest() throws Exception {
+        givenIgnoredAddress(3 * BLOCK_SIZE);
+        givenConnectedDevice(4, 500);
+
+        whenReadingHoldingRegisters(blockAddresses(10));
+
+        thenExceptionOccurred(ModbusProtocolErrorCode.RESPONSE_TIMEOUT);
+        thenRequestCountIs(10);
+        thenBlockFailed(3, ModbusProtocolErrorCode.RESPONSE_TIMEOUT);
+        thenOtherHoldingRegistersAreCorrect(blockAddresses(10), 3);
+    }
+
+    @Test
+    public void shouldReportFailedBlockOneAtATime() throws Exception {
+        givenIgnoredAddress(3 * BLOCK_SIZE);
+        givenConnectedDevice(0, 500);
+
+        whenReadingHoldingRegisters(blockAddresses(5));
+
+        thenExceptionOccurred(ModbusProtocolErrorCode.TRANSACTION_FAILURE);
+        thenRequestCountIs(5);
+        thenBlockFailed(3, ModbusProtocolErrorCode.TRANSACTION_FAILURE);
+        thenOtherHoldingRegistersAreCorrect(blockAddresses(5), 3);
+    }
+
+    @Test
+    public void shouldReuseConnectionAfterTimeout() throws Exception {
+        givenIgnoredAddress(3 * BLOCK_SIZE);
+        givenConnectedDevice(4, 500);
+        givenHoldingRegistersRead(blockAddresses(10));
+
+        whenReadingHoldingRegisters(new int[] { 0, 100, 200 });
+
+        thenNoExceptionOccurred();
+        thenHoldingRegistersAreCorrect(new int[] { 0, 100, 200 });
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenResponseDelay(long delayMillis) {
+        this.simulator.setResponseDelay(address -> delayMillis);
+    }
+
+    private void givenReversedResponseDelay(long maxDelayMillis) {
+        this.simulator.setResponseDelay(address -> Math.max(0, maxDelayMillis - address));
+    }
+
+    private void givenIgnoredAddress(int address) {
+        this.simulator.ignoreAddress(address);
+    }
+
+    private void givenConnectedDevice(int maxOutstandingRequests, int responseTimeout)
+            throws ModbusProtocolException {
+        this.modbusDevice = new ModbusProtocolDevice();
+        Properties connectionConfig = new Properties();
+        connectionConfig.setProperty("connectionType", ModbusProtocolDevice.PROTOCOL_CONNECTION_TYPE_ETHER_TCP);
+        connectionConfig.setProperty("ipAddress", "127.0.0.1");
+        connectionConfig.setProperty("ethport", Integer.toString(this.simulator.getPort()));
+        connectionConfig.setProperty("respTimeout", Integer.toString(responseTimeout));
+        connectionConfig.setProperty("transmissionMode", ModbusTransmissionMode.RTU);
+        if (maxOutstandingRequests > 0) {
+            connectionConfig.setProperty("maxOutstandingRequests", Integer.toString(maxOutstandingRequests));
+        }
+        this.modbusDevice.configureConnection(connectionConfig);
+        this.modbusDevice.connect();
+    }
+
+    private void givenHoldingRegistersRead(int[] addresses) {
+        whenReadingHoldingRegisters(addresses);
+        this.occurredException = null;
+        this.simulator.resetStatistics();
+    }
+
+    /*
+     * When
+     */
+
+    private void whenReadingHoldingRegisters(int[] addresses) {
+        try {
+            this.result = this.modbusDevice.readHoldingRegisters(1, addresses, blockCounts(addresses.length));
+        } catch (ModbusProtocolException e) {
+            this.occurredException = e;
+        }
+    }
+
+    private void whenReadingInputRegisters(int[] addresses) {
+        try {
+            this.result = this.modbusDevice.readInputRegisters(1, addresses, blockCounts(addresses.length));
+        } catch (ModbusProtocolException e) {
+            this.occurredException = e;
+        }
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenNoExceptionOccurred() {
+        if (this.occurredException != null) {
+            fail("unexpected exception: " + this.occurredException);
+        }
+    }
+
+    private void thenExceptionOccurred(ModbusProtocolErrorCode code) {
+        assertNotNull(this.occurredException);
+        assertEquals(code, this.occurredException.getCode());
+    }
+
+    private void thenBlockFailed(int index, ModbusProtocolErrorCode code) {
+        assertTrue(this.occurredException instanceof ModbusBlockReadException);
+        final ModbusBlockReadException blockReadException = (ModbusBlockReadException) this.occurredException;
+        assertNull(blockReadException.getResults().get(index));
+        assertEquals(code, blockReadException.getFailures().get(index).getCode());
+        this.result = blockReadException.getResults();
+    }
+
+    private void thenOtherHoldingRegistersAreCorrect(int[] addresses, int failedIndex) {
+        final List<ModbusProtocolException> failures = ((ModbusBlockReadException) this.occurredException)
+                .getFailures();
+        for (int i = 0; i < addresses.length; i++) {
+            if (i != failedIndex) {
+                assertNull(failures.get(i));
+                thenBlockIsCorrect(this.result.get(i), addresses[i], 0);
+            }
+        }
+    }
+
+    private void thenHoldingRegistersAreCorrect(int[] addresses) {
+        thenRegistersAreCorrect(addresses, 0);
+    }
+
+    private void thenInputRegistersAreCorrect(int[] addresses) {
+        thenRegistersAreCorrect(addresses, 1);
+    }
+
+    private void thenRegistersAreCorrect(int[] addresses, int offset) {
+        assertEquals(addresses.length, this.result.size());
+        for (int i = 0; i < addresses.length; i++) {
+            thenBlockIsCorrect(this.result.get(i), addresses[i], offset);
+        }
+    }
+
+    private void thenBlockIsCorrect(int[] block, int address, int offset) {
+        assertEquals(BLOCK_SIZE, block.length);
+        for (int j = 0; j < BLOCK_SIZE; j++) {
+            assertEquals(address + j + offset, block[j]);
+        }
+    }
+
+    private void thenMaxOutstandingRequestsIs(int expected) {
+        assertTrue("expected at most " + expected + " outstanding requests, got "
+                + this.simulator.getMaxOutstanding(), this.simulator.getMaxOutstanding() <= expected);
+        if (expected == 1) {
+            assertEquals(1, this.simulator.getMaxOutstanding());
+        } else {
+            assertTrue("expected more than one outstanding request", this.simulator.getMaxOutstanding() > 1);
+        }
+    }
+
+    private void thenRequestCountIs(int expected) {
+        assertEquals(expected, this.simulator.getRequestCount());
+    }
+
+    /*
+     * Utilities
+     */
+
+    private static int[] blockAddresses(int blocks) {
+        final int[] addresses = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            addresses[i] = i * BLOCK_SIZE;
+        }
+        return addresses;
+    }
+
+    private static int[] blockCounts(int blocks) {
+        final int[] counts = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            counts[i] = BLOCK_SIZE;
+        }
+        return counts;
+    }
+
+    @Before
+    public void startSimulator() throws IOException {
+        this.simulator = new ModbusTcpSimulator();
+        this.simulator.start();
+    }
+
+    @After
+    public void stopSimulator() throws Exception {
+        if (this.modbusDevice != null) {
+            this.modbusDevice.disconnect();
+        }
+        this.simulator.stop();
+    }
+}
@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+
+package org.eclipse.kura.protocol.modbus.test;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToLongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Modbus TCP server that keeps connections open and answers several outstanding requests on each connection.
+ * <p>
+ * Only the read holding registers (03) and read input registers (04) functions are supported, the value of each
+ * holding register is its address and the value of each input register is its address plus one. The response to a
+ * request is sent after a delay computed from the start address of the request, so that responses can be reordered.
+ */
+public class ModbusTcpSimulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModbusTcpSimulator.class);
+
+    private final ScheduledExecutorService responder = Executors.newScheduledThreadPool(4);
+    private final List<Socket> clients = new CopyOnWriteArrayList<>();
+    private final Set<Integer> ignoredAddresses = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicInteger maxOutstanding = new AtomicInteger();
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    private volatile IntToLongFunction responseDelayMillis = address -> 0;
+    private ServerSocket serverSocket;
+
+    public void start() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "ModbusTcpSimulator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    public void stop() throws IOException {
+        this.serverSocket.close();
+        for (Socket client : this.clients) {
+            client.close();
+        }
+        this.responder.shutdownNow();
+    }
+
+    /**
+     * Sets the delay of the response, as a function of the start address of the request.
+     */
+    public void setResponseDelay(IntToLongFunction responseDelayMillis) {
+        this.responseDelayMillis = responseDelayMillis;
+    }
+
+    /**
+     * Requests with the given start address will never be answered.
+     */
+    public void ignoreAddress(int address) {
+        this.ignoredAddresses.add(address);
+    }
+
+    /**
+     * @return the maximum number of requests received and not yet answered on a connection
+     */
+    public int getMaxOutstanding() {
+        return this.maxOutstanding.get();
+    }
+
+    public int getRequestCount() {
+        return this.requestCount.get();
+    }
+
+    public void resetStatistics() {
+        this.maxOutstanding.set(0);
+        this.requestCount.set(0);
+    }
+
+    private void accept() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                Socket client = this.serverSocket.accept();
+                this.clients.add(client);
+                Thread handler = new Thread(() -> handle(client), "ModbusTcpSimulator-Handler");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!this.serverSocket.isClosed()) {
+                    logger.error("ModbusTcpSimulator accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void handle(Socket client) {
+        try (DataInputStream in = new DataInputStream(client.getInputStream());
+                OutputStream out = client.getOutputStream()) {
+            while (true) {
+                byte[] header = new byte[6];
+                in.readFully(header);
+                int length = (header[4] & 0xff) << 8 | header[5] & 0xff;
+                byte[] pdu = new byte[length];
+                in.readFully(pdu);
+
+                this.requestCount.incrementAndGet();
+                int address = (pdu[2] & 0xff) << 8 | pdu[3] & 0xff;
+                if (this.ignoredAddresses.contains(address)) {
+                    continue;
+                }
+
+                int current = this.outstanding.incrementAndGet();
+                this.maxOutstanding.accumulateAndGet(current, Math::max);
+
+                byte[] response = buildResponse(header, pdu, address);
+                this.responder.schedule(() -> send(out, response), this.responseDelayMillis.applyAsLong(address),
+                        TimeUnit.MILLISECONDS);
+            }
+        } catch (EOFException e) {
+            logger.debug("Client disconnected");
+        } catch (IOException e) {
+            logger.debug("ModbusTcpSimulator connection closed", e);
+        } finally {
+            this.clients.remove(client);
+        }
+    }
+
+    private void send(OutputStream out, byte[] response) {
+        this.outstanding.decrementAndGet();
+        try {
+            synchronized (out) {
+                out.write(response);
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to send response", e);
+        }
+    }
+
+    private static byte[] buildResponse(byte[] header, byte[] pdu, int address) {
+        int functionCode = pdu[1];
+        byte[] body;
+        if (functionCode == 3 || functionCode == 4) {
+            int count = (pdu[4] & 0xff) << 8 | pdu[5] & 0xff;
+            body = new byte[3 + count * 2];
+            body[2] = (byte) (count * 2);
+            for (int i = 0; i < count; i++) {
+                int value = address + i + (functionCode == 4 ? 1 : 0);
+                body[3 + i * 2] = (byte) (value >> 8);
+                body[4 + i * 2] = (byte) value;
+            }
+        } else {
+            // illegal function exception
+            body = new byte[3];
+            functionCode |= 0x80;
+            body[2] = 1;
+        }
+        body[0] = pdu[0];
+        body[1] = (byte) functionCode;
+
+        byte[] response = new byte[6 + body.length];
+        response[0] = header[0];
+        response[1] = header[1];
+        response[4] = (byte) (body.length >> 8);
+        response[5] = (byte) body.length;
+        System.arraycopy(body, 0, response, 6, body.length);
+        return response;
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -128,6 +128,46 @@ public class Snippets {
             + "            \"cardinality\": 0,\n" //
             + "            \"defaultValue\": \"false\",\n" //
             + "            \"isRequired\": true\n" //
+            + "        },\n" //
+            + "        {\n" //
+            + "            \"name\": \"deadband.absolute\",\n" //
+            + "            \"description\": \"If emit.on.change is enabled, a numeric value is not emitted if it differs from the last emitted value by this amount or less. Set to 0 to emit on any change.\",\n" //
+            + "            \"id\": \"+deadband.absolute\",\n" //
+            + "            \"type\": \"DOUBLE\",\n" //
+            + "            \"cardinality\": 0,\n" //
+            + "            \"min\": \"0\",\n" //
+            + "            \"defaultValue\": \"0\",\n" //
+            + "            \"isRequired\": false\n" //
+            + "        },\n" //
+            + "        {\n" //
+            + "            \"name\": \"deadband.percent\",\n" //
+            + "            \"description\": \"If emit.on.change is enabled, a numeric value is not emitted if it differs from the last emitted value by this percentage of the last emitted value or less. Set to 0 to emit on any change.\",\n" //
+            + "            \"id\": \"+deadband.percent\",\n" //
+            + "            \"type\": \"DOUBLE\",\n" //
+            + "            \"cardinality\": 0,\n" //
+            + "            \"min\": \"0\",\n" //
+            + "            \"defaultValue\": \"0\",\n" //
+            + "            \"isRequired\": false\n" //
+            + "        },\n" //
+            + "        {\n" //
+            + "            \"name\": \"min.emit.interval\",\n" //
+            + "            \"description\": \"If emit.on.change is enabled, the minimum time in milliseconds between two emissions of the channel value. Set to 0 to disable.\",\n" //
+            + "            \"id\": \"+min.emit.interval\",\n" //
+            + "            \"type\": \"LONG\",\n" //
+            + "            \"cardinality\": 0,\n" //
+            + "            \"min\": \"0\",\n" //
+            + "            \"defaultValue\": \"0\",\n" //
+            + "            \"isRequired\": false\n" //
+            + "        },\n" //
+            + "        {\n" //
+            + "            \"name\": \"heartbeat.interval\",\n" //
+            + "            \"description\": \"If emit.on.change is enabled, the channel value is emitted even if it did not change when it has not been emitted for this time in milliseconds. Set to 0 to disable.\",\n" //
+            + "            \"id\": \"+heartbeat.interval\",\n" //
+            + "            \"type\": \"LONG\",\n" //
+            + "            \"cardinality\": 0,\n" //
+            + "            \"min\": \"0\",\n" //
+            + "            \"defaultValue\": \"0\",\n" //
+            + "            \"isRequired\": false\n" //
             + "        }\n" //
             + "    ]";
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -30,10 +30,14 @@ public class AIComponentOptionsTest {
     private static final String PREPROCESSOR_MODEL_NAME = "preprocessor.model.name";
     private static final String INFERENCE_MODEL_NAME = "inference.model.name";
     private static final String POSTPROCESSOR_MODEL_NAME = "postprocessor.model.name";
+    private static final String BATCH_SIZE = "batch.size";
+    private static final String BATCH_TIMEOUT = "batch.timeout";
 
     private Optional<String> preprocessorName;
     private String inferenceName;
     private Optional<String> postprocessorName;
+    private int batchSize;
+    private long batchTimeout;
 
     /*
      * Scenarios
@@ -82,6 +86,36 @@ public class AIComponentOptionsTest {
         thenPostprocessorModelNameIsEmpty();
     }
 
+    @Test
+    public void getBatchPropertiesReturnsDefaultsWhenNotSpecified() {
+        givenOptionsNotPopulated();
+
+        whenAccessingOptionsFields();
+
+        thenBatchSizeIs(1);
+        thenBatchTimeoutIs(100);
+    }
+
+    @Test
+    public void getBatchPropertiesWorksWhenSpecified() {
+        givenOptionsWithBatch(8, 250L);
+
+        whenAccessingOptionsFields();
+
+        thenBatchSizeIs(8);
+        thenBatchTimeoutIs(250);
+    }
+
+    @Test
+    public void getBatchPropertiesIgnoresInvalidValues() {
+        givenOptionsWithBatch(0, -1L);
+
+        whenAccessingOptionsFields();
+
+        thenBatchSizeIs(1);
+        thenBatchTimeoutIs(0);
+    }
+
     /*
      * Given
      */
@@ -95,6 +129,15 @@ public class AIComponentOptionsTest {
         optionsInstance = new AIComponentOptions(prop);
     }
 
+    private void givenOptionsWithBatch(int size, long timeout) {
+        Map<String, Object> prop = new HashMap<>();
+
+        prop.put(BATCH_SIZE, size);
+        prop.put(BATCH_TIMEOUT, timeout);
+
+        optionsInstance = new AIComponentOptions(prop);
+    }
+
     private void givenOptionsNotPopulated() {
         Map<String, Object> prop = new HashMap<>();
         optionsInstance = new AIComponentOptions(prop);
@@ -107,6 +150,8 @@ public class AIComponentOptionsTest {
         preprocessorName = optionsInstance.getPreprocessorModelName();
         inferenceName = optionsInstance.getInferenceModelName();
         postprocessorName = optionsInstance.getPostprocessorModelName();
+        batchSize = optionsInstance.getBatchSize();
+        batchTimeout = optionsInstance.getBatchTimeout();
     }
 
     /*
@@ -139,4 +184,12 @@ public class AIComponentOptionsTest {
         assertFalse(postprocessorName.isPresent());
         assertEquals(postprocessorName, Optional.empty());
     }
+
+    private void thenBatchSizeIs(int expected) {
+        assertEquals(expected, batchSize);
+    }
+
+    private void thenBatchTimeoutIs(long expected) {
+        assertEquals(expected, batchTimeout);
+    }
 }
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -16,6 +16,8 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.ArgumentMatchers.any;
 
@@ -25,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import org.eclipse.kura.KuraException;
 import org.eclipse.kura.ai.inference.ModelInfo;
 import org.eclipse.kura.ai.inference.TensorDescriptor;
 import org.eclipse.kura.type.TypedValue;
@@ -33,8 +36,10 @@ import org.eclipse.kura.wire.WireEnvelope;
 import org.eclipse.kura.wire.WireHelperService;
 import org.eclipse.kura.wire.WireRecord;
 import org.eclipse.kura.wire.WireSupport;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.osgi.service.component.ComponentContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,10 +51,13 @@ public class AIComponentTest {
     private static final String PREPROCESSOR_MODEL_NAME = "preprocessor.model.name";
     private static final String INFERENCE_MODEL_NAME = "inference.model.name";
     private static final String POSTPROCESSOR_MODEL_NAME = "postprocessor.model.name";
+    private static final String BATCH_SIZE = "batch.size";
+    private static final String BATCH_TIMEOUT = "batch.timeout";
 
     private AIComponent aiComponent;
     private Map<String, Object> compProperties;
     private InferenceEngineServiceMock engine;
+    private WireSupport wireSupport;
     private WireEnvelope inputEnvelope;
     private boolean exceptionsOccurred;
 
@@ -130,6 +138,139 @@ public class AIComponentTest {
         thenNoExceptionsOccurred();
     }
 
+    @Test
+    public void shouldInferOnceForBatchOfRecords() {
+        givenEchoInferenceEngine();
+        givenInputEnvelope(10, 20);
+        givenWireProperties("", "infer", "");
+        givenBatch(2, 10000);
+        givenModelInfo("infer");
+        givenActivate();
+
+        whenOnWireReceive(this.inputEnvelope);
+
+        thenInferIsCalled(1);
+        thenEmittedIntegersAre(10, 20);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void shouldBatchRecordsOfDifferentEnvelopes() {
+        givenEchoInferenceEngine();
+        givenWireProperties("preprocessor", "infer", "postprocessor");
+        givenBatch(3, 10000);
+        givenModelInfo("preprocessor");
+        givenModelInfo("infer");
+        givenModelInfo("postprocessor");
+        givenActivate();
+        givenInputEnvelope(1, 2);
+        givenOnWireReceive(this.inputEnvelope);
+        givenInputEnvelope(3, 4);
+
+        whenOnWireReceive(this.inputEnvelope);
+
+        thenInferIsCalled(3);
+        thenEmittedIntegersAre(1, 2, 3);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void shouldInferIncompleteBatchAfterTimeout() {
+        givenEchoInferenceEngine();
+        givenInputEnvelope(10);
+        givenWireProperties("", "infer", "");
+        givenBatch(4, 50);
+        givenModelInfo("infer");
+        givenActivate();
+
+        whenOnWireReceive(this.inputEnvelope);
+
+        thenInferIsEventuallyCalled(1);
+        thenEmittedIntegersAre(10);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void shouldInferPendingRecordsOnDeactivate() {
+        givenEchoInferenceEngine();
+        givenInputEnvelope(10, 20);
+        givenWireProperties("", "infer", "");
+        givenBatch(4, 10000);
+        givenModelInfo("infer");
+        givenActivate();
+        givenOnWireReceive(this.inputEnvelope);
+
+        whenDeactivate();
+
+        thenInferIsCalled(1);
+        thenEmittedIntegersAre(10, 20);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void shouldInferRecordsWithBytesTensorsOneAtATime() {
+        givenEchoInferenceEngine();
+        givenInputEnvelope(10, 20);
+        givenWireProperties("", "infer", "");
+        givenBatch(2, 10000);
+        givenModelInfo("infer", "BYTES");
+        givenActivate();
+
+        whenOnWireReceive(this.inputEnvelope);
+
+        thenInferIsCalled(2);
+        thenEmittedIntegersAre(10, 20);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void shouldEmitWhenAsyncInferenceCompletes() throws KuraException {
+        givenAsyncEchoInferenceEngine();
+        givenInputEnvelope(10);
+        givenWireProperties("preprocessor", "infer", "");
+        givenModelInfo("preprocessor");
+        givenModelInfo("infer");
+        givenActivate();
+        givenOnWireReceive(this.inputEnvelope);
+        givenNothingEmitted();
+
+        whenAsyncInferencesComplete(false);
+
+        thenInferIsCalled(2);
+        thenEmittedIntegersAre(10);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void shouldEmitAsyncResultsInOrderOfRecords() throws KuraException {
+        givenAsyncEchoInferenceEngine();
+        givenInputEnvelope(10, 20, 30);
+        givenWireProperties("", "infer", "");
+        givenModelInfo("infer");
+        givenActivate();
+        givenOnWireReceive(this.inputEnvelope);
+
+        whenAsyncInferencesComplete(true);
+
+        thenEmittedIntegersAre(10, 20, 30);
+        thenNoExceptionsOccurred();
+    }
+
+    @Test
+    public void shouldNotEmitIfAsyncInferenceFails() throws KuraException {
+        givenAsyncEchoInferenceEngine();
+        givenInputEnvelope(10);
+        givenWireProperties("", "infer", "");
+        givenModelInfo("infer");
+        givenActivate();
+        givenOnWireReceive(this.inputEnvelope);
+
+        whenAsyncInferencesFail();
+
+        thenEmittedIntegersAre();
+        thenNoExceptionsOccurred();
+    }
+
     /*
      * Steps
      */
@@ -144,6 +285,16 @@ public class AIComponentTest {
         this.aiComponent.bindInferenceEngineService(this.engine);
     }
 
+    private void givenEchoInferenceEngine() {
+        givenInferenceEngine();
+        this.engine.setEchoInputs();
+    }
+
+    private void givenAsyncEchoInferenceEngine() {
+        givenEchoInferenceEngine();
+        this.engine.setAsync();
+    }
+
     private void givenNotReadyInferenceEngine() {
         this.engine = new InferenceEngineServiceMock();
         this.engine.setEngineNotReady();
@@ -170,6 +321,11 @@ public class AIComponentTest {
         }
     }
 
+    private void givenBatch(int size, long timeout) {
+        this.compProperties.put(BATCH_SIZE, size);
+        this.compProperties.put(BATCH_TIMEOUT, timeout);
+    }
+
     private void givenActivate() {
         ComponentContext mockContext = mock(ComponentContext.class);
         this.aiComponent.activate(mockContext, this.compProperties);
@@ -194,7 +350,34 @@ public class AIComponentTest {
         this.inputEnvelope = new WireEnvelope("example_asset_pid", records);
     }
 
+    private void givenInputEnvelope(int... intValues) {
+        List<WireRecord> records = new ArrayList<>();
+        for (int value : intValues) {
+            Map<String, TypedValue<?>> recordProps = new HashMap<>();
+            recordProps.put("IN_INT", TypedValues.newIntegerValue(value));
+            recordProps.put("IN_BOOL", TypedValues.newBooleanValue(value % 2 == 0));
+            recordProps.put("IN_STR", TypedValues.newStringValue(Integer.toString(value)));
+            recordProps.put("IN_BYTEARR", TypedValues.newByteArrayValue(new byte[] { (byte) value, 0x4f }));
+            recordProps.put("IN_DOUBLE", TypedValues.newDoubleValue(value / 10.0));
+            recordProps.put("IN_LONG", TypedValues.newLongValue(value));
+            records.add(new WireRecord(recordProps));
+        }
+        this.inputEnvelope = new WireEnvelope("example_asset_pid", records);
+    }
+
+    private void givenOnWireReceive(WireEnvelope env) {
+        whenOnWireReceive(env);
+    }
+
+    private void givenNothingEmitted() {
+        thenEmittedIntegersAre();
+    }
+
     private void givenModelInfo(String modelName) {
+        givenModelInfo(modelName, "");
+    }
+
+    private void givenModelInfo(String modelName, String byteArrayType) {
         List<Long> inputShape = new ArrayList<>();
         List<Long> outputShape = new ArrayList<>();
         inputShape.add((long) 1);
@@ -204,8 +387,8 @@ public class AIComponentTest {
         inDescs.add(new TensorDescriptor("IN_INT", "", Optional.empty(), inputShape, new HashMap<String, Object>()));
         inDescs.add(new TensorDescriptor("IN_BOOL", "", Optional.empty(), inputShape, new HashMap<String, Object>()));
         inDescs.add(new TensorDescriptor("IN_STR", "", Optional.empty(), inputShape, new HashMap<String, Object>()));
-        inDescs.add(
-                new TensorDescriptor("IN_BYTEARR", "", Optional.empty(), inputShape, new HashMap<String, Object>()));
+        inDescs.add(new TensorDescriptor("IN_BYTEARR", byteArrayType, Optional.empty(), inputShape,
+                new HashMap<String, Object>()));
         inDescs.add(new TensorDescriptor("IN_DOUBLE", "", Optional.empty(), inputShape, new HashMap<String, Object>()));
         inDescs.add(new TensorDescriptor("IN_LONG", "", Optional.empty(), inputShape, new HashMap<String, Object>()));
 
@@ -213,8 +396,8 @@ public class AIComponentTest {
         outDescs.add(new TensorDescriptor("IN_INT", "", Optional.empty(), outputShape, new HashMap<String, Object>()));
         outDescs.add(new TensorDescriptor("IN_BOOL", "", Optional.empty(), outputShape, new HashMap<String, Object>()));
         outDescs.add(new TensorDescriptor("IN_STR", "", Optional.empty(), outputShape, new HashMap<String, Object>()));
-        outDescs.add(
-                new TensorDescriptor("IN_BYTEARR", "", Optional.empty(), outputShape, new HashMap<String, Object>()));
+        outDescs.add(new TensorDescriptor("IN_BYTEARR", byteArrayType, Optional.empty(), outputShape,
+                new HashMap<String, Object>()));
         outDescs.add(
                 new TensorDescriptor("IN_DOUBLE", "", Optional.empty(), outputShape, new HashMap<String, Object>()));
         outDescs.add(new TensorDescriptor("IN_LONG", "", Optional.empty(), outputShape, new HashMap<String, Object>()));
@@ -240,6 +423,18 @@ public class AIComponentTest {
         }
     }
 
+    private void whenAsyncInferencesComplete(boolean reverseOrder) throws KuraException {
+        this.engine.completePendingInferences(reverseOrder);
+    }
+
+    private void whenAsyncInferencesFail() {
+        this.engine.failPendingInferences();
+    }
+
+    private void whenDeactivate() {
+        this.aiComponent.deactivate();
+    }
+
     /*
      * Then
      */
@@ -253,6 +448,38 @@ public class AIComponentTest {
         }
     }
 
+    private void thenInferIsEventuallyCalled(int nTimes) {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (this.engine.wasCalledTimes() < nTimes && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        thenInferIsCalled(nTimes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void thenEmittedIntegersAre(int... expected) {
+        ArgumentCaptor<List<WireRecord>> captor = ArgumentCaptor.forClass(List.class);
+        verify(this.wireSupport, times(expected.length)).emit(captor.capture());
+
+        List<List<WireRecord>> emitted = captor.getAllValues();
+        for (int i = 0; i < expected.length; i++) {
+            boolean found = false;
+            for (WireRecord record : emitted.get(i)) {
+                TypedValue<?> value = record.getProperties().get("IN_INT");
+                if (value != null) {
+                    assertEquals(expected[i], value.getValue());
+                    found = true;
+                }
+            }
+            assertTrue(found);
+        }
+    }
+
     private void thenNoExceptionsOccurred() {
         assertFalse(this.exceptionsOccurred);
     }
@@ -271,10 +498,15 @@ public class AIComponentTest {
 
         // wire dependencies
         WireHelperService wireHelperService = mock(WireHelperService.class);
-        WireSupport wireSupport = mock(WireSupport.class);
-        when(wireHelperService.newWireSupport(any(), any())).thenReturn(wireSupport);
+        this.wireSupport = mock(WireSupport.class);
+        when(wireHelperService.newWireSupport(any(), any())).thenReturn(this.wireSupport);
         this.aiComponent.bindWireHelperService(wireHelperService);
 
         this.exceptionsOccurred = false;
     }
+
+    @After
+    public void tearDown() {
+        this.aiComponent.deactivate();
+    }
 }
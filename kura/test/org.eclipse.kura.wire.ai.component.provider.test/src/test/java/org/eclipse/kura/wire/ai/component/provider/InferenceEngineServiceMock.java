@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  *
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -14,8 +14,10 @@
 package org.eclipse.kura.wire.ai.component.provider;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import org.eclipse.kura.KuraErrorCode;
 import org.eclipse.kura.KuraException;
@@ -28,7 +30,10 @@ public class InferenceEngineServiceMock implements InferenceEngineService {
 
     private List<ModelInfo> models;
     private boolean isEngineReady;
-    private int timesCalled = 0;
+    private volatile int timesCalled = 0;
+    private boolean echoInputs;
+    private boolean async;
+    private final List<PendingInference> pendingInferences = new ArrayList<>();
 
     public InferenceEngineServiceMock() {
         this.models = new ArrayList<>();
@@ -47,6 +52,35 @@ public class InferenceEngineServiceMock implements InferenceEngineService {
         this.models.add(info);
     }
 
+    public void setEchoInputs() {
+        this.echoInputs = true;
+    }
+
+    public void setAsync() {
+        this.async = true;
+    }
+
+    public void completePendingInferences(boolean reverseOrder) throws KuraException {
+        while (!this.pendingInferences.isEmpty()) {
+            final List<PendingInference> inferences = new ArrayList<>(this.pendingInferences);
+            this.pendingInferences.clear();
+            if (reverseOrder) {
+                Collections.reverse(inferences);
+            }
+            for (PendingInference inference : inferences) {
+                inference.result.complete(infer(inference.modelInfo, inference.inputData));
+            }
+        }
+    }
+
+    public void failPendingInferences() {
+        final List<PendingInference> inferences = new ArrayList<>(this.pendingInferences);
+        this.pendingInferences.clear();
+        for (PendingInference inference : inferences) {
+            inference.result.completeExceptionally(new KuraException(KuraErrorCode.BAD_REQUEST));
+        }
+    }
+
     public int wasCalledTimes() {
         return this.timesCalled;
     }
@@ -59,6 +93,10 @@ public class InferenceEngineServiceMock implements InferenceEngineService {
             throw new KuraException(KuraErrorCode.BAD_REQUEST);
         }
 
+        if (this.echoInputs) {
+            return inputData;
+        }
+
         List<Tensor> inferResult = new ArrayList<>();
 
         for (ModelInfo model : this.models) {
@@ -72,6 +110,17 @@ public class InferenceEngineServiceMock implements InferenceEngineService {
         return inferResult;
     }
 
+    @Override
+    public CompletableFuture<List<Tensor>> inferAsync(ModelInfo modelInfo, List<Tensor> inputData) {
+        if (!this.async) {
+            return InferenceEngineService.super.inferAsync(modelInfo, inputData);
+        }
+
+        final PendingInference inference = new PendingInference(modelInfo, inputData);
+        this.pendingInferences.add(inference);
+        return inference.result;
+    }
+
     @Override
     public Optional<ModelInfo> getModelInfo(String modelName) throws KuraException {
         if (!this.isEngineReady) {
@@ -116,4 +165,16 @@ public class InferenceEngineServiceMock implements InferenceEngineService {
         // not needed
         return null;
     }
+
+    private static final class PendingInference {
+
+        private final ModelInfo modelInfo;
+        private final List<Tensor> inputData;
+        private final CompletableFuture<List<Tensor>> result = new CompletableFuture<>();
+
+        PendingInference(ModelInfo modelInfo, List<Tensor> inputData) {
+            this.modelInfo = modelInfo;
+            this.inputData = inputData;
+        }
+    }
 }
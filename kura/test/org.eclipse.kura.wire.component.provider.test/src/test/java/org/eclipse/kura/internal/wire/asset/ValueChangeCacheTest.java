@@ -0,0 +1,296 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.wire.asset;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.channel.ChannelFlag;
+import org.eclipse.kura.channel.ChannelRecord;
+import org.eclipse.kura.channel.ChannelStatus;
+import org.eclipse.kura.internal.wire.asset.ValueChangeCache.ChannelFilter;
+import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.TypedValues;
+import org.junit.Test;
+
+public class ValueChangeCacheTest {
+
+    private final Map<String, ChannelFilter> filters = new HashMap<>();
+    private final List<Integer> emittedCounts = new ArrayList<>();
+    private long nowMillis;
+    private ValueChangeCache cache;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldEmitOnlyChangedValuesByDefault() {
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("test", 1, 1, 2, 2, 1);
+
+        thenEmittedCountsAre(1, 0, 1, 0, 1);
+    }
+
+    @Test
+    public void shouldSuppressValuesWithinAbsoluteDeadband() {
+        givenChannelFilter("test", new ChannelFilter(0.5, 0, 0, 0));
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("test", 10.0, 10.3, 10.5, 10.6, 10.2, 9.9);
+
+        thenEmittedCountsAre(1, 0, 0, 1, 0, 1);
+    }
+
+    @Test
+    public void shouldSuppressValuesWithinPercentDeadband() {
+        givenChannelFilter("test", new ChannelFilter(0, 10, 0, 0));
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("test", 100, 109, 91, 111, 121, 123);
+
+        thenEmittedCountsAre(1, 0, 0, 1, 0, 1);
+    }
+
+    @Test
+    public void shouldSuppressIfWithinAnyDeadband() {
+        givenChannelFilter("test", new ChannelFilter(5, 1, 0, 0));
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("test", 1000L, 1004L, 1011L, 1020L);
+
+        thenEmittedCountsAre(1, 0, 1, 0);
+    }
+
+    @Test
+    public void shouldApplyDeadbandToFloatValues() {
+        givenChannelFilter("test", new ChannelFilter(1, 0, 0, 0));
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("test", 1.0f, 1.5f, 2.5f);
+
+        thenEmittedCountsAre(1, 0, 1);
+    }
+
+    @Test
+    public void shouldIgnoreDeadbandForNonNumericValues() {
+        givenChannelFilter("test", new ChannelFilter(100, 100, 0, 0));
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("test", "foo", "foo", "bar");
+
+        thenEmittedCountsAre(1, 0, 1);
+    }
+
+    @Test
+    public void shouldLimitEmitRate() {
+        givenChannelFilter("test", new ChannelFilter(0, 0, 1000, 0));
+        givenValueChangeCache();
+
+        whenValueIsFiltered("test", 1, 0);
+        whenValueIsFiltered("test", 2, 500);
+        whenValueIsFiltered("test", 3, 999);
+        whenValueIsFiltered("test", 3, 1000);
+        whenValueIsFiltered("test", 4, 1500);
+        whenValueIsFiltered("test", 4, 2100);
+
+        thenEmittedCountsAre(1, 0, 0, 1, 0, 1);
+    }
+
+    @Test
+    public void shouldEmitUnchangedValueOnHeartbeat() {
+        givenChannelFilter("test", new ChannelFilter(0, 0, 0, 1000));
+        givenValueChangeCache();
+
+        whenValueIsFiltered("test", 1, 0);
+        whenValueIsFiltered("test", 1, 500);
+        whenValueIsFiltered("test", 1, 1000);
+        whenValueIsFiltered("test", 1, 1500);
+        whenValueIsFiltered("test", 2, 1600);
+        whenValueIsFiltered("test", 2, 2500);
+        whenValueIsFiltered("test", 2, 2600);
+
+        thenEmittedCountsAre(1, 0, 1, 0, 1, 0, 1);
+    }
+
+    @Test
+    public void shouldEmitOnHeartbeatWithinDeadband() {
+        givenChannelFilter("test", new ChannelFilter(10, 0, 0, 1000));
+        givenValueChangeCache();
+
+        whenValueIsFiltered("test", 1, 0);
+        whenValueIsFiltered("test", 5, 500);
+        whenValueIsFiltered("test", 5, 1000);
+
+        thenEmittedCountsAre(1, 0, 1);
+    }
+
+    @Test
+    public void shouldApplyFiltersPerChannel() {
+        givenChannelFilter("filtered", new ChannelFilter(10, 0, 0, 0));
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("filtered", 1, 2);
+        whenValuesAreFiltered("unfiltered", 1, 2);
+
+        thenEmittedCountsAre(1, 0, 1, 1);
+    }
+
+    @Test
+    public void shouldAlwaysEmitFailuresAndResetState() {
+        givenChannelFilter("test", new ChannelFilter(10, 0, 0, 0));
+        givenValueChangeCache();
+
+        whenValueIsFiltered("test", 1, 0);
+        whenFailureIsFiltered("test");
+        whenFailureIsFiltered("test");
+        whenValueIsFiltered("test", 1, 0);
+
+        thenEmittedCountsAre(1, 1, 1, 1);
+    }
+
+    @Test
+    public void shouldCountEmittedAndSuppressedRecords() {
+        givenChannelFilter("test", new ChannelFilter(0.5, 0, 0, 0));
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("test", 1.0, 1.1, 1.2, 2.0, 2.0);
+
+        thenEmittedRecordCountIs(2);
+        thenSuppressedRecordCountIs(3);
+    }
+
+    @Test
+    public void shouldParseChannelConfiguration() {
+        givenChannelFilter("test", ChannelFilter.fromChannelConfiguration(channelConfiguration("2.5", "0", "0", "0")));
+        givenValueChangeCache();
+
+        whenValuesAreFiltered("test", 10.0, 12.0, 13.0);
+
+        thenEmittedCountsAre(1, 0, 1);
+    }
+
+    @Test
+    public void shouldDisableFilterWithDefaultOrInvalidChannelConfiguration() {
+        thenFilterIsEnabled(false, ChannelFilter.fromChannelConfiguration(Collections.emptyMap()));
+        thenFilterIsEnabled(false, ChannelFilter.fromChannelConfiguration(channelConfiguration("0", "0", "0", "0")));
+        thenFilterIsEnabled(false, ChannelFilter.fromChannelConfiguration(channelConfiguration("foo", "", "-1", "")));
+        thenFilterIsEnabled(true, ChannelFilter.fromChannelConfiguration(channelConfiguration("0", "0", "0", "1")));
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenChannelFilter(final String channelName, final ChannelFilter filter) {
+        this.filters.put(channelName, filter);
+    }
+
+    private void givenValueChangeCache() {
+        this.cache = new ValueChangeCache(this.filters, () -> TimeUnit.MILLISECONDS.toNanos(this.nowMillis));
+    }
+
+    /*
+     * When
+     */
+
+    private void whenValuesAreFiltered(final String channelName, final Object... values) {
+        for (final Object value : values) {
+            whenValueIsFiltered(channelName, value, this.nowMillis);
+        }
+    }
+
+    private void whenValueIsFiltered(final String channelName, final Object value, final long timeMillis) {
+        this.nowMillis = timeMillis;
+
+        final ChannelRecord channelRecord = ChannelRecord.createReadRecord(channelName,
+                DataType.valueOf(getDataTypeName(value)));
+        channelRecord.setValue(TypedValues.newTypedValue(value));
+        channelRecord.setChannelStatus(new ChannelStatus(ChannelFlag.SUCCESS));
+
+        filter(channelRecord);
+    }
+
+    private void whenFailureIsFiltered(final String channelName) {
+        final ChannelRecord channelRecord = ChannelRecord.createReadRecord(channelName, DataType.INTEGER);
+        channelRecord.setChannelStatus(new ChannelStatus(ChannelFlag.FAILURE));
+
+        filter(channelRecord);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenEmittedCountsAre(final Integer... counts) {
+        assertEquals(Arrays.asList(counts), this.emittedCounts);
+    }
+
+    private void thenEmittedRecordCountIs(final long count) {
+        assertEquals(count, this.cache.getEmittedCount());
+    }
+
+    private void thenSuppressedRecordCountIs(final long count) {
+        assertEquals(count, this.cache.getSuppressedCount());
+    }
+
+    private void thenFilterIsEnabled(final boolean enabled, final ChannelFilter filter) {
+        assertEquals(enabled, filter.isEnabled());
+    }
+
+    /*
+     * Utilities
+     */
+
+    private void filter(final ChannelRecord channelRecord) {
+        this.emittedCounts.add(this.cache.filterRecords(Collections.singletonList(channelRecord)).size());
+    }
+
+    private static String getDataTypeName(final Object value) {
+        if (value instanceof Double) {
+            return "DOUBLE";
+        } else if (value instanceof Float) {
+            return "FLOAT";
+        } else if (value instanceof Long) {
+            return "LONG";
+        } else if (value instanceof Integer) {
+            return "INTEGER";
+        } else {
+            return "STRING";
+        }
+    }
+
+    private static Map<String, Object> channelConfiguration(final String absoluteDeadband,
+            final String percentDeadband, final String minEmitInterval, final String heartbeatInterval) {
+        final Map<String, Object> properties = new HashMap<>();
+
+        properties.put(WireAssetConstants.DEADBAND_ABSOLUTE_PROP_NAME.value(), absoluteDeadband);
+        properties.put(WireAssetConstants.DEADBAND_PERCENT_PROP_NAME.value(), percentDeadband);
+        properties.put(WireAssetConstants.MIN_EMIT_INTERVAL_PROP_NAME.value(), minEmitInterval);
+        properties.put(WireAssetConstants.HEARTBEAT_INTERVAL_PROP_NAME.value(), heartbeatInterval);
+
+        return properties;
+    }
+}
@@ -40,6 +40,7 @@ import org.eclipse.kura.driver.Driver;
 import org.eclipse.kura.driver.Driver.ConnectionException;
 import org.eclipse.kura.type.BooleanValue;
 import org.eclipse.kura.type.DataType;
+import org.eclipse.kura.type.DoubleValue;
 import org.eclipse.kura.type.IntegerValue;
 import org.eclipse.kura.type.LongValue;
 import org.eclipse.kura.type.StringValue;
@@ -406,4 +407,69 @@ public class WireAssetTest {
         verify(mockDriver, times(5)).read(any());
     }
 
+    @Test
+    public void testEmitOnChangeUsesUpdatedChannelFilters() throws ConnectionException {
+        final Map<String, Object> wireAssetProperties = new HashMap<>();
+
+        wireAssetProperties.put(AssetConstants.ASSET_DESC_PROP.value(), "description");
+        wireAssetProperties.put(AssetConstants.ASSET_DRIVER_PROP.value(), "driverPid");
+        wireAssetProperties.put(ConfigurationService.KURA_SERVICE_PID, "componentName");
+        wireAssetProperties.put(WireAssetOptions.EMIT_ON_CHANGE_PROP_NAME, true);
+        wireAssetProperties.put(WireAssetOptions.EMIT_EMPTY_ENVELOPES_PROP_NAME, false);
+
+        Channel readChannel = new Channel("readChannel", ChannelType.READ, DataType.DOUBLE, Collections.emptyMap());
+
+        putChannel(readChannel, wireAssetProperties);
+
+        WireAsset wireAsset = new WireAsset();
+
+        WireSupport mockWireSupport = mock(WireSupport.class);
+        WireHelperService wireHelperService = mock(WireHelperService.class);
+
+        when(wireHelperService.newWireSupport(any(), any())).thenReturn(mockWireSupport);
+
+        wireAsset.bindWireHelperService(wireHelperService);
+
+        final ComponentContext mockComponentContext = mock(ComponentContext.class);
+        when(mockComponentContext.getBundleContext()).thenReturn(mock(BundleContext.class));
+
+        wireAsset.activate(mockComponentContext, wireAssetProperties);
+
+        final double[] values = { 10.0, 10.3, 10.6, 11.0 };
+        final int[] readCount = { 0 };
+
+        Driver mockDriver = mock(Driver.class);
+
+        doAnswer(invocation -> {
+            List<ChannelRecord> records = (List<ChannelRecord>) invocation.getArguments()[0];
+
+            ChannelRecord record = records.get(0);
+            record.setValue(new DoubleValue(values[readCount[0]++]));
+            record.setTimestamp(42);
+            record.setChannelStatus(new ChannelStatus(ChannelFlag.SUCCESS));
+
+            return null;
+        }).when(mockDriver).read(any());
+
+        when(mockDriver.getChannelDescriptor()).thenReturn(Collections::emptyList);
+
+        wireAsset.setDriver(mockDriver);
+
+        wireAssetProperties.put("readChannel" + AssetConstants.CHANNEL_PROPERTY_SEPARATOR.value()
+                + WireAssetConstants.DEADBAND_ABSOLUTE_PROP_NAME.value(), "0.5");
+
+        wireAsset.updated(wireAssetProperties);
+        sync(wireAsset);
+
+        final WireEnvelope wireEnvelope = new WireEnvelope("pid", Collections.emptyList());
+
+        for (int i = 0; i < values.length; i++) {
+            wireAsset.onWireReceive(wireEnvelope);
+        }
+
+        verify(mockDriver, times(4)).read(any());
+        verify(mockWireSupport, times(2)).emit(any());
+        assertEquals(2, wireAsset.getEmittedChannelRecordCount());
+        assertEquals(2, wireAsset.getSuppressedChannelRecordCount());
+    }
 }
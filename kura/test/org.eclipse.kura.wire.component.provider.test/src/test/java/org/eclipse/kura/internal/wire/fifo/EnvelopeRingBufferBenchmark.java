@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.fifo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.kura.wire.WireEnvelope;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@link EnvelopeRingBuffer} with the lock based queue previously used by the {@link Fifo} emitter
+ * thread, with four producers submitting envelopes and a single consumer draining them.
+ * <p>
+ * Producers never block, so that no thread can be left waiting at the end of an iteration: the throughput of the
+ * producer methods includes the envelopes rejected because the queue is full, while the throughput of the consumer
+ * method only counts the drain attempts, which return the number of envelopes actually taken.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeRingBufferBenchmark {
+
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final WireEnvelope envelope = new WireEnvelope("benchmark", Collections.emptyList());
+    private final List<WireEnvelope> batch = new ArrayList<>(MAX_BATCH_SIZE);
+
+    @Param({ "50", "10000" })
+    public int capacity;
+
+    private EnvelopeRingBuffer ringBuffer;
+    private LockBasedQueue lockBasedQueue;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.ringBuffer = new EnvelopeRingBuffer(this.capacity);
+        this.lockBasedQueue = new LockBasedQueue(this.capacity);
+    }
+
+    @Benchmark
+    @Group("ringBuffer")
+    @GroupThreads(4)
+    public boolean ringBufferOffer() {
+        return this.ringBuffer.offer(this.envelope);
+    }
+
+    @Benchmark
+    @Group("ringBuffer")
+    @GroupThreads(1)
+    public int ringBufferDrain() {
+        final int count = this.ringBuffer.drainTo(this.batch, MAX_BATCH_SIZE);
+        this.batch.clear();
+        return count;
+    }
+
+    @Benchmark
+    @Group("lockBasedQueue")
+    @GroupThreads(4)
+    public boolean lockBasedQueueOffer() {
+        return this.lockBasedQueue.offer(this.envelope);
+    }
+
+    @Benchmark
+    @Group("lockBasedQueue")
+    @GroupThreads(1)
+    public int lockBasedQueueDrain() {
+        final int count = this.lockBasedQueue.drainTo(this.batch, MAX_BATCH_SIZE);
+        this.batch.clear();
+        return count;
+    }
+
+    /**
+     * The queue used by the emitter thread before the ring buffer: an {@link ArrayList} guarded by a
+     * {@link ReentrantLock}, from which the consumer removes the envelopes one at a time from the head.
+     */
+    private static final class LockBasedQueue {
+
+        private final Lock lock = new ReentrantLock();
+        private final List<WireEnvelope> queue = new ArrayList<>();
+        private final int queueCapacity;
+
+        LockBasedQueue(final int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        boolean offer(final WireEnvelope envelope) {
+            this.lock.lock();
+            try {
+                if (this.queue.size() >= this.queueCapacity) {
+                    return false;
+                }
+                this.queue.add(envelope);
+                return true;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+
+        int drainTo(final List<WireEnvelope> target, final int maxElements) {
+            this.lock.lock();
+            try {
+                int count = 0;
+                while (count < maxElements && !this.queue.isEmpty()) {
+                    target.add(this.queue.remove(0));
+                    count++;
+                }
+                return count;
+            } finally {
+                this.lock.unlock();
+            }
+        }
+    }
+}
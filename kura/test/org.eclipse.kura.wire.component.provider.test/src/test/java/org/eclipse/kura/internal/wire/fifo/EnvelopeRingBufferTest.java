@@ -0,0 +1,258 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.fifo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.kura.type.LongValue;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireRecord;
+import org.junit.After;
+import org.junit.Test;
+
+public class EnvelopeRingBufferTest {
+
+    private EnvelopeRingBuffer buffer;
+    private final List<WireEnvelope> drained = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private Future<Boolean> pendingPut;
+
+    @After
+    public void cleanUp() {
+        this.executor.shutdownNow();
+    }
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldDrainInInsertionOrder() {
+        givenRingBuffer(4);
+        givenOffered(0, 1, 2);
+
+        whenDrained(10);
+
+        thenDrainedSequenceIs(0, 1, 2);
+        thenIsEmpty();
+    }
+
+    @Test
+    public void shouldRejectOfferWhenFull() {
+        givenRingBuffer(2);
+        givenOffered(0, 1);
+
+        thenOfferReturns(2, false);
+        thenSizeIs(2);
+    }
+
+    @Test
+    public void shouldReuseSlotsAfterWrapAround() {
+        givenRingBuffer(3);
+
+        for (int i = 0; i < 10; i++) {
+            givenOffered(i);
+            whenDrained(1);
+        }
+
+        thenDrainedSequenceIs(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+    }
+
+    @Test
+    public void shouldLimitDrainedBatch() {
+        givenRingBuffer(5);
+        givenOffered(0, 1, 2, 3, 4);
+
+        whenDrained(2);
+
+        thenDrainedSequenceIs(0, 1);
+        thenSizeIs(3);
+    }
+
+    @Test
+    public void shouldBlockPutUntilRoomIsAvailable() throws Exception {
+        givenRingBuffer(1);
+        givenOffered(0);
+        givenPendingPut(1);
+
+        thenPendingPutIsBlocked();
+
+        whenDrained(1);
+
+        thenPendingPutReturns(true);
+        whenDrained(1);
+        thenDrainedSequenceIs(0, 1);
+    }
+
+    @Test
+    public void shouldReleaseBlockedPutOnClose() throws Exception {
+        givenRingBuffer(1);
+        givenOffered(0);
+        givenPendingPut(1);
+
+        whenClosed();
+
+        thenPendingPutReturns(false);
+        thenOfferReturns(2, false);
+    }
+
+    @Test
+    public void shouldNotLoseEnvelopesWithConcurrentProducers() throws Exception {
+        givenRingBuffer(16);
+
+        final int consumed = whenProducingConcurrently(4, 10000);
+
+        assertEquals(40000, consumed);
+        thenEachProducerIsInOrder(4);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenRingBuffer(int capacity) {
+        this.buffer = new EnvelopeRingBuffer(capacity);
+    }
+
+    private void givenOffered(int... sequenceNumbers) {
+        for (final int sequenceNumber : sequenceNumbers) {
+            assertTrue(this.buffer.offer(createWireEnvelope(0, sequenceNumber)));
+        }
+    }
+
+    private void givenPendingPut(int sequenceNumber) {
+        this.pendingPut = this.executor.submit(() -> this.buffer.put(createWireEnvelope(0, sequenceNumber)));
+    }
+
+    /*
+     * When
+     */
+
+    private void whenDrained(int maxElements) {
+        this.buffer.drainTo(this.drained, maxElements);
+    }
+
+    private void whenClosed() {
+        this.buffer.close();
+    }
+
+    private int whenProducingConcurrently(int producers, int envelopesPerProducer) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            futures.add(this.executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < envelopesPerProducer; i++) {
+                    this.buffer.put(createWireEnvelope(producer, i));
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        final int total = producers * envelopesPerProducer;
+        while (this.drained.size() < total) {
+            this.buffer.awaitNotEmpty();
+            this.buffer.drainTo(this.drained, 100);
+        }
+
+        for (final Future<?> future : futures) {
+            future.get(1, TimeUnit.MINUTES);
+        }
+        return this.drained.size();
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenDrainedSequenceIs(long... expected) {
+        final List<Long> actual = new ArrayList<>();
+        for (final WireEnvelope envelope : this.drained) {
+            actual.add(getSequenceNumber(envelope));
+        }
+        final List<Long> expectedList = new ArrayList<>();
+        for (final long value : expected) {
+            expectedList.add(value);
+        }
+        assertEquals(expectedList, actual);
+    }
+
+    private void thenIsEmpty() {
+        assertTrue(this.buffer.isEmpty());
+        assertEquals(0, this.buffer.size());
+    }
+
+    private void thenSizeIs(int expected) {
+        assertEquals(expected, this.buffer.size());
+    }
+
+    private void thenOfferReturns(int sequenceNumber, boolean expected) {
+        assertEquals(expected, this.buffer.offer(createWireEnvelope(0, sequenceNumber)));
+    }
+
+    private void thenPendingPutIsBlocked() throws InterruptedException {
+        Thread.sleep(100);
+        assertFalse(this.pendingPut.isDone());
+    }
+
+    private void thenPendingPutReturns(boolean expected) throws Exception {
+        assertEquals(expected, this.pendingPut.get(10, TimeUnit.SECONDS));
+    }
+
+    private void thenEachProducerIsInOrder(int producers) {
+        final long[] last = new long[producers];
+        for (int p = 0; p < producers; p++) {
+            last[p] = -1;
+        }
+        for (final WireEnvelope envelope : this.drained) {
+            final int producer = Integer.parseInt(envelope.getEmitterPid());
+            final long sequenceNumber = getSequenceNumber(envelope);
+            assertEquals(last[producer] + 1, sequenceNumber);
+            last[producer] = sequenceNumber;
+        }
+    }
+
+    /*
+     * Utilities
+     */
+
+    private static WireEnvelope createWireEnvelope(int producer, long sequenceNumber) {
+        final Map<String, TypedValue<?>> properties = new HashMap<>();
+        properties.put("seq", new LongValue(sequenceNumber));
+        return new WireEnvelope(Integer.toString(producer), Collections.singletonList(new WireRecord(properties)));
+    }
+
+    private static long getSequenceNumber(WireEnvelope envelope) {
+        return (Long) envelope.getRecords().get(0).getProperties().get("seq").getValue();
+    }
+}
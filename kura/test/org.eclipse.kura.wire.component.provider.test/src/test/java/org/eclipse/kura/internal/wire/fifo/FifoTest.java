@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2017, 2020 Eurotech and/or its affiliates and others
+ * Copyright (c) 2017, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -15,10 +15,13 @@ package org.eclipse.kura.internal.wire.fifo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -187,6 +190,58 @@ public class FifoTest {
         assertEquals(1, wiresLatch.getCount());
     }
 
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        CountDownLatch firstEmitLatch = new CountDownLatch(1);
+        CountDownLatch releaseLatch = new CountDownLatch(1);
+        List<Integer> emittedSizes = new ArrayList<>();
+        List<Long> emittedTimestamps = new ArrayList<>();
+        CountDownLatch recordsLatch = new CountDownLatch(10);
+
+        Fifo fifo = new Fifo();
+
+        WireHelperService wireHelperServiceMock = mock(WireHelperService.class);
+        fifo.bindWireHelperService(wireHelperServiceMock);
+
+        WireSupport wireSupportMock = mock(WireSupport.class);
+        doAnswer(invocation -> {
+            List<WireRecord> wireRecords = invocation.getArgument(0);
+            emittedSizes.add(wireRecords.size());
+            for (WireRecord wireRecord : wireRecords) {
+                emittedTimestamps.add((Long) wireRecord.getProperties().get("timestamp").getValue());
+                recordsLatch.countDown();
+            }
+            firstEmitLatch.countDown();
+            releaseLatch.await();
+            return null;
+        }).when(wireSupportMock).emit(anyList());
+        when(wireHelperServiceMock.newWireSupport(fifo, null)).thenReturn(wireSupportMock);
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("discard.envelopes", false);
+        properties.put("queue.capacity", 20);
+        properties.put("coalesce.envelopes", true);
+
+        fifo.activate(properties, mock(ComponentContext.class));
+
+        fifo.onWireReceive(createWireEnvelope());
+        assertTrue(firstEmitLatch.await(1, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 9; i++) {
+            Thread.sleep(2);
+            fifo.onWireReceive(createWireEnvelope());
+        }
+        releaseLatch.countDown();
+
+        assertTrue("Expected all records to be emitted", recordsLatch.await(1, TimeUnit.SECONDS));
+        fifo.deactivate();
+
+        assertEquals(Arrays.asList(1, 9), emittedSizes);
+        for (int i = 1; i < emittedTimestamps.size(); i++) {
+            assertTrue(emittedTimestamps.get(i) > emittedTimestamps.get(i - 1));
+        }
+    }
+
     private WireEnvelope createWireEnvelope() {
         String emitterPid = "emitter";
         List<WireRecord> wireRecords = new ArrayList<WireRecord>();
@@ -0,0 +1,378 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.publisher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.cloudconnection.message.KuraMessage;
+import org.eclipse.kura.type.ByteArrayValue;
+import org.eclipse.kura.type.DoubleValue;
+import org.eclipse.kura.type.IntegerValue;
+import org.eclipse.kura.type.StringValue;
+import org.eclipse.kura.type.TypedValue;
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireHelperService;
+import org.eclipse.kura.wire.WireRecord;
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.service.component.ComponentContext;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonObject;
+
+public class CloudPublisherBatchingTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final CloudPublisher cloudPublisher = new CloudPublisher();
+    private final List<KuraMessage> messages = new CopyOnWriteArrayList<>();
+    private final Map<String, Object> properties = new HashMap<>();
+    private final List<Integer> batchSizes = new ArrayList<>();
+    private ScheduledExecutorService batchExecutor;
+    private WireRecordBatcher batcher;
+    private boolean added;
+    private org.eclipse.kura.cloudconnection.publisher.CloudPublisher cloudConnectionPublisher;
+
+    @After
+    public void cleanUp() {
+        this.cloudPublisher.deactivate(mock(ComponentContext.class));
+        if (this.batchExecutor != null) {
+            this.batchExecutor.shutdownNow();
+        }
+    }
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldPublishEachRecordIfBatchingIsDisabled() throws KuraException {
+        givenActivatedCloudPublisher();
+
+        whenRecordsAreReceived(record("a", 1), record("a", 2));
+
+        thenPublishedMessageCountIs(2);
+    }
+
+    @Test
+    public void shouldPublishBatchWhenMaxRecordsIsReached() throws KuraException {
+        givenBatchMaxRecords(3);
+        givenBatchWindow(60000);
+        givenActivatedCloudPublisher();
+
+        whenRecordsAreReceived(record("a", 1), record("a", 2));
+
+        thenPublishedMessageCountIs(0);
+
+        whenRecordsAreReceived(record("a", 3));
+
+        thenPublishedMessageCountIs(1);
+        thenBatchValuesAre(0, "a", "[1,2,3]");
+        thenBatchTimestampCountIs(0, 3);
+    }
+
+    @Test
+    public void shouldPublishBatchWhenMaxBytesIsReached() throws KuraException {
+        givenBatchMaxRecords(100);
+        givenBatchMaxBytes(20L);
+        givenBatchWindow(60000);
+        givenActivatedCloudPublisher();
+
+        whenRecordsAreReceived(record("a", "0123456789"), record("a", "0123456789"), record("a", "x"));
+
+        thenPublishedMessageCountIs(1);
+        thenBatchValuesAre(0, "a", "[\"0123456789\",\"0123456789\"]");
+    }
+
+    @Test
+    public void shouldPublishBatchWhenTimeWindowExpires() throws KuraException, InterruptedException {
+        givenBatchMaxRecords(100);
+        givenBatchWindow(100);
+        givenActivatedCloudPublisher();
+
+        whenRecordsAreReceived(record("a", 1), record("a", 2));
+
+        thenEventuallyPublishedMessageCountIs(1);
+        thenBatchValuesAre(0, "a", "[1,2]");
+    }
+
+    @Test
+    public void shouldFillMissingPropertiesWithNull() throws KuraException {
+        givenBatchMaxRecords(3);
+        givenActivatedCloudPublisher();
+
+        whenRecordsAreReceived(record("a", 1), record("b", 2.5), record("a", 3));
+
+        thenBatchValuesAre(0, "a", "[1,null,3]");
+        thenBatchValuesAre(0, "b", "[null,2.5,null]");
+    }
+
+    @Test
+    public void shouldEncodeByteArraysAsBase64() throws KuraException {
+        givenBatchMaxRecords(2);
+        givenActivatedCloudPublisher();
+
+        whenRecordsAreReceived(record("a", new byte[] { 1, 2, 3 }), record("a", new byte[] {}));
+
+        thenBatchValuesAre(0, "a", "[\"AQID\",\"\"]");
+    }
+
+    @Test
+    public void shouldUseFirstRecordPropertiesAsMessageProperties() throws KuraException {
+        givenBatchMaxRecords(2);
+        givenActivatedCloudPublisher();
+
+        whenRecordsAreReceived(record("assetName", "first"), record("assetName", "second"));
+
+        thenMessagePropertyIs(0, "assetName", "first");
+        thenBodyIsNotSetFromProperty(0);
+    }
+
+    @Test
+    public void shouldFlushOnDeactivate() throws KuraException {
+        givenBatchMaxRecords(100);
+        givenBatchWindow(60000);
+        givenActivatedCloudPublisher();
+        givenRecordsReceived(record("a", 1));
+
+        whenDeactivated();
+
+        thenPublishedMessageCountIs(1);
+    }
+
+    @Test
+    public void shouldFlushWhenCloudPublisherIsUnset() throws KuraException {
+        givenBatchMaxRecords(100);
+        givenBatchWindow(60000);
+        givenActivatedCloudPublisher();
+        givenRecordsReceived(record("a", 1));
+
+        whenCloudPublisherIsUnset();
+
+        thenPublishedMessageCountIs(1);
+    }
+
+    @Test
+    public void shouldFlushWhenUpdated() throws KuraException {
+        givenBatchMaxRecords(100);
+        givenBatchWindow(60000);
+        givenActivatedCloudPublisher();
+        givenRecordsReceived(record("a", 1));
+
+        whenBatchingIsDisabled();
+
+        thenPublishedMessageCountIs(1);
+
+        whenRecordsAreReceived(record("a", 2));
+
+        thenPublishedMessageCountIs(2);
+    }
+
+    @Test
+    public void shouldExposeBatchingRatio() throws KuraException {
+        givenBatchMaxRecords(2);
+        givenBatchWindow(60000);
+        givenActivatedCloudPublisher();
+
+        whenRecordsAreReceived(record("a", 1), record("a", 2), record("a", 3), record("a", 4), record("a", 5));
+
+        thenBatchedRecordCountIs(5);
+        thenPublishedBatchCountIs(2);
+        thenRecordsPerBatchIs(2.5);
+    }
+
+    @Test
+    public void shouldRejectRecordsAddedAfterStop() {
+        givenBatcher(100);
+        givenRecordAddedToBatcher(record("a", 1));
+
+        whenBatcherIsStopped();
+        whenRecordIsAddedToBatcher(record("a", 2));
+
+        thenRecordIsRejected();
+        thenBatchSizesAre(1);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenBatchMaxRecords(final int maxRecords) {
+        this.properties.put("batch.max.records", maxRecords);
+    }
+
+    private void givenBatchMaxBytes(final long maxBytes) {
+        this.properties.put("batch.max.bytes", maxBytes);
+    }
+
+    private void givenBatchWindow(final long windowMs) {
+        this.properties.put("batch.window.ms", windowMs);
+    }
+
+    private void givenActivatedCloudPublisher() throws KuraException {
+        this.properties.put("publish.position", "none");
+        this.properties.put("set.body.from.property", "assetName");
+
+        this.cloudPublisher.bindWireHelperService(mock(WireHelperService.class));
+
+        this.cloudConnectionPublisher = mock(org.eclipse.kura.cloudconnection.publisher.CloudPublisher.class);
+        when(this.cloudConnectionPublisher.publish(any())).thenAnswer(invocation -> {
+            this.messages.add(invocation.getArgument(0, KuraMessage.class));
+            return null;
+        });
+        this.cloudPublisher.setCloudPublisher(this.cloudConnectionPublisher);
+
+        this.cloudPublisher.activate(mock(ComponentContext.class), this.properties);
+    }
+
+    private void givenRecordsReceived(final WireRecord... records) {
+        whenRecordsAreReceived(records);
+    }
+
+    private void givenBatcher(final int maxRecords) {
+        this.batchExecutor = Executors.newSingleThreadScheduledExecutor();
+        this.batcher = new WireRecordBatcher(maxRecords, 0, 60000, this.batchExecutor,
+                batch -> this.batchSizes.add(batch.size()));
+    }
+
+    private void givenRecordAddedToBatcher(final WireRecord wireRecord) {
+        whenRecordIsAddedToBatcher(wireRecord);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenRecordsAreReceived(final WireRecord... records) {
+        this.cloudPublisher.onWireReceive(new WireEnvelope("emitter", new ArrayList<>(Arrays.asList(records))));
+    }
+
+    private void whenDeactivated() {
+        this.cloudPublisher.deactivate(mock(ComponentContext.class));
+    }
+
+    private void whenCloudPublisherIsUnset() {
+        this.cloudPublisher.unsetCloudPublisher(this.cloudConnectionPublisher);
+    }
+
+    private void whenBatcherIsStopped() {
+        this.batcher.stop();
+    }
+
+    private void whenRecordIsAddedToBatcher(final WireRecord wireRecord) {
+        this.added = this.batcher.add(wireRecord, System.currentTimeMillis());
+    }
+
+    private void whenBatchingIsDisabled() {
+        this.properties.put("batch.max.records", 1);
+        this.cloudPublisher.updated(this.properties);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenPublishedMessageCountIs(final int count) {
+        assertEquals(count, this.messages.size());
+    }
+
+    private void thenEventuallyPublishedMessageCountIs(final int count) throws InterruptedException {
+        final long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (this.messages.size() < count && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        thenPublishedMessageCountIs(count);
+    }
+
+    private void thenBatchedRecordCountIs(final long count) {
+        assertEquals(count, this.cloudPublisher.getBatchedRecordCount());
+    }
+
+    private void thenPublishedBatchCountIs(final long count) {
+        assertEquals(count, this.cloudPublisher.getPublishedBatchCount());
+    }
+
+    private void thenRecordsPerBatchIs(final double expected) {
+        assertEquals(expected, this.cloudPublisher.getRecordsPerBatch(), 0.001);
+    }
+
+    private void thenRecordIsRejected() {
+        assertFalse(this.added);
+    }
+
+    private void thenBatchSizesAre(final Integer... sizes) {
+        assertEquals(Arrays.asList(sizes), this.batchSizes);
+    }
+
+    private void thenBatchValuesAre(final int messageIndex, final String property, final String expectedJson) {
+        assertEquals(Json.parse(expectedJson), getBody(messageIndex).get("metrics").asObject().get(property));
+    }
+
+    private void thenBatchTimestampCountIs(final int messageIndex, final int count) {
+        assertEquals(count, getBody(messageIndex).get("timestamps").asArray().size());
+    }
+
+    private void thenMessagePropertyIs(final int messageIndex, final String property, final Object value) {
+        assertEquals(value, this.messages.get(messageIndex).getProperties().get(property));
+    }
+
+    private void thenBodyIsNotSetFromProperty(final int messageIndex) {
+        assertNull(getBody(messageIndex).get("assetName"));
+    }
+
+    /*
+     * Utilities
+     */
+
+    private JsonObject getBody(final int messageIndex) {
+        final byte[] body = this.messages.get(messageIndex).getPayload().getBody();
+        return Json.parse(new String(body, StandardCharsets.UTF_8)).asObject();
+    }
+
+    private static WireRecord record(final String property, final Object value) {
+        final TypedValue<?> typedValue;
+
+        if (value instanceof Integer) {
+            typedValue = new IntegerValue((Integer) value);
+        } else if (value instanceof Double) {
+            typedValue = new DoubleValue((Double) value);
+        } else if (value instanceof byte[]) {
+            typedValue = new ByteArrayValue((byte[]) value);
+        } else {
+            typedValue = new StringValue((String) value);
+        }
+
+        return new WireRecord(Collections.singletonMap(property, typedValue));
+    }
+}
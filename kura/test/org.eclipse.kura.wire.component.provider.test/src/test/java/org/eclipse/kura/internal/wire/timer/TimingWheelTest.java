@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.timer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TimingWheelTest {
+
+    private TimingWheel wheel;
+    private final List<TimingWheel.Task> tasks = new ArrayList<>();
+    private final List<AtomicInteger> counters = new ArrayList<>();
+    private final List<Runnable> heldExecutions = new ArrayList<>();
+    private long nowNanos;
+    private boolean holdNextExecution;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldTickPeriodically() {
+        givenTimingWheel(1, TimeUnit.MILLISECONDS);
+        givenCountingTask(20, 20);
+
+        whenTimeElapses(500, TimeUnit.MILLISECONDS);
+
+        thenTickCountIs(0, 25);
+        thenMaxDriftIs(0, 0);
+        thenOverrunCountIs(0, 0);
+    }
+
+    @Test
+    public void shouldNotTickBeforeInitialDelay() {
+        givenTimingWheel(1, TimeUnit.MILLISECONDS);
+        givenCountingTask(100, 10);
+
+        whenTimeElapses(99, TimeUnit.MILLISECONDS);
+
+        thenTickCountIs(0, 0);
+    }
+
+    @Test
+    public void shouldCascadeTasksScheduledFarAhead() {
+        // 300 ms are 30000 ticks of 10 us, the task goes through three levels of the wheel
+        givenTimingWheel(10, TimeUnit.MICROSECONDS);
+        givenCountingTask(300, TimeUnit.DAYS.toMillis(1));
+        givenTimeElapsed(299_990, TimeUnit.MICROSECONDS);
+        givenTickCountIs(0, 0);
+
+        whenTimeElapses(10, TimeUnit.MICROSECONDS);
+
+        thenTickCountIs(0, 1);
+        thenMaxDriftIs(0, 0);
+    }
+
+    @Test
+    public void shouldStopTickingWhenCancelled() {
+        givenTimingWheel(1, TimeUnit.MILLISECONDS);
+        givenCountingTask(10, 10);
+        givenTimeElapsed(100, TimeUnit.MILLISECONDS);
+
+        whenCancelling(0);
+        whenTimeElapses(200, TimeUnit.MILLISECONDS);
+
+        thenTickCountIs(0, 10);
+    }
+
+    @Test
+    public void shouldNotDelayOtherTasksWhenATaskIsSlow() {
+        givenTimingWheel(1, TimeUnit.MILLISECONDS);
+        givenNextExecutionHeld();
+        givenCountingTask(10, 10);
+        givenCountingTask(10, 10);
+
+        whenTimeElapses(100, TimeUnit.MILLISECONDS);
+
+        thenTickCountIs(1, 10);
+        thenOverrunCountIs(0, 9);
+        thenOverrunCountIs(1, 0);
+    }
+
+    @Test
+    public void shouldResumeTickingWhenSlowExecutionCompletes() {
+        givenTimingWheel(1, TimeUnit.MILLISECONDS);
+        givenNextExecutionHeld();
+        givenCountingTask(10, 10);
+        givenTimeElapsed(45, TimeUnit.MILLISECONDS);
+
+        whenHeldExecutionsComplete();
+        whenTimeElapses(55, TimeUnit.MILLISECONDS);
+
+        thenTickCountIs(0, 7);
+        thenOverrunCountIs(0, 3);
+    }
+
+    @Test
+    public void shouldTrackDriftOfLateTicks() {
+        givenTimingWheel(1, TimeUnit.MILLISECONDS);
+        givenCountingTask(10, 10);
+
+        whenClockJumps(17, TimeUnit.MILLISECONDS);
+
+        thenTickCountIs(0, 1);
+        thenLastDriftIs(0, 7);
+        thenMaxDriftIs(0, 7);
+        thenOverrunCountIs(0, 0);
+    }
+
+    @Test
+    public void shouldCountTicksMissedByALateTicker() {
+        givenTimingWheel(1, TimeUnit.MILLISECONDS);
+        givenCountingTask(10, 10);
+
+        whenClockJumps(45, TimeUnit.MILLISECONDS);
+
+        thenTickCountIs(0, 1);
+        thenOverrunCountIs(0, 3);
+        thenMaxDriftIs(0, 35);
+    }
+
+    @Test
+    public void shouldTickTogetherWhenAligned() {
+        thenAlignedFirstTickIntervalIs(1_000_250, 1000, 750);
+        thenAlignedFirstTickIntervalIs(1_000_000, 1000, 1000);
+        thenAlignedFirstTickIntervalIs(59_999, 60_000, 1);
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenTimingWheel(final long tickDuration, final TimeUnit unit) {
+        this.wheel = new TimingWheel(tickDuration, unit, this::execute, () -> this.nowNanos);
+    }
+
+    private void givenCountingTask(final long initialDelayMillis, final long periodMillis) {
+        final AtomicInteger counter = new AtomicInteger();
+        this.counters.add(counter);
+        this.tasks.add(this.wheel.scheduleAtFixedRate(counter::incrementAndGet, initialDelayMillis, periodMillis,
+                TimeUnit.MILLISECONDS));
+    }
+
+    private void givenNextExecutionHeld() {
+        this.holdNextExecution = true;
+    }
+
+    private void givenTimeElapsed(final long duration, final TimeUnit unit) {
+        whenTimeElapses(duration, unit);
+    }
+
+    private void givenTickCountIs(final int index, final int expected) {
+        thenTickCountIs(index, expected);
+    }
+
+    /*
+     * When
+     */
+
+    /*
+     * Moves the clock forward one tick at a time, as the ticker thread would do if it was never late.
+     */
+    private void whenTimeElapses(final long duration, final TimeUnit unit) {
+        final long end = this.nowNanos + unit.toNanos(duration);
+        while (this.nowNanos < end) {
+            final long next = this.wheel.advance();
+            this.nowNanos = next == Long.MAX_VALUE ? end : Math.min(end, this.nowNanos + Math.max(1, next));
+        }
+        this.wheel.advance();
+    }
+
+    /*
+     * Moves the clock forward at once, as if the ticker thread was late.
+     */
+    private void whenClockJumps(final long duration, final TimeUnit unit) {
+        this.nowNanos += unit.toNanos(duration);
+        this.wheel.advance();
+    }
+
+    private void whenCancelling(final int index) {
+        this.tasks.get(index).cancel();
+    }
+
+    private void whenHeldExecutionsComplete() {
+        final List<Runnable> executions = new ArrayList<>(this.heldExecutions);
+        this.heldExecutions.clear();
+        executions.forEach(Runnable::run);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenTickCountIs(final int index, final int expected) {
+        assertEquals(expected, this.counters.get(index).get());
+    }
+
+    private void thenOverrunCountIs(final int index, final long expected) {
+        assertEquals(expected, this.tasks.get(index).getOverrunCount());
+    }
+
+    private void thenLastDriftIs(final int index, final long expectedMillis) {
+        assertEquals(expectedMillis, this.tasks.get(index).getLastDrift(TimeUnit.MILLISECONDS));
+    }
+
+    private void thenMaxDriftIs(final int index, final long expectedMillis) {
+        assertEquals(expectedMillis, this.tasks.get(index).getMaxDrift(TimeUnit.MILLISECONDS));
+    }
+
+    private void thenAlignedFirstTickIntervalIs(final long nowMillis, final long interval, final long expected) {
+        assertEquals(expected, SimpleTimerExecutor.alignedFirstTickInterval(nowMillis, interval));
+    }
+
+    /*
+     * Utilities
+     */
+
+    /*
+     * Runs the executions on the calling thread, except the first one after givenNextExecutionHeld() that stays in
+     * progress until whenHeldExecutionsComplete() is called.
+     */
+    private void execute(final Runnable execution) {
+        if (this.holdNextExecution) {
+            this.holdNextExecution = false;
+            this.heldExecutions.add(execution);
+        } else {
+            execution.run();
+        }
+    }
+}
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -16,6 +16,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.sql.Blob;
@@ -26,6 +28,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,6 +65,7 @@ public class DbWireRecordStoreTest {
     private DbWireRecordStore storeWireComp;
     private Map<String, Object> properties = new HashMap<>();
     private WireEnvelope wireEnvelope;
+    private WireSupport wireSupportMock;
 
     private static final Map<String, TypedValue<?>> SIMPLE_DATA = new HashMap<String, TypedValue<?>>() {
 
@@ -87,6 +91,15 @@ public class DbWireRecordStoreTest {
         }
     };
 
+    private static final Map<String, TypedValue<?>> TOO_LONG_STRING_DATA = new HashMap<String, TypedValue<?>>() {
+
+        private static final long serialVersionUID = 3L;
+
+        {
+            put("key", new StringValue(String.join("", Collections.nCopies(102401, "x"))));
+        }
+    };
+
     private static final String TEST_TABLE_NAME = "WR_DATA";
 
     /*
@@ -245,6 +258,107 @@ public class DbWireRecordStoreTest {
         thenLastInsertedIdIs(TEST_TABLE_NAME, 11);
     }
 
+    @Test
+    public void shouldStoreRecordsWithDifferentColumnsInOrder() {
+        givenProperties(TEST_TABLE_NAME, 10, 0);
+        givenActivatedStoreComponent();
+        givenWireEnvelope(SIMPLE_DATA, ALL_TYPES_DATA, SIMPLE_DATA);
+
+        whenWireEnvelopesReceived(1);
+
+        thenTableEntriesCountIs(TEST_TABLE_NAME, 3);
+        thenColumnValuesAre(TEST_TABLE_NAME, "key", "value", null, "value");
+        thenColumnValuesAre(TEST_TABLE_NAME, "k_int", null, 11, null);
+        thenEmittedEnvelopesCountIs(1);
+    }
+
+    @Test
+    public void shouldStoreEnvelopesReceivedInBatchWindow() throws InterruptedException {
+        givenProperties(TEST_TABLE_NAME, 10, 0);
+        givenInsertBatchWindow(300);
+        givenActivatedStoreComponent();
+        givenWireEnvelope(SIMPLE_DATA);
+
+        whenWireEnvelopesReceived(3);
+
+        thenTableEntriesCountIs(TEST_TABLE_NAME, 0);
+        thenEmittedEnvelopesCountIs(0);
+
+        Thread.sleep(1000);
+
+        thenTableEntriesCountIs(TEST_TABLE_NAME, 3);
+        thenEmittedEnvelopesCountIs(3);
+    }
+
+    @Test
+    public void shouldStorePendingEnvelopesOnUpdate() {
+        givenProperties(TEST_TABLE_NAME, 10, 0);
+        givenInsertBatchWindow(60000);
+        givenActivatedStoreComponent();
+        givenWireEnvelope(SIMPLE_DATA);
+        givenWireEnvelopesReceived(2);
+        givenInsertBatchWindow(0);
+
+        whenUpdate();
+
+        thenTableEntriesCountIs(TEST_TABLE_NAME, 2);
+        thenEmittedEnvelopesCountIs(2);
+    }
+
+    @Test
+    public void shouldStoreOtherEnvelopesOfBatchWindowIfOneFails() {
+        givenProperties(TEST_TABLE_NAME, 10, 0);
+        givenInsertBatchWindow(60000);
+        givenActivatedStoreComponent();
+        givenWireEnvelope(SIMPLE_DATA);
+        givenWireEnvelopesReceived(1);
+        givenWireEnvelope(TOO_LONG_STRING_DATA);
+        givenWireEnvelopesReceived(1);
+        givenWireEnvelope(SIMPLE_DATA);
+        givenWireEnvelopesReceived(1);
+        givenInsertBatchWindow(0);
+
+        whenUpdate();
+
+        thenTableEntriesCountIs(TEST_TABLE_NAME, 2);
+        thenColumnValuesAre(TEST_TABLE_NAME, "key", "value", "value");
+        thenEmittedEnvelopesCountIs(3);
+    }
+
+    @Test
+    public void shouldStoreReceiveTimeOfEnvelopesInBatchWindow() throws InterruptedException {
+        givenProperties(TEST_TABLE_NAME, 10, 0);
+        givenInsertBatchWindow(60000);
+        givenActivatedStoreComponent();
+        givenWireEnvelope(SIMPLE_DATA);
+        givenWireEnvelopesReceived(1);
+        givenPassedMillis(100);
+        givenWireEnvelopesReceived(1);
+        givenPassedMillis(100);
+        givenInsertBatchWindow(0);
+
+        whenUpdate();
+
+        thenTableEntriesCountIs(TEST_TABLE_NAME, 2);
+        thenTimestampsAreAtLeastApart(TEST_TABLE_NAME, 100);
+        thenLastTimestampIsAtLeastBefore(TEST_TABLE_NAME, 100);
+    }
+
+    @Test
+    public void truncateShouldTriggerWithBatchWindow() throws InterruptedException {
+        givenProperties(TEST_TABLE_NAME, 10, 0);
+        givenInsertBatchWindow(100);
+        givenActivatedStoreComponent();
+        givenWireEnvelope(SIMPLE_DATA);
+        givenWireEnvelopesReceived(10);
+
+        Thread.sleep(500);
+        whenWireEnvelopesReceived(1);
+        Thread.sleep(500);
+
+        thenTableEntriesCountIs(TEST_TABLE_NAME, 1);
+    }
+
     /*
      * Steps
      */
@@ -259,12 +373,16 @@ public class DbWireRecordStoreTest {
         this.properties.put(DbWireRecordStoreOptions.CLEANUP_RECORDS_KEEP, nRecordsToKeep);
     }
 
+    private void givenInsertBatchWindow(int windowMillis) {
+        this.properties.put(DbWireRecordStoreOptions.INSERT_BATCH_WINDOW, windowMillis);
+    }
+
     private void givenActivatedStoreComponent() {
         this.storeWireComp = new DbWireRecordStore();
 
         WireHelperService whsMock = mock(WireHelperService.class);
-        WireSupport wireSupportMock = mock(WireSupport.class);
-        when(whsMock.newWireSupport(this.storeWireComp, null)).thenReturn(wireSupportMock);
+        this.wireSupportMock = mock(WireSupport.class);
+        when(whsMock.newWireSupport(this.storeWireComp, null)).thenReturn(this.wireSupportMock);
 
         this.storeWireComp.bindWireHelperService(whsMock);
 
@@ -290,12 +408,26 @@ public class DbWireRecordStoreTest {
         this.wireEnvelope = new WireEnvelope(emitterPid, wireRecords);
     }
 
+    @SafeVarargs
+    private final void givenWireEnvelope(Map<String, TypedValue<?>>... recordsProperties) {
+        List<WireRecord> wireRecords = new ArrayList<>();
+        for (Map<String, TypedValue<?>> recordProperties : recordsProperties) {
+            wireRecords.add(new WireRecord(recordProperties));
+        }
+
+        this.wireEnvelope = new WireEnvelope("emitter-example", wireRecords);
+    }
+
     private void givenWireEnvelopesReceived(int nWireEnvelopes) {
         for (int i = 0; i < nWireEnvelopes; i++) {
             this.storeWireComp.onWireReceive(this.wireEnvelope);
         }
     }
 
+    private void givenPassedMillis(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
     /*
      * When
      */
@@ -382,6 +514,44 @@ public class DbWireRecordStoreTest {
         }
     }
 
+    private void thenColumnValuesAre(String tableName, String columnName, Object... expectedValues) {
+        try {
+            ResultSet resultSet = this.dbConnection
+                    .prepareStatement("SELECT \"" + columnName + "\" FROM " + tableName + " ORDER BY ID")
+                    .executeQuery();
+
+            List<Object> values = new ArrayList<>();
+            while (resultSet.next()) {
+                values.add(resultSet.getObject(1));
+            }
+
+            assertEquals(Arrays.asList(expectedValues), values);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void thenTimestampsAreAtLeastApart(String tableName, long minDifferenceMillis) {
+        final List<Long> timestamps = getTimestamps(tableName);
+
+        for (int i = 1; i < timestamps.size(); i++) {
+            assertTrue("timestamps " + timestamps + " are too close",
+                    timestamps.get(i) - timestamps.get(i - 1) >= minDifferenceMillis);
+        }
+    }
+
+    private void thenLastTimestampIsAtLeastBefore(String tableName, long minDifferenceMillis) {
+        final List<Long> timestamps = getTimestamps(tableName);
+        final long lastTimestamp = timestamps.get(timestamps.size() - 1);
+
+        assertTrue("timestamp " + lastTimestamp + " is not the receive time",
+                System.currentTimeMillis() - lastTimestamp >= minDifferenceMillis);
+    }
+
+    private void thenEmittedEnvelopesCountIs(int expectedCount) {
+        verify(this.wireSupportMock, times(expectedCount)).emit(any());
+    }
+
     private void thenLastInsertedIdIs(String tableName, int lastId) {
         try {
             ResultSet resultSet = this.dbConnection.prepareStatement("SELECT ID FROM " + tableName).executeQuery();
@@ -401,6 +571,21 @@ public class DbWireRecordStoreTest {
      * Utilities
      */
 
+    private List<Long> getTimestamps(String tableName) {
+        try {
+            ResultSet resultSet = this.dbConnection
+                    .prepareStatement("SELECT TIMESTAMP FROM " + tableName + " ORDER BY ID").executeQuery();
+
+            List<Long> timestamps = new ArrayList<>();
+            while (resultSet.next()) {
+                timestamps.add(resultSet.getLong(1));
+            }
+            return timestamps;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @BeforeClass
     public static void setup() {
         try {
@@ -0,0 +1,452 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ ******************************************************************************/
+package org.eclipse.kura.internal.wire.helper;
+
+import static org.eclipse.kura.wire.graph.Constants.EMITTER_KURA_SERVICE_PID_PROP_NAME;
+import static org.eclipse.kura.wire.graph.Constants.WIRE_RECEIVER_PORT_PROP_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.kura.wire.WireEnvelope;
+import org.eclipse.kura.wire.WireReceiver;
+import org.junit.After;
+import org.junit.Test;
+import org.osgi.service.wireadmin.Wire;
+
+public class WireSupportImplTest {
+
+    private final List<Runnable> pendingTasks = new ArrayList<>();
+    private final Map<String, Object> componentProperties = new HashMap<>();
+    private final TestReceiver receiver = new TestReceiver();
+
+    private Executor executor = this.pendingTasks::add;
+    private ExecutorService executorService;
+    private WireSupportImpl wireSupport;
+    private Wire wire;
+
+    @After
+    public void tearDown() {
+        this.receiver.unblock();
+        if (this.executorService != null) {
+            this.executorService.shutdownNow();
+        }
+    }
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldDeliverOnEmitterThreadByDefault() {
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+
+        whenEnvelopesAreReceived(3);
+
+        thenReceivedEnvelopesAre(0, 1, 2);
+        thenAllEnvelopesReceivedOnThread(Thread.currentThread());
+        thenNoDispatchTasksSubmitted();
+        thenNoDispatchMetrics();
+    }
+
+    @Test
+    public void shouldDeliverAsynchronously() {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+
+        whenEnvelopesAreReceived(3);
+
+        thenReceivedEnvelopesAre();
+        thenQueueDepthIs(3);
+
+        whenDispatchTasksRun();
+
+        thenReceivedEnvelopesAre(0, 1, 2);
+        thenDispatchedCountIs(3);
+        thenDroppedCountIs(0);
+        thenMaxQueueDepthIs(3);
+    }
+
+    @Test
+    public void shouldSubmitOneTaskPerQueue() {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+
+        whenEnvelopesAreReceived(5);
+
+        thenDispatchTasksSubmitted(1);
+    }
+
+    @Test
+    public void shouldIgnoreDispatchOptionsInWireProperties() {
+        givenWireSupport();
+        givenIncomingWire(Collections.singletonMap(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC"));
+
+        whenEnvelopesAreReceived(2);
+
+        thenReceivedEnvelopesAre(0, 1);
+        thenNoDispatchMetrics();
+    }
+
+    @Test
+    public void shouldApplyUpdatedDispatchOptions() {
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+
+        whenComponentIsUpdated();
+        whenEnvelopesAreReceived(2);
+
+        thenReceivedEnvelopesAre();
+        thenQueueDepthIs(2);
+
+        whenDispatchTasksRun();
+
+        thenReceivedEnvelopesAre(0, 1);
+    }
+
+    @Test
+    public void shouldKeepQueuesIfDispatchOptionsAreUnchanged() {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+        givenEnvelopesReceived(2);
+
+        whenComponentIsUpdated();
+        whenDispatchTasksRun();
+
+        thenReceivedEnvelopesAre(0, 1);
+    }
+
+    @Test
+    public void shouldSwitchBackToSynchronousDispatch() {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "SYNC");
+
+        whenComponentIsUpdated();
+        whenEnvelopesAreReceived(2);
+
+        thenReceivedEnvelopesAre(0, 1);
+        thenAllEnvelopesReceivedOnThread(Thread.currentThread());
+        thenNoDispatchMetrics();
+    }
+
+    @Test
+    public void shouldDropOldestEnvelopesIfQueueIsFull() {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenComponentProperty(DispatchOptions.DISPATCH_QUEUE_CAPACITY_PROP_NAME, 2);
+        givenComponentProperty(DispatchOptions.DISPATCH_BACK_PRESSURE_PROP_NAME, "DROP_OLDEST");
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+
+        whenEnvelopesAreReceived(5);
+        whenDispatchTasksRun();
+
+        thenReceivedEnvelopesAre(3, 4);
+        thenDroppedCountIs(3);
+        thenMaxQueueDepthIs(2);
+    }
+
+    @Test
+    public void shouldDropNewestEnvelopesIfQueueIsFull() {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenComponentProperty(DispatchOptions.DISPATCH_QUEUE_CAPACITY_PROP_NAME, 2);
+        givenComponentProperty(DispatchOptions.DISPATCH_BACK_PRESSURE_PROP_NAME, "DROP_NEWEST");
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+
+        whenEnvelopesAreReceived(5);
+        whenDispatchTasksRun();
+
+        thenReceivedEnvelopesAre(0, 1);
+        thenDroppedCountIs(3);
+    }
+
+    @Test
+    public void shouldBlockEmitterIfQueueIsFull() throws Exception {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenComponentProperty(DispatchOptions.DISPATCH_QUEUE_CAPACITY_PROP_NAME, 1);
+        givenComponentProperty(DispatchOptions.DISPATCH_BACK_PRESSURE_PROP_NAME, "BLOCK");
+        givenDispatchExecutor();
+        givenBlockedReceiver();
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+
+        final CompletableFuture<Void> emitter = whenEnvelopesAreReceivedInBackground(3);
+
+        thenEmitterIsBlocked(emitter);
+
+        whenReceiverIsUnblocked();
+
+        thenEmitterCompletes(emitter);
+        thenEnvelopesAreEventuallyReceived(0, 1, 2);
+        thenDroppedCountIs(0);
+    }
+
+    @Test
+    public void shouldPreserveOrderWithWorkerPool() throws Exception {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenComponentProperty(DispatchOptions.DISPATCH_QUEUE_CAPACITY_PROP_NAME, 10);
+        givenDispatchExecutor();
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+
+        whenEnvelopesAreReceived(1000);
+
+        thenEnvelopesAreEventuallyReceived(range(1000));
+        thenNoEnvelopeReceivedOnThread(Thread.currentThread());
+    }
+
+    @Test
+    public void shouldDiscardQueuedEnvelopesIfWiresAreDisconnected() {
+        givenComponentProperty(DispatchOptions.DISPATCH_MODE_PROP_NAME, "ASYNC");
+        givenWireSupport();
+        givenIncomingWire(Collections.emptyMap());
+        givenEnvelopesReceived(3);
+
+        whenWiresAreDisconnected();
+        whenDispatchTasksRun();
+
+        thenReceivedEnvelopesAre();
+        thenNoDispatchMetrics();
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenComponentProperty(final String key, final Object value) {
+        this.componentProperties.put(key, value);
+    }
+
+    private void givenDispatchExecutor() {
+        this.executorService = Executors.newCachedThreadPool();
+        this.executor = this.executorService;
+    }
+
+    private void givenBlockedReceiver() {
+        this.receiver.block();
+    }
+
+    private void givenWireSupport() {
+        this.wireSupport = new WireSupportImpl(this.receiver, "receiver", "receiver", 1, 0,
+                DispatchOptions.DEFAULT.override(this.componentProperties::get), this.executor);
+    }
+
+    private void givenIncomingWire(final Map<String, Object> wireProperties) {
+        final Hashtable<String, Object> properties = new Hashtable<>(wireProperties);
+        properties.put(WIRE_RECEIVER_PORT_PROP_NAME.value(), 0);
+        properties.put(EMITTER_KURA_SERVICE_PID_PROP_NAME.value(), "emitter");
+
+        this.wire = mock(Wire.class);
+        when(this.wire.getProperties()).thenReturn(properties);
+
+        this.wireSupport.producersConnected(new Wire[] { this.wire });
+    }
+
+    private void givenEnvelopesReceived(final int count) {
+        whenEnvelopesAreReceived(count);
+    }
+
+    /*
+     * When
+     */
+
+    private void whenEnvelopesAreReceived(final int count) {
+        for (int i = 0; i < count; i++) {
+            this.wireSupport.updated(this.wire, new WireEnvelope(Integer.toString(i), Collections.emptyList()));
+        }
+    }
+
+    private CompletableFuture<Void> whenEnvelopesAreReceivedInBackground(final int count) {
+        return CompletableFuture.runAsync(() -> whenEnvelopesAreReceived(count));
+    }
+
+    private void whenDispatchTasksRun() {
+        while (!this.pendingTasks.isEmpty()) {
+            this.pendingTasks.remove(0).run();
+        }
+    }
+
+    private void whenReceiverIsUnblocked() {
+        this.receiver.unblock();
+    }
+
+    private void whenComponentIsUpdated() {
+        this.wireSupport.setDispatchOptions(DispatchOptions.DEFAULT.override(this.componentProperties::get));
+    }
+
+    private void whenWiresAreDisconnected() {
+        this.wireSupport.producersConnected(null);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenReceivedEnvelopesAre(final Integer... expected) {
+        assertEquals(Arrays.asList(expected), this.receiver.getReceived());
+    }
+
+    private void thenEnvelopesAreEventuallyReceived(final Integer... expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (this.receiver.getReceived().size() < expected.length && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        thenReceivedEnvelopesAre(expected);
+    }
+
+    private void thenAllEnvelopesReceivedOnThread(final Thread thread) {
+        for (final Thread receivingThread : this.receiver.getThreads()) {
+            assertEquals(thread, receivingThread);
+        }
+    }
+
+    private void thenNoEnvelopeReceivedOnThread(final Thread thread) {
+        for (final Thread receivingThread : this.receiver.getThreads()) {
+            assertNotEquals(thread, receivingThread);
+        }
+    }
+
+    private void thenNoDispatchTasksSubmitted() {
+        assertTrue(this.pendingTasks.isEmpty());
+    }
+
+    private void thenDispatchTasksSubmitted(final int expected) {
+        assertEquals(expected, this.pendingTasks.size());
+    }
+
+    private void thenNoDispatchMetrics() {
+        assertTrue(this.wireSupport.getDispatchMetrics().isEmpty());
+    }
+
+    private void thenQueueDepthIs(final int expected) {
+        assertEquals(expected, getMetrics().getDepth());
+    }
+
+    private void thenMaxQueueDepthIs(final int expected) {
+        assertEquals(expected, getMetrics().getMaxDepth());
+    }
+
+    private void thenDispatchedCountIs(final long expected) {
+        assertEquals(expected, getMetrics().getDispatched());
+    }
+
+    private void thenDroppedCountIs(final long expected) {
+        assertEquals(expected, getMetrics().getDropped());
+    }
+
+    private void thenEmitterIsBlocked(final CompletableFuture<Void> emitter) throws Exception {
+        try {
+            emitter.get(500, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // expected
+        }
+        assertFalse(emitter.isDone());
+    }
+
+    private void thenEmitterCompletes(final CompletableFuture<Void> emitter) throws Exception {
+        emitter.get(30, TimeUnit.SECONDS);
+    }
+
+    /*
+     * Utilities
+     */
+
+    private WireDispatchQueue.Metrics getMetrics() {
+        final Map<Wire, WireDispatchQueue.Metrics> metrics = this.wireSupport.getDispatchMetrics();
+        assertEquals(1, metrics.size());
+        return metrics.get(this.wire);
+    }
+
+    private static Integer[] range(final int count) {
+        final Integer[] result = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = i;
+        }
+        return result;
+    }
+
+    private static final class TestReceiver implements WireReceiver {
+
+        private final List<Integer> received = new ArrayList<>();
+        private final List<Thread> threads = new ArrayList<>();
+        private CountDownLatch blocker = new CountDownLatch(0);
+
+        void block() {
+            this.blocker = new CountDownLatch(1);
+        }
+
+        void unblock() {
+            this.blocker.countDown();
+        }
+
+        synchronized List<Integer> getReceived() {
+            return new ArrayList<>(this.received);
+        }
+
+        synchronized List<Thread> getThreads() {
+            return new ArrayList<>(this.threads);
+        }
+
+        @Override
+        public void onWireReceive(final WireEnvelope wireEnvelope) {
+            try {
+                this.blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                this.received.add(Integer.parseInt(wireEnvelope.getEmitterPid()));
+                this.threads.add(Thread.currentThread());
+            }
+        }
+
+        @Override
+        public void updated(final Wire wire, final Object value) {
+            // not needed
+        }
+
+        @Override
+        public void producersConnected(final Wire[] wires) {
+            // not needed
+        }
+    }
+}
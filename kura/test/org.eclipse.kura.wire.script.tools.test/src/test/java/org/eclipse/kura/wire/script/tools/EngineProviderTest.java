@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2022 Eurotech and/or its affiliates and others
+ * Copyright (c) 2022, 2023 Eurotech and/or its affiliates and others
  * 
  * This program and the accompanying materials are made
  * available under the terms of the Eclipse Public License 2.0
@@ -12,16 +12,24 @@
  ******************************************************************************/
 package org.eclipse.kura.wire.script.tools;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 public class EngineProviderTest {
 
+    private static final String COUNTER_SCRIPT = "var count = (typeof count === 'undefined') ? 1 : count + 1;\n"
+            + "count == 2;";
+
     private EngineProvider engine = new EngineProvider() {
 
+    };
+    private EngineProvider otherEngine = new EngineProvider() {
+
     };
     private boolean isEngineInit = false;
 
@@ -73,6 +81,80 @@ public class EngineProviderTest {
         thenResultIsEmpty();
     }
 
+    @Test
+    public void shouldKeepGlobalStateAcrossEvaluationsOfSameSource() {
+        givenEngineInit();
+        givenEvaluated(COUNTER_SCRIPT);
+
+        whenEvaluate(COUNTER_SCRIPT);
+
+        thenResultIs(true);
+    }
+
+    @Test
+    public void shouldEvaluateUpdatedSource() {
+        givenEngineInit();
+        givenEvaluated("1 == 1");
+
+        whenEvaluate("1 == 2");
+
+        thenResultIs(false);
+    }
+
+    @Test
+    public void shouldNotShareGlobalStateBetweenEngines() {
+        givenEngineInit();
+        givenOtherEngineInit();
+        givenEvaluated(COUNTER_SCRIPT);
+
+        whenOtherEngineEvaluate(COUNTER_SCRIPT);
+
+        thenOtherEngineResultIs(false);
+    }
+
+    @Test
+    public void shouldDropGlobalStateWhenEngineIsInitAgain() {
+        givenEngineInit();
+        givenEvaluated(COUNTER_SCRIPT);
+        givenEngineInit();
+
+        whenEvaluate(COUNTER_SCRIPT);
+
+        thenResultIs(false);
+    }
+
+    @Test
+    public void shouldKeepSharedEngineOpenWhileAnEngineIsInit() {
+        givenEngineInit();
+        givenOtherEngineInit();
+
+        whenOtherEngineIsClosed();
+
+        thenSharedEngineIsOpen(true);
+    }
+
+    @Test
+    public void shouldCloseSharedEngineWhenLastEngineIsClosed() {
+        givenEngineInit();
+        givenOtherEngineInit();
+        givenCloseEngine();
+
+        whenOtherEngineIsClosed();
+
+        thenSharedEngineIsOpen(false);
+    }
+
+    @Test
+    public void shouldEvaluateAfterSharedEngineIsClosed() {
+        givenEngineInit();
+        givenCloseEngine();
+        givenEngineInit();
+
+        whenEvaluate("1 == 1");
+
+        thenResultIs(true);
+    }
+
     /*
      * Steps
      */
@@ -85,10 +167,18 @@ public class EngineProviderTest {
         this.engine.initEngine();
     }
 
+    private void givenOtherEngineInit() {
+        this.otherEngine.initEngine();
+    }
+
     private void givenCloseEngine() {
         this.engine.closeEngine();
     }
 
+    private void givenEvaluated(String sourceCode) {
+        this.engine.evaluate(sourceCode);
+    }
+
     /*
      * When
      */
@@ -101,6 +191,14 @@ public class EngineProviderTest {
         this.engine.evaluate(sourceCode);
     }
 
+    private void whenOtherEngineIsClosed() {
+        this.otherEngine.closeEngine();
+    }
+
+    private void whenOtherEngineEvaluate(String sourceCode) {
+        this.otherEngine.evaluate(sourceCode);
+    }
+
     /*
      * Then
      */
@@ -117,6 +215,20 @@ public class EngineProviderTest {
         assertFalse(this.engine.getResultAsBoolean().isPresent());
     }
 
+    private void thenResultIs(boolean expected) {
+        assertTrue(this.engine.getResultAsBoolean().isPresent());
+        assertEquals(expected, this.engine.getResultAsBoolean().get().getValue());
+    }
+
+    private void thenSharedEngineIsOpen(boolean expected) {
+        assertEquals(expected, EngineProvider.isSharedEngineOpen());
+    }
+
+    private void thenOtherEngineResultIs(boolean expected) {
+        assertTrue(this.otherEngine.getResultAsBoolean().isPresent());
+        assertEquals(expected, this.otherEngine.getResultAsBoolean().get().getValue());
+    }
+
     /*
      * Utilities
      */
@@ -126,4 +238,10 @@ public class EngineProviderTest {
         this.isEngineInit = false;
     }
 
+    @After
+    public void closeEngines() {
+        this.engine.closeEngine();
+        this.otherEngine.closeEngine();
+    }
+
 }
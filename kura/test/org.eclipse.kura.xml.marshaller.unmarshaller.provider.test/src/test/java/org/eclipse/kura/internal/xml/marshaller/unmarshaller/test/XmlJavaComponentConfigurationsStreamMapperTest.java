@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright (c) 2023 Eurotech and/or its affiliates and others
+ *
+ * This program and the accompanying materials are made
+ * available under the terms of the Eclipse Public License 2.0
+ * which is available at https://www.eclipse.org/legal/epl-2.0/
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ *
+ * Contributors:
+ *  Eurotech
+ *******************************************************************************/
+package org.eclipse.kura.internal.xml.marshaller.unmarshaller.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.eclipse.kura.KuraException;
+import org.eclipse.kura.configuration.ComponentConfiguration;
+import org.eclipse.kura.core.configuration.ComponentConfigurationImpl;
+import org.eclipse.kura.core.configuration.XmlComponentConfigurations;
+import org.eclipse.kura.core.configuration.metatype.Tocd;
+import org.eclipse.kura.internal.xml.marshaller.unmarshaller.XmlJavaComponentConfigurationsMapper;
+import org.eclipse.kura.internal.xml.marshaller.unmarshaller.XmlMarshallUnmarshallImpl;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XmlJavaComponentConfigurationsStreamMapperTest {
+
+    private final XmlMarshallUnmarshallImpl marshaller = new XmlMarshallUnmarshallImpl();
+    private final List<ComponentConfiguration> configs = new ArrayList<>();
+    private String xml;
+    private XmlComponentConfigurations result;
+
+    /*
+     * Scenarios
+     */
+
+    @Test
+    public void shouldWriteTheSameDocumentAsTheDomMapper() throws Exception {
+        givenConfiguration("org.eclipse.kura.Test", "string", "a<b>&\"c'\r\nd\te \u00e8 \ud83d\ude00", "int", 3,
+                "strings", new String[] { "x", null, "" }, "name\"&\t\n<>", true, "empty", "", "ints",
+                new Integer[] { 1, 2, 3 }, "char", 'c');
+        givenConfiguration("empty", null);
+        givenConfigurationWithoutProperties("noProperties");
+
+        whenMarshalling();
+
+        thenXmlIsTheSameAsDomMapperOutput();
+    }
+
+    @Test
+    public void shouldWriteEmptyConfigurations() throws Exception {
+        whenMarshalling();
+
+        thenXmlIsTheSameAsDomMapperOutput();
+    }
+
+    @Test
+    public void shouldReadWrittenConfigurations() throws Exception {
+        givenConfiguration("org.eclipse.kura.Test", "string", "a<b>&\"c'\r\nd\te \u00e8 \ud83d\ude00", "long", 5L,
+                "strings", new String[] { "x", "", "y" }, "name\"&\t\n<>", true, "doubles",
+                new Double[] { 1.5d, 2.5d });
+        givenConfiguration("other", "float", 1.5f);
+
+        whenMarshalling();
+        whenUnmarshalling();
+
+        thenConfigurationsAreRead();
+    }
+
+    @Test
+    public void shouldIgnoreDefinitionsWhenReading() throws Exception {
+        givenXml("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" //
+                + "<esf:configurations xmlns:esf=\"http://eurotech.com/esf/2.0\" "
+                + "xmlns:ocd=\"http://www.osgi.org/xmlns/metatype/v1.2.0\">" //
+                + "<esf:configuration pid=\"test\">" //
+                + "<ocd:OCD id=\"test\" name=\"test\"><ocd:AD id=\"a\" type=\"String\"/></ocd:OCD>" //
+                + "<esf:properties><!-- comment -->" //
+                + "<esf:property array=\"false\" encrypted=\"false\" name=\"a\" type=\"String\">" //
+                + "<esf:value><![CDATA[<b>]]>&amp;c</esf:value></esf:property>" //
+                + "</esf:properties></esf:configuration></esf:configurations>");
+
+        whenUnmarshalling();
+
+        thenConfigurationCountIs(1);
+        thenPropertyIs(0, "test", "a", "<b>&c");
+    }
+
+    @Test
+    public void shouldMarshalDefinitionsWithTheDomMapper() throws Exception {
+        givenConfigurationWithDefinition("test", "description");
+
+        whenMarshalling();
+
+        thenXmlContains("<ocd:OCD");
+        thenXmlContains("description=\"description\"");
+    }
+
+    @Test(expected = KuraException.class)
+    public void shouldFailOnMalformedXml() throws Exception {
+        givenXml("<esf:configurations xmlns:esf=\"http://eurotech.com/esf/2.0\"><esf:configuration pid=\"a\">");
+
+        whenUnmarshalling();
+    }
+
+    /*
+     * Steps
+     */
+
+    /*
+     * Given
+     */
+
+    private void givenConfiguration(final String pid, final Object... keysAndValues) {
+        final Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; keysAndValues != null && i < keysAndValues.length; i += 2) {
+            properties.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        }
+        this.configs.add(new ComponentConfigurationImpl(pid, null, properties));
+    }
+
+    private void givenConfigurationWithoutProperties(final String pid) {
+        this.configs.add(new ComponentConfigurationImpl(pid, null, null));
+    }
+
+    private void givenConfigurationWithDefinition(final String pid, final String description) {
+        final Tocd definition = new Tocd();
+        definition.setId(pid);
+        definition.setDescription(description);
+        this.configs.add(new ComponentConfigurationImpl(pid, definition, new HashMap<>()));
+    }
+
+    private void givenXml(final String xml) {
+        this.xml = xml;
+    }
+
+    /*
+     * When
+     */
+
+    private void whenMarshalling() throws KuraException {
+        this.xml = this.marshaller.marshal(getXmlConfigs());
+    }
+
+    private void whenUnmarshalling() throws KuraException {
+        this.result = this.marshaller.unmarshal(this.xml, XmlComponentConfigurations.class);
+    }
+
+    /*
+     * Then
+     */
+
+    private void thenXmlIsTheSameAsDomMapperOutput() throws Exception {
+        final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        doc.setXmlStandalone(true);
+        new XmlJavaComponentConfigurationsMapper().marshal(doc, getXmlConfigs());
+
+        final Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+        final StringWriter writer = new StringWriter();
+        transformer.transform(new DOMSource(doc), new StreamResult(writer));
+
+        assertEquals(writer.toString(), this.xml);
+    }
+
+    private void thenConfigurationsAreRead() {
+        final List<ComponentConfiguration> read = this.result.getConfigurations();
+        assertEquals(this.configs.size(), read.size());
+
+        for (int i = 0; i < this.configs.size(); i++) {
+            final ComponentConfiguration expected = this.configs.get(i);
+            final ComponentConfiguration actual = read.get(i);
+
+            assertEquals(expected.getPid(), actual.getPid());
+            assertEquals(expected.getConfigurationProperties().keySet(),
+                    actual.getConfigurationProperties().keySet());
+
+            for (final Map.Entry<String, Object> entry : expected.getConfigurationProperties().entrySet()) {
+                final Object value = actual.getConfigurationProperties().get(entry.getKey());
+                if (entry.getValue() instanceof Object[]) {
+                    assertArrayEquals((Object[]) entry.getValue(), (Object[]) value);
+                } else {
+                    assertEquals(entry.getValue(), value);
+                }
+            }
+        }
+    }
+
+    private void thenConfigurationCountIs(final int expected) {
+        assertEquals(expected, this.result.getConfigurations().size());
+    }
+
+    private void thenPropertyIs(final int index, final String pid, final String key, final Object expected) {
+        final ComponentConfiguration config = this.result.getConfigurations().get(index);
+        assertEquals(pid, config.getPid());
+        assertEquals(expected, config.getConfigurationProperties().get(key));
+        assertEquals(Arrays.asList(key), new ArrayList<>(config.getConfigurationProperties().keySet()));
+    }
+
+    private void thenXmlContains(final String expected) {
+        assertTrue(this.xml, this.xml.contains(expected));
+    }
+
+    /*
+     * Utilities
+     */
+
+    private XmlComponentConfigurations getXmlConfigs() {
+        final XmlComponentConfigurations xmlConfigs = new XmlComponentConfigurations();
+        xmlConfigs.setConfigurations(this.configs);
+        return xmlConfigs;
+    }
+}
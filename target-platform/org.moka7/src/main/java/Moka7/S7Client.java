@@ -55,14 +55,16 @@ public class S7Client
     public static final int errS7BufferTooSmall    = 0x000C;
     public static final int errS7FunctionError     = 0x000D;
     public static final int errS7InvalidParams     = 0x000E;           
+    public static final int errS7TooManyItems      = 0x000F;
+    public static final int errS7SizeOverPDU       = 0x0010;
     
     // Public fields
     public boolean Connected = false;
     public int LastError = 0;
     public int RecvTimeout = 2000;
+    public int RemotePort = 102; // ISOTCP Port
     
     // Privates
-    private static final int ISOTCP = 102; // ISOTCP Port
     private static final int MinPduSize = 16;
     private static final int DefaultPduSizeRequested = 480;
     private static final int IsoHSize = 7; // TPKT+COTP Header Size
@@ -155,6 +157,26 @@ public class S7Client
     private static final int Size_RD = 31;
     private static final int Size_WR = 35;
 
+    // S7 Read/Write Multi Vars Request Header (contains also ISO Header and COTP Header)
+    private static final byte S7_MRW[] = { // 19 bytes + 12 for each item (+ data if write)
+        (byte)0x03,(byte)0x00, 
+        (byte)0x00,(byte)0x00,  // Telegram Length 
+        (byte)0x02,(byte)0xf0, (byte)0x80, // COTP (see above for info)
+        (byte)0x32,             // S7 Protocol ID 
+        (byte)0x01,             // Job Type
+        (byte)0x00,(byte)0x00,  // Redundancy identification
+        (byte)0x05,(byte)0x00,  // PDU Reference
+        (byte)0x00,(byte)0x00,  // Parameters Length = 2 + Items count * 12
+        (byte)0x00,(byte)0x00,  // Data Length (0 if read)
+        (byte)0x04,             // Function 4 Read Var, 5 Write Var  
+        (byte)0x00              // Items count
+    };
+    private static final int Size_MRW = 19;
+    private static final int Size_ItemSpec = 12;
+    private static final int Size_ReplyHeader = 14; // S7 Ack Data header + Function + Items count
+    // Max number of variables in a single Read/Write Multi Vars telegram
+    public static final int MaxVars = 20;
+
     // S7 Get Block Info Request Header (contains also ISO Header and COTP Header)
     private static final byte S7_BI[] = {
         (byte)0x03, (byte)0x00, (byte)0x00, (byte)0x25, 
@@ -347,6 +369,10 @@ public class S7Client
                 return "S7 function refused by the CPU.";
             case errS7InvalidParams :
                 return "Invalid parameters supplied to the function.";
+            case errS7TooManyItems :
+                return "Too many items in the multiple read/write request.";
+            case errS7SizeOverPDU :
+                return "The multiple read/write request does not fit in the PDU.";
             default : 
                 return "Unknown error : 0x"+Integer.toHexString(Error);
         }
@@ -354,7 +380,7 @@ public class S7Client
     
     private int TCPConnect() 
     {
-        SocketAddress sockaddr = new InetSocketAddress(IPAddress, ISOTCP);
+        SocketAddress sockaddr = new InetSocketAddress(IPAddress, RemotePort);
         LastError=0;
         try {                       
             TCPSocket = new Socket(); 
@@ -800,6 +826,228 @@ public class S7Client
         return LastError;
     }
    
+    // Returns the size of the reply to a ReadMultiVars() telegram, it must not exceed PDULength()
+    public static int ReadMultiVarsReplySize(S7DataItem[] Items, int ItemsCount)
+    {
+        int Size = Size_ReplyHeader;
+        for (int i = 0; i < ItemsCount; i++)
+        {
+            int ItemSize = Items[i].Size();
+            Size += 4 + ItemSize;
+            // Odd items are padded, except the last one
+            if (((ItemSize & 1) != 0) && (i < ItemsCount - 1))
+                Size++;
+        }
+        return Size;
+    }
+
+    // Returns the size of a WriteMultiVars() telegram, it must not exceed PDULength()
+    public static int WriteMultiVarsRequestSize(S7DataItem[] Items, int ItemsCount)
+    {
+        int Size = Size_MRW - IsoHSize + ItemsCount * Size_ItemSpec;
+        for (int i = 0; i < ItemsCount; i++)
+        {
+            int ItemSize = Items[i].Size();
+            Size += 4 + ItemSize;
+            if (((ItemSize & 1) != 0) && (i < ItemsCount - 1))
+                Size++;
+        }
+        return Size;
+    }
+
+    private void SetItemSpec(int Pos, S7DataItem Item)
+    {
+        int Address;
+
+        PDU[Pos]   = (byte)0x12; // Var spec.
+        PDU[Pos+1] = (byte)0x0a; // Length of remaining bytes
+        PDU[Pos+2] = (byte)0x10; // Syntax ID
+
+        // Transport size and address
+        if (Item.Area==S7.S7AreaCT)
+        {
+            PDU[Pos+3] = S7WLCounter;
+            Address = Item.Start;
+        }
+        else if (Item.Area==S7.S7AreaTM)
+        {
+            PDU[Pos+3] = S7WLTimer;
+            Address = Item.Start;
+        }
+        else
+        {
+            PDU[Pos+3] = S7WLByte;
+            Address = Item.Start<<3;
+        }
+        // Num elements
+        S7.SetWordAt(PDU,Pos+4,Item.Amount);
+        // DB Number (if any, else 0)
+        if (Item.Area==S7.S7AreaDB)
+            S7.SetWordAt(PDU,Pos+6,Item.DBNumber);
+        else
+            S7.SetWordAt(PDU,Pos+6,0);
+        // Area Type
+        PDU[Pos+8] = (byte) Item.Area;
+        // Address into the PLC (only 3 bytes)
+        PDU[Pos+11] = (byte) (Address & 0x0FF);
+        Address = Address >> 8;
+        PDU[Pos+10] = (byte) (Address & 0x0FF);
+        Address = Address >> 8;
+        PDU[Pos+9] = (byte) (Address & 0x0FF);
+    }
+
+    // Reads up to MaxVars variables, also from different areas, with a single telegram.
+    // The function result refers to the telegram, the result of each variable is stored into Items[i].Result
+    public int ReadMultiVars(S7DataItem[] Items, int ItemsCount)
+    {
+        int IsoSize;
+        int Length;
+        int Offset;
+        int ItemSize;
+        int TransportSize;
+
+        LastError=0;
+
+        if ((ItemsCount<1) || (ItemsCount>MaxVars))
+            return LastError=errS7TooManyItems;
+
+        // Both the request and the reply must fit in the negotiated PDU
+        if ((Size_MRW-IsoHSize+ItemsCount*Size_ItemSpec>_PDULength) || (ReadMultiVarsReplySize(Items,ItemsCount)>_PDULength))
+            return LastError=errS7SizeOverPDU;
+
+        // Setup the telegram
+        IsoSize = Size_MRW + ItemsCount*Size_ItemSpec;
+        System.arraycopy(S7_MRW, 0, PDU, 0, Size_MRW);
+        S7.SetWordAt(PDU,2,IsoSize);
+        S7.SetWordAt(PDU,13,2+ItemsCount*Size_ItemSpec);
+        PDU[18] = (byte) ItemsCount;
+        for (int i = 0; i < ItemsCount; i++)
+            SetItemSpec(Size_MRW+i*Size_ItemSpec, Items[i]);
+
+        SendPacket(PDU, IsoSize);
+        if (LastError==0)
+        {
+            Length=RecvIsoPacket();
+            if (LastError==0)
+            {
+                if (Length<IsoHSize+Size_ReplyHeader)
+                    return LastError=errS7InvalidPDU;
+                if (S7.GetWordAt(PDU,17)!=0)
+                    return LastError=errS7DataRead;
+                if ((PDU[20] & 0x0FF)!=ItemsCount)
+                    return LastError=errS7InvalidPDU;
+
+                Offset = IsoHSize+Size_ReplyHeader;
+                for (int i = 0; i < ItemsCount; i++)
+                {
+                    if (Offset+4>Length)
+                        return LastError=errS7InvalidPDU;
+
+                    if (PDU[Offset]==(byte)0xFF)
+                    {
+                        TransportSize = PDU[Offset+1];
+                        ItemSize = S7.GetWordAt(PDU,Offset+2);
+                        // Bit, Byte/Word/DWord and Integer lengths are in bits
+                        if ((TransportSize==0x03) || (TransportSize==0x04) || (TransportSize==0x05))
+                            ItemSize = (ItemSize+7) >> 3;
+
+                        if ((ItemSize!=Items[i].Size()) || (Offset+4+ItemSize>Length))
+                            return LastError=errS7InvalidPDU;
+
+                        System.arraycopy(PDU, Offset+4, Items[i].Data, 0, ItemSize);
+                        Items[i].Result = 0;
+                        Offset += 4+ItemSize;
+                        if (((ItemSize & 1) != 0) && (i < ItemsCount - 1))
+                            Offset++;
+                    }
+                    else
+                    {
+                        Items[i].Result = errS7DataRead;
+                        Offset += 4;
+                    }
+                }
+            }
+        }
+        return LastError;
+    }
+
+    // Writes up to MaxVars variables, also into different areas, with a single telegram.
+    // The function result refers to the telegram, the result of each variable is stored into Items[i].Result
+    public int WriteMultiVars(S7DataItem[] Items, int ItemsCount)
+    {
+        int IsoSize;
+        int Length;
+        int Offset;
+        int ItemSize;
+        int DataLength;
+
+        LastError=0;
+
+        if ((ItemsCount<1) || (ItemsCount>MaxVars))
+            return LastError=errS7TooManyItems;
+
+        if (WriteMultiVarsRequestSize(Items,ItemsCount)>_PDULength)
+            return LastError=errS7SizeOverPDU;
+
+        // Setup the telegram
+        System.arraycopy(S7_MRW, 0, PDU, 0, Size_MRW);
+        S7.SetWordAt(PDU,13,2+ItemsCount*Size_ItemSpec);
+        PDU[17] = (byte) 0x05;
+        PDU[18] = (byte) ItemsCount;
+        for (int i = 0; i < ItemsCount; i++)
+            SetItemSpec(Size_MRW+i*Size_ItemSpec, Items[i]);
+
+        // Data follows the items specification
+        Offset = Size_MRW+ItemsCount*Size_ItemSpec;
+        for (int i = 0; i < ItemsCount; i++)
+        {
+            ItemSize = Items[i].Size();
+            PDU[Offset] = (byte) 0x00; // Reserved
+            if ((Items[i].Area==S7.S7AreaCT) || (Items[i].Area==S7.S7AreaTM))
+            {
+                PDU[Offset+1] = (byte) 0x09; // Octet string, length in bytes
+                S7.SetWordAt(PDU,Offset+2,ItemSize);
+            }
+            else
+            {
+                PDU[Offset+1] = (byte) 0x04; // Byte, length in bits
+                S7.SetWordAt(PDU,Offset+2,ItemSize<<3);
+            }
+            System.arraycopy(Items[i].Data, 0, PDU, Offset+4, ItemSize);
+            Offset += 4+ItemSize;
+            if (((ItemSize & 1) != 0) && (i < ItemsCount - 1))
+                PDU[Offset++] = (byte) 0x00;
+        }
+        IsoSize = Offset;
+        DataLength = IsoSize-Size_MRW-ItemsCount*Size_ItemSpec;
+        S7.SetWordAt(PDU,2,IsoSize);
+        S7.SetWordAt(PDU,15,DataLength);
+
+        SendPacket(PDU, IsoSize);
+        if (LastError==0)
+        {
+            Length=RecvIsoPacket();
+            if (LastError==0)
+            {
+                if (Length<IsoHSize+Size_ReplyHeader+ItemsCount)
+                    return LastError=errS7InvalidPDU;
+                if (S7.GetWordAt(PDU,17)!=0)
+                    return LastError=errS7DataWrite;
+                if ((PDU[20] & 0x0FF)!=ItemsCount)
+                    return LastError=errS7InvalidPDU;
+
+                for (int i = 0; i < ItemsCount; i++)
+                {
+                    if (PDU[IsoHSize+Size_ReplyHeader+i]==(byte)0xFF)
+                        Items[i].Result = 0;
+                    else
+                        Items[i].Result = errS7DataWrite;
+                }
+            }
+        }
+        return LastError;
+    }
+
     public int GetAgBlockInfo(int BlockType, int BlockNumber, S7BlockInfo Block)
     {
     	int Length;
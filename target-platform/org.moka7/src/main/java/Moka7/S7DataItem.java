@@ -0,0 +1,61 @@
+/*=============================================================================|
+|  PROJECT Moka7                                                         1.0.2 |
+|==============================================================================|
+|  Copyright (C) 2013, 2016 Davide Nardella                                    |
+|  All rights reserved.                                                        |
+|==============================================================================|
+|  SNAP7 is free software: you can redistribute it and/or modify               |
+|  it under the terms of the Lesser GNU General Public License as published by |
+|  the Free Software Foundation, either version 3 of the License, or under     |
+|  EPL Eclipse Public License 1.0.                                             |
+|                                                                              |
+|  This means that you have to chose in advance which take before you import   |
+|  the library into your project.                                              |
+|                                                                              |
+|  SNAP7 is distributed in the hope that it will be useful,                    |
+|  but WITHOUT ANY WARRANTY; without even the implied warranty of              |
+|  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE whatever license you    |
+|  decide to adopt.                                                            |
+|                                                                              |
+|=============================================================================*/
+package Moka7;
+
+/**
+ * A variable transferred by S7Client.ReadMultiVars() or S7Client.WriteMultiVars()
+ * Amount is expressed in elements (bytes, or words for timers and counters),
+ * Data must be large enough to contain them.
+ * Result is updated by the client: 0 if the variable has been transferred,
+ * otherwise the error code.
+ */
+public class S7DataItem {
+
+    public int Area;
+    public int DBNumber;
+    public int Start;
+    public int Amount;
+    public byte[] Data;
+    public int Result;
+
+    public S7DataItem()
+    {
+        // Placeholder for future implementations
+    }
+
+    public S7DataItem(int Area, int DBNumber, int Start, int Amount, byte[] Data)
+    {
+        this.Area=Area;
+        this.DBNumber=DBNumber;
+        this.Start=Start;
+        this.Amount=Amount;
+        this.Data=Data;
+    }
+
+    // Size in bytes of the variable
+    public int Size()
+    {
+        if ((Area==S7.S7AreaCT) || (Area==S7.S7AreaTM))
+            return Amount*2;
+        else
+            return Amount;
+    }
+}